@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.bench;
+
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.collation.AkCollatorFactory;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.mcompat.mtypes.MString;
+import com.foundationdb.server.types.value.Value;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * String comparison, hashing and sort key encoding, for the binary
+ * collator and a couple of ICU ones. The strings share random length
+ * prefixes, so that comparisons do not all end at the first character.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CollatorBench
+{
+    @Param({"UCS_BINARY", "en_us_ci", "sv_se_ci"})
+    public String collation;
+
+    @Setup
+    public void setup()
+    {
+        collator = AkCollatorFactory.getAkCollator(collation);
+        TInstance type = MString.VARCHAR.instance(64, true);
+        Random random = new Random(RANDOM_SEED);
+        strings = new String[STRINGS];
+        values = new Value[STRINGS];
+        for (int i = 0; i < STRINGS; i++) {
+            StringBuilder str = new StringBuilder(PREFIX.substring(0, random.nextInt(PREFIX.length())));
+            int len = 1 + random.nextInt(16);
+            for (int j = 0; j < len; j++) {
+                char ch = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+                str.append(random.nextBoolean() ? Character.toUpperCase(ch) : ch);
+            }
+            strings[i] = str.toString();
+            values[i] = new Value(type, strings[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STRINGS)
+    public int compareStrings()
+    {
+        int sum = 0;
+        for (int i = 0; i < STRINGS; i++) {
+            sum += collator.compare(strings[i], strings[(i + 1) % STRINGS]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STRINGS)
+    public int compareValues()
+    {
+        int sum = 0;
+        for (int i = 0; i < STRINGS; i++) {
+            sum += collator.compare(values[i], values[(i + 1) % STRINGS]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STRINGS)
+    public int hashStrings()
+    {
+        int sum = 0;
+        for (int i = 0; i < STRINGS; i++) {
+            sum += collator.hashCode(strings[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STRINGS)
+    public int encodeSortKeys()
+    {
+        int sum = 0;
+        for (int i = 0; i < STRINGS; i++) {
+            sum += collator.encodeSortKeyBytes(strings[i]).length;
+        }
+        return sum;
+    }
+
+    private static final long RANDOM_SEED = 20150101L;
+    private static final int STRINGS = 1024;
+    private static final String PREFIX = "\u00d6resund Bridge Company ";
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz\u00e5\u00e4\u00f6";
+
+    private AkCollator collator;
+    private String[] strings;
+    private Value[] values;
+}
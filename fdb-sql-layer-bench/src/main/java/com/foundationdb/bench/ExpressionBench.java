@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.bench;
+
+import com.foundationdb.ais.model.AkibanInformationSchema;
+import com.foundationdb.ais.model.TableName;
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.operator.SimpleQueryContext;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.rowtype.Schema;
+import com.foundationdb.server.rowdata.SchemaFactory;
+import com.foundationdb.server.types.TPreptimeValue;
+import com.foundationdb.server.types.service.TypesRegistryService;
+import com.foundationdb.server.types.service.TypesRegistryServiceImpl;
+import com.foundationdb.server.types.texpressions.Comparison;
+import com.foundationdb.server.types.texpressions.TComparisonExpression;
+import com.foundationdb.server.types.texpressions.TComposedExpression;
+import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
+import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import com.foundationdb.server.types.texpressions.TPreparedField;
+import com.foundationdb.server.types.texpressions.TPreparedFunction;
+import com.foundationdb.server.types.texpressions.TPreparedLiteral;
+import com.foundationdb.server.types.texpressions.TValidatedScalar;
+import com.foundationdb.server.types.value.Value;
+import com.foundationdb.server.types.value.ValueSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-row evaluation of <code>TPreparedExpression</code> trees, built
+ * once and bound to a fresh row for each evaluation, as Project_Default
+ * and Select_HashTable do, both as interpreted by their own evaluations
+ * and as composed by <code>TComposedExpression</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ExpressionBench
+{
+    @Setup
+    public void setup()
+    {
+        AkibanInformationSchema ais = new SchemaFactory(SCHEMA).aisWithRowDefs(
+            "CREATE TABLE t(id INT PRIMARY KEY NOT NULL, a BIGINT, b BIGINT, c BIGINT)");
+        Schema schema = new Schema(ais);
+        RowType rowType = schema.tableRowType(ais.getTable(new TableName(SCHEMA, "t")));
+        Random random = new Random(RANDOM_SEED);
+        rows = new Row[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = new ValuesHolderRow(rowType,
+                                          (long)i,
+                                          (long)random.nextInt(1000),
+                                          (long)random.nextInt(1000),
+                                          (long)random.nextInt(1000));
+        }
+        registry = TypesRegistryServiceImpl.createRegistryService();
+        context = new SimpleQueryContext();
+        TPreparedExpression a = new TPreparedField(rowType.typeAt(1), 1);
+        TPreparedExpression b = new TPreparedField(rowType.typeAt(2), 2);
+        TPreparedExpression c = new TPreparedField(rowType.typeAt(3), 3);
+        TPreparedExpression literal = new TPreparedLiteral(new Value(rowType.typeAt(3), 250000L));
+        TPreparedExpression sum = function("plus", a, b);
+        // (a + b) * c > 250000
+        TPreparedExpression predicate = new TComparisonExpression(function("times", sum, c),
+                                                                  Comparison.GT,
+                                                                  literal);
+        field = build(a);
+        plus = build(sum);
+        compare = build(predicate);
+        composedPlus = compose(sum);
+        composedCompare = compose(predicate);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long field()
+    {
+        long sum = 0;
+        for (Row row : rows) {
+            sum += evaluate(field, row).getInt64();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long plus()
+    {
+        long sum = 0;
+        for (Row row : rows) {
+            sum += evaluate(plus, row).getInt64();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int compare()
+    {
+        int count = 0;
+        for (Row row : rows) {
+            if (evaluate(compare, row).getBoolean()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long composedPlus()
+    {
+        long sum = 0;
+        for (Row row : rows) {
+            sum += evaluate(composedPlus, row).getInt64();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int composedCompare()
+    {
+        int count = 0;
+        for (Row row : rows) {
+            if (evaluate(composedCompare, row).getBoolean()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static ValueSource evaluate(TEvaluatableExpression expression, Row row)
+    {
+        expression.with(row);
+        expression.evaluate();
+        return expression.resultValue();
+    }
+
+    private TPreparedExpression function(String name, TPreparedExpression left, TPreparedExpression right)
+    {
+        TValidatedScalar overload = registry.getScalarsResolver().get(
+            name, Arrays.asList(new TPreptimeValue(left.resultType()), new TPreptimeValue(right.resultType()))
+        ).getOverload();
+        return new TPreparedFunction(overload, overload.resultType().fixed(true), Arrays.asList(left, right));
+    }
+
+    private TEvaluatableExpression build(TPreparedExpression expression)
+    {
+        TEvaluatableExpression evaluation = expression.build();
+        evaluation.with(context);
+        return evaluation;
+    }
+
+    private TEvaluatableExpression compose(TPreparedExpression expression)
+    {
+        TEvaluatableExpression evaluation = TComposedExpression.compose(expression);
+        evaluation.with(context);
+        return evaluation;
+    }
+
+    private static final String SCHEMA = "bench";
+    private static final long RANDOM_SEED = 20150101L;
+    private static final int ROWS = 1024;
+
+    private TypesRegistryService registry;
+    private QueryContext context;
+    private Row[] rows;
+    private TEvaluatableExpression field;
+    private TEvaluatableExpression plus;
+    private TEvaluatableExpression compare;
+    private TEvaluatableExpression composedPlus;
+    private TEvaluatableExpression composedCompare;
+}
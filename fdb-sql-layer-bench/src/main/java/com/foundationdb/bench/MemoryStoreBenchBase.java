@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.bench;
+
+import com.foundationdb.qp.operator.Cursor;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.operator.QueryBindings;
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.operator.StoreAdapter;
+import com.foundationdb.qp.rowtype.Schema;
+import com.foundationdb.qp.util.SchemaCache;
+import com.foundationdb.server.service.servicemanager.GuicedServiceManager.BindingsConfigurationProvider;
+import com.foundationdb.server.test.ApiTestBase;
+import com.foundationdb.server.test.it.MemoryITBase;
+import com.foundationdb.util.tap.Tap;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Map;
+
+import static com.foundationdb.qp.operator.API.cursor;
+
+/**
+ * Runs plans against services bound to the {@link com.foundationdb.server.store.MemoryStore},
+ * using the same startup as the memory ITs. Subclasses create and load their tables once per
+ * trial; every invocation then reads inside a single, long-lived transaction.
+ */
+public abstract class MemoryStoreBenchBase extends ApiTestBase
+{
+    protected MemoryStoreBenchBase()
+    {
+        super("Bench");
+        Tap.setEnabled(".*", false);
+    }
+
+    @Setup(Level.Trial)
+    public void startServices() throws Throwable
+    {
+        startTestServices();
+        createSchema();
+        schema = SchemaCache.globalSchema(ais());
+        populateDB();
+        adapter = newStoreAdapter();
+        queryContext = queryContext(adapter);
+        queryBindings = queryContext.createBindings();
+        createPlans();
+        txnService().beginTransaction(session());
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServices() throws Exception
+    {
+        txnService().rollbackTransactionIfOpen(session());
+        tearDownAllTables();
+        stopTestServices();
+    }
+
+    @Override
+    protected BindingsConfigurationProvider serviceBindingsProvider()
+    {
+        return MemoryITBase.doBind(super.serviceBindingsProvider());
+    }
+
+    @Override
+    protected Map<String, String> startupConfigProperties()
+    {
+        return uniqueStartupConfigProperties(getClass());
+    }
+
+    protected abstract void createSchema();
+
+    protected abstract void populateDB();
+
+    protected abstract void createPlans();
+
+    /** Run <code>plan</code> to completion, returning the number of rows it produced. */
+    protected long drain(Operator plan)
+    {
+        Cursor cursor = cursor(plan, queryContext, queryBindings);
+        cursor.openTopLevel();
+        try {
+            long count = 0;
+            while (cursor.next() != null) {
+                count++;
+            }
+            return count;
+        }
+        finally {
+            cursor.closeTopLevel();
+        }
+    }
+
+    protected Schema schema;
+    protected StoreAdapter adapter;
+    protected QueryContext queryContext;
+    protected QueryBindings queryBindings;
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.bench;
+
+import com.foundationdb.ais.model.Group;
+import com.foundationdb.ais.model.Table;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.IndexRowType;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.types.TAggregator;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.mcompat.aggr.MCount;
+import com.foundationdb.server.types.mcompat.mtypes.MNumeric;
+import com.foundationdb.server.types.texpressions.TPreparedBoundField;
+import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import com.foundationdb.server.types.texpressions.TPreparedField;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.foundationdb.qp.operator.API.*;
+import static com.foundationdb.server.test.ExpressionGenerators.field;
+
+/**
+ * Whole pipelines over the memory store: the time per invocation is
+ * the time to drain the plan, so divide by <code>rows</code> for a
+ * per-row cost comparable to the <code>costmodel</code> CTs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class OperatorBench extends MemoryStoreBenchBase
+{
+    @Param({"10000", "100000"})
+    public int rows;
+
+    @Benchmark
+    public long groupScan()
+    {
+        return drain(groupScan);
+    }
+
+    @Benchmark
+    public long sort()
+    {
+        return drain(sort);
+    }
+
+    @Benchmark
+    public long hashJoin()
+    {
+        return drain(hashJoin);
+    }
+
+    @Benchmark
+    public long aggregatePartial()
+    {
+        return drain(aggregatePartial);
+    }
+
+    @Override
+    protected void createSchema()
+    {
+        t = createTable(
+            SCHEMA, "t",
+            /* 0 */ "id int not null primary key",
+            /* 1 */ "a int",
+            /* 2 */ "b int",
+            /* 3 */ "filler varchar(64)");
+        createIndex(SCHEMA, "t", "a", "a");
+        u = createTable(
+            SCHEMA, "u",
+            /* 0 */ "id int not null primary key",
+            /* 1 */ "a int");
+    }
+
+    @Override
+    protected void populateDB()
+    {
+        tRowType = schema.tableRowType(table(t));
+        uRowType = schema.tableRowType(table(u));
+        // Every u row matches on average ten t rows.
+        int distinct = Math.max(rows / 10, 1);
+        Random random = new Random(RANDOM_SEED);
+        List<Row> batch = new ArrayList<>(BATCH_SIZE);
+        for (int id = 0; id < rows; id++) {
+            batch.add(row(tRowType, id, random.nextInt(distinct), random.nextInt(), FILLER));
+            if (batch.size() == BATCH_SIZE) {
+                writeRows(batch);
+                batch.clear();
+            }
+        }
+        for (int id = 0; id < distinct; id++) {
+            batch.add(row(uRowType, id, id));
+            if (batch.size() == BATCH_SIZE) {
+                writeRows(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeRows(batch);
+        }
+    }
+
+    @Override
+    protected void createPlans()
+    {
+        Group tGroup = table(t).getGroup();
+        Group uGroup = table(u).getGroup();
+        groupScan = groupScan_Default(tGroup);
+        Ordering ordering = ordering();
+        ordering.append(field(tRowType, 1), true);
+        ordering.append(field(tRowType, 2), false);
+        sort = sort_General(groupScan_Default(tGroup), tRowType, ordering, SortOption.PRESERVE_DUPLICATES);
+        // Build on u.a, probe with every t row, and output (t.id, u.id).
+        List<TPreparedExpression> hashFields = new ArrayList<>();
+        hashFields.add(new TPreparedField(uRowType.typeAt(1), 1));
+        List<TPreparedExpression> probeFields = new ArrayList<>();
+        probeFields.add(new TPreparedBoundField(tRowType, ROW_BINDING_POSITION, 1));
+        List<TPreparedExpression> projections = new ArrayList<>();
+        projections.add(new TPreparedBoundField(tRowType, ROW_BINDING_POSITION, 0));
+        projections.add(new TPreparedField(uRowType.typeAt(0), 0));
+        hashJoin =
+            using_HashTable(
+                groupScan_Default(uGroup),
+                uRowType,
+                hashFields,
+                TABLE_BINDING_POSITION,
+                map_NestedLoops(
+                    groupScan_Default(tGroup),
+                    project_Default(
+                        hashTableLookup_Default(uRowType, probeFields, TABLE_BINDING_POSITION),
+                        uRowType,
+                        projections),
+                    ROW_BINDING_POSITION,
+                    false,
+                    1),
+                null, null);
+        // SELECT a, COUNT(id) FROM t GROUP BY a, off the ordered index.
+        IndexRowType aIndexRowType = schema.indexRowType(table(t).getIndex("a"));
+        aggregatePartial =
+            aggregate_Partial(
+                indexScan_Default(aIndexRowType),
+                aIndexRowType,
+                1,
+                Arrays.asList(COUNT),
+                Arrays.asList(BIGINT),
+                Collections.<Object>nCopies(1, null));
+    }
+
+    private Table table(int tableId)
+    {
+        return ais().getTable(tableId);
+    }
+
+    private static final String SCHEMA = "bench";
+    private static final String FILLER = "xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx";
+    private static final long RANDOM_SEED = 20150101L;
+    private static final int BATCH_SIZE = 10000;
+    private static final int ROW_BINDING_POSITION = 100;
+    private static final int TABLE_BINDING_POSITION = 200;
+    private static final TAggregator COUNT = MCount.INSTANCES[2];
+    private static final TInstance BIGINT = MNumeric.BIGINT.instance(false);
+
+    private int t;
+    private int u;
+    private RowType tRowType;
+    private RowType uRowType;
+    private Operator groupScan;
+    private Operator sort;
+    private Operator hashJoin;
+    private Operator aggregatePartial;
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.bench;
+
+import com.foundationdb.ais.model.AkibanInformationSchema;
+import com.foundationdb.ais.model.TableName;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.rowtype.Schema;
+import com.foundationdb.server.rowdata.SchemaFactory;
+import com.foundationdb.server.types.FormatOptions;
+import com.foundationdb.server.types.mcompat.mtypes.MDateAndTime;
+import com.foundationdb.server.types.mcompat.mtypes.MTypesTranslator;
+import com.foundationdb.server.types.value.Value;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.value.ValueSources;
+import com.foundationdb.sql.pg.PostgresType;
+import com.foundationdb.sql.server.ServerValueEncoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding of one DataRow's worth of typical column values, in text or
+ * binary format, the way <code>PostgresRowOutputter</code> appends them
+ * to the message buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ServerValueEncoderBench
+{
+    @Param({"false", "true"})
+    public boolean binary;
+
+    @Setup
+    public void setup()
+    {
+        AkibanInformationSchema ais = new SchemaFactory(SCHEMA).aisWithRowDefs(
+            "CREATE TABLE t(id INT PRIMARY KEY NOT NULL, n BIGINT, d DOUBLE, p DECIMAL(10,2), " +
+            "s VARCHAR(64), ts DATETIME)");
+        Schema schema = new Schema(ais);
+        RowType rowType = schema.tableRowType(ais.getTable(new TableName(SCHEMA, "t")));
+        Object[] objects = {
+            12345, 1234567890123L, 3.14159, new BigDecimal("12345.67"), "the quick brown fox"
+        };
+        int ncols = rowType.nFields();
+        values = new ValueSource[ncols];
+        types = new PostgresType[ncols];
+        for (int i = 0; i < ncols; i++) {
+            types[i] = PostgresType.fromTInstance(rowType.typeAt(i));
+        }
+        for (int i = 0; i < objects.length; i++) {
+            values[i] = ValueSources.valuefromObject(objects[i], rowType.typeAt(i));
+        }
+        values[DATETIME_COLUMN] = new Value(rowType.typeAt(DATETIME_COLUMN),
+                                            MDateAndTime.encodeDateTime(2015, 1, 1, 12, 34, 56));
+        buffer = new ByteArrayOutputStream();
+        encoder = new ServerValueEncoder(MTypesTranslator.INSTANCE, "UTF-8", buffer, new FormatOptions());
+    }
+
+    @Benchmark
+    public int encodeRow() throws IOException
+    {
+        buffer.reset();
+        for (int i = 0; i < values.length; i++) {
+            encoder.appendEncodedValue(values[i], types[i], binary);
+        }
+        return buffer.size();
+    }
+
+    @Benchmark
+    public int encodeString() throws IOException
+    {
+        buffer.reset();
+        encoder.appendEncodedValue(values[STRING_COLUMN], types[STRING_COLUMN], binary);
+        return buffer.size();
+    }
+
+    @Benchmark
+    public int encodeDecimal() throws IOException
+    {
+        buffer.reset();
+        encoder.appendEncodedValue(values[DECIMAL_COLUMN], types[DECIMAL_COLUMN], binary);
+        return buffer.size();
+    }
+
+    private static final String SCHEMA = "bench";
+    private static final int DECIMAL_COLUMN = 3;
+    private static final int STRING_COLUMN = 4;
+    private static final int DATETIME_COLUMN = 5;
+
+    private ValueSource[] values;
+    private PostgresType[] types;
+    private ByteArrayOutputStream buffer;
+    private ServerValueEncoder encoder;
+}
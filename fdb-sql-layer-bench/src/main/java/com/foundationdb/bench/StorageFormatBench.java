@@ -0,0 +1,177 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.bench;
+
+import com.foundationdb.ais.model.AkibanInformationSchema;
+import com.foundationdb.ais.model.Column;
+import com.foundationdb.ais.model.Table;
+import com.foundationdb.ais.model.TableName;
+import com.foundationdb.ais.protobuf.CommonProtobuf.ProtobufRowFormat;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.rowtype.Schema;
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.collation.AkCollatorFactory;
+import com.foundationdb.server.rowdata.RowData;
+import com.foundationdb.server.rowdata.RowDataValueSource;
+import com.foundationdb.server.rowdata.RowDef;
+import com.foundationdb.server.rowdata.SchemaFactory;
+import com.foundationdb.server.store.format.protobuf.AISToProtobuf;
+import com.foundationdb.server.store.format.protobuf.ProtobufRowConverter;
+import com.foundationdb.server.store.format.protobuf.ProtobufStorageDescriptionHelper;
+import com.foundationdb.server.store.format.tuple.TupleRowDataConverter;
+import com.foundationdb.server.types.value.ValueSources;
+import com.foundationdb.tuple.Tuple2;
+
+import com.google.protobuf.DescriptorProtos.FileDescriptorSet;
+import com.google.protobuf.Descriptors.DescriptorValidationException;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips of the same row through each of the storage formats:
+ * the legacy <code>RowData</code> layout, the protobuf group message
+ * and the FDB tuple encoding. Each encode produces the stored bytes;
+ * each decode reads every field back out of them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StorageFormatBench
+{
+    @Setup
+    public void setup() throws DescriptorValidationException
+    {
+        AkibanInformationSchema ais = new SchemaFactory(SCHEMA).aisWithRowDefs(
+            "CREATE TABLE t(id INT PRIMARY KEY NOT NULL, n BIGINT, d DOUBLE, p DECIMAL(10,2), s VARCHAR(64))");
+        for (Table table : ais.getTables().values()) {
+            if (!table.hasVersion()) {
+                table.setVersion(0);
+            }
+            if (table.getUuid() == null)
+                table.setUuid(UUID.randomUUID());
+            for (Column column : table.getColumnsIncludingInternal()) {
+                if (column.getUuid() == null)
+                    column.setUuid(UUID.randomUUID());
+            }
+        }
+        Table table = ais.getTable(new TableName(SCHEMA, "t"));
+        rowDef = table.rowDef();
+        rowType = new Schema(ais).tableRowType(table);
+        values = new Object[] {
+            12345L, 1234567890123L, 3.14159, new BigDecimal("12345.67"), "the quick brown fox"
+        };
+        row = new ValuesHolderRow(rowType, values);
+        rowData = new RowData(new byte[256]);
+        rowData.createRow(rowDef, values, true);
+        rowDataSource = new RowDataValueSource();
+        AISToProtobuf a2p = new AISToProtobuf(ProtobufRowFormat.Type.GROUP_MESSAGE);
+        a2p.addGroup(table.getGroup());
+        FileDescriptorSet set = a2p.build();
+        FileDescriptor gdesc = FileDescriptor.buildFrom(set.getFile(0),
+                                                        ProtobufStorageDescriptionHelper.DEPENDENCIES);
+        protobufConverter = ProtobufRowConverter.forGroup(table.getGroup(), gdesc);
+        protobufBytes = protobufConverter.encode(row).toByteArray();
+        tupleBytes = TupleRowDataConverter.tupleFromRow(row).pack();
+    }
+
+    @Benchmark
+    public int rowDataEncode()
+    {
+        rowData.createRow(rowDef, values, true);
+        return rowData.getRowSize();
+    }
+
+    @Benchmark
+    public int rowDataDecode()
+    {
+        int hash = 0;
+        for (int i = 0; i < rowDef.getFieldCount(); i++) {
+            rowDataSource.bind(rowDef.getFieldDef(i), rowData);
+            hash = hash * 31 + ValueSources.hash(rowDataSource, COLLATOR);
+        }
+        return hash;
+    }
+
+    @Benchmark
+    public byte[] protobufEncode()
+    {
+        return protobufConverter.encode(row).toByteArray();
+    }
+
+    @Benchmark
+    public int protobufDecode() throws InvalidProtocolBufferException
+    {
+        DynamicMessage msg = DynamicMessage.parseFrom(protobufConverter.getMessageType(), protobufBytes);
+        return hash(protobufConverter.decode(msg));
+    }
+
+    @Benchmark
+    public byte[] tupleEncode()
+    {
+        return TupleRowDataConverter.tupleFromRow(row).pack();
+    }
+
+    @Benchmark
+    public int tupleDecode()
+    {
+        return hash(TupleRowDataConverter.tupleToRow(Tuple2.fromBytes(tupleBytes), rowType));
+    }
+
+    private static int hash(Row row)
+    {
+        int hash = 0;
+        for (int i = 0; i < row.rowType().nFields(); i++) {
+            hash = hash * 31 + ValueSources.hash(row.value(i), COLLATOR);
+        }
+        return hash;
+    }
+
+    private static final String SCHEMA = "bench";
+    private static final AkCollator COLLATOR = AkCollatorFactory.UCS_BINARY_COLLATOR;
+
+    private RowDef rowDef;
+    private RowType rowType;
+    private Object[] values;
+    private Row row;
+    private RowData rowData;
+    private RowDataValueSource rowDataSource;
+    private ProtobufRowConverter protobufConverter;
+    private byte[] protobufBytes;
+    private byte[] tupleBytes;
+}
@@ -21,6 +21,7 @@ import com.foundationdb.ais.model.Group;
 import com.foundationdb.ais.model.Table;
 import com.foundationdb.qp.expression.IndexKeyRange;
 import com.foundationdb.qp.row.BindableRow;
+import com.foundationdb.qp.rowtype.AggregatedRowType;
 import com.foundationdb.qp.rowtype.IndexRowType;
 import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.qp.rowtype.Schema;
@@ -49,6 +50,43 @@ public class API
         return new Aggregate_Partial(inputOperator, rowType, inputsIndex, aggregatorFactories, aggregatorTypes, options);
     }
 
+    public static Operator aggregate_Partial(Operator inputOperator,
+                                             RowType rowType,
+                                             int inputsIndex,
+                                             List<? extends TAggregator> aggregatorFactories,
+                                             List<? extends TInstance> aggregatorTypes,
+                                             List<Object> options,
+                                             AggregatedRowType outputType,
+                                             boolean merge
+                                             )
+    {
+        return new Aggregate_Partial(inputOperator, rowType, inputsIndex, aggregatorFactories, aggregatorTypes, options, outputType, merge);
+    }
+
+    public static Operator aggregate_Hashed(Operator inputOperator,
+                                            RowType rowType,
+                                            int inputsIndex,
+                                            List<? extends TAggregator> aggregatorFactories,
+                                            List<? extends TInstance> aggregatorTypes,
+                                            List<Object> options
+                                            )
+    {
+        return new Aggregate_Hashed(inputOperator, rowType, inputsIndex, aggregatorFactories, aggregatorTypes, options);
+    }
+
+    public static Operator aggregate_Hashed(Operator inputOperator,
+                                            RowType rowType,
+                                            int inputsIndex,
+                                            List<? extends TAggregator> aggregatorFactories,
+                                            List<? extends TInstance> aggregatorTypes,
+                                            List<Object> options,
+                                            AggregatedRowType outputType,
+                                            boolean merge
+                                            )
+    {
+        return new Aggregate_Hashed(inputOperator, rowType, inputsIndex, aggregatorFactories, aggregatorTypes, options, outputType, merge);
+    }
+
     // Project
 
     public static Operator project_DefaultTest(Operator inputOperator,
@@ -214,6 +252,27 @@ public class API
                                                InputPreservationOption flag,
                                                int inputBindingPosition,
                                                int lookaheadQuantum)
+    {
+        return branchLookup_Nested(group,
+                                   inputRowType, 
+                                   sourceRowType,
+                                   ancestorRowType,
+                                   outputRowTypes,
+                                   flag,
+                                   inputBindingPosition,
+                                   lookaheadQuantum,
+                                   AdaptiveLookahead.defaultInitial(lookaheadQuantum));
+    }
+
+    public static Operator branchLookup_Nested(Group group,
+                                               RowType inputRowType,
+                                               RowType sourceRowType,
+                                               TableRowType ancestorRowType,
+                                               Collection<TableRowType> outputRowTypes,
+                                               InputPreservationOption flag,
+                                               int inputBindingPosition,
+                                               int lookaheadQuantum,
+                                               int lookaheadSeed)
     {
         return new BranchLookup_Nested(group,
                                        inputRowType, 
@@ -222,7 +281,8 @@ public class API
                                        outputRowTypes,
                                        flag,
                                        inputBindingPosition,
-                                       lookaheadQuantum);
+                                       lookaheadQuantum,
+                                       lookaheadSeed);
     }
 
     // Limit
@@ -259,7 +319,18 @@ public class API
                                                InputPreservationOption flag,
                                                int lookaheadQuantum)
     {
-        return new GroupLookup_Default(inputOperator, group, rowType, ancestorTypes, flag, lookaheadQuantum);
+        return groupLookup_Default(inputOperator, group, rowType, ancestorTypes, flag, lookaheadQuantum, AdaptiveLookahead.defaultInitial(lookaheadQuantum));
+    }
+
+    public static Operator groupLookup_Default(Operator inputOperator,
+                                               Group group,
+                                               RowType rowType,
+                                               Collection<TableRowType> ancestorTypes,
+                                               InputPreservationOption flag,
+                                               int lookaheadQuantum,
+                                               int lookaheadSeed)
+    {
+        return new GroupLookup_Default(inputOperator, group, rowType, ancestorTypes, flag, lookaheadQuantum, lookaheadSeed);
     }
 
     public static Operator ancestorLookup_Nested(Group group,
@@ -268,7 +339,17 @@ public class API
                                                  int hKeyBindingPosition,
                                                  int lookaheadQuantum)
     {
-        return new AncestorLookup_Nested(group, rowType, ancestorTypes, hKeyBindingPosition, lookaheadQuantum);
+        return ancestorLookup_Nested(group, rowType, ancestorTypes, hKeyBindingPosition, lookaheadQuantum, AdaptiveLookahead.defaultInitial(lookaheadQuantum));
+    }
+
+    public static Operator ancestorLookup_Nested(Group group,
+                                                 RowType rowType,
+                                                 Collection<TableRowType> ancestorTypes,
+                                                 int hKeyBindingPosition,
+                                                 int lookaheadQuantum,
+                                                 int lookaheadSeed)
+    {
+        return new AncestorLookup_Nested(group, rowType, ancestorTypes, hKeyBindingPosition, lookaheadQuantum, lookaheadSeed);
     }
 
     // IndexScan
@@ -408,7 +489,17 @@ public class API
                                              IndexScanSelector indexScanSelector,
                                              int lookaheadQuantum)
     {
-        return new IndexScan_Default(indexType, indexKeyRange, ordering, indexScanSelector, lookaheadQuantum);
+        return indexScan_Default(indexType, indexKeyRange, ordering, indexScanSelector, lookaheadQuantum, AdaptiveLookahead.defaultInitial(lookaheadQuantum));
+    }
+
+    public static Operator indexScan_Default(IndexRowType indexType,
+                                             IndexKeyRange indexKeyRange,
+                                             Ordering ordering,
+                                             IndexScanSelector indexScanSelector,
+                                             int lookaheadQuantum,
+                                             int lookaheadSeed)
+    {
+        return new IndexScan_Default(indexType, indexKeyRange, ordering, indexScanSelector, lookaheadQuantum, lookaheadSeed);
     }
 
     // Select
@@ -558,6 +649,15 @@ public class API
         return new UnionAll_Default(input1, input1RowType, input2, input2RowType, openBoth);
     }
 
+    // Exchange
+
+    public static Operator exchange_Default(List<Operator> inputs,
+                                            RowType rowType,
+                                            Ordering ordering)
+    {
+        return new Exchange_Default(inputs, rowType, ordering);
+    }
+
     // Except
 
     public static Operator except_Ordered(Operator leftInput, Operator rightInput,
@@ -830,6 +930,15 @@ public class API
         return new Using_HashTable(hashInput, hashedRowType, comparisonFields, hashTableBindingPosition, joinedInput, tComparisons, collators);
     }
 
+    // partition_HashTable
+    public static Operator partition_HashTable(Operator input,
+                                               RowType rowType,
+                                               List<TPreparedExpression> probeFields,
+                                               int hashTableBindingPosition)
+    {
+        return new Partition_HashTable(input, rowType, probeFields, hashTableBindingPosition);
+    }
+
     // EmitBoundRow_Nested
 
     public static Operator emitBoundRow_Nested(Operator input,
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+/** How many bindings (or input rows) a lookahead cursor should keep
+ * open ahead of the one being read, between one and the operator's
+ * configured quantum.
+ *
+ * <ul>
+ * <li>When the first row of a cursor opened ahead still has to be
+ * waited for, lookahead was not enough to hide the latency of the
+ * store, so it doubles.</li>
+ * <li>When a whole window's worth of such cursors were ready, it was
+ * more than needed, so it shrinks by a quarter.</li>
+ * <li>When each binding yields many rows, fewer bindings are needed
+ * to keep that many rows coming, so it is capped at the quantum
+ * divided by the average rows per binding.</li>
+ * </ul>
+ *
+ * Starting small, as the planner does for point lookups or under a
+ * small <code>LIMIT</code>, wastes little when the consumer stops early.
+ */
+final class AdaptiveLookahead
+{
+    /** A first row that takes longer than this was not already fetched. */
+    static final long WAIT_NANOS = 50000;
+    // Average rows per binding, scaled by this, as a moving average
+    // weighting the latest binding by 1 / 2^ROWS_SHIFT.
+    private static final int ROWS_SCALE = 16;
+    private static final int ROWS_SHIFT = 3;
+
+    private final int maximum;
+    private int current, ready;
+    private long scaledRows;
+
+    /** Where to start without an estimate from the planner: small,
+     * since it doubles as soon as that is not enough. */
+    static int defaultInitial(int maximum) {
+        return Math.max(maximum / 4, 1);
+    }
+
+    AdaptiveLookahead(int initial, int maximum) {
+        this.maximum = Math.max(maximum, 1);
+        this.current = Math.max(Math.min(initial, this.maximum), 1);
+        this.scaledRows = ROWS_SCALE;
+    }
+
+    /** The number of bindings to have open ahead now. */
+    public int get() {
+        long cap = (maximum * ROWS_SCALE) / Math.max(scaledRows, ROWS_SCALE);
+        return (int)Math.max(Math.min(current, cap), 1);
+    }
+
+    public int getMaximum() {
+        return maximum;
+    }
+
+    /** The first row of a cursor opened ahead took this long to get. */
+    public void firstRow(long nanos) {
+        if (nanos > WAIT_NANOS) {
+            current = Math.min(current * 2, maximum);
+            ready = 0;
+        }
+        else if (++ready >= current) {
+            current = Math.max(current - Math.max(current / 4, 1), 1);
+            ready = 0;
+        }
+    }
+
+    /** A binding has been read to the end, yielding this many rows. */
+    public void bindingRows(long rows) {
+        scaledRows += ((rows * ROWS_SCALE) - scaledRows) >> ROWS_SHIFT;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + get() + "/" + maximum + ")";
+    }
+}
@@ -0,0 +1,602 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
+import com.foundationdb.qp.rowtype.AggregatedRowType;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.util.SpillFile;
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.explain.*;
+import com.foundationdb.server.types.TAggregator;
+import com.foundationdb.server.types.TClass;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.common.types.TString;
+import com.foundationdb.server.types.value.*;
+import com.foundationdb.util.ArgumentValidation;
+import com.foundationdb.util.tap.InOutTap;
+import com.foundationdb.util.tap.PointTap;
+import com.foundationdb.util.tap.Tap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+
+ <h1>Overview</h1>
+
+ Aggregate_Hashed aggregates rows whose GROUP BY columns are not in any
+ particular order, by keeping one set of aggregator states per distinct
+ group in a hash table.
+
+ <h1>Arguments</h1>
+
+ Same as {@link Aggregate_Partial}.
+
+ <h1>Behavior</h1>
+
+ Each input row is hashed on its GROUP BY section and its inputs section
+ is applied to the aggregators of the matching group, adding a new group
+ as needed. Once the input is exhausted, one row is output for each
+ group, with the GROUP BY columns followed by the result of each
+ aggregation.
+
+ If the groups held in memory are estimated to take more
+ than <code>fdbsql.hash_aggregate.memory</code> bytes, no more groups
+ are added. Rows for groups already in the table continue to be
+ aggregated in place; all other rows are written to one of a number of
+ temporary files, partitioned by another part of their hash. After the
+ in-memory groups have been output, each file is read back and
+ aggregated the same way. Since every group is wholly contained in one
+ file, the result is still a full aggregation.
+
+ In merge mode, as for {@link Aggregate_Partial}, the inputs section
+ holds partial aggregation states, which are combined into the group's
+ states. This lets partial aggregations of disjoint parts of the rows,
+ such as the partitions of an {@link Exchange_Default}, be finished
+ here.
+
+ <h1>Output</h1>
+
+ Output rows are as for {@link Aggregate_Partial}, but in no
+ particular order. Rows from the incoming operator with a type other
+ than <i>input.rowType()</i> are passed through unchanged, ahead of
+ the aggregated rows.
+
+ If there are no input rows and no GROUP BY, a single row is output
+ with the empty value of each aggregator. If there is a GROUP BY, no
+ rows are output.
+
+ <h1>Assumptions</h1>
+
+ None.
+
+ <h1>Performance</h1>
+
+ One hash and usually one comparison of the GROUP BY columns per input
+ row. Rows that do not fit in memory are written and read once per
+ level of partitioning.
+
+ <h1>Memory requirements</h1>
+
+ One set of GROUP BY values and aggregator states per group, up to
+ the configured limit.
+
+ */
+
+final class Aggregate_Hashed extends Operator
+{
+
+    // Operator interface
+
+    @Override
+    protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor) {
+        return new AggregateCursor(context, bindingsCursor);
+    }
+
+    @Override
+    public void findDerivedTypes(Set<RowType> derivedTypes) {
+        inputOperator.findDerivedTypes(derivedTypes);
+        derivedTypes.add(outputType);
+    }
+
+    @Override
+    public List<Operator> getInputOperators() {
+        return Collections.singletonList(inputOperator);
+    }
+
+    @Override
+    public RowType rowType() {
+        return outputType;
+    }
+
+    // Aggregate_Hashed interface
+
+    public Aggregate_Hashed(Operator inputOperator,
+                            RowType inputRowType,
+                            int inputsIndex,
+                            List<? extends TAggregator> aggregatorFactories,
+                            List<? extends TInstance> pAggrTypes,
+                            List<Object> options) {
+        this(inputOperator, inputRowType, inputsIndex, aggregatorFactories, pAggrTypes, options, null, false);
+    }
+
+    public Aggregate_Hashed(Operator inputOperator,
+                            RowType inputRowType,
+                            int inputsIndex,
+                            List<? extends TAggregator> aggregatorFactories,
+                            List<? extends TInstance> pAggrTypes,
+                            List<Object> options,
+                            AggregatedRowType outputType,
+                            boolean merge) {
+        this.inputOperator = inputOperator;
+        this.inputRowType = inputRowType;
+        this.inputsIndex = inputsIndex;
+        if (outputType == null)
+            outputType = inputRowType.schema().newAggregateType(inputRowType, inputsIndex, pAggrTypes);
+        this.outputType = outputType;
+        this.pAggrs = aggregatorFactories;
+        this.pAggrTypes = pAggrTypes;
+        this.options = options;
+        this.merge = merge;
+        validate();
+        this.collators = new AkCollator[inputsIndex];
+        for (int i = 0; i < inputsIndex; i++) {
+            TInstance type = inputRowType.typeAt(i);
+            if ((type != null) && (type.typeClass() instanceof TString)) {
+                collators[i] = TString.getCollator(type);
+            }
+        }
+    }
+
+    // Object interface
+
+    @Override
+    public String toString() {
+        return String.format("%s(GROUP BY %d fields, then: %s)", getClass().getSimpleName(), inputsIndex, pAggrs);
+    }
+
+    // private methods
+
+    private void validate() {
+        if (inputOperator == null || inputRowType == null || outputType == null)
+            throw new NullPointerException();
+        ArgumentValidation.isBetween("inputsIndex", 0, inputsIndex, inputRowType.nFields()+1);
+        if (pAggrTypes.size() != pAggrs.size())
+            throw new IllegalArgumentException("aggregators and aggregator types mismatch in size");
+        if (inputsIndex + pAggrs.size() != inputRowType.nFields()) {
+            throw new IllegalArgumentException(
+                    String.format("inputsIndex(=%d) + aggregatorNames.size(=%d) != inputRowType.nFields(=%d)",
+                            inputsIndex, pAggrs.size(), inputRowType.nFields()
+            ));
+        }
+        if (merge) {
+            for (TAggregator aggregator : pAggrs) {
+                if (!aggregator.canMerge())
+                    throw new IllegalArgumentException(aggregator + " cannot merge partial states");
+            }
+        }
+    }
+
+    private static long estimateSize(ValueSource source) {
+        long size = FIELD_OVERHEAD;
+        TInstance type = source.getType();
+        if ((type == null) || source.isNull()) {
+            return size;
+        }
+        if (type.typeClass().hasFixedSerializationSize()) {
+            size += type.typeClass().fixedSerializationSize();
+        }
+        else {
+            switch (TInstance.underlyingType(type)) {
+            case STRING:
+                size += 2 * source.getString().length();
+                break;
+            case BYTES:
+                size += source.getBytes().length;
+                break;
+            default:
+                break;
+            }
+        }
+        return size;
+    }
+
+    // class state
+
+    private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: Aggregate_Hashed open");
+    private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: Aggregate_Hashed next");
+    private static final PointTap TAP_SPILL = Tap.createCount("operator: Aggregate_Hashed spill");
+    private static final Logger LOG = LoggerFactory.getLogger(Aggregate_Hashed.class);
+    static final String MEMORY_PROPERTY = "fdbsql.hash_aggregate.memory";
+    private static final int INITIAL_CAPACITY = 64; // power of 2
+    private static final int SPILL_PARTITION_BITS = 4;
+    private static final int SPILL_PARTITION_COUNT = 1 << SPILL_PARTITION_BITS;
+    // Rough per-object costs of the group, its slot and Value holders.
+    private static final int GROUP_OVERHEAD = 96;
+    private static final int FIELD_OVERHEAD = 32;
+
+    // object state
+
+    private final Operator inputOperator;
+    private final RowType inputRowType;
+    private final AggregatedRowType outputType;
+    private final int inputsIndex;
+    private final List<? extends TInstance> pAggrTypes;
+    private final List<? extends TAggregator> pAggrs;
+    private final List<Object> options; // currently only used by GROUP_CONCAT, meaning the optional SEPARATOR string
+    private final boolean merge;
+    private final AkCollator[] collators;
+
+    @Override
+    public CompoundExplainer getExplainer(ExplainContext context)
+    {
+        Attributes atts = new Attributes();
+        atts.put(Label.NAME, PrimitiveExplainer.getInstance(getName()));
+        for (TAggregator agg : pAggrs)
+            atts.put(Label.AGGREGATORS, PrimitiveExplainer.getInstance((merge ? "MERGE " : "") + agg.displayName().toUpperCase()));
+        atts.put(Label.GROUPING_OPTION, PrimitiveExplainer.getInstance(inputsIndex));
+        atts.put(Label.INPUT_OPERATOR, inputOperator.getExplainer(context));
+        atts.put(Label.INPUT_TYPE, inputRowType.getExplainer(context));
+        atts.put(Label.OUTPUT_TYPE, outputType.getExplainer(context));
+        return new CompoundExplainer(Type.AGGREGATE, atts);
+    }
+
+    // nested classes
+
+    private static class Group
+    {
+        final int hash;
+        final Value[] keys;
+        final Value[] states;
+
+        Group(int hash, int nkeys, int nstates) {
+            this.hash = hash;
+            this.keys = new Value[nkeys];
+            this.states = new Value[nstates];
+        }
+    }
+
+    private class AggregateCursor extends ChainedCursor
+    {
+
+        // Cursor interface
+
+        @Override
+        public void open() {
+            TAP_OPEN.in();
+            try {
+                super.open();
+                clearTable();
+                source = input;
+                spillLevel = 0;
+                everSawInput = false;
+                emitting = false;
+            } finally {
+                TAP_OPEN.out();
+            }
+        }
+
+        @Override
+        public Row next() {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                checkQueryCancelation();
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                if (isIdle()) {
+                    if (LOG_EXECUTION) {
+                        LOG.debug("Aggregate_Hashed: null");
+                    }
+                    return null;
+                }
+                while (true) {
+                    if (emitting) {
+                        Row output = nextGroup();
+                        if (output != null) {
+                            if (LOG_EXECUTION) {
+                                LOG.debug("Aggregate_Hashed: yield {}", output);
+                            }
+                            return output;
+                        }
+                        if (!nextSpillFile()) {
+                            if (LOG_EXECUTION) {
+                                LOG.debug("Aggregate_Hashed: null");
+                            }
+                            setIdle();
+                            return null;
+                        }
+                    }
+                    Row row = nextInput();
+                    if (row == null) {
+                        startEmitting();
+                        continue;
+                    }
+                    if (row.rowType() != inputRowType) {
+                        if (LOG_EXECUTION) {
+                            LOG.debug("Aggregate_Hashed: yield {}", row);
+                        }
+                        return row; // pass through
+                    }
+                    everSawInput = true;
+                    aggregate(row);
+                }
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                closeSpillFiles();
+                clearTable();
+            } finally {
+                super.close();
+            }
+        }
+
+        // for use in this class
+
+        private Row nextInput() {
+            if (source != null) {
+                return source.next();
+            }
+            if (reader.next()) {
+                ValuesHolderRow row = new ValuesHolderRow(inputRowType);
+                for (int i = 0; i < inputRowType.nFields(); i++) {
+                    reader.read(inputRowType.typeAt(i), row.valueAt(i));
+                }
+                return row;
+            }
+            return null;
+        }
+
+        private void aggregate(Row row) {
+            int hash = 0;
+            for (int i = 0; i < inputsIndex; i++) {
+                hash = hash * 31 + ValueSources.hash(row.value(i), collators[i]);
+            }
+            int mask = slots.length - 1;
+            int index = spread(hash) & mask;
+            Group group;
+            while (true) {
+                group = slots[index];
+                if (group == null) {
+                    if (memoryUsed > memoryLimit) {
+                        spill(hash, row);
+                        return;
+                    }
+                    group = newGroup(hash, row);
+                    slots[index] = group;
+                    if (++size * 4 > slots.length * 3) {
+                        resize();
+                    }
+                    break;
+                }
+                if ((group.hash == hash) && keysEqual(group, row)) {
+                    break;
+                }
+                index = (index + 1) & mask;
+            }
+            for (int i = 0; i < pAggrs.size(); i++) {
+                int inputIndex = i + inputsIndex;
+                if (merge) {
+                    pAggrs.get(i).merge(pAggrTypes.get(i), row.value(inputIndex),
+                                        group.states[i], options.get(i));
+                }
+                else {
+                    pAggrs.get(i).input(inputRowType.typeAt(inputIndex), row.value(inputIndex),
+                                        pAggrTypes.get(i), group.states[i], options.get(i));
+                }
+            }
+        }
+
+        private boolean keysEqual(Group group, Row row) {
+            for (int i = 0; i < inputsIndex; i++) {
+                if (!TClass.areEqual(group.keys[i], row.value(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private Group newGroup(int hash, Row row) {
+            Group group = new Group(hash, inputsIndex, pAggrs.size());
+            long groupSize = GROUP_OVERHEAD + pAggrs.size() * FIELD_OVERHEAD;
+            for (int i = 0; i < inputsIndex; i++) {
+                Value key = new Value(outputType.typeAt(i));
+                ValueTargets.copyFrom(row.value(i), key);
+                group.keys[i] = key;
+                groupSize += estimateSize(key);
+            }
+            for (int i = 0; i < pAggrs.size(); i++) {
+                group.states[i] = new Value(pAggrTypes.get(i));
+            }
+            memoryUsed += groupSize;
+            return group;
+        }
+
+        private void resize() {
+            Group[] oldSlots = slots;
+            slots = new Group[oldSlots.length * 2];
+            int mask = slots.length - 1;
+            for (Group group : oldSlots) {
+                if (group != null) {
+                    int index = spread(group.hash) & mask;
+                    while (slots[index] != null) {
+                        index = (index + 1) & mask;
+                    }
+                    slots[index] = group;
+                }
+            }
+        }
+
+        private void spill(int hash, Row row) {
+            if (spillFiles == null) {
+                spillFiles = new SpillFile[SPILL_PARTITION_COUNT];
+            }
+            // Each level partitions on a different part of the hash.
+            int partition = Integer.rotateLeft(hash * 0x9E3779B9, spillLevel * SPILL_PARTITION_BITS) >>> (32 - SPILL_PARTITION_BITS);
+            SpillFile spillFile = spillFiles[partition];
+            if (spillFile == null) {
+                spillFile = new SpillFile(context, "aggregate");
+                spillFiles[partition] = spillFile;
+                TAP_SPILL.hit();
+            }
+            spillFile.startRecord();
+            for (int i = 0; i < inputRowType.nFields(); i++) {
+                spillFile.append(row.value(i));
+            }
+            spillFile.endRecord();
+        }
+
+        private void startEmitting() {
+            if (source == null) {
+                reader.close();
+                reader = null;
+                pendingSpillFiles.removeFirst().close();
+            }
+            if (spillFiles != null) {
+                for (SpillFile spillFile : spillFiles) {
+                    if (spillFile != null) {
+                        pendingSpillFiles.addLast(spillFile);
+                        pendingSpillLevels.addLast(spillLevel + 1);
+                    }
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("Aggregate_Hashed: {} partitions pending after level {}", pendingSpillFiles.size(), spillLevel);
+                }
+                spillFiles = null;
+            }
+            if ((inputsIndex == 0) && !everSawInput) {
+                // No GROUP BY: always one row, even for no input.
+                Group group = new Group(0, 0, pAggrs.size());
+                for (int i = 0; i < pAggrs.size(); i++) {
+                    group.states[i] = new Value(pAggrTypes.get(i));
+                }
+                slots[0] = group;
+                size = 1;
+            }
+            emitting = true;
+            emitIndex = 0;
+        }
+
+        private Row nextGroup() {
+            while (emitIndex < slots.length) {
+                Group group = slots[emitIndex++];
+                if (group != null) {
+                    return createOutput(group);
+                }
+            }
+            return null;
+        }
+
+        private boolean nextSpillFile() {
+            if (pendingSpillFiles.isEmpty()) {
+                return false;
+            }
+            clearTable();
+            source = null;
+            reader = pendingSpillFiles.getFirst().reader();
+            spillLevel = pendingSpillLevels.removeFirst();
+            emitting = false;
+            return true;
+        }
+
+        private Row createOutput(Group group) {
+            ValuesHolderRow outputRow = new ValuesHolderRow(outputType);
+            for (int i = 0; i < inputsIndex; i++) {
+                ValueTargets.copyFrom(group.keys[i], outputRow.valueAt(i));
+            }
+            for (int i = 0; i < pAggrs.size(); i++) {
+                Value value = outputRow.valueAt(i + inputsIndex);
+                Value aggregatorState = group.states[i];
+                if (aggregatorState.hasAnyValue())
+                    ValueTargets.copyFrom(aggregatorState, value);
+                else
+                    pAggrs.get(i).emptyValue(value);
+            }
+            return outputRow;
+        }
+
+        private void clearTable() {
+            if (size > 0 || slots.length > INITIAL_CAPACITY) {
+                slots = new Group[INITIAL_CAPACITY];
+            }
+            size = 0;
+            memoryUsed = 0;
+        }
+
+        private void closeSpillFiles() {
+            if (reader != null) {
+                reader.close();
+                reader = null;
+            }
+            if (spillFiles != null) {
+                for (SpillFile spillFile : spillFiles) {
+                    if (spillFile != null) {
+                        spillFile.close();
+                    }
+                }
+                spillFiles = null;
+            }
+            while (!pendingSpillFiles.isEmpty()) {
+                pendingSpillFiles.removeFirst().close();
+            }
+            pendingSpillLevels.clear();
+        }
+
+        private int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        // AggregateCursor interface
+
+        private AggregateCursor(QueryContext context, QueryBindingsCursor bindingsCursor) {
+            super(context, inputOperator.cursor(context, bindingsCursor));
+            String prop = context.getServiceManager().getConfigurationService().getProperty(MEMORY_PROPERTY);
+            memoryLimit = Long.parseLong(prop);
+        }
+
+        // object state
+
+        private final long memoryLimit;
+        private Group[] slots = new Group[INITIAL_CAPACITY];
+        private int size;
+        private long memoryUsed;
+        private boolean everSawInput;
+        private boolean emitting;
+        private int emitIndex;
+        private Cursor source;
+        private int spillLevel;
+        private SpillFile[] spillFiles;
+        private SpillFile.Reader reader;
+        private final Deque<SpillFile> pendingSpillFiles = new ArrayDeque<>();
+        private final Deque<Integer> pendingSpillLevels = new ArrayDeque<>();
+    }
+
+}
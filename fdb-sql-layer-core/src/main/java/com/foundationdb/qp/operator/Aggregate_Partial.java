@@ -123,6 +123,12 @@ import java.util.*;
  (there is a GROUP BY), a single row will be outputted with all NULL
  values. This is due to the SQL spec.
 
+ In merge mode, the inputs section holds partial aggregation states,
+ such as those output by another Aggregate_Partial over part of the
+ rows, and each is combined using the aggregator's
+ {@link TAggregator#merge} rather than fed to it as a new value. Every
+ aggregator must then be {@link TAggregator#canMerge mergeable}.
+
  This operator cannot do something like an average directly. Instead,
  the operator tree would use this operator to get a SUM and COUNT of
  rows, and another operator would be responsible for dividing them to
@@ -187,13 +193,27 @@ final class Aggregate_Partial extends Operator
                              List<? extends TAggregator> aggregatorFactories,
                              List<? extends TInstance> pAggrTypes,
                              List<Object> options) {
+        this(inputOperator, inputRowType, inputsIndex, aggregatorFactories, pAggrTypes, options, null, false);
+    }
+
+    public Aggregate_Partial(Operator inputOperator,
+                             RowType inputRowType,
+                             int inputsIndex,
+                             List<? extends TAggregator> aggregatorFactories,
+                             List<? extends TInstance> pAggrTypes,
+                             List<Object> options,
+                             AggregatedRowType outputType,
+                             boolean merge) {
         this.inputOperator = inputOperator;
         this.inputRowType = inputRowType;
         this.inputsIndex = inputsIndex;
-        this.outputType = inputRowType.schema().newAggregateType(inputRowType, inputsIndex, pAggrTypes);
+        if (outputType == null)
+            outputType = inputRowType.schema().newAggregateType(inputRowType, inputsIndex, pAggrTypes);
+        this.outputType = outputType;
         this.pAggrs = aggregatorFactories;
         this.pAggrTypes = pAggrTypes;
         this.options = options;
+        this.merge = merge;
         validate();
         
     }
@@ -244,6 +264,12 @@ final class Aggregate_Partial extends Operator
                             inputsIndex, aggersSize, inputRowType.nFields()
             ));
         }
+        if (merge) {
+            for (TAggregator aggregator : pAggrs) {
+                if (!aggregator.canMerge())
+                    throw new IllegalArgumentException(aggregator + " cannot merge partial states");
+            }
+        }
     }
     
     // class state
@@ -251,6 +277,7 @@ final class Aggregate_Partial extends Operator
     private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: Aggregate_Partial open");
     private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: Aggregate_Partial next");
     private static final Logger LOG = LoggerFactory.getLogger(Aggregate_Partial.class);
+    private static final int INPUT_BATCH_SIZE = 64;
 
     // object state
 
@@ -261,6 +288,7 @@ final class Aggregate_Partial extends Operator
     private final List<? extends TInstance> pAggrTypes;
     private final List<? extends TAggregator> pAggrs;
     private final List<Object> options; // currently only used by GROUP_CONCAT, meaning the optional SEPARATOR string
+    private final boolean merge;
 
     @Override
     public CompoundExplainer getExplainer(ExplainContext context)
@@ -268,7 +296,7 @@ final class Aggregate_Partial extends Operator
         Attributes atts = new Attributes();
         atts.put(Label.NAME, PrimitiveExplainer.getInstance(getName()));
         for (TAggregator agg : pAggrs)
-            atts.put(Label.AGGREGATORS, PrimitiveExplainer.getInstance(agg.displayName().toUpperCase()));
+            atts.put(Label.AGGREGATORS, PrimitiveExplainer.getInstance((merge ? "MERGE " : "") + agg.displayName().toUpperCase()));
         atts.put(Label.GROUPING_OPTION, PrimitiveExplainer.getInstance(inputsIndex));
         atts.put(Label.INPUT_OPERATOR, inputOperator.getExplainer(context));
         atts.put(Label.INPUT_TYPE, inputRowType.getExplainer(context));
@@ -288,6 +316,8 @@ final class Aggregate_Partial extends Operator
             TAP_OPEN.in();
             try {
                 super.open();
+                inputBatch.clear();
+                inputPosition = 0;
             } finally {
                 TAP_OPEN.out();
             }
@@ -362,7 +392,10 @@ final class Aggregate_Partial extends Operator
                 int inputIndex = i + inputsIndex;
                 TInstance inputType = input.rowType().typeAt(inputIndex);
                 ValueSource inputSource = input.value(inputIndex);
-                aggregator.input(inputType, inputSource, pAggrTypes.get(i), pAggrsStates.get(i), options.get(i));
+                if (merge)
+                    aggregator.merge(pAggrTypes.get(i), inputSource, pAggrsStates.get(i), options.get(i));
+                else
+                    aggregator.input(inputType, inputSource, pAggrTypes.get(i), pAggrsStates.get(i), options.get(i));
             }
         }
 
@@ -436,7 +469,16 @@ final class Aggregate_Partial extends Operator
                 holder = null;
             }
             else {
-                result = input.next();
+                // Input is read a batch at a time. Its rows stay valid until
+                // the batch is filled again, which only happens once the
+                // held row, if any, has been taken back above.
+                if (inputPosition >= inputBatch.size()) {
+                    inputPosition = 0;
+                    if (!inputBatch.fill(input)) {
+                        return null;
+                    }
+                }
+                result = inputBatch.get(inputPosition++);
             }
             return result;
         }
@@ -472,6 +514,8 @@ final class Aggregate_Partial extends Operator
         private final List<Value> keyValues;
         private final List<Value> pAggrsStates;
         private Row holder;
+        private final RowBatch inputBatch = new RowBatch(INPUT_BATCH_SIZE);
+        private int inputPosition;
         private boolean everSawInput = false;
         private boolean gatheringRows = true;
     }
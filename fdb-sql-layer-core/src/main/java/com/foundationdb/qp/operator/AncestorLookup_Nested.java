@@ -70,8 +70,12 @@ import java.util.*;
  <li><b>int inputBindingPosition:</b> Indicates input row's position in the query context. The hkey
  of this row will be used to locate ancestors.
 
- <li><b>int lookaheadQuantum:</b> Number of cursors to try to keep open by looking
-  ahead in bindings stream.
+ <li><b>int lookaheadQuantum:</b> Most cursors to try to keep open by looking
+  ahead in bindings stream. How many are open at any time adapts to how
+  long rows take to arrive and how many rows each binding yields.
+
+ <li><b>int lookaheadSeed:</b> How many cursors to keep open ahead at
+  first, from the planner's estimate. Defaults to a quarter of lookaheadQuantum.
 
  </ul>
 
@@ -142,9 +146,10 @@ class AncestorLookup_Nested extends Operator
             // cursors, rounding up.
             int ncursors = ancestors.size();
             int quantum = (lookaheadQuantum + ncursors - 1) / ncursors;
+            int initialQuantum = (lookaheadSeed + ncursors - 1) / ncursors;
             return new LookaheadExecution(context, bindingsCursor, 
                                           context.getStore(ancestors.get(0)),
-                                          quantum);
+                                          quantum, initialQuantum);
         }
     }
 
@@ -161,12 +166,23 @@ class AncestorLookup_Nested extends Operator
                                  Collection<TableRowType> ancestorTypes,
                                  int inputBindingPosition,
                                  int lookaheadQuantum)
+    {
+        this(group, rowType, ancestorTypes, inputBindingPosition, lookaheadQuantum, AdaptiveLookahead.defaultInitial(lookaheadQuantum));
+    }
+
+    public AncestorLookup_Nested(Group group,
+                                 RowType rowType,
+                                 Collection<TableRowType> ancestorTypes,
+                                 int inputBindingPosition,
+                                 int lookaheadQuantum,
+                                 int lookaheadSeed)
     {
         validateArguments(group, rowType, ancestorTypes, inputBindingPosition);
         this.group = group;
         this.rowType = rowType;
         this.inputBindingPosition = inputBindingPosition;
         this.lookaheadQuantum = lookaheadQuantum;
+        this.lookaheadSeed = lookaheadSeed;
         // Sort ancestor types by depth
         this.ancestors = new ArrayList<>(ancestorTypes.size());
         for (TableRowType ancestorType : ancestorTypes) {
@@ -238,6 +254,7 @@ class AncestorLookup_Nested extends Operator
     private final List<Table> ancestors;
     private final int inputBindingPosition;
     private final int lookaheadQuantum;
+    private final int lookaheadSeed;
 
     @Override
     public CompoundExplainer getExplainer(ExplainContext context)
@@ -496,8 +513,8 @@ class AncestorLookup_Nested extends Operator
         // LookaheadExecution interface
 
         LookaheadExecution(QueryContext context, QueryBindingsCursor bindingsCursor, 
-                           StoreAdapter adapter, int quantum) {
-            super(context, bindingsCursor, adapter, quantum);
+                           StoreAdapter adapter, int quantum, int initialQuantum) {
+            super(context, bindingsCursor, adapter, quantum, initialQuantum);
         }
     }
 }
@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+/**
+ * A cursor that can return several rows at a time, so that per-row
+ * bookkeeping (taps, lifecycle and cancelation checks) is done once
+ * per batch.
+ *
+ * Callers should use {@link RowBatch#fill}, which falls back to
+ * {@link RowCursor#next} for cursors that do not implement this.
+ */
+public interface BatchCursor
+{
+    /**
+     * Replace the contents of <code>batch</code> with up to
+     * {@link RowBatch#limit} of the following rows, as
+     * {@link RowCursor#next} would return them. An empty batch means
+     * there are no more rows and the cursor is now idle.
+     *
+     * Every row in the batch must stay valid until the next call to
+     * <code>nextBatch</code> (or {@link RowBatch#fill}) on this cursor,
+     * since the caller may look at any of them in any order. This is
+     * longer than a row from <code>next()</code> need last, so rows
+     * whose values are computed into state shared with the rows after
+     * them must not be put into a batch as they are.
+     */
+    void nextBatch(RowBatch batch);
+}
@@ -76,8 +76,12 @@ import static java.lang.Math.min;
  <li><b>int inputBindingPosition:</b> Indicates input row's position in the query context. The hkey
  of this row will be used to locate ancestors.
 
- <li><b>int lookaheadQuantum:</b> Number of cursors to try to keep open by looking
-  ahead in bindings stream.
+ <li><b>int lookaheadQuantum:</b> Most cursors to try to keep open by looking
+  ahead in bindings stream. How many are open at any time adapts to how
+  long rows take to arrive and how many rows each binding yields.
+
+ <li><b>int lookaheadSeed:</b> How many cursors to keep open ahead at
+  first, from the planner's estimate. Defaults to a quarter of lookaheadQuantum.
 
  </ul>
 
@@ -162,7 +166,7 @@ public class BranchLookup_Nested extends Operator
         else {
             return new LookaheadExecution(context, bindingsCursor, 
                                           context.getStore(commonAncestor),
-                                          lookaheadQuantum);
+                                          lookaheadQuantum, lookaheadSeed);
         }
     }
 
@@ -182,6 +186,20 @@ public class BranchLookup_Nested extends Operator
                                API.InputPreservationOption flag,
                                int inputBindingPosition,
                                int lookaheadQuantum)
+    {
+        this(group, inputRowType, sourceRowType, ancestorRowType, outputRowTypes, flag,
+             inputBindingPosition, lookaheadQuantum, AdaptiveLookahead.defaultInitial(lookaheadQuantum));
+    }
+
+    public BranchLookup_Nested(Group group,
+                               RowType inputRowType,
+                               RowType sourceRowType,
+                               TableRowType ancestorRowType,
+                               Collection<TableRowType> outputRowTypes,
+                               API.InputPreservationOption flag,
+                               int inputBindingPosition,
+                               int lookaheadQuantum,
+                               int lookaheadSeed)
     {
         ArgumentValidation.notNull("group", group);
         ArgumentValidation.notNull("inputRowType", inputRowType);
@@ -241,6 +259,7 @@ public class BranchLookup_Nested extends Operator
         this.keepInput = flag == API.InputPreservationOption.KEEP_INPUT;
         this.inputBindingPosition = inputBindingPosition;
         this.lookaheadQuantum = lookaheadQuantum;
+        this.lookaheadSeed = lookaheadSeed;
         // See whether there is a single branch beneath commonAncestor
         // with all output row types.
         Table outputTable = this.outputRowTypes.get(0).table();
@@ -319,6 +338,7 @@ public class BranchLookup_Nested extends Operator
     private final boolean inputPrecedesBranch;
     private final int inputBindingPosition;
     private final int lookaheadQuantum;
+    private final int lookaheadSeed;
     private final Table commonAncestor;
     private final int branchRootOrdinal;
 
@@ -584,8 +604,8 @@ public class BranchLookup_Nested extends Operator
         // LookaheadExecution interface
 
         LookaheadExecution(QueryContext context, QueryBindingsCursor bindingsCursor, 
-                           StoreAdapter adapter, int quantum) {
-            super(context, bindingsCursor, adapter, quantum);
+                           StoreAdapter adapter, int quantum, int initialQuantum) {
+            super(context, bindingsCursor, adapter, quantum, initialQuantum);
         }
     }
 }
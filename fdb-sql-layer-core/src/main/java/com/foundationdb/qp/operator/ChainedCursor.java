@@ -47,6 +47,7 @@ import com.foundationdb.server.api.dml.ColumnSelector;
  * @see IfEmpty_Default
  * @see Insert_Returning
  * @see Limit_Default
+ * @see Partition_HashTable
  * @see Product_Nested
  * @see Project_Default
  * @see Select_BloomFilter (non-lookahead)
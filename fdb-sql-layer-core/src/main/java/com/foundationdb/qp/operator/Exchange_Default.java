@@ -0,0 +1,599 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.error.AkibanInternalException;
+import com.foundationdb.server.error.QueryCanceledException;
+import com.foundationdb.server.explain.*;
+import com.foundationdb.server.types.TClass;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.util.ArgumentValidation;
+import com.foundationdb.util.tap.InOutTap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+
+ <h1>Overview</h1>
+
+ Exchange_Default gathers the rows of several input streams, each of
+ which is normally a scan of one part of a larger key range, running
+ the inputs concurrently on a pool of worker threads.
+
+ <h1>Arguments</h1>
+
+ <li><b>List<Operator> inputs:</b> Sources of the input streams, all of the same row type.
+ <li><b>RowType rowType:</b> Type of rows in every input stream.
+ <li><b>API.Ordering ordering:</b> Ordering of each input stream to be preserved in the output, or <code>null</code>.
+
+ <h1>Behavior</h1>
+
+ On open, each input cursor is opened and drained by a worker thread
+ into a bounded queue of <code>fdbsql.exchange.queue_size</code>
+ rows. A worker blocks when its queue is full, so the inputs only run
+ ahead of the consumer by that much.
+
+ If no ordering is given, rows are output in whatever order the workers
+ produce them. Otherwise, each input is assumed to be in that order
+ and the output is a merge of their heads.
+
+ An error in any input is rethrown to the caller of next. Closing the
+ cursor stops any workers still running before closing their inputs.
+
+ If the store cannot be read from more than one thread (see {@link
+ StoreAdapter#supportsParallelScan}), or there is only one input, the
+ inputs are read on the calling thread instead, with the same output.
+
+ <h1>Output</h1>
+
+ All the rows of all the inputs, merged by ordering, if given.
+
+ <h1>Assumptions</h1>
+
+ The inputs are independent of one another and only read from the
+ store, which must allow concurrent reads within the one transaction.
+
+ <h1>Performance</h1>
+
+ This operator does no IO itself. Its inputs' IO is overlapped.
+
+ <h1>Memory Requirements</h1>
+
+ Up to <code>fdbsql.exchange.queue_size</code> rows per input.
+
+ */
+
+class Exchange_Default extends Operator
+{
+    // Object interface
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s(%d inputs%s)", getClass().getSimpleName(), inputs.size(),
+                             (ordering == null) ? "" : ", " + ordering);
+    }
+
+    // Operator interface
+
+    @Override
+    protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
+    {
+        return new Execution(context, bindingsCursor);
+    }
+
+    @Override
+    public RowType rowType()
+    {
+        return rowType;
+    }
+
+    @Override
+    public void findDerivedTypes(Set<RowType> derivedTypes)
+    {
+        for (Operator input : inputs) {
+            input.findDerivedTypes(derivedTypes);
+        }
+    }
+
+    @Override
+    public List<Operator> getInputOperators()
+    {
+        return inputs;
+    }
+
+    @Override
+    public String describePlan()
+    {
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i < inputs.size(); i++) {
+            if (i > 0) {
+                str.append(NL);
+            }
+            str.append(inputs.get(i).describePlan());
+        }
+        str.append(NL);
+        str.append(toString());
+        return str.toString();
+    }
+
+    // Exchange_Default interface
+
+    public Exchange_Default(List<Operator> inputs, RowType rowType, API.Ordering ordering)
+    {
+        ArgumentValidation.notEmpty("inputs", inputs);
+        ArgumentValidation.notNull("rowType", rowType);
+        this.inputs = new ArrayList<>(inputs);
+        this.rowType = rowType;
+        this.ordering = ordering;
+    }
+
+    // Class state
+
+    static final String QUEUE_SIZE_PROPERTY = "fdbsql.exchange.queue_size";
+
+    private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: Exchange_Default open");
+    private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: Exchange_Default next");
+    private static final Logger LOG = LoggerFactory.getLogger(Exchange_Default.class);
+
+    /** Marks the end of one worker's rows. */
+    private static final Object END = new Object();
+
+    /** How long a blocked worker waits before checking for cancellation. */
+    private static final long OFFER_WAIT_MILLIS = 10;
+
+    // Workers can block on a full queue waiting for a merge that is in
+    // turn waiting for another input, so the pool must never make a
+    // task wait for a thread.
+    private static final ExecutorService WORKERS = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Exchange-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+    // Object state
+
+    private final List<Operator> inputs;
+    private final RowType rowType;
+    private final API.Ordering ordering;
+
+    @Override
+    public CompoundExplainer getExplainer(ExplainContext context)
+    {
+        Attributes atts = new Attributes();
+        atts.put(Label.NAME, PrimitiveExplainer.getInstance(getName()));
+        for (Operator input : inputs) {
+            atts.put(Label.INPUT_OPERATOR, input.getExplainer(context));
+        }
+        if (ordering != null) {
+            for (int i = 0; i < ordering.sortColumns(); i++) {
+                atts.put(Label.EXPRESSIONS, ordering.expression(i).getExplainer(context));
+                atts.put(Label.ORDERING, PrimitiveExplainer.getInstance(ordering.ascending(i) ? "ASC" : "DESC"));
+            }
+        }
+        atts.put(Label.OUTPUT_TYPE, rowType.getExplainer(context));
+        return new CompoundExplainer(Type.EXCHANGE, atts);
+    }
+
+    // Inner classes
+
+    private class Worker implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            try {
+                cursor.open();
+                Row row;
+                while (!execution.cancelled && ((row = cursor.next()) != null)) {
+                    if (!offer(row)) {
+                        return;
+                    }
+                }
+            }
+            catch (Throwable ex) {
+                execution.failure(ex);
+            }
+            offer(END);
+        }
+
+        private boolean offer(Object item)
+        {
+            try {
+                while (!execution.cancelled) {
+                    if (queue.offer(item, OFFER_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                }
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+
+        public Worker(Execution execution, Cursor cursor, BlockingQueue<Object> queue)
+        {
+            this.execution = execution;
+            this.cursor = cursor;
+            this.queue = queue;
+        }
+
+        private final Execution execution;
+        private final Cursor cursor;
+        private final BlockingQueue<Object> queue;
+    }
+
+    private class Execution extends OperatorCursor
+    {
+        // Cursor interface
+
+        @Override
+        public void open()
+        {
+            TAP_OPEN.in();
+            try {
+                super.open();
+                cancelled = false;
+                failure = null;
+                if (parallel) {
+                    int queueSize = Integer.parseInt(context.getServiceManager().getConfigurationService().getProperty(QUEUE_SIZE_PROPERTY));
+                    if (ordering == null) {
+                        // All workers feed one queue.
+                        BlockingQueue<Object> queue = new ArrayBlockingQueue<>(queueSize);
+                        for (int i = 0; i < queues.length; i++) {
+                            queues[i] = queue;
+                        }
+                    }
+                    else {
+                        for (int i = 0; i < queues.length; i++) {
+                            queues[i] = new ArrayBlockingQueue<>(queueSize);
+                        }
+                    }
+                    for (int i = 0; i < inputCursors.length; i++) {
+                        futures[i] = WORKERS.submit(new Worker(this, inputCursors[i], queues[i]));
+                    }
+                    remaining = inputCursors.length;
+                }
+                else if (ordering == null) {
+                    current = 0;
+                    inputCursors[current].open();
+                }
+                else {
+                    for (Cursor inputCursor : inputCursors) {
+                        inputCursor.open();
+                    }
+                }
+                headsLoaded = false;
+            } finally {
+                TAP_OPEN.out();
+            }
+        }
+
+        @Override
+        public Row next()
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                checkQueryCancelation();
+                Row row = null;
+                if (isActive()) {
+                    row = (ordering == null) ? nextUnordered() : nextOrdered();
+                    if (row == null) {
+                        setIdle();
+                    }
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("Exchange_Default: yield {}", row);
+                }
+                return row;
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            try {
+                stopWorkers();
+                for (Cursor inputCursor : inputCursors) {
+                    if (!inputCursor.isClosed()) {
+                        inputCursor.close();
+                    }
+                }
+                for (int i = 0; i < heads.length; i++) {
+                    heads[i] = null;
+                }
+            } finally {
+                super.close();
+            }
+        }
+
+        @Override
+        public void openBindings()
+        {
+            bindingsCursor.openBindings();
+            for (Cursor inputCursor : inputCursors) {
+                inputCursor.openBindings();
+            }
+        }
+
+        @Override
+        public QueryBindings nextBindings()
+        {
+            CursorLifecycle.checkClosed(this);
+            QueryBindings bindings = bindingsCursor.nextBindings();
+            for (Cursor inputCursor : inputCursors) {
+                QueryBindings other = inputCursor.nextBindings();
+                assert (bindings == other);
+            }
+            this.bindings = bindings;
+            return bindings;
+        }
+
+        @Override
+        public void closeBindings()
+        {
+            bindingsCursor.closeBindings();
+            for (Cursor inputCursor : inputCursors) {
+                inputCursor.closeBindings();
+            }
+        }
+
+        @Override
+        public void cancelBindings(QueryBindings bindings)
+        {
+            CursorLifecycle.checkClosed(this);
+            for (Cursor inputCursor : inputCursors) {
+                inputCursor.cancelBindings(bindings);
+            }
+            bindingsCursor.cancelBindings(bindings);
+        }
+
+        // Execution interface
+
+        @SuppressWarnings("unchecked")
+        Execution(QueryContext context, QueryBindingsCursor bindingsCursor)
+        {
+            super(context);
+            MultipleQueryBindingsCursor multiple = new MultipleQueryBindingsCursor(bindingsCursor);
+            this.bindingsCursor = multiple;
+            int n = inputs.size();
+            this.inputCursors = new Cursor[n];
+            for (int i = 0; i < n; i++) {
+                inputCursors[i] = inputs.get(i).cursor(context, multiple.newCursor());
+            }
+            this.parallel = (n > 1) && context.getStore().supportsParallelScan(context);
+            this.queues = parallel ? new BlockingQueue[n] : null;
+            this.futures = parallel ? new Future[n] : null;
+            this.heads = new Row[n];
+            if (ordering != null) {
+                int ncols = ordering.sortColumns();
+                this.evaluations = new TEvaluatableExpression[n][ncols];
+                for (int i = 0; i < n; i++) {
+                    for (int j = 0; j < ncols; j++) {
+                        evaluations[i][j] = ordering.expression(j).build();
+                    }
+                }
+            }
+            else {
+                this.evaluations = null;
+            }
+        }
+
+        // For use by Worker
+
+        void failure(Throwable ex)
+        {
+            synchronized (this) {
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+        }
+
+        // For use by this class
+
+        private Row nextUnordered()
+        {
+            if (parallel) {
+                while (remaining > 0) {
+                    Object item = take(queues[0]);
+                    if (item != END) {
+                        return (Row)item;
+                    }
+                    remaining--;
+                }
+                return null;
+            }
+            while (true) {
+                Row row = inputCursors[current].next();
+                if (row != null) {
+                    return row;
+                }
+                if (++current >= inputCursors.length) {
+                    return null;
+                }
+                inputCursors[current].open();
+            }
+        }
+
+        private Row nextOrdered()
+        {
+            if (!headsLoaded) {
+                for (int i = 0; i < heads.length; i++) {
+                    advance(i);
+                }
+                headsLoaded = true;
+            }
+            int min = -1;
+            for (int i = 0; i < heads.length; i++) {
+                if ((heads[i] != null) &&
+                    ((min < 0) || (compare(i, min) < 0))) {
+                    min = i;
+                }
+            }
+            if (min < 0) {
+                return null;
+            }
+            Row row = heads[min];
+            advance(min);
+            return row;
+        }
+
+        private void advance(int i)
+        {
+            Row row;
+            if (parallel) {
+                Object item = take(queues[i]);
+                row = (item == END) ? null : (Row)item;
+            }
+            else {
+                row = inputCursors[i].next();
+            }
+            heads[i] = row;
+            if (row != null) {
+                for (TEvaluatableExpression evaluation : evaluations[i]) {
+                    evaluation.with(context);
+                    evaluation.with(bindings);
+                    evaluation.with(row);
+                    evaluation.evaluate();
+                }
+            }
+        }
+
+        private int compare(int i1, int i2)
+        {
+            for (int j = 0; j < ordering.sortColumns(); j++) {
+                ValueSource v1 = evaluations[i1][j].resultValue();
+                ValueSource v2 = evaluations[i2][j].resultValue();
+                int c;
+                AkCollator collator = ordering.collator(j);
+                if ((collator != null) && !v1.isNull() && !v2.isNull()) {
+                    c = collator.compare(v1, v2);
+                }
+                else {
+                    TInstance type = ordering.type(j);
+                    c = TClass.compare(type, v1, type, v2);
+                }
+                if (c != 0) {
+                    return ordering.ascending(j) ? c : -c;
+                }
+            }
+            return 0;
+        }
+
+        private Object take(BlockingQueue<Object> queue)
+        {
+            Object item;
+            try {
+                item = queue.take();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new QueryCanceledException(context.getSession());
+            }
+            if (item == END) {
+                Throwable ex;
+                synchronized (this) {
+                    ex = failure;
+                }
+                if (ex != null) {
+                    if (ex instanceof RuntimeException) {
+                        throw (RuntimeException)ex;
+                    }
+                    if (ex instanceof Error) {
+                        throw (Error)ex;
+                    }
+                    throw new AkibanInternalException("Exchange input failed", ex);
+                }
+            }
+            return item;
+        }
+
+        private void stopWorkers()
+        {
+            if (!parallel) {
+                return;
+            }
+            cancelled = true;
+            for (int i = 0; i < futures.length; i++) {
+                if (futures[i] != null) {
+                    try {
+                        futures[i].get();
+                    }
+                    catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    catch (ExecutionException ex) {
+                        // Worker reports its own failures.
+                    }
+                    futures[i] = null;
+                }
+                queues[i] = null;
+            }
+        }
+
+        // Object state
+
+        private final QueryBindingsCursor bindingsCursor;
+        private final Cursor[] inputCursors;
+        private final boolean parallel;
+        private final BlockingQueue<Object>[] queues;
+        private final Future<?>[] futures;
+        private final Row[] heads;
+        private final TEvaluatableExpression[][] evaluations;
+        private QueryBindings bindings;
+        private int current, remaining;
+        private boolean headsLoaded;
+        private volatile boolean cancelled;
+        private Throwable failure;
+    }
+}
@@ -132,7 +132,7 @@ class Filter_Default extends Operator
 
     // Inner classes
 
-    private class Execution extends ChainedCursor
+    private class Execution extends ChainedCursor implements BatchCursor
     {
         // Cursor interface
 
@@ -178,6 +178,47 @@ class Filter_Default extends Operator
             }
         }
 
+        // BatchCursor interface
+
+        @Override
+        public void nextBatch(RowBatch batch)
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                checkQueryCancelation();
+                // Keep the matching rows at the front, refilling from input
+                // until something matches or it runs out.
+                while (batch.fill(input)) {
+                    int kept = 0;
+                    for (int i = 0; i < batch.size(); i++) {
+                        Row row = batch.get(i);
+                        if (keepTypes.contains(row.rowType())) {
+                            batch.set(kept++, row);
+                        }
+                    }
+                    batch.truncate(kept);
+                    if (kept > 0) {
+                        break;
+                    }
+                }
+                if (batch.isEmpty()) {
+                    setIdle();
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("Filter_Default: yield {}", batch);
+                }
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
         // Execution interface
 
         Execution(QueryContext context, Cursor input)
@@ -68,8 +68,13 @@ import static java.lang.Math.min;
  will be preserved in the output stream (flag = KEEP_INPUT), or
  discarded (flag = DISCARD_INPUT).
 
- <li><b>int lookaheadQuantum:</b> Number of cursors to try to keep open by looking
-  ahead in input stream, possibly across multiple outer loops.
+ <li><b>int lookaheadQuantum:</b> Most cursors to try to keep open by looking
+  ahead in input stream, possibly across multiple outer loops. How many are
+  open at any time adapts to how long rows take to arrive and how many rows
+  each input row yields.
+
+ <li><b>int lookaheadSeed:</b> How many cursors to keep open ahead at
+  first, from the planner's estimate. Defaults to a quarter of lookaheadQuantum.
 
  </ul>
 
@@ -136,7 +141,7 @@ class GroupLookup_Default extends Operator
             return new Execution(context, inputOperator.cursor(context, bindingsCursor));
         }
         else {
-            return new LookaheadExecution(context, inputOperator.cursor(context, bindingsCursor), lookaheadQuantum);
+            return new LookaheadExecution(context, inputOperator.cursor(context, bindingsCursor), lookaheadQuantum, lookaheadSeed);
         }
     }
 
@@ -162,12 +167,24 @@ class GroupLookup_Default extends Operator
                                Collection<TableRowType> outputRowTypes,
                                API.InputPreservationOption flag,
                                int lookaheadQuantum)
+    {
+        this(inputOperator, group, inputRowType, outputRowTypes, flag, lookaheadQuantum, AdaptiveLookahead.defaultInitial(lookaheadQuantum));
+    }
+
+    public GroupLookup_Default(Operator inputOperator,
+                               Group group,
+                               RowType inputRowType,
+                               Collection<TableRowType> outputRowTypes,
+                               API.InputPreservationOption flag,
+                               int lookaheadQuantum,
+                               int lookaheadSeed)
     {
         this.inputOperator = inputOperator;
         this.group = group;
         this.inputRowType = inputRowType;
         this.keepInput = flag == API.InputPreservationOption.KEEP_INPUT;
         this.lookaheadQuantum = lookaheadQuantum;
+        this.lookaheadSeed = lookaheadSeed;
 
         ArgumentValidation.notEmpty("outputRowTypes", outputRowTypes);
         TableRowType tableRowType;
@@ -316,6 +333,7 @@ class GroupLookup_Default extends Operator
     private final boolean keepInput;
     private final int branchRootOrdinal;
     private final int lookaheadQuantum;
+    private final int lookaheadSeed;
 
     @Override
     public CompoundExplainer getExplainer(ExplainContext context)
@@ -535,6 +553,8 @@ class GroupLookup_Default extends Operator
             try {
                 super.open();
                 cursorIndex = 0;
+                timeFirstRow = true;
+                rowCount = 0;
             } finally {
                 TAP_OPEN.out();
             }
@@ -555,7 +575,7 @@ class GroupLookup_Default extends Operator
                 while (isActive() && outputRow == null) {
                     fillPipeline();
                     // Now take ancestor rows from the front of pipeline.
-                    if (inputs[currentIndex].inputRow == null) {
+                    if (!occupied(currentIndex)) {
                         setIdle(); // No more rows loaded.
                     }
                     else if (inputs[currentIndex].queryBindings != currentBindings) {
@@ -567,13 +587,24 @@ class GroupLookup_Default extends Operator
                         inputs[currentIndex].queryBindings = null;
                         currentIndex = (currentIndex + 1) % quantum;
                         cursorIndex = 0;
+                        timeFirstRow = true;
+                        lookahead.bindingRows(rowCount);
+                        rowCount = 0;
                     }
                     else if (cursorIndex == keepInputCursorIndex) {
                         outputRow = inputs[currentIndex].inputRow; 
                         cursorIndex++;
                     }
                     else {
-                        outputRow = inputs[currentIndex].cursors[cursorIndex].next();
+                        if (timeFirstRow) {
+                            timeFirstRow = false;
+                            long start = System.nanoTime();
+                            outputRow = inputs[currentIndex].cursors[cursorIndex].next();
+                            lookahead.firstRow(System.nanoTime() - start);
+                        }
+                        else {
+                            outputRow = inputs[currentIndex].cursors[cursorIndex].next();
+                        }
                         if (cursorIndex == branchCursorIndex) {
                             // Get all matching rows from branch.
                             if (outputRow == null) {
@@ -596,6 +627,9 @@ class GroupLookup_Default extends Operator
                         }
                     }
                 }
+                if (outputRow != null) {
+                    rowCount++;
+                }
                 if (LOG_EXECUTION) {
                     LOG.debug("GroupLookup: yield {}", outputRow);
                 }
@@ -611,11 +645,12 @@ class GroupLookup_Default extends Operator
         public void close() {
             try {
                 // Any rows for the current bindings being closed need to be discarded.
-                while (currentBindings == inputs[currentIndex].queryBindings) {
+                while ((inputs[currentIndex] != null) &&
+                       (currentBindings == inputs[currentIndex].queryBindings)) {
                     inputs[currentIndex].clearState();
                     currentIndex = (currentIndex + 1) % quantum;
                 }
-                if (inputs[nextIndex].inputRow == null && !input.isClosed()) {
+                if (!occupied(nextIndex) && !input.isClosed()) {
                     input.close();
                     nextBindings = null;
                 }
@@ -662,7 +697,8 @@ class GroupLookup_Default extends Operator
                 pendingBindings.remove();
             }
             
-            while ((inputs[currentIndex].queryBindings != null) &&
+            while ((inputs[currentIndex] != null) &&
+                   (inputs[currentIndex].queryBindings != null) &&
                         inputs[currentIndex].queryBindings.isAncestor(bindings)) {
                 inputs[currentIndex].clearState();
                 currentIndex = (currentIndex + 1) % quantum;
@@ -680,7 +716,7 @@ class GroupLookup_Default extends Operator
 
         // LookaheadExecution interface
 
-        LookaheadExecution(QueryContext context, Cursor input, int quantum) {
+        LookaheadExecution(QueryContext context, Cursor input, int quantum, int initialQuantum) {
             super(context);
             this.input = input;
             this.pendingBindings = new ArrayDeque<>(quantum+1);
@@ -702,12 +738,12 @@ class GroupLookup_Default extends Operator
             }
             // Convert from number of cursors to number of input rows, rounding up.
             quantum = (quantum + ncursors - 1) / ncursors;
+            initialQuantum = (initialQuantum + ncursors - 1) / ncursors;
             this.quantum = quantum;
             this.ncursors = nindex;
+            // Slots are only filled as far as the lookahead has grown.
             this.inputs = new InputState[quantum];
-            for (int j = 0; j < quantum; j++) {
-                this.inputs[j] = new InputState (nindex, keepInputCursorIndex, branchCursorIndex);
-            }
+            this.lookahead = new AdaptiveLookahead(initialQuantum, quantum);
         }
 
         // For use by this class
@@ -715,6 +751,7 @@ class GroupLookup_Default extends Operator
         private void clearBindings() {
             CursorLifecycle.checkClosed(this);
             for (InputState in : inputs) {
+                if (in == null) continue;
                 in.inputRow = null;
                 in.queryBindings = null;
             }
@@ -725,7 +762,8 @@ class GroupLookup_Default extends Operator
         private void fillPipeline() {
             // Get some more input rows, crossing bindings boundaries as
             // necessary, and open cursors for them.
-            while (!bindingsExhausted && inputs[nextIndex].inputRow == null) {
+            while (!bindingsExhausted && !occupied(nextIndex) &&
+                   (((nextIndex - currentIndex + quantum) % quantum) < lookahead.get())) {
                 if (nextBindings == null) {
                     if (newBindings) {
                         nextBindings = currentBindings;
@@ -751,6 +789,10 @@ class GroupLookup_Default extends Operator
                 }
                 else {
                     InputState inputState = inputs[nextIndex];
+                    if (inputState == null) {
+                        inputState = new InputState(ncursors, keepInputCursorIndex, branchCursorIndex);
+                        inputs[nextIndex] = inputState;
+                    }
                     inputState.inputRow = row;
                     if (LOG_EXECUTION) {
                         LOG.debug("GroupLookup: new input {}", row);
@@ -777,6 +819,10 @@ class GroupLookup_Default extends Operator
             }
         }
 
+        private boolean occupied(int index) {
+            return (inputs[index] != null) && (inputs[index].inputRow != null);
+        }
+
         private class InputState 
         {
             public Row inputRow;
@@ -815,6 +861,7 @@ class GroupLookup_Default extends Operator
         private final Queue<QueryBindings> pendingBindings;
         private final int quantum;
         private final InputState[] inputs;
+        private final AdaptiveLookahead lookahead;
         
         
         //private final Row[] inputRows;
@@ -825,5 +872,7 @@ class GroupLookup_Default extends Operator
         private int currentIndex, nextIndex, cursorIndex;
         private QueryBindings currentBindings, nextBindings;
         private boolean bindingsExhausted, newBindings;
+        private boolean timeFirstRow;
+        private long rowCount;
     }
 }
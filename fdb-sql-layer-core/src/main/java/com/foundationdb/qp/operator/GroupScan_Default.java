@@ -128,7 +128,7 @@ class GroupScan_Default extends Operator
 
     // Inner classes
 
-    private static class Execution extends LeafCursor implements Rebindable
+    private static class Execution extends LeafCursor implements Rebindable, BatchCursor
     {
 
         // Cursor interface
@@ -206,6 +206,29 @@ class GroupScan_Default extends Operator
             cursor.rebind(hKey, deep);
         }
 
+        // BatchCursor interface
+
+        @Override
+        public void nextBatch(RowBatch batch)
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                checkQueryCancelation();
+                if (!batch.fill(cursor)) {
+                    setIdle();
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("GroupScan_Default: yield {}", batch);
+                }
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
         // Execution interface
 
         Execution(QueryContext context, QueryBindingsCursor bindingsCursor, GroupCursorCreator cursorCreator)
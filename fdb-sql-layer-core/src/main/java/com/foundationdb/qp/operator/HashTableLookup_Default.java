@@ -93,8 +93,7 @@ class HashTableLookup_Default extends Operator
                 super.open();
                 hashTable = bindings.getHashTable(hashTableBindingPosition);
                 assert (hashedRowType == hashTable.getRowType()) : hashTable;
-                innerRowList = hashTable.getMatchingRows(null, evaluatableComparisonFields, bindings);
-                innerRowListPosition = 0;
+                hashTable.findMatchingRows(matches, null, evaluatableComparisonFields, bindings);
             } finally {
                 TAP_OPEN.out();
             }
@@ -110,11 +109,8 @@ class HashTableLookup_Default extends Operator
                 if (CURSOR_LIFECYCLE_ENABLED) {
                     CursorLifecycle.checkIdleOrActive(this);
                 }
-                Row next = null;
-                if(innerRowListPosition < innerRowList.size()) {
-                    next = innerRowList.get(innerRowListPosition++);
-                    assert(next.rowType() == hashedRowType);
-                }
+                Row next = matches.next();
+                assert((next == null) || (next.rowType() == hashedRowType));
                 if (LOG_EXECUTION) {
                     LOG.debug("HashJoin: yield {}", next);
                 }
@@ -135,8 +131,7 @@ class HashTableLookup_Default extends Operator
         }
         // Cursor interface
         protected HashTable hashTable;
-        private List<Row> innerRowList;
-        private int innerRowListPosition = 0;
+        private final HashTable.Matches matches = new HashTable.Matches();
         private final List<TEvaluatableExpression> evaluatableComparisonFields = new ArrayList<>();
 
     }
@@ -59,8 +59,12 @@ import java.util.List;
  <li><b>IndexScanSelector scanSelector:</b> On a group index, specify which
   tables must be present for OUTER JOIN semantics.
 
- <li><b>int lookaheadQuantum:</b> Number of cursors to try to keep open by looking
-  ahead in bindings stream.
+ <li><b>int lookaheadQuantum:</b> Most cursors to try to keep open by looking
+  ahead in bindings stream. How many are open at any time adapts to how
+  long rows take to arrive and how many rows each binding yields.
+
+ <li><b>int lookaheadSeed:</b> How many cursors to keep open ahead at
+  first, from the planner's estimate. Defaults to a quarter of lookaheadQuantum.
 
  </ul>
 
@@ -171,7 +175,7 @@ class IndexScan_Default extends Operator
         else {
             return new LookaheadExecution(context, bindingsCursor, 
                                           context.getStore(index.rootMostTable()),
-                                          lookaheadQuantum);
+                                          lookaheadQuantum, lookaheadSeed);
         }
     }
 
@@ -182,6 +186,16 @@ class IndexScan_Default extends Operator
                              API.Ordering ordering,
                              IndexScanSelector scanSelector,
                              int lookaheadQuantum)
+    {
+        this(indexType, indexKeyRange, ordering, scanSelector, lookaheadQuantum, AdaptiveLookahead.defaultInitial(lookaheadQuantum));
+    }
+
+    public IndexScan_Default(IndexRowType indexType,
+                             IndexKeyRange indexKeyRange,
+                             API.Ordering ordering,
+                             IndexScanSelector scanSelector,
+                             int lookaheadQuantum,
+                             int lookaheadSeed)
     {
         ArgumentValidation.notNull("indexType", indexType);
         this.indexType = indexType;
@@ -190,6 +204,7 @@ class IndexScan_Default extends Operator
         this.indexKeyRange = indexKeyRange;
         this.scanSelector = scanSelector;
         this.lookaheadQuantum = lookaheadQuantum;
+        this.lookaheadSeed = lookaheadSeed;
     }
 
     // Class state
@@ -206,6 +221,7 @@ class IndexScan_Default extends Operator
     private final IndexKeyRange indexKeyRange;
     private final IndexScanSelector scanSelector;
     private final int lookaheadQuantum;
+    private final int lookaheadSeed;
 
     @Override
     public CompoundExplainer getExplainer(ExplainContext context)
@@ -286,7 +302,7 @@ class IndexScan_Default extends Operator
 
     // Inner classes
 
-    private class Execution extends LeafCursor
+    private class Execution extends LeafCursor implements BatchCursor
     {
         // Cursor interface
 
@@ -352,6 +368,29 @@ class IndexScan_Default extends Operator
             return bindings;
         }
 
+        // BatchCursor interface
+
+        @Override
+        public void nextBatch(RowBatch batch)
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                checkQueryCancelation();
+                if (!batch.fill(cursor)) {
+                    setIdle();
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("IndexScan_Default$Execution: yield {}", batch);
+                }
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
         // Execution interface
 
         Execution(QueryContext context, QueryBindingsCursor bindingsCursor)
@@ -416,8 +455,8 @@ class IndexScan_Default extends Operator
         // LookaheadExecution interface
 
         LookaheadExecution(QueryContext context, QueryBindingsCursor bindingsCursor, 
-                           StoreAdapter adapter, int quantum) {
-            super(context, bindingsCursor, adapter, quantum);
+                           StoreAdapter adapter, int quantum, int initialQuantum) {
+            super(context, bindingsCursor, adapter, quantum, initialQuantum);
         }
         
         @Override
@@ -180,7 +180,7 @@ final class Limit_Default extends Operator
 
     // internal classes
 
-    private class Execution extends ChainedCursor {
+    private class Execution extends ChainedCursor implements BatchCursor {
 
         // Cursor interface
 
@@ -287,6 +287,53 @@ final class Limit_Default extends Operator
             }
         }
 
+        // BatchCursor interface
+
+        @Override
+        public void nextBatch(RowBatch batch) {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            int requested = batch.limit();
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                checkQueryCancelation();
+                while (skipLeft > 0) {
+                    batch.limit(skipLeft);
+                    if (!batch.fill(input)) {
+                        skipLeft = 0;
+                        limitLeft = -1;
+                        break;
+                    }
+                    skipLeft -= batch.size();
+                }
+                batch.truncate(0);
+                if (limitLeft > 0) {
+                    // Never ask the input for more than will be returned.
+                    batch.limit(Math.min(requested, limitLeft));
+                    if (batch.fill(input)) {
+                        limitLeft -= batch.size();
+                    }
+                    else {
+                        limitLeft = -1;
+                    }
+                }
+                if (batch.isEmpty()) {
+                    setIdle();
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("Limit_Default: yield {}", batch);
+                }
+            } finally {
+                batch.limit(requested);
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
         // Execution interface
         Execution(QueryContext context, Cursor input) {
             super(context, input);
@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+import java.util.List;
+
+/**
+ * A {@link QueryBindings} stream from a list, such as the parameter sets
+ * of a batch of executions of the same statement.
+ */
+public class ListQueryBindingsCursor implements QueryBindingsCursor
+{
+    private final List<QueryBindings> bindings;
+    private int index = -1;
+
+    public ListQueryBindingsCursor(List<QueryBindings> bindings) {
+        this.bindings = bindings;
+    }
+
+    @Override
+    public void openBindings() {
+        index = 0;
+    }
+
+    @Override
+    public QueryBindings nextBindings() {
+        if (index < 0)
+            throw new IllegalStateException("Bindings cursor not open");
+        if (index >= bindings.size())
+            return null;
+        return bindings.get(index++);
+    }
+
+    @Override
+    public void closeBindings() {
+        index = -1;
+    }
+
+    @Override
+    public void cancelBindings(QueryBindings ancestor) {
+        while ((index >= 0) && (index < bindings.size()) && 
+               bindings.get(index).isAncestor(ancestor)) {
+            index++;
+        }
+    }
+}
@@ -25,6 +25,11 @@ import java.util.Queue;
 
 /** An {@link OperatorCursor} that opens a single {@link BindingsAwareCursor}
 * for each {@link QueryBindings} with lookahead.
+*
+* How many bindings are opened ahead is decided by an {@link AdaptiveLookahead},
+* from how long the first row of each cursor opened ahead has to be waited for
+* and from how many rows each binding yields. Cursors are only created when the
+* lookahead first grows that far.
 */
 public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends OperatorCursor
 {
@@ -39,12 +44,14 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
         else if (pendingCursor != null) {
             currentCursor = pendingCursor;
             pendingCursor = null;
+            timeFirstRow = true;
         }
         else {
             // At the very beginning, the pipeline isn't started.
             currentCursor = openACursor(currentBindings, false);
         }
-        while (!cursorPool.isEmpty() && !bindingsExhausted) {
+        rowCount = 0;
+        while ((pendingBindings.size() < lookahead.get()) && !bindingsExhausted) {
             QueryBindings bindings = bindingsCursor.nextBindings();
             if (bindings == null) {
                 bindingsExhausted = true;
@@ -64,9 +71,22 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
             CursorLifecycle.checkIdleOrActive(this);
         }
         checkQueryCancelation();
-        Row row = currentCursor.next();
+        Row row;
+        if (timeFirstRow) {
+            timeFirstRow = false;
+            long start = System.nanoTime();
+            row = currentCursor.next();
+            lookahead.firstRow(System.nanoTime() - start);
+        }
+        else {
+            row = currentCursor.next();
+        }
         if (row == null) {
             currentCursor.setIdle();
+            lookahead.bindingRows(rowCount);
+        }
+        else {
+            rowCount++;
         }
         return row;
     }
@@ -76,6 +96,7 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
         if (CURSOR_LIFECYCLE_ENABLED) {
             CursorLifecycle.checkIdleOrActive(this);
         }
+        timeFirstRow = false;
         currentCursor.jump(row, columnSelector);
         state = CursorLifecycle.CursorState.ACTIVE;
     }
@@ -164,14 +185,21 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
 
     LookaheadLeafCursor(QueryContext context, QueryBindingsCursor bindingsCursor, 
                         StoreAdapter adapter, int quantum) {
+        this(context, bindingsCursor, adapter, quantum, quantum);
+    }
+
+    /**
+     * @param quantum The most bindings to open ahead
+     * @param initialQuantum How many to open ahead before anything has been observed
+     */
+    LookaheadLeafCursor(QueryContext context, QueryBindingsCursor bindingsCursor, 
+                        StoreAdapter adapter, int quantum, int initialQuantum) {
         super(context);
         this.bindingsCursor = bindingsCursor;
+        this.adapter = adapter;
+        this.lookahead = new AdaptiveLookahead(initialQuantum, quantum);
         this.pendingBindings = new ArrayDeque<>(quantum+1);
         this.cursorPool = new ArrayDeque<>(quantum);
-        for (int i = 0; i < quantum; i++) {
-            C cursor = newCursor(context, adapter);
-            cursorPool.add(cursor);
-        }
     }
 
     // Implemented by subclass
@@ -196,6 +224,7 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
     // For use by this class
 
     protected void resetActiveCursors() {
+        timeFirstRow = false;
         if (currentCursor != null) {
             try {
                 currentCursor.close();
@@ -230,7 +259,10 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
     }
 
     protected C openACursor(QueryBindings bindings, boolean lookahead) {
-        C cursor = cursorPool.remove();
+        C cursor = cursorPool.poll();
+        if (cursor == null) {
+            cursor = newCursor(context, adapter);
+        }
         cursor.rebind(bindings);
         cursor.open();
         return cursor;
@@ -239,9 +271,13 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
     // Object state
 
     protected final QueryBindingsCursor bindingsCursor;
+    protected final StoreAdapter adapter;
+    protected final AdaptiveLookahead lookahead;
     protected final Queue<BindingsAndCursor<C>> pendingBindings;
     protected final Queue<C> cursorPool;
     protected QueryBindings currentBindings;
     protected C pendingCursor, currentCursor;
     protected boolean bindingsExhausted;// destroyed;
+    protected boolean timeFirstRow;
+    protected long rowCount;
 }
@@ -0,0 +1,307 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.util.HashTable;
+import com.foundationdb.qp.util.SpillFile;
+import com.foundationdb.server.explain.*;
+import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
+import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import com.foundationdb.util.ArgumentValidation;
+import com.foundationdb.util.tap.InOutTap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ <h1>Overview</h1>
+
+ Partition_HashTable reorders the probe side of a hash join so that rows
+ which need the same spilled partition of the hash table arrive together.
+
+ <h1>Arguments</h1>
+
+ <ul>
+ <li><b>Operator input:</b> Outer input of the hash join.
+ <li><b>RowType rowType:</b> Type of the rows that probe the hash table.
+ <li><b>List<TPreparedExpression> probeFields:</b> The lookup's comparison fields, evaluated against the input row.
+ <li><b>int hashTableBindingPosition:</b> Position of the hash table in the query bindings.
+ </ul>
+
+ <h1>Behavior</h1>
+
+ Rows whose key can be answered from the part of the hash table in memory,
+ and rows of other types, are passed along as they arrive. The others are
+ written to a temporary file for their partition. Once the input is
+ exhausted, those files are emitted one partition at a time.
+
+ <h1>Output</h1>
+
+ The input rows, in a different order if the hash table spilled. Rows that
+ went through a temporary file have no hkey.
+
+ <h1>Assumptions</h1>
+
+ The hash table is fully loaded by an enclosing {@link Using_HashTable}
+ before this is opened.
+
+ <h1>Performance</h1>
+
+ Each held back row is written and read once, in exchange for reading each
+ spilled partition of the hash table back only once.
+
+ <h1>Memory Requirements</h1>
+
+ A write buffer for each spilled partition that has held back rows.
+
+ */
+
+class Partition_HashTable extends Operator
+{
+    // Object interface
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName();
+    }
+
+    // Operator interface
+
+    @Override
+    protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
+    {
+        return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+    }
+
+    @Override
+    public void findDerivedTypes(Set<RowType> derivedTypes)
+    {
+        inputOperator.findDerivedTypes(derivedTypes);
+    }
+
+    @Override
+    public List<Operator> getInputOperators()
+    {
+        return Collections.singletonList(inputOperator);
+    }
+
+    @Override
+    public String describePlan()
+    {
+        return describePlan(inputOperator);
+    }
+
+    // Partition_HashTable interface
+
+    public Partition_HashTable(Operator inputOperator,
+                               RowType rowType,
+                               List<TPreparedExpression> probeFields,
+                               int hashTableBindingPosition)
+    {
+        ArgumentValidation.notNull("inputOperator", inputOperator);
+        ArgumentValidation.notNull("rowType", rowType);
+        ArgumentValidation.notNull("probeFields", probeFields);
+        ArgumentValidation.isGTE("probeFields", probeFields.size(), 1);
+        this.inputOperator = inputOperator;
+        this.rowType = rowType;
+        this.probeFields = probeFields;
+        this.hashTableBindingPosition = hashTableBindingPosition;
+    }
+
+    // Class state
+
+    private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: Partition_HashTable open");
+    private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: Partition_HashTable next");
+    private static final Logger LOG = LoggerFactory.getLogger(Partition_HashTable.class);
+
+    // Object state
+
+    private final Operator inputOperator;
+    private final RowType rowType;
+    private final List<TPreparedExpression> probeFields;
+    private final int hashTableBindingPosition;
+
+    @Override
+    public CompoundExplainer getExplainer(ExplainContext context)
+    {
+        Attributes atts = new Attributes();
+        atts.put(Label.NAME, PrimitiveExplainer.getInstance(getName()));
+        atts.put(Label.BINDING_POSITION, PrimitiveExplainer.getInstance(hashTableBindingPosition));
+        atts.put(Label.INPUT_OPERATOR, inputOperator.getExplainer(context));
+        for (TPreparedExpression field : probeFields) {
+            atts.put(Label.EXPRESSIONS, field.getExplainer(context));
+        }
+        return new CompoundExplainer(Type.HASH_JOIN, atts);
+    }
+
+    // Inner classes
+
+    private class Execution extends ChainedCursor
+    {
+        // Cursor interface
+
+        @Override
+        public void open()
+        {
+            TAP_OPEN.in();
+            try {
+                super.open();
+                hashTable = bindings.getHashTable(hashTableBindingPosition);
+                inputDone = false;
+            } finally {
+                TAP_OPEN.out();
+            }
+        }
+
+        @Override
+        public Row next()
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                checkQueryCancelation();
+                Row row = null;
+                while (!inputDone) {
+                    row = input.next();
+                    if (row == null) {
+                        inputDone = true;
+                        break;
+                    }
+                    if (row.rowType() != rowType) {
+                        break;
+                    }
+                    int partition = hashTable.spilledPartition(row, evaluatableProbeFields, bindings);
+                    if (partition < 0) {
+                        break;
+                    }
+                    holdBack(partition, row);
+                    row = null;
+                }
+                if (inputDone) {
+                    row = nextHeldBack();
+                    if (row == null) {
+                        setIdle();
+                    }
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("Partition_HashTable: yield {}", row);
+                }
+                return row;
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            try {
+                closeHeldBack();
+                hashTable = null;
+            } finally {
+                super.close();
+            }
+        }
+
+        // Execution interface
+
+        Execution(QueryContext context, Cursor input)
+        {
+            super(context, input);
+            for (TPreparedExpression probeField : probeFields) {
+                evaluatableProbeFields.add(probeField.build());
+            }
+        }
+
+        // For use by this class
+
+        private void holdBack(int partition, Row row)
+        {
+            SpillFile file = heldBack.get(partition);
+            if (file == null) {
+                file = new SpillFile(context, "probe");
+                heldBack.put(partition, file);
+            }
+            file.startRecord();
+            for (int i = 0; i < rowType.nFields(); i++) {
+                file.append(row.value(i));
+            }
+            file.endRecord();
+        }
+
+        private Row nextHeldBack()
+        {
+            while (true) {
+                if (reader == null) {
+                    if (heldBack.isEmpty()) {
+                        return null;
+                    }
+                    current = heldBack.remove(heldBack.firstKey());
+                    reader = current.reader();
+                }
+                if (reader.next()) {
+                    ValuesHolderRow row = new ValuesHolderRow(rowType);
+                    for (int i = 0; i < rowType.nFields(); i++) {
+                        reader.read(rowType.typeAt(i), row.valueAt(i));
+                    }
+                    return row;
+                }
+                reader.close();
+                reader = null;
+                current.close();
+                current = null;
+            }
+        }
+
+        private void closeHeldBack()
+        {
+            if (reader != null) {
+                reader.close();
+                reader = null;
+            }
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+            for (SpillFile file : heldBack.values()) {
+                file.close();
+            }
+            heldBack.clear();
+        }
+
+        // Object state
+
+        private final List<TEvaluatableExpression> evaluatableProbeFields = new ArrayList<>();
+        private final SortedMap<Integer,SpillFile> heldBack = new TreeMap<>();
+        private HashTable hashTable;
+        private boolean inputDone;
+        private SpillFile current;
+        private SpillFile.Reader reader;
+    }
+}
@@ -180,7 +180,7 @@ class Project_Default extends Operator
 
     // Inner classes
 
-    private class Execution extends ChainedCursor
+    private class Execution extends ChainedCursor implements BatchCursor
     {
         // Cursor interface
         
@@ -228,6 +228,42 @@ class Project_Default extends Operator
             }
         }
 
+        // BatchCursor interface
+
+        @Override
+        public void nextBatch(RowBatch batch)
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                checkQueryCancelation();
+                if (batch.fill(input)) {
+                    // Projected rows evaluate lazily into their evaluations, so
+                    // each position in the batch gets its own to keep all the
+                    // rows valid together.
+                    for (int i = 0; i < batch.size(); i++) {
+                        Row inputRow = batch.get(i);
+                        if (inputRow.rowType() == rowType) {
+                            batch.set(i, new ProjectedRow(projectType, inputRow, context, bindings, batchEvalExpr(i)));
+                        }
+                    }
+                }
+                else {
+                    setIdle();
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("Project_Default: yield {}", batch);
+                }
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
 
         // Execution interface
 
@@ -239,9 +275,21 @@ class Project_Default extends Operator
                 pEvalExpr = ProjectedRow.createTEvaluatableExpressions(pExpressions);
             else
                 pEvalExpr = null;
+            batchEvalExprs.add(pEvalExpr);
+        }
+
+        // For use by this class
+
+        private List<TEvaluatableExpression> batchEvalExpr(int position)
+        {
+            while (batchEvalExprs.size() <= position) {
+                batchEvalExprs.add(ProjectedRow.createTEvaluatableExpressions(pExpressions));
+            }
+            return batchEvalExprs.get(position);
         }
 
         // Object state
         private List<TEvaluatableExpression> pEvalExpr = null;
+        private final List<List<TEvaluatableExpression>> batchEvalExprs = new ArrayList<>();
     }
 }
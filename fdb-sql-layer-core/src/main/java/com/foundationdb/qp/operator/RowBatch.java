@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.ImmutableRow;
+import com.foundationdb.qp.row.Row;
+
+import java.util.Arrays;
+
+/** A reusable array of rows passed between cursors by {@link BatchCursor#nextBatch}. */
+public final class RowBatch
+{
+    private final Row[] rows;
+    private int size, limit;
+
+    public RowBatch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Batch capacity " + capacity);
+        }
+        this.rows = new Row[capacity];
+        this.limit = capacity;
+    }
+
+    public int capacity() {
+        return rows.length;
+    }
+
+    /** The most rows that the next fill should return. */
+    public int limit() {
+        return limit;
+    }
+
+    public void limit(int limit) {
+        this.limit = Math.max(Math.min(limit, rows.length), 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return (size == 0);
+    }
+
+    public boolean isFull() {
+        return (size >= limit);
+    }
+
+    public Row get(int i) {
+        assert (i < size) : i;
+        return rows[i];
+    }
+
+    public void set(int i, Row row) {
+        assert (i < size) : i;
+        rows[i] = row;
+    }
+
+    public void add(Row row) {
+        assert (size < limit) : this;
+        rows[size++] = row;
+    }
+
+    /** Keep only the first <code>size</code> rows. */
+    public void truncate(int size) {
+        assert (size <= this.size) : size;
+        Arrays.fill(rows, size, this.size, null);
+        this.size = size;
+    }
+
+    /** Drop all rows and restore the limit to the full capacity. */
+    public void clear() {
+        truncate(0);
+        limit = rows.length;
+    }
+
+    /**
+     * Replace the contents of this batch with the next rows from
+     * <code>cursor</code>, a batch at a time if it supports that and
+     * one {@link RowCursor#next} at a time otherwise.
+     *
+     * A row from <code>next()</code> need only be valid until the one
+     * after it is read, but every row in a batch must be valid until the
+     * batch is filled again. Store rows are not reused, so only rows
+     * computed from bindings and shared evaluations, such as projections,
+     * are copied, as {@link Map_NestedLoops} does for rows it holds onto.
+     *
+     * @return <code>false</code> if the cursor had no more rows.
+     */
+    public boolean fill(RowCursor cursor) {
+        truncate(0);
+        if (cursor instanceof BatchCursor) {
+            ((BatchCursor)cursor).nextBatch(this);
+        }
+        else {
+            Row row;
+            while (!isFull() && ((row = cursor.next()) != null)) {
+                if (row.isBindingsSensitive()) {
+                    row = ImmutableRow.buildImmutableRow(row);
+                }
+                add(row);
+            }
+        }
+        return !isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + size + "/" + limit + "/" + rows.length + ")";
+    }
+}
@@ -22,6 +22,7 @@ import com.foundationdb.qp.rowtype.IndexRowType;
 import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.server.explain.*;
 import com.foundationdb.server.types.aksql.aktypes.AkBool;
+import com.foundationdb.server.types.texpressions.TComposedExpression;
 import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
 import com.foundationdb.server.types.texpressions.TPreparedExpression;
 import com.foundationdb.util.ArgumentValidation;
@@ -235,7 +236,7 @@ class Select_HKeyOrdered extends Operator
         Execution(QueryContext context, Cursor input)
         {
             super(context, input);
-            this.pEvaluation = pPredicate.build();
+            this.pEvaluation = TComposedExpression.compose(pPredicate);
         }
 
         // Object state
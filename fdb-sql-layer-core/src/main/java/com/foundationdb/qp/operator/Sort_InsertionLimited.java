@@ -17,17 +17,13 @@
 
 package com.foundationdb.qp.operator;
 
-import com.foundationdb.qp.row.ImmutableRow;
 import com.foundationdb.qp.row.Row;
 import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.server.explain.*;
 import com.foundationdb.server.explain.std.SortOperatorExplainer;
-import com.foundationdb.server.types.value.ValueSource;
-import com.foundationdb.server.types.value.ValueSources;
-import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
 import com.foundationdb.util.ArgumentValidation;
-import com.foundationdb.util.WrappingByteSource;
 import com.foundationdb.util.tap.InOutTap;
+import com.foundationdb.qp.storeadapter.Sorter;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,7 +34,7 @@ import java.util.*;
  <h1>Overview</h1>
 
  Sort_InsertionLimited provides the first N rows of an input stream after sorting. It is a particularly efficient
- form of sort because it can track the N rows in memory (unless N is too large).
+ form of sort because it only needs to track N rows, and can discard most others as soon as they arrive.
 
  <h1>Arguments</h1>
 
@@ -53,7 +49,11 @@ import java.util.*;
  <h1>Behavior</h1>
 
  All input rows are examined, and the top limit of them are kept. These rows are emitted in order after the input
- stream has been consumed.
+ stream has been consumed. Rows that sort the same are emitted in the order in which they arrived.
+
+ The sort is done by a limited {@link Sorter} from the underlying {@link StoreAdapter}, which packs the sort
+ values of each row into a key, and keeps the best limit keys in a bounded binary heap. Each new key is compared
+ with the current last one, and the row is discarded without being copied if it does not sort before it.
 
  <h1>Output</h1>
 
@@ -64,17 +64,17 @@ import java.util.*;
 
  All input rows are of type sortType.
 
- The limit can be any value, but the sort is done in memory, so bad things (like swapping) will occur if the limit
- is "too large".
+ The limit can be any value. If the kept rows do not fit in the sort memory (<code>fdbsql.sort.memory</code>), the
+ sort falls back to an external merge sort, as for Sort_General, of which only the first limit rows are read.
 
  <h1>Performance</h1>
 
- Sort_InsertionLimited does no IO. For each row, a sorted set of rows is maintained, requiring O(log(limit)) comparisons
- per row.
+ Sort_InsertionLimited does no IO unless the kept rows outgrow the sort memory. For each row, a heap of keys is
+ maintained, requiring O(log(limit)) comparisons per row that is kept, and one comparison per row that is not.
 
  <h1>Memory Requirements</h1>
 
- Up to limit rows are kept in memory.
+ Up to limit rows are kept in memory, or the sort memory if less.
 
  */
 
@@ -145,6 +145,7 @@ class Sort_InsertionLimited extends Operator
     
     private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: Sort_InsertionLimited open");
     private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: Sort_InsertionLimited next");
+    private static final InOutTap TAP_LOAD = OPERATOR_TAP.createSubsidiaryTap("operator: Sort_InsertionLimited load");
     private static final Logger LOG = LoggerFactory.getLogger(Sort_InsertionLimited.class);
 
     // Object state
@@ -165,8 +166,6 @@ class Sort_InsertionLimited extends Operator
 
     // Inner classes
 
-    private enum State { CLOSED, FILLING, EMPTYING }
-
     private class Execution extends ChainedCursor
     {
         // Cursor interface
@@ -177,15 +176,13 @@ class Sort_InsertionLimited extends Operator
             TAP_OPEN.in();
             try {
                 super.open();
-                sortingState = State.FILLING;
-                for (TEvaluatableExpression eval : tEvaluations) {
-                    eval.with(context);
-                    eval.with(bindings);
-                }
-                sorted = new TreeSet<>();
-                if(limit <= 0) {
+                if (limit <= 0) {
                     setIdle();
-                    sortingState = State.CLOSED;
+                }
+                else {
+                    output = new SorterToCursorAdapter(adapter(), context, bindings, input, sortType, ordering,
+                                                       sortOption, TAP_LOAD, limit);
+                    output.open();
                 }
             } finally {
                 TAP_OPEN.out();
@@ -195,6 +192,7 @@ class Sort_InsertionLimited extends Operator
         @Override
         public Row next()
         {
+            Row row = null;
             if (TAP_NEXT_ENABLED) {
                 TAP_NEXT.in();
             }
@@ -203,232 +201,42 @@ class Sort_InsertionLimited extends Operator
                     CursorLifecycle.checkIdleOrActive(this);
                 }
                 checkQueryCancelation();
-                switch (sortingState) {
-                case FILLING:
-                    {
-                        // If duplicates are preserved, the label is different for each row. Otherwise, it stays at 0.
-                        int label = 0;
-                        Row row;
-                        while ((row = input.next()) != null) {
-                            assert row.rowType() == sortType : row;
-                            Holder holder;
-                            holder = new Holder(label, row, tEvaluations);
-                            if (preserveDuplicates) {
-                                label++;
-                            }
-                            if (sorted.size() < limit) {
-                                // Still room: add it in.
-                                holder.freeze();
-                                boolean added = sorted.add(holder);
-                                assert !preserveDuplicates || added;
-                            }
-                            else {
-                                // Current greatest element.
-                                Holder last = sorted.last();
-                                if (last.compareTo(holder) > 0) {
-                                    // New row is less, so keep it
-                                    // instead unless it's already in
-                                    // there (in suppress dups case).
-                                    boolean added = sorted.add(holder);
-                                    if (added) {
-                                        sorted.remove(last);
-                                        last.empty();
-                                        holder.freeze();
-                                    }
-                                    else {
-                                        assert !preserveDuplicates;
-                                    }
-                                }
-                                else {
-                                    // Will not be using new row.
-                                    holder.empty();
-                                }
-                            }
-                        }
-                        iterator = sorted.iterator();
-                        sortingState = State.EMPTYING;
-                    }
-                    /* falls through */
-                case EMPTYING:
-                    Row output;
-                    if (iterator.hasNext()) {
-                        Holder holder = iterator.next();
-                        output = holder.empty();
-                    }
-                    else {
+                if (output != null) {
+                    row = output.next();
+                    if (row == null) {
                         setIdle();
-                        sortingState = State.CLOSED;
-                        output = null;
-                    }
-                    if (LOG_EXECUTION) {
-                        LOG.debug("Sort_InsertionLimited: yield {}", output);
-                    }
-                    return output;
-                case CLOSED:
-                default:
-                    if (LOG_EXECUTION) {
-                        LOG.debug("Sort_InsertionLimited: yield null");
                     }
-                    return null;
                 }
             } finally {
                 if (TAP_NEXT_ENABLED) {
                     TAP_NEXT.out();
                 }
             }
+            if (LOG_EXECUTION) {
+                LOG.debug("Sort_InsertionLimited: yield {}", row);
+            }
+            return row;
         }
 
         @Override
         public void close()
         {
             super.close();
-            if (limit > 0) {
-                if (sorted != null) {
-                    sorted.clear();
-                    sorted = null;
-                    iterator = null;
-                }
-                sortingState = State.CLOSED;
+            if (output != null) {
+                output.close();
+                output = null;
             }
         }
 
-        @Override
-        public boolean isActive()
-        {
-            return sortingState == State.FILLING || sortingState == State.EMPTYING;
-        }
-
         // Execution interface
 
         Execution(QueryContext context, Cursor input)
         {
             super(context, input);
-            int nsort = ordering.sortColumns();
-            tEvaluations = new ArrayList<>(nsort);
-            for (int i = 0; i < nsort; ++i) {
-                TEvaluatableExpression evaluation = ordering.expression(i).build();
-                tEvaluations.add(evaluation);
-            }
         }
 
         // Object state
 
-        private final List<TEvaluatableExpression> tEvaluations;
-        private State sortingState = State.CLOSED;
-        private SortedSet<Holder> sorted;
-        private Iterator<Holder> iterator;
-    }
-
-    // Sortable row holder.
-
-    // Since a SortedSet cannot have two elements that compare as 0,
-    // we never return that, instead ordering things that sort the
-    // same based on their arrival order. For the same reason, we do
-    // not need to overload equals().
-    private class Holder implements Comparable<Holder> {
-        private int index;
-        private Row row;
-        private Comparable[] values;
-
-        public Holder(int index, Row arow, List<TEvaluatableExpression> evaluations) {
-            this.index = index;
-            this.row = arow;
-
-            values = new Comparable[ordering.sortColumns()];
-            for (int i = 0; i < values.length; i++) {
-                TEvaluatableExpression evaluation = evaluations.get(i);
-                evaluation.with(arow);
-                evaluation.evaluate();
-                values[i] = toObject(evaluation.resultValue());
-            }
-        }
-
-        public Row empty() {
-            Row result = row;
-            row = null;
-            return result;
-        }
-
-        // Make sure the Row we save doesn't depend on bindings that may change.
-        public void freeze() {
-            if (row.isBindingsSensitive()) {
-                row = ImmutableRow.buildImmutableRow(row);
-            }
-        }
-
-        @SuppressWarnings("unchecked")
-        public int compareTo(Holder other) {
-            for (int i = 0; i < values.length; i++) {
-                Comparable v1 = values[i];
-                Comparable v2 = other.values[i];
-                int less, greater;
-                if (ordering.ascending(i)) {
-                    less = -1;
-                    greater = +1;
-                }
-                else {
-                    less = +1;
-                    greater = -1;
-                }
-                if (v1 == null) {
-                    if (v2 == null) {
-                        continue;
-                    }
-                    else {
-                        return less;
-                    }
-                }
-                else if (v2 == null) {
-                    return greater;
-                }
-                int comp;
-                if (ordering.collator(i) == null) {
-                    comp = v1.compareTo(v2);
-                }
-                else {
-                    comp = ordering.collator(i).compare(v1.toString(), v2.toString());
-                }
-                if (comp != 0) {
-                    if (comp < 0)
-                        return less;
-                    else
-                        return greater;
-                }
-            }
-            return index - other.index;
-        }
-
-        public String toString() {
-            return row.toString();
-        }
-
-        private Comparable toObject(ValueSource valueSource) {
-            if (valueSource.isNull())
-                return null;
-            switch (ValueSources.underlyingType(valueSource)) {
-            case BOOL:
-                return valueSource.getBoolean();
-            case INT_8:
-                return valueSource.getInt8();
-            case INT_16:
-                return valueSource.getInt16();
-            case UINT_16:
-                return valueSource.getUInt16();
-            case INT_32:
-                return valueSource.getInt32();
-            case INT_64:
-                return valueSource.getInt64();
-            case FLOAT:
-                return valueSource.getFloat();
-            case DOUBLE:
-                return valueSource.getDouble();
-            case BYTES:
-                return new WrappingByteSource(valueSource.getBytes());
-            case STRING:
-                return valueSource.getString();
-            default:
-                throw new AssertionError(valueSource.getType());
-            }
-        }
+        private RowCursor output;
     }
 }
@@ -34,7 +34,7 @@ class SorterToCursorAdapter extends RowCursorImpl
     public void open()
     {
         super.open();
-        sorter = adapter.createSorter(context, bindings, input, rowType, ordering, sortOption, loadTap);
+        sorter = adapter.createSorter(context, bindings, input, rowType, ordering, sortOption, loadTap, limit);
         cursor = sorter.sort();
         cursor.open();
         state = CursorLifecycle.CursorState.ACTIVE;
@@ -78,6 +78,22 @@ class SorterToCursorAdapter extends RowCursorImpl
                                  API.Ordering ordering,
                                  API.SortOption sortOption,
                                  InOutTap loadTap)
+    {
+        this(adapter, context, bindings, input, rowType, ordering, sortOption, loadTap, -1);
+    }
+
+    /**
+     * Only the first <code>limit</code> rows are produced, or all of them if it is negative.
+     */
+    public SorterToCursorAdapter(StoreAdapter adapter,
+                                 QueryContext context,
+                                 QueryBindings bindings,
+                                 RowCursor input,
+                                 RowType rowType,
+                                 API.Ordering ordering,
+                                 API.SortOption sortOption,
+                                 InOutTap loadTap,
+                                 int limit)
     {
         this.adapter = adapter;
         this.context = context;
@@ -87,6 +103,7 @@ class SorterToCursorAdapter extends RowCursorImpl
         this.ordering = ordering;
         this.sortOption = sortOption;
         this.loadTap = loadTap;
+        this.limit = limit;
     }
 
     private final StoreAdapter adapter;
@@ -97,6 +114,7 @@ class SorterToCursorAdapter extends RowCursorImpl
     private final API.Ordering ordering;
     private final API.SortOption sortOption;
     private final InOutTap loadTap;
+    private final int limit;
     private Sorter sorter;
     private RowCursor cursor;
 }
@@ -57,6 +57,15 @@ public abstract class StoreAdapter
                                              IndexScanSelector scanSelector,
                                              boolean openAllSubCursors);
     
+    /**
+     * Whether cursors created by this adapter can be opened and read on
+     * threads other than the session's own, concurrently with each other,
+     * within the current transaction of <code>context</code>.
+     */
+    public boolean supportsParallelScan(QueryContext context) {
+        return false;
+    }
+
     public abstract void updateRow(Row oldRow, Row newRow);
 
     public void writeRow(Row newRow) {
@@ -67,13 +76,25 @@ public abstract class StoreAdapter
     
     public abstract void deleteRow (Row oldRow, boolean cascadeDelete);
 
+    public Sorter createSorter(QueryContext context,
+                               QueryBindings bindings,
+                               RowCursor input,
+                               RowType rowType,
+                               API.Ordering ordering,
+                               API.SortOption sortOption,
+                               InOutTap loadTap) {
+        return createSorter(context, bindings, input, rowType, ordering, sortOption, loadTap, -1);
+    }
+
+    /** Create a sorter that only produces the first <code>limit</code> rows, or all of them if it is negative. */
     public abstract Sorter createSorter(QueryContext context,
                                         QueryBindings bindings,
                                         RowCursor input,
                                         RowType rowType,
                                         API.Ordering ordering,
                                         API.SortOption sortOption,
-                                        InOutTap loadTap);
+                                        InOutTap loadTap,
+                                        int limit);
 
     public long getQueryTimeoutMilli() {
         return config.queryTimeoutMilli();
@@ -104,6 +104,7 @@ class Using_HashTable extends Operator
     private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: Using_HashTable open");
     private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: Using_HashTable next");
     private static final Logger LOG = LoggerFactory.getLogger(Using_HashTable.class);
+    private static final String MEMORY_PROPERTY = "fdbsql.hash_table.memory";
 
     // Object state
 
@@ -144,7 +145,7 @@ class Using_HashTable extends Operator
                 // Usually super.open called first, but needs to be done
                 // opposite order here to allow Using_HashFilter access
                 // to the filled HashTable in the bindings. 
-                HashTable hashTable = buildHashTable();
+                hashTable = buildHashTable();
                 bindings.setHashTable(tableBindingPosition, hashTable);
                 super.open();
             } finally {
@@ -178,6 +179,10 @@ class Using_HashTable extends Operator
                 if (bindings != null) {
                     bindings.setHashTable(tableBindingPosition, null);
                 }
+                if (hashTable != null) {
+                    hashTable.close();
+                    hashTable = null;
+                }
             } finally {
                 super.close();
             }
@@ -204,12 +209,25 @@ class Using_HashTable extends Operator
             hashTable.setRowType(hashedRowType);
             hashTable.setTComparisons(tComparisons);
             hashTable.setCollators(collators);
+            hashTable.setSpill(context, memoryLimit());
             while ((row = loadCursor.next()) != null) {
                 assert(row.rowType() == hashedRowType) : row;
                 hashTable.put(row, evaluatableComparisonFields, bindings);
             }
             loadCursor.closeTopLevel();
+            if (LOG_EXECUTION && (hashTable.spilledPartitionCount() > 0)) {
+                LOG.debug("Using_HashTable: spilled {} partitions", hashTable.spilledPartitionCount());
+            }
             return hashTable;
         }
+
+        private long memoryLimit() {
+            String prop = context.getServiceManager().getConfigurationService().getProperty(MEMORY_PROPERTY);
+            return Long.parseLong(prop);
+        }
+
+        // Object state
+
+        private HashTable hashTable;
      }
 }
@@ -23,6 +23,7 @@ import com.foundationdb.qp.rowtype.ProjectedRowType;
 import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.server.types.TInstance;
 import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.texpressions.TComposedExpression;
 import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
 import com.foundationdb.server.types.texpressions.TPreparedExpression;
 import com.foundationdb.util.AkibanAppender;
@@ -113,8 +114,8 @@ public class ProjectedRow extends AbstractRow
         int n = pExpressions.size();
         List<TEvaluatableExpression> result = new ArrayList<>(n);
         for (int i = 0; i < n; i++) {
-            TEvaluatableExpression eval = pExpressions.get(i).build();
-            result.add(eval);
+            // A projected row keeps its input row, so a field can just be passed through.
+            result.add(TComposedExpression.compose(pExpressions.get(i)));
         }
         return result;
     }
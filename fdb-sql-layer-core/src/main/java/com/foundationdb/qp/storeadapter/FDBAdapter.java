@@ -52,6 +52,7 @@ import com.foundationdb.server.service.tree.KeyCreator;
 import com.foundationdb.server.store.FDBScanTransactionOptions;
 import com.foundationdb.server.store.FDBStore;
 import com.foundationdb.server.store.FDBTransactionService;
+import com.foundationdb.sql.server.ServerTransaction;
 import com.foundationdb.util.tap.InOutTap;
 import com.foundationdb.FDBException;
 
@@ -114,6 +115,15 @@ public class FDBAdapter extends StoreAdapter {
                 openAllSubCursors);
     }
     
+    @Override
+    public boolean supportsParallelScan(QueryContext context) {
+        // FDB transactions can be read from any number of threads at once,
+        // but not while one of them might commit and reset the shared
+        // transaction state underneath the others.
+        return !scanOptions().isCommitting() &&
+               (context.getTransactionPeriodicallyCommit() == ServerTransaction.PeriodicallyCommit.OFF);
+    }
+
     @Override
     public void updateRow(Row oldRow, Row newRow) {
         try {
@@ -151,8 +161,9 @@ public class FDBAdapter extends StoreAdapter {
                                RowType rowType,
                                API.Ordering ordering,
                                API.SortOption sortOption,
-                               InOutTap loadTap) {
-        return new MergeJoinSorter(context, bindings, input, rowType, ordering, sortOption, loadTap);
+                               InOutTap loadTap,
+                               int limit) {
+        return new MergeJoinSorter(context, bindings, input, rowType, ordering, sortOption, loadTap, limit);
     }
 
     @Override
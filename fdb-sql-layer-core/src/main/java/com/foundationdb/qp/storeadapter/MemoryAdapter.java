@@ -80,6 +80,12 @@ public class MemoryAdapter extends StoreAdapter
                                         openAllSubCursors);
     }
 
+    @Override
+    public boolean supportsParallelScan(QueryContext context) {
+        // Snapshot reads, and recording them, are safe from any number of threads.
+        return true;
+    }
+
     @Override
     public void updateRow(Row oldRow, Row newRow) {
         try {
@@ -117,8 +123,9 @@ public class MemoryAdapter extends StoreAdapter
                                RowType rowType,
                                Ordering ordering,
                                SortOption sortOption,
-                               InOutTap loadTap) {
-        return new MergeJoinSorter(context, bindings, input, rowType, ordering, sortOption, loadTap);
+                               InOutTap loadTap,
+                               int limit) {
+        return new MergeJoinSorter(context, bindings, input, rowType, ordering, sortOption, loadTap, limit);
     }
 
     @Override
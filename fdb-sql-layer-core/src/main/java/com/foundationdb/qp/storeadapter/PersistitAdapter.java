@@ -94,9 +94,10 @@ public class PersistitAdapter extends StoreAdapter
                                RowType rowType,
                                API.Ordering ordering,
                                API.SortOption sortOption,
-                               InOutTap loadTap)
+                               InOutTap loadTap,
+                               int limit)
     {
-        return new MergeJoinSorter(context, bindings, input, rowType, ordering, sortOption, loadTap);
+        return new MergeJoinSorter(context, bindings, input, rowType, ordering, sortOption, loadTap, limit);
     }
 
 
@@ -23,9 +23,13 @@ import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
 
 import com.fasterxml.sort.IterableSorterException;
 import com.fasterxml.sort.IteratingSorter;
@@ -49,6 +53,8 @@ import com.foundationdb.server.types.TInstance;
 import com.foundationdb.server.types.common.types.TString;
 import com.foundationdb.server.types.value.ValueSource;
 import com.foundationdb.util.tap.InOutTap;
+import com.foundationdb.util.tap.PointTap;
+import com.foundationdb.util.tap.Tap;
 import com.persistit.Key;
 import com.persistit.KeyState;
 import com.persistit.Persistit;
@@ -79,6 +85,11 @@ import org.slf4j.LoggerFactory;
  * into one file, the rows are read from the file in sorted order. 
  * 
  * If the initial input stream does not produce enough data to overflow the memory pool, no disk files will be produced. 
+ * In that case the rows are sorted in memory: the sort fields of each row are packed into a single normalized key,
+ * whose unsigned bytes compare in the order of the sort, descending fields having their bytes complemented. The keys
+ * and row values are appended to one contiguous buffer, and an array of offsets, prefixed by the first bytes of
+ * each key, is merge sorted in place. Only if the buffer outgrows the memory pool are its rows and the rest of the
+ * input handed to the merge sort, which writes its runs to disk.
  *
  * <h1>Performance</h1>
  *
@@ -93,10 +104,20 @@ import org.slf4j.LoggerFactory;
  *
  * The MergeJoinSorter allocates a single memory buffer for each instance to perform an initial sort,
  * defaulting to 40MB in size. 
+ *
+ * <h1>Limited Sorts</h1>
+ *
+ * When constructed with a limit, only the first limit rows are produced. The sort keys are kept in a binary
+ * heap bounded by the limit, whose root is the current last row. Each input row's key is compared against the root
+ * before its row value is built, so that most rows of a large input are discarded without being kept. Rows with
+ * equal keys keep their arrival order. If the heap grows past the same memory pool size, its contents and the rest
+ * of the input are handed to the merge sort instead, still discarding rows past the root if the heap was full. The
+ * arrival order then goes along as one more key segment, since the merge is not stable.
 */
 
 public class MergeJoinSorter implements Sorter {
     private static final Logger LOG = LoggerFactory.getLogger(MergeJoinSorter.class);
+    private static final PointTap TAP_SPILL = Tap.createCount("sort: spill");
 
     private QueryContext context;
     private QueryBindings bindings;
@@ -112,6 +133,7 @@ public class MergeJoinSorter implements Sorter {
     private Key sortKey;
     private Comparator<SortKey> compare;
     private API.SortOption sortOption;
+    private final int limit;
     
     public MergeJoinSorter (QueryContext context,
             QueryBindings bindings,
@@ -120,6 +142,19 @@ public class MergeJoinSorter implements Sorter {
             API.Ordering ordering,
             API.SortOption sortOption,
             InOutTap loadTap)
+    {
+        this(context, bindings, input, rowType, ordering, sortOption, loadTap, -1);
+    }
+
+    /** Only produce the first <code>limit</code> rows, or all of them if it is negative. */
+    public MergeJoinSorter (QueryContext context,
+            QueryBindings bindings,
+            RowCursor input,
+            RowType rowType,
+            API.Ordering ordering,
+            API.SortOption sortOption,
+            InOutTap loadTap,
+            int limit)
     {
         this.context = context;
         this.bindings = bindings;
@@ -128,11 +163,14 @@ public class MergeJoinSorter implements Sorter {
         this.ordering = ordering.copy();
         this.loadTap = loadTap;
         this.sortOption = sortOption;
+        this.limit = limit;
         
         this.sortKey = context.getStore().getKeyCreator().createKey(); 
         this.sorterAdapter = new ValueSorterAdapter();
         // Note: init may change this.ordering
-        sorterAdapter.init(rowType, this.ordering, this.sortKey, null, this.context, this.bindings, sortOption);
+        // A limited sort orders equal keys by arrival itself, so it does not need the appended row count.
+        sorterAdapter.init(rowType, this.ordering, this.sortKey, null, this.context, this.bindings,
+                           (limit < 0) ? sortOption : API.SortOption.SUPPRESS_DUPLICATES);
         // Explicitly use input ordering to avoid appended field
         this.orderChanges = new ArrayList<>();
         List<Comparator<KeyState>> comparators = new ArrayList<>();
@@ -151,7 +189,12 @@ public class MergeJoinSorter implements Sorter {
     @Override
     public RowCursor sort() {
         try {
-            loadTree();
+            if (limit < 0) {
+                loadTree();
+            }
+            else {
+                loadLimited();
+            }
         } catch (IOException e) {
             throw new MergeSortIOException(e);
         }
@@ -168,15 +211,108 @@ public class MergeJoinSorter implements Sorter {
     }
     
     private void loadTree() throws IOException {
-        iteratingSorter = new IteratingSorter<>(getSortConfig(new MergeTempFileProvider(context)),
-                                                new KeyReaderFactory(),
-                                                new KeyWriterFactory(),
-                                                compare);
-        sortIterator = iteratingSorter.sort(new KeyReadCursor(input));
+        KeyReadCursor reader = new KeyReadCursor(input, true);
+        long maxMemory = Math.min(getMaxMemory(), MAX_BUFFER_SIZE);
+        NormalizedSortBuffer buffer = new NormalizedSortBuffer(maxMemory);
+        SortKey key;
+        while ((key = reader.readNext()) != null) {
+            buffer.add(key);
+            if (buffer.memory() > maxMemory) {
+                LOG.debug("Sort exceeded {} bytes after {} rows", maxMemory, reader.rowCount());
+                TAP_SPILL.hit();
+                iteratingSorter = new IteratingSorter<>(getSortConfig(new MergeTempFileProvider(context)),
+                                                        new KeyReaderFactory(),
+                                                        new KeyWriterFactory(),
+                                                        NORMALIZED_COMPARE);
+                sortIterator = iteratingSorter.sort(new BufferedSpillReader(buffer.iterator(), reader, null, -1));
+                return;
+            }
+        }
+        buffer.sort();
+        sortIterator = buffer.iterator();
+    }
+    
+    private void loadLimited() throws IOException {
+        if (limit == 0) {
+            sortIterator = Collections.<SortKey>emptyList().iterator();
+            return;
+        }
+        KeyReadCursor reader = new KeyReadCursor(input);
+        long maxMemory = getMaxMemory();
+        Comparator<LimitedKey> limitedCompare = new LimitedKeyCompare(compare);
+        PriorityQueue<LimitedKey> heap = new PriorityQueue<>(Math.max(1, Math.min(limit, INITIAL_HEAP_CAPACITY)),
+                                                             Collections.reverseOrder(limitedCompare));
+        Set<LimitedKey> distinct = (sortOption == API.SortOption.SUPPRESS_DUPLICATES) ? new HashSet<LimitedKey>() : null;
+        long memory = 0;
+        int rowCount = 0;
+        while (true) {
+            loadTap.in();
+            try {
+                Row row = input.next();
+                context.checkQueryCancelation();
+                if (row == null) {
+                    break;
+                }
+                LimitedKey key = new LimitedKey(new SortKey(reader.createKey(row, rowCount), null), rowCount);
+                ++rowCount;
+                if ((heap.size() >= limit) &&
+                    (limitedCompare.compare(key, heap.peek()) >= 0)) {
+                    continue;
+                }
+                if ((distinct != null) && !distinct.add(key)) {
+                    continue;
+                }
+                key.sortKey.rowValue = reader.createValue(row);
+                heap.add(key);
+                memory += key.sortKey.getSize() + HEAP_ENTRY_OVERHEAD;
+                if (heap.size() > limit) {
+                    LimitedKey last = heap.poll();
+                    if (distinct != null) {
+                        distinct.remove(last);
+                    }
+                    memory -= last.sortKey.getSize() + HEAP_ENTRY_OVERHEAD;
+                }
+            } finally {
+                loadTap.out();
+            }
+            if (memory > maxMemory) {
+                LOG.debug("Limited sort of {} rows exceeded {} bytes after {} rows", new Object[] { limit, maxMemory, rowCount });
+                TAP_SPILL.hit();
+                SortKey bound = (heap.size() >= limit) ? heap.peek().sortKey : null;
+                List<SortKey> buffered = new ArrayList<>(heap.size());
+                for (LimitedKey key : heap) {
+                    buffered.add(withArrival(key.sortKey, key.index));
+                }
+                heap.clear();
+                iteratingSorter = new IteratingSorter<>(getSortConfig(new MergeTempFileProvider(context)),
+                                                        new KeyReaderFactory(),
+                                                        new KeyWriterFactory(),
+                                                        new ArrivalCompare(compare));
+                sortIterator = iteratingSorter.sort(new BufferedSpillReader(buffered.iterator(), reader, bound, rowCount));
+                return;
+            }
+        }
+        LimitedKey[] keys = heap.toArray(new LimitedKey[heap.size()]);
+        Arrays.sort(keys, limitedCompare);
+        List<SortKey> sorted = new ArrayList<>(keys.length);
+        for (LimitedKey key : keys) {
+            sorted.add(key.sortKey);
+        }
+        sortIterator = sorted.iterator();
     }
     
+    /** A copy of <code>key</code> with <code>index</code> appended as its last segment. */
+    private SortKey withArrival(SortKey key, int index) {
+        List<KeyState> states = new ArrayList<>(key.sortKeys.size() + 1);
+        states.addAll(key.sortKeys);
+        sortKey.clear();
+        sortKey.append(index);
+        states.add(new KeyState(sortKey));
+        return new SortKey(states, key.rowValue);
+    }
+
     private RowCursor cursor() {
-        return new KeyFinalCursor(sortIterator, rowType, sortOption, compare);
+        return new KeyFinalCursor(sortIterator, rowType, sortOption, (limit < 0) ? NORMALIZED_COMPARE : compare, limit);
     }
 
     public KeyReadCursor readCursor() { 
@@ -184,8 +320,11 @@ public class MergeJoinSorter implements Sorter {
     }
     
     private SortConfig getSortConfig (MergeTempFileProvider tmpFileProvider) {
-        long maxMemory = Long.parseLong(context.getServiceManager().getConfigurationService().getProperty("fdbsql.sort.memory"));
-        return new SortConfig().withTempFileProvider(tmpFileProvider).withMaxMemoryUsage(maxMemory);
+        return new SortConfig().withTempFileProvider(tmpFileProvider).withMaxMemoryUsage(getMaxMemory());
+    }
+
+    private long getMaxMemory() {
+        return Long.parseLong(context.getServiceManager().getConfigurationService().getProperty("fdbsql.sort.memory"));
     }
     /*
      * Base class for reading/writing bytes - 
@@ -323,8 +462,18 @@ public class MergeJoinSorter implements Sorter {
         private PersistitValueValueTarget valueTarget;
         private RowCursor input;
         boolean done = false;
+        private final boolean normalized;
         
         public KeyReadCursor (RowCursor input) {
+            this(input, false);
+        }
+
+        /**
+         * If <code>normalized</code>, each key is a single segment that compares as unsigned bytes.
+         * @see #createNormalizedKey
+         */
+        public KeyReadCursor (RowCursor input, boolean normalized) {
+            this.normalized = normalized;
             this.rowFields = rowType.nFields();
             this.tFieldTypes = new TInstance[rowFields];
             this.collators = new AkCollator[rowFields];
@@ -362,7 +511,8 @@ public class MergeJoinSorter implements Sorter {
     
                 if (row != null) {
                     ++rowCount;
-                    sortKey = new SortKey (createKey(row, rowCount), createValue(row));
+                    sortKey = new SortKey (normalized ? createNormalizedKey(row, rowCount) : createKey(row, rowCount),
+                                           createValue(row));
                 } else {
                     done = true;
                 }
@@ -398,6 +548,39 @@ public class MergeJoinSorter implements Sorter {
             return Arrays.asList(states);
         }
 
+        /*
+         * The key segments run together into a single one, with the
+         * bytes of descending segments complemented. Persistit keys
+         * end each field with a zero byte that does not occur inside
+         * it, so no segment is a prefix of another with the same
+         * fields, and unsigned byte order is preserved or reversed.
+         */
+        private List<KeyState> createNormalizedKey(Row row, int rowCount) {
+            List<KeyState> states = createKey(row, rowCount);
+            if ((states.size() == 1) && ordering.ascending(0)) {
+                return states;
+            }
+            int size = 0;
+            for (KeyState state : states) {
+                size += state.getBytes().length;
+            }
+            byte[] bytes = new byte[size];
+            int pos = 0;
+            for (int i = 0; i < states.size(); i++) {
+                byte[] segment = states.get(i).getBytes();
+                if (ordering.ascending(orderChanges.get(i))) {
+                    System.arraycopy(segment, 0, bytes, pos, segment.length);
+                }
+                else {
+                    for (int j = 0; j < segment.length; j++) {
+                        bytes[pos + j] = (byte)~segment[j];
+                    }
+                }
+                pos += segment.length;
+            }
+            return Collections.singletonList(new KeyState(bytes));
+        }
+
         private static final int SIZE_GRANULARITY = 256;
         private Value createValue(Row row)
         {
@@ -561,12 +744,19 @@ public class MergeJoinSorter implements Sorter {
         private API.SortOption sortOption;
         private Comparator<SortKey> compare;
         private SortKey nextKey;
+        private final int limit;
+        private int rowCount;
         
         public KeyFinalCursor(Iterator<SortKey> sortIterator, RowType rowType, API.SortOption sortOption, Comparator<SortKey> compare) {
+            this(sortIterator, rowType, sortOption, compare, -1);
+        }
+
+        public KeyFinalCursor(Iterator<SortKey> sortIterator, RowType rowType, API.SortOption sortOption, Comparator<SortKey> compare, int limit) {
             this.sortIterator = sortIterator;
             this.rowType = rowType;
             this.sortOption = sortOption;
             this.compare = compare;
+            this.limit = limit;
             valueSource = new PersistitValueValueSource();
         }
         
@@ -574,6 +764,9 @@ public class MergeJoinSorter implements Sorter {
         public Row next() {
             CursorLifecycle.checkIdleOrActive(this);
             Row row = null;
+            if (limit >= 0 && rowCount >= limit) {
+                return row;
+            }
             try {
                 SortKey key = (nextKey != null) ? nextKey : (sortIterator.hasNext() ? sortIterator.next() : null);
                 if(key != null) {
@@ -581,6 +774,7 @@ public class MergeJoinSorter implements Sorter {
                         nextKey = skipDuplicates(key);
                     }
                     row = createRow(key);
+                    ++rowCount;
                 }
             } catch(IterableSorterException e) {
                 throw new MergeSortIOException(e.getMessage());
@@ -639,6 +833,297 @@ public class MergeJoinSorter implements Sorter {
         }
     }
 
+    /*
+     * Sort key of a limited sort, with its arrival order for
+     * breaking ties. Equality is that of the key bytes alone, for
+     * suppressing duplicates.
+     */
+    private static class LimitedKey {
+        private final SortKey sortKey;
+        private final int index;
+
+        private LimitedKey(SortKey sortKey, int index) {
+            this.sortKey = sortKey;
+            this.index = index;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof LimitedKey)) {
+                return false;
+            }
+            List<KeyState> other = ((LimitedKey)o).sortKey.sortKeys;
+            if (sortKey.sortKeys.size() != other.size()) {
+                return false;
+            }
+            for (int i = 0; i < other.size(); i++) {
+                if (!Arrays.equals(sortKey.sortKeys.get(i).getBytes(), other.get(i).getBytes())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 1;
+            for (KeyState state : sortKey.sortKeys) {
+                hash = hash * 31 + Arrays.hashCode(state.getBytes());
+            }
+            return hash;
+        }
+    }
+
+    private static class LimitedKeyCompare implements Comparator<LimitedKey> {
+        private final Comparator<SortKey> compare;
+
+        private LimitedKeyCompare(Comparator<SortKey> compare) {
+            this.compare = compare;
+        }
+
+        @Override
+        public int compare(LimitedKey o1, LimitedKey o2) {
+            int val = compare.compare(o1.sortKey, o2.sortKey);
+            if (val == 0) {
+                val = Integer.compare(o1.index, o2.index);
+            }
+            return val;
+        }
+    }
+
+    /*
+     * Spilled keys of a limited sort, whose extra last segment is
+     * the arrival order, for breaking ties.
+     */
+    private static class ArrivalCompare implements Comparator<SortKey> {
+        private final Comparator<SortKey> compare;
+
+        private ArrivalCompare(Comparator<SortKey> compare) {
+            this.compare = compare;
+        }
+
+        @Override
+        public int compare(SortKey o1, SortKey o2) {
+            int val = compare.compare(o1, o2);
+            if (val == 0) {
+                val = ASC_COMPARATOR.compare(o1.sortKeys.get(o1.sortKeys.size() - 1),
+                                             o2.sortKeys.get(o2.sortKeys.size() - 1));
+            }
+            return val;
+        }
+    }
+
+    /*
+     * Input to the merge sort once an in-memory sort has outgrown
+     * memory: the keys kept so far, followed by the rest of the
+     * input rows, less any that cannot come before bound, if any.
+     * Unless arrival is negative, those rows get their arrival
+     * order appended, counting on from it.
+     */
+    private class BufferedSpillReader extends DataReader<SortKey> {
+        private final Iterator<SortKey> buffered;
+        private final KeyReadCursor reader;
+        private final SortKey bound;
+        private int arrival;
+
+        private BufferedSpillReader(Iterator<SortKey> buffered, KeyReadCursor reader, SortKey bound, int arrival) {
+            this.buffered = buffered;
+            this.reader = reader;
+            this.bound = bound;
+            this.arrival = arrival;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Do Nothing;
+        }
+
+        @Override
+        public int estimateSizeInBytes(SortKey arg0) {
+            return arg0.getSize();
+        }
+
+        @Override
+        public SortKey readNext() {
+            if (buffered.hasNext()) {
+                return buffered.next();
+            }
+            SortKey key;
+            do {
+                key = reader.readNext();
+            } while ((key != null) && (bound != null) && (compare.compare(key, bound) >= 0));
+            if ((key != null) && (arrival >= 0)) {
+                key = withArrival(key, arrival++);
+            }
+            return key;
+        }
+    }
+
+    /*
+     * Rows of an unlimited sort while they fit in memory. Each
+     * normalized key and row value are copied into one contiguous
+     * buffer, and the sort permutes an array of entries, each of
+     * which has the first four key bytes above the buffer offset, so
+     * that most comparisons do not need to touch the buffer.
+     */
+    private static class NormalizedSortBuffer {
+        private byte[] data = new byte[INITIAL_BUFFER_SIZE];
+        private int used;
+        private long[] entries = new long[INITIAL_ENTRIES];
+        private int count;
+        private final int capacityLimit;
+
+        private NormalizedSortBuffer(long maxMemory) {
+            this.capacityLimit = (int)maxMemory;
+        }
+
+        public void add(SortKey key) {
+            byte[] keyBytes = key.sortKeys.get(0).getBytes();
+            Value value = key.rowValue;
+            int valueSize = value.getEncodedSize();
+            ensureCapacity(used + 8 + keyBytes.length + valueSize);
+            if (count == entries.length) {
+                entries = Arrays.copyOf(entries, count * 2);
+            }
+            long prefix = 0;
+            for (int i = 0; i < 4; i++) {
+                prefix <<= 8;
+                if (i < keyBytes.length) {
+                    prefix |= keyBytes[i] & 0xFF;
+                }
+            }
+            entries[count++] = (prefix << 32) | used;
+            used = putInt(used, keyBytes.length);
+            System.arraycopy(keyBytes, 0, data, used, keyBytes.length);
+            used += keyBytes.length;
+            used = putInt(used, valueSize);
+            System.arraycopy(value.getEncodedBytes(), 0, data, used, valueSize);
+            used += valueSize;
+        }
+
+        public long memory() {
+            return used + count * 8L;
+        }
+
+        public void sort() {
+            long[] work = Arrays.copyOf(entries, count);
+            mergeSort(work, entries, 0, count);
+        }
+
+        /** Entries in their current order: arrival before {@link #sort}, sorted after. */
+        public Iterator<SortKey> iterator() {
+            return new Iterator<SortKey>() {
+                private int position = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return position < count;
+                }
+
+                @Override
+                public SortKey next() {
+                    int offset = (int)entries[position++];
+                    int keySize = getInt(offset);
+                    offset += 4;
+                    KeyState state = new KeyState(Arrays.copyOfRange(data, offset, offset + keySize));
+                    offset += keySize;
+                    int valueSize = getInt(offset);
+                    offset += 4;
+                    Value value = new Value((Persistit)null);
+                    value.setMaximumSize(valueSize);
+                    value.ensureFit(valueSize);
+                    System.arraycopy(data, offset, value.getEncodedBytes(), 0, valueSize);
+                    value.setEncodedSize(valueSize);
+                    return new SortKey(Collections.singletonList(state), value);
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        // Stable: sorts src[from, to) into dst, using src as scratch space.
+        private void mergeSort(long[] src, long[] dst, int from, int to) {
+            if (to - from <= INSERTION_SORT_THRESHOLD) {
+                for (int i = from + 1; i < to; i++) {
+                    long entry = dst[i];
+                    int j = i;
+                    while ((j > from) && (compareEntries(dst[j - 1], entry) > 0)) {
+                        dst[j] = dst[j - 1];
+                        j--;
+                    }
+                    dst[j] = entry;
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            mergeSort(dst, src, from, mid);
+            mergeSort(dst, src, mid, to);
+            int i = from, j = mid;
+            for (int k = from; k < to; k++) {
+                if ((j >= to) || ((i < mid) && (compareEntries(src[i], src[j]) <= 0))) {
+                    dst[k] = src[i++];
+                }
+                else {
+                    dst[k] = src[j++];
+                }
+            }
+        }
+
+        private int compareEntries(long e1, long e2) {
+            int c = Long.compare(e1 >>> 32, e2 >>> 32);
+            if (c != 0) {
+                return c;
+            }
+            int o1 = (int)e1, o2 = (int)e2;
+            int n1 = getInt(o1), n2 = getInt(o2);
+            int n = Math.min(n1, n2);
+            // The first four bytes, or as many as there are, are known to be equal.
+            for (int i = Math.min(4, n); i < n; i++) {
+                c = (data[o1 + 4 + i] & 0xFF) - (data[o2 + 4 + i] & 0xFF);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return n1 - n2;
+        }
+
+        private void ensureCapacity(int size) {
+            if (size > data.length) {
+                long capacity = Math.max(size, Math.min(data.length * 2L, capacityLimit));
+                data = Arrays.copyOf(data, (int)capacity);
+            }
+        }
+
+        private int putInt(int offset, int value) {
+            data[offset] = (byte)(value >>> 24);
+            data[offset + 1] = (byte)(value >>> 16);
+            data[offset + 2] = (byte)(value >>> 8);
+            data[offset + 3] = (byte)value;
+            return offset + 4;
+        }
+
+        private int getInt(int offset) {
+            return ((data[offset] & 0xFF) << 24) |
+                   ((data[offset + 1] & 0xFF) << 16) |
+                   ((data[offset + 2] & 0xFF) << 8) |
+                   (data[offset + 3] & 0xFF);
+        }
+    }
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final int INITIAL_ENTRIES = 1024;
+    // Leaves room for the entry that goes past the limit without overflowing an int offset.
+    private static final int MAX_BUFFER_SIZE = Integer.MAX_VALUE / 2;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    // Allocated up front for a limited sort, before it grows.
+    private static final int INITIAL_HEAP_CAPACITY = 1024;
+    // Object headers and references of a kept key, in addition to its bytes.
+    private static final int HEAP_ENTRY_OVERHEAD = 128;
+
     private static final Comparator<KeyState> ASC_COMPARATOR = new Comparator<KeyState>() {
         @Override
         public int compare(KeyState k1, KeyState k2) {
@@ -652,4 +1137,8 @@ public class MergeJoinSorter implements Sorter {
             return k2.compareTo(k1);
         }
     };
+
+    // Comparison of normalized keys, which are a single ascending segment.
+    private static final Comparator<SortKey> NORMALIZED_COMPARE =
+        new KeySortCompare(Collections.singletonList(ASC_COMPARATOR));
 }
@@ -18,41 +18,176 @@
 package com.foundationdb.qp.util;
 
 import com.foundationdb.qp.operator.QueryBindings;
+import com.foundationdb.qp.operator.QueryContext;
 import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
 import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.server.collation.AkCollator;
 import com.foundationdb.server.types.TClass;
 import com.foundationdb.server.types.TComparison;
+import com.foundationdb.server.types.TInstance;
 import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
+import com.foundationdb.server.types.value.UnderlyingType;
 import com.foundationdb.server.types.value.Value;
 import com.foundationdb.server.types.value.ValueSource;
 import com.foundationdb.server.types.value.ValueSources;
 import com.foundationdb.server.types.value.ValueTargets;
+import com.foundationdb.util.tap.PointTap;
+import com.foundationdb.util.tap.Tap;
 import com.google.common.collect.ArrayListMultimap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Rows of the build side of a hash join, keyed by their comparison fields.
+ *
+ * <p>The table is split into {@link #PARTITION_COUNT} partitions by key hash.
+ * Once {@link #setSpill} has given it a memory budget and that budget is
+ * exceeded, the largest in-memory partition is written to a {@link SpillFile}
+ * and all further rows for it go straight to disk. A probe that lands in a
+ * spilled partition first checks a small filter of the spilled hash codes
+ * and, if the key might be present, reads that partition back in place of
+ * whichever spilled partition was resident before. The resident partition
+ * counts against the same budget, so loading it can spill others.</p>
+ *
+ * <p>Lookups are driven one outer binding at a time, so it is up to the
+ * probe side to arrive grouped by partition. {@link #spilledPartition} tells
+ * a {@link com.foundationdb.qp.operator.API#partition_HashTable} on the outer
+ * input which rows to hold back, so that each spilled partition is only read
+ * once, as in a grace hash join. Without that, probes are answered in
+ * arrival order and may read the same partition back many times.</p>
+ *
+ * <p>When every key column is an integer type compared without a
+ * {@link TComparison} or collator, keys are kept as <code>long</code>s in an
+ * open-addressing table, with the rows for each key chained through a packed
+ * array, so that neither loading nor probing allocates per row.</p>
+ */
 public class HashTable {
-    private ArrayListMultimap<KeyWrapper, Row> hashTable = ArrayListMultimap.create();
+    private final Partition[] partitions = new Partition[PARTITION_COUNT];
 
     private RowType hashedRowType;
     private List<TComparison> tComparisons;
     private List<AkCollator> collators;
     private boolean matchNulls;
 
-    public List<Row> getMatchingRows(Row row, List<TEvaluatableExpression> evaluatableComparisonFields, QueryBindings bindings){
-        KeyWrapper key = new KeyWrapper(row, evaluatableComparisonFields, bindings);
-        if (!matchNulls && key.isNull())
-            return Collections.emptyList();
-        return hashTable.get(key);
+    private int nkeys = -1;
+    private boolean longKeys;
+    private long[] longKey;
+
+    private QueryContext context;
+    private long memoryLimit = Long.MAX_VALUE;
+    private long memoryUsed;
+    private TInstance[] keyTypes;
+    private Partition resident;
+
+    public HashTable() {
+        for (int i = 0; i < PARTITION_COUNT; i++) {
+            partitions[i] = new Partition(i);
+        }
+    }
+
+    /** The index of the spilled partition that a probe with the comparison
+     * fields evaluated against <code>row</code> and <code>bindings</code>
+     * would need to read back, or -1 if it can be answered from memory.
+     */
+    public int spilledPartition(Row row, List<TEvaluatableExpression> evaluatableComparisonFields, QueryBindings bindings) {
+        if (nkeys < 0)
+            return -1;
+        int hash;
+        if (longKeys) {
+            evaluate(row, evaluatableComparisonFields, bindings);
+            if (!evaluateLongKey(evaluatableComparisonFields))
+                return -1;
+            hash = longHash(longKey);
+        }
+        else {
+            KeyWrapper key = new KeyWrapper(row, evaluatableComparisonFields, bindings);
+            if (!matchNulls && key.isNull())
+                return -1;
+            hash = key.hashKey;
+        }
+        Partition partition = partition(hash);
+        if ((partition.spillFile == null) || (partition == resident) || !partition.mightContain(hash))
+            return -1;
+        return partition.index;
+    }
+
+    /** Position <code>matches</code> on the rows whose key equals the
+     * comparison fields evaluated against <code>row</code> and <code>bindings</code>.
+     */
+    public void findMatchingRows(Matches matches, Row row, List<TEvaluatableExpression> evaluatableComparisonFields, QueryBindings bindings){
+        matches.clear();
+        if (nkeys < 0)
+            return;             // Nothing was ever put.
+        if (longKeys) {
+            evaluate(row, evaluatableComparisonFields, bindings);
+            if (!evaluateLongKey(evaluatableComparisonFields))
+                return;
+            int hash = longHash(longKey);
+            Partition partition = partition(hash);
+            if (partition.spillFile != null) {
+                if (!partition.mightContain(hash))
+                    return;
+                makeResident(partition);
+            }
+            matches.longRows = partition.longRows;
+            matches.position = partition.longRows.find(hash, longKey);
+        }
+        else {
+            KeyWrapper key = new KeyWrapper(row, evaluatableComparisonFields, bindings);
+            if (!matchNulls && key.isNull())
+                return;
+            Partition partition = partition(key.hashKey);
+            if (partition.spillFile != null) {
+                if (!partition.mightContain(key.hashKey))
+                    return;
+                makeResident(partition);
+            }
+            matches.rows = partition.rows.get(key);
+        }
     }
 
     public void put(Row row, List<TEvaluatableExpression> evaluatableComparisonFields, QueryBindings bindings){
-        KeyWrapper key = new KeyWrapper(row, evaluatableComparisonFields, bindings);
-        if (matchNulls || !key.isNull()) {
-            hashTable.put(key, row);
+        if (nkeys < 0) {
+            evaluate(row, evaluatableComparisonFields, bindings);
+            chooseKeys(evaluatableComparisonFields);
+        }
+        if (longKeys) {
+            evaluate(row, evaluatableComparisonFields, bindings);
+            if (!evaluateLongKey(evaluatableComparisonFields))
+                return;
+            int hash = longHash(longKey);
+            Partition partition = partition(hash);
+            if (partition.spillFile != null) {
+                partition.spill(hash, longKey, row);
+            }
+            else {
+                partition.longRows.add(hash, longKey, row);
+                if (memoryLimit != Long.MAX_VALUE) {
+                    added(partition, rowSize(row));
+                }
+            }
+        }
+        else {
+            KeyWrapper key = new KeyWrapper(row, evaluatableComparisonFields, bindings);
+            if (matchNulls || !key.isNull()) {
+                Partition partition = partition(key.hashKey);
+                if (partition.spillFile != null) {
+                    partition.spill(key, row);
+                }
+                else {
+                    partition.rows.put(key, row);
+                    if (memoryLimit != Long.MAX_VALUE) {
+                        added(partition, rowSize(row));
+                    }
+                }
+            }
         }
     }
 
@@ -74,6 +209,522 @@ public class HashTable {
         this.matchNulls = matchNulls;
     }
 
+    /** Allow partitions to be written to temporary files once the rows
+     * held in memory are estimated to take more than <code>memoryLimit</code> bytes.
+     */
+    public void setSpill(QueryContext context, long memoryLimit) {
+        this.context = context;
+        this.memoryLimit = memoryLimit;
+    }
+
+    public int spilledPartitionCount() {
+        int count = 0;
+        for (Partition partition : partitions) {
+            if (partition.spillFile != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Whether keys went into {@link LongRows}. Just for testing. */
+    boolean hasLongKeys() {
+        return longKeys;
+    }
+
+    /** Release any temporary files. */
+    public void close() {
+        resident = null;
+        for (Partition partition : partitions) {
+            if (partition.spillFile != null) {
+                partition.spillFile.close();
+                partition.spillFile = null;
+                partition.filter = null;
+            }
+            partition.clear();
+        }
+        memoryUsed = 0;
+    }
+
+    /** The rows matching one probe. A lookup allocates one of these and
+     * reuses it for every probe.
+     */
+    public static class Matches {
+        private List<Row> rows;
+        private int index;
+        private LongRows longRows;
+        private int position;
+
+        public Row next() {
+            if (longRows != null) {
+                if (position == 0)
+                    return null;
+                Row row = longRows.rowAt(position);
+                position = longRows.nextAt(position);
+                return row;
+            }
+            if ((rows == null) || (index >= rows.size()))
+                return null;
+            return rows.get(index++);
+        }
+
+        private void clear() {
+            rows = null;
+            index = 0;
+            longRows = null;
+            position = 0;
+        }
+    }
+
+    // For use by this class
+
+    private static void evaluate(Row row, List<TEvaluatableExpression> evaluatableComparisonFields, QueryBindings bindings) {
+        for (TEvaluatableExpression expression : evaluatableComparisonFields) {
+            if (row != null)
+                expression.with(row);
+            if (bindings != null)
+                expression.with(bindings);
+            expression.evaluate();
+        }
+    }
+
+    private void chooseKeys(List<TEvaluatableExpression> evaluatableComparisonFields) {
+        nkeys = evaluatableComparisonFields.size();
+        longKeys = !matchNulls;
+        for (int i = 0; longKeys && (i < nkeys); i++) {
+            longKeys = ((tComparisons == null) || (tComparisons.get(i) == null)) &&
+                       ((collators == null) || (collators.get(i) == null)) &&
+                       isLongType(evaluatableComparisonFields.get(i).resultValue().getType());
+        }
+        if (longKeys) {
+            longKey = new long[nkeys];
+            for (Partition partition : partitions) {
+                partition.longRows = new LongRows(nkeys);
+            }
+        }
+    }
+
+    private static boolean isLongType(TInstance type) {
+        if (type == null)
+            return false;
+        switch (TInstance.underlyingType(type)) {
+        case BOOL:
+        case INT_8:
+        case INT_16:
+        case UINT_16:
+        case INT_32:
+        case INT_64:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /** Fill in <code>longKey</code>, returning <code>false</code> if any column is null. */
+    private boolean evaluateLongKey(List<TEvaluatableExpression> evaluatableComparisonFields) {
+        for (int i = 0; i < nkeys; i++) {
+            ValueSource source = evaluatableComparisonFields.get(i).resultValue();
+            if (source.isNull())
+                return false;
+            longKey[i] = longValue(source);
+        }
+        return true;
+    }
+
+    private static long longValue(ValueSource source) {
+        UnderlyingType underlying = TInstance.underlyingType(source.getType());
+        switch (underlying) {
+        case BOOL:
+            return source.getBoolean() ? 1 : 0;
+        case INT_8:
+            return source.getInt8();
+        case INT_16:
+            return source.getInt16();
+        case UINT_16:
+            return source.getUInt16();
+        case INT_32:
+            return source.getInt32();
+        case INT_64:
+            return source.getInt64();
+        default:
+            throw new AssertionError(underlying);
+        }
+    }
+
+    private static int longHash(long[] key) {
+        long hash = 0;
+        for (long value : key) {
+            hash = hash * 31 + value;
+        }
+        hash *= 0x9E3779B97F4A7C15L;
+        return (int)(hash ^ (hash >>> 32));
+    }
+
+    private Partition partition(int hash) {
+        hash ^= (hash >>> 16);
+        return partitions[hash & (PARTITION_COUNT - 1)];
+    }
+
+    private void added(Partition partition, long size) {
+        partition.memoryUsed += size;
+        memoryUsed += size;
+        if (memoryUsed > memoryLimit) {
+            spillLargestPartition();
+        }
+    }
+
+    /** Spill the largest partition still in memory, returning <code>false</code> if there is none. */
+    private boolean spillLargestPartition() {
+        Partition largest = null;
+        for (Partition partition : partitions) {
+            if ((partition.spillFile == null) &&
+                ((largest == null) || (partition.memoryUsed > largest.memoryUsed))) {
+                largest = partition;
+            }
+        }
+        if ((largest == null) || (largest.rowCount() == 0)) {
+            return false;
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Spilling hash table partition {} with {} rows", largest.index, largest.rowCount());
+        }
+        SPILL_TAP.hit();
+        largest.spillFile = new SpillFile(context, "hash");
+        largest.filter = new BitSet(FILTER_BITS);
+        if (longKeys) {
+            LongRows longRows = largest.longRows;
+            long[] key = new long[nkeys];
+            for (int slot = 0; slot < longRows.capacity(); slot++) {
+                int position = longRows.headAt(slot);
+                if (position != 0) {
+                    longRows.keyAt(slot, key);
+                    int hash = longRows.hashAt(slot);
+                    while (position != 0) {
+                        largest.spill(hash, key, longRows.rowAt(position));
+                        position = longRows.nextAt(position);
+                    }
+                }
+            }
+        }
+        else {
+            for (Map.Entry<KeyWrapper, Row> entry : largest.rows.entries()) {
+                largest.spill(entry.getKey(), entry.getValue());
+            }
+        }
+        largest.clear();
+        memoryUsed -= largest.memoryUsed;
+        largest.memoryUsed = 0;
+        return true;
+    }
+
+    private void makeResident(Partition partition) {
+        if (resident == partition) {
+            return;
+        }
+        if (resident != null) {
+            resident.clear();
+            memoryUsed -= resident.memoryUsed;
+            resident.memoryUsed = 0;
+        }
+        resident = partition;
+        LOAD_TAP.hit();
+        SpillFile.Reader reader = partition.spillFile.reader();
+        long[] key = longKeys ? new long[nkeys] : null;
+        try {
+            while (reader.next()) {
+                Row row;
+                if (longKeys) {
+                    for (int i = 0; i < nkeys; i++) {
+                        key[i] = reader.readLong();
+                    }
+                    row = readRow(reader);
+                    partition.longRows.add(longHash(key), key, row);
+                }
+                else {
+                    List<ValueSource> keyValues = new ArrayList<>(nkeys);
+                    for (int i = 0; i < nkeys; i++) {
+                        Value keyValue = new Value(keyTypes[i]);
+                        reader.read(keyTypes[i], keyValue);
+                        keyValues.add(keyValue);
+                    }
+                    row = readRow(reader);
+                    partition.rows.put(new KeyWrapper(keyValues), row);
+                }
+                partition.memoryUsed += rowSize(row);
+            }
+        }
+        finally {
+            reader.close();
+        }
+        // Make room by spilling what is still in memory. A single
+        // partition larger than the whole budget is kept regardless.
+        memoryUsed += partition.memoryUsed;
+        while (memoryUsed > memoryLimit) {
+            if (!spillLargestPartition())
+                break;
+        }
+    }
+
+    private Row readRow(SpillFile.Reader reader) {
+        ValuesHolderRow row = new ValuesHolderRow(hashedRowType);
+        for (int i = 0; i < hashedRowType.nFields(); i++) {
+            reader.read(hashedRowType.typeAt(i), row.valueAt(i));
+        }
+        return row;
+    }
+
+    private long rowSize(Row row) {
+        if (longKeys)
+            return LONG_ROW_OVERHEAD + nkeys * 8 + estimateSize(row);
+        else
+            return ROW_OVERHEAD + nkeys * FIELD_OVERHEAD + estimateSize(row);
+    }
+
+    private static long estimateSize(Row row) {
+        long size = 0;
+        RowType rowType = row.rowType();
+        for (int i = 0; i < rowType.nFields(); i++) {
+            size += FIELD_OVERHEAD;
+            TInstance type = rowType.typeAt(i);
+            if (type == null) {
+                continue;
+            }
+            if (type.typeClass().hasFixedSerializationSize()) {
+                size += type.typeClass().fixedSerializationSize();
+            }
+            else {
+                ValueSource source = row.value(i);
+                if (source.isNull()) {
+                    continue;
+                }
+                switch (TInstance.underlyingType(type)) {
+                case STRING:
+                    size += 2 * source.getString().length();
+                    break;
+                case BYTES:
+                    size += source.getBytes().length;
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
+        return size;
+    }
+
+    // Class state
+
+    private static final Logger LOG = LoggerFactory.getLogger(HashTable.class);
+    private static final PointTap SPILL_TAP = Tap.createCount("hash table: spill partition");
+    private static final PointTap LOAD_TAP = Tap.createCount("hash table: load partition");
+    private static final int PARTITION_COUNT = 64; // power of 2
+    private static final int FILTER_BITS = 1 << 16;
+    // Rough per-object costs of the multimap entry, row and Value holders.
+    private static final int ROW_OVERHEAD = 96;
+    private static final int FIELD_OVERHEAD = 32;
+    // Rough per-row cost of the long key slot and row chain arrays.
+    private static final int LONG_ROW_OVERHEAD = 32;
+
+    // Inner classes
+
+    private class Partition {
+        final int index;
+        ArrayListMultimap<KeyWrapper, Row> rows = ArrayListMultimap.create();
+        LongRows longRows;
+        long memoryUsed;
+        SpillFile spillFile;
+        BitSet filter;
+
+        Partition(int index) {
+            this.index = index;
+        }
+
+        int rowCount() {
+            return (longRows != null) ? longRows.rowCount() : rows.size();
+        }
+
+        void clear() {
+            if (longRows != null) {
+                longRows = new LongRows(nkeys);
+            }
+            else {
+                rows = ArrayListMultimap.create();
+            }
+        }
+
+        boolean mightContain(int hashKey) {
+            return filter.get(filterBit(hashKey));
+        }
+
+        void spill(KeyWrapper key, Row row) {
+            if (keyTypes == null) {
+                keyTypes = new TInstance[key.values.size()];
+                for (int i = 0; i < keyTypes.length; i++) {
+                    keyTypes[i] = key.values.get(i).getType();
+                }
+            }
+            filter.set(filterBit(key.hashKey));
+            spillFile.startRecord();
+            for (ValueSource keyValue : key.values) {
+                spillFile.append(keyValue);
+            }
+            spillRow(row);
+        }
+
+        void spill(int hash, long[] key, Row row) {
+            filter.set(filterBit(hash));
+            spillFile.startRecord();
+            for (long keyValue : key) {
+                spillFile.appendLong(keyValue);
+            }
+            spillRow(row);
+        }
+
+        private void spillRow(Row row) {
+            for (int i = 0; i < hashedRowType.nFields(); i++) {
+                spillFile.append(row.value(i));
+            }
+            spillFile.endRecord();
+        }
+
+        // Low bits pick the partition, so use the well mixed high ones.
+        private int filterBit(int hashKey) {
+            return (hashKey * 0x9E3779B9) >>> (32 - 16);
+        }
+    }
+
+    /** Open-addressing table of <code>long[]</code> keys, each with a
+     * chain of rows in insertion order. Positions are 1-based indexes into
+     * the row arrays, so that 0 can mean none.
+     */
+    static class LongRows {
+        private final int nkeys;
+        private long[] keys;
+        private int[] hashes;
+        private int[] heads, tails;
+        private int size;
+        private Row[] rows;
+        private int[] next;
+        private int rowCount;
+
+        LongRows(int nkeys) {
+            this.nkeys = nkeys;
+            allocateSlots(INITIAL_SLOTS);
+            rows = new Row[INITIAL_SLOTS];
+            next = new int[INITIAL_SLOTS];
+        }
+
+        int capacity() {
+            return heads.length;
+        }
+
+        int rowCount() {
+            return rowCount;
+        }
+
+        int headAt(int slot) {
+            return heads[slot];
+        }
+
+        int hashAt(int slot) {
+            return hashes[slot];
+        }
+
+        void keyAt(int slot, long[] key) {
+            System.arraycopy(keys, slot * nkeys, key, 0, nkeys);
+        }
+
+        Row rowAt(int position) {
+            return rows[position - 1];
+        }
+
+        int nextAt(int position) {
+            return next[position - 1];
+        }
+
+        /** Position of the first row with the given key, or 0. */
+        int find(int hash, long[] key) {
+            int mask = heads.length - 1;
+            int slot = spread(hash) & mask;
+            while (heads[slot] != 0) {
+                if ((hashes[slot] == hash) && keyEquals(slot, key)) {
+                    return heads[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return 0;
+        }
+
+        void add(int hash, long[] key, Row row) {
+            if (rowCount == rows.length) {
+                rows = Arrays.copyOf(rows, rowCount * 2);
+                next = Arrays.copyOf(next, rowCount * 2);
+            }
+            rows[rowCount] = row;
+            next[rowCount] = 0;
+            int position = ++rowCount;
+            int mask = heads.length - 1;
+            int slot = spread(hash) & mask;
+            while (heads[slot] != 0) {
+                if ((hashes[slot] == hash) && keyEquals(slot, key)) {
+                    next[tails[slot] - 1] = position;
+                    tails[slot] = position;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            System.arraycopy(key, 0, keys, slot * nkeys, nkeys);
+            hashes[slot] = hash;
+            heads[slot] = tails[slot] = position;
+            if (++size * 4 > heads.length * 3) {
+                resize();
+            }
+        }
+
+        private boolean keyEquals(int slot, long[] key) {
+            int offset = slot * nkeys;
+            for (int i = 0; i < nkeys; i++) {
+                if (keys[offset + i] != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void allocateSlots(int capacity) {
+            keys = new long[capacity * nkeys];
+            hashes = new int[capacity];
+            heads = new int[capacity];
+            tails = new int[capacity];
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldHashes = hashes, oldHeads = heads, oldTails = tails;
+            allocateSlots(oldHeads.length * 2);
+            int mask = heads.length - 1;
+            for (int oldSlot = 0; oldSlot < oldHeads.length; oldSlot++) {
+                if (oldHeads[oldSlot] != 0) {
+                    int slot = spread(oldHashes[oldSlot]) & mask;
+                    while (heads[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    System.arraycopy(oldKeys, oldSlot * nkeys, keys, slot * nkeys, nkeys);
+                    hashes[slot] = oldHashes[oldSlot];
+                    heads[slot] = oldHeads[oldSlot];
+                    tails[slot] = oldTails[oldSlot];
+                }
+            }
+        }
+
+        // Low bits also pick the partition, so bring well mixed high ones down.
+        private static int spread(int hash) {
+            return Integer.rotateLeft(hash * 0x9E3779B9, 16);
+        }
+
+        private static final int INITIAL_SLOTS = 16; // power of 2
+    }
+
     public class KeyWrapper implements Comparable<KeyWrapper> {
         List<ValueSource> values = new ArrayList<>();
         int hashKey = 0;
@@ -131,5 +782,16 @@ public class HashTable {
                 i++;
             }
         }
+
+        private KeyWrapper(List<ValueSource> keyValues) {
+            for (int i = 0; i < keyValues.size(); i++) {
+                ValueSource keyValue = keyValues.get(i);
+                if (keyValue.isNull())
+                    isNull = true;
+                AkCollator collator = (collators != null) ? collators.get(i) : null;
+                hashKey ^= ValueSources.hash(keyValue, collator);
+            }
+            values = keyValues;
+        }
     }
 }
@@ -0,0 +1,227 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.util;
+
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.server.PersistitValueValueSource;
+import com.foundationdb.server.PersistitValueValueTarget;
+import com.foundationdb.server.error.SpillIOException;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.value.ValueTarget;
+import com.persistit.Persistit;
+import com.persistit.Value;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * An append-only temporary file of value records, for operators that
+ * overflow their memory budget.
+ *
+ * <p>A record is a sequence of fields written in canonical form, the same
+ * way {@link com.foundationdb.qp.storeadapter.indexcursor.MergeJoinSorter}
+ * writes its rows. Readers must ask for the fields in the order and with
+ * the types in which they were written.</p>
+ *
+ * <p>The file is created lazily in <code>fdbsql.tmp_dir</code> and
+ * deleted by {@link #close}.</p>
+ */
+public class SpillFile
+{
+    public SpillFile(QueryContext context, String prefix) {
+        this.context = context;
+        this.prefix = prefix;
+        this.value = new Value((Persistit)null, Value.INITIAL_SIZE, Value.MAXIMUM_SIZE);
+        this.valueTarget = new PersistitValueValueTarget();
+        valueTarget.attach(value);
+    }
+
+    public void startRecord() {
+        value.clear();
+        value.setStreamMode(true);
+    }
+
+    public void append(ValueSource field) {
+        if (field.isNull()) {
+            valueTarget.putNull();
+        }
+        else {
+            field.getType().writeCanonical(field, valueTarget);
+        }
+    }
+
+    public void appendLong(long field) {
+        value.put(field);
+    }
+
+    public void endRecord() {
+        try {
+            if (output == null) {
+                open();
+            }
+            output.writeInt(value.getEncodedSize());
+            output.write(value.getEncodedBytes(), 0, value.getEncodedSize());
+        }
+        catch (IOException ex) {
+            throw new SpillIOException(ex);
+        }
+        recordCount++;
+        byteCount += value.getEncodedSize() + 4;
+    }
+
+    public long recordCount() {
+        return recordCount;
+    }
+
+    public long byteCount() {
+        return byteCount;
+    }
+
+    /** Read back all the records written so far. */
+    public Reader reader() {
+        try {
+            if (output != null) {
+                output.flush();
+            }
+            return new Reader(file);
+        }
+        catch (IOException ex) {
+            throw new SpillIOException(ex);
+        }
+    }
+
+    public void close() {
+        try {
+            if (output != null) {
+                output.close();
+            }
+        }
+        catch (IOException ex) {
+            throw new SpillIOException(ex);
+        }
+        finally {
+            output = null;
+            if (file != null) {
+                file.delete();
+                file = null;
+            }
+        }
+    }
+
+    public class Reader
+    {
+        /** Advance to the next record, returning <code>false</code> at the end. */
+        public boolean next() {
+            if (input == null) {
+                return false;
+            }
+            try {
+                int size;
+                try {
+                    size = input.readInt();
+                }
+                catch (EOFException ex) {
+                    close();
+                    return false;
+                }
+                value.clear();
+                value.ensureFit(size);
+                input.readFully(value.getEncodedBytes(), 0, size);
+                value.setEncodedSize(size);
+                valueSource.attach(value);
+                return true;
+            }
+            catch (IOException ex) {
+                throw new SpillIOException(ex);
+            }
+        }
+
+        /** Copy the next field of the current record into <code>target</code>. */
+        public void read(TInstance type, ValueTarget target) {
+            valueSource.getReady(type);
+            if (valueSource.isNull()) {
+                target.putNull();
+            }
+            else {
+                type.writeCanonical(valueSource, target);
+            }
+        }
+
+        /** Read the next field of the current record, written by {@link #appendLong}. */
+        public long readLong() {
+            return value.getLong();
+        }
+
+        public void close() {
+            if (input != null) {
+                try {
+                    input.close();
+                }
+                catch (IOException ex) {
+                    throw new SpillIOException(ex);
+                }
+                finally {
+                    input = null;
+                }
+            }
+        }
+
+        private Reader(File file) throws IOException {
+            if (file != null) {
+                input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+            }
+            value = new Value((Persistit)null, Value.INITIAL_SIZE, Value.MAXIMUM_SIZE);
+            valueSource = new PersistitValueValueSource();
+        }
+
+        private DataInputStream input;
+        private final Value value;
+        private final PersistitValueValueSource valueSource;
+    }
+
+    // For use by this class
+
+    private void open() throws IOException {
+        File directory = new File(context.getServiceManager().getConfigurationService().getProperty("fdbsql.tmp_dir"));
+        file = File.createTempFile(prefix + "-" + context.getSessionId() + "-", ".tmp", directory);
+        file.deleteOnExit();
+        output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+    }
+
+    // Class state
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Object state
+
+    private final QueryContext context;
+    private final String prefix;
+    private final Value value;
+    private final PersistitValueValueTarget valueTarget;
+    private File file;
+    private DataOutputStream output;
+    private long recordCount, byteCount;
+}
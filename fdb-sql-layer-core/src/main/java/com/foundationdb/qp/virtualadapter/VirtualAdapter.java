@@ -91,7 +91,7 @@ public class VirtualAdapter extends StoreAdapter {
 
     @Override
     public Sorter createSorter(QueryContext context, QueryBindings bindings, RowCursor input, RowType rowType,
-                               Ordering ordering, SortOption sortOption, InOutTap loadTap) {
+                               Ordering ordering, SortOption sortOption, InOutTap loadTap, int limit) {
         throw new UnsupportedOperationException();
     }
 
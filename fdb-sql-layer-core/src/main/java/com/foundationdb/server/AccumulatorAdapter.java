@@ -110,7 +110,9 @@ public class AccumulatorAdapter {
         /** Saves values from the MySQL adapter AUTO INCREMENT columns. Attached to the PK tree. */
         AUTO_INC(3, Accumulator.Type.SUM),
         /** Source of values for SQL sequences. Attached to the sequence tree. */
-        SEQUENCE(4, Accumulator.Type.SEQ)
+        SEQUENCE(4, Accumulator.Type.SEQ),
+        /** Rows written, updated or deleted, for staleness of statistics. Attached to the PK tree. */
+        MODIFICATION_COUNT(5, Accumulator.Type.SUM)
         ;
     
         AccumInfo(int index, Accumulator.Type type) {
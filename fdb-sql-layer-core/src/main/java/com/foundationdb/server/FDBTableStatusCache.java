@@ -42,18 +42,19 @@ import java.util.Map;
  * </pre>
  *
  * <p>
- *     The above directory is used to store auto-inc, unique and/or row count
- *     information on a per-table basis. Each key is formed by pre-pending the
- *     directory prefix with the primary key's prefix and  the string
- *     "autoInc", "unique" or "rowCount". The auto-inc and unique values are
- *     {@link Tuple} encoded longs and the row count is a little-endian encoded
- *     long (for {@link Transaction#mutate} usage).
+ *     The above directory is used to store auto-inc, unique, row count and/or
+ *     modification count information on a per-table basis. Each key is formed
+ *     by pre-pending the directory prefix with the primary key's prefix and  the
+ *     string "autoInc", "unique", "rowCount" or "modCount". The auto-inc and
+ *     unique values are {@link Tuple} encoded longs and the counts are
+ *     little-endian encoded longs (for {@link Transaction#mutate} usage).
  * </p>
  */
 public class FDBTableStatusCache implements TableStatusCache {
     private static final List<String> TABLE_STATUS_DIR_PATH = Arrays.asList("tableStatus");
     private static final byte[] UNIQUE_PACKED = Tuple2.from("unique").pack();
     private static final byte[] ROW_COUNT_PACKED = Tuple2.from("rowCount").pack();
+    private static final byte[] MOD_COUNT_PACKED = Tuple2.from("modCount").pack();
 
     private final FDBTransactionService txnService;
     private final Map<Integer,VirtualTableStatus> virtualTableStatusMap = new HashMap<>();
@@ -119,11 +120,13 @@ public class FDBTableStatusCache implements TableStatusCache {
     private class FDBTableStatus implements TableStatus {
         private final int tableID;
         private volatile byte[] rowCountKey;
+        private volatile byte[] modCountKey;
 
         public FDBTableStatus(Table table) {
             this.tableID = table.getTableId();
             byte[] prefixBytes = FDBStoreDataHelper.prefixBytes(table.getPrimaryKeyIncludingInternal().getIndex());
             this.rowCountKey = ByteArrayUtil.join(packedTableStatusPrefix, prefixBytes, ROW_COUNT_PACKED);
+            this.modCountKey = ByteArrayUtil.join(packedTableStatusPrefix, prefixBytes, MOD_COUNT_PACKED);
         }
 
         @Override
@@ -135,6 +138,15 @@ public class FDBTableStatusCache implements TableStatusCache {
         public void rowsWritten(Session session, long count) {
             TransactionState txn = txnService.getTransaction(session);
             txn.mutate(MutationType.ADD, rowCountKey, packForAtomicOp(count));
+            txn.mutate(MutationType.ADD, modCountKey, packForAtomicOp(Math.abs(count)));
+            txn.clearModificationCount(tableID);
+        }
+
+        @Override
+        public void rowUpdated(Session session) {
+            TransactionState txn = txnService.getTransaction(session);
+            txn.mutate(MutationType.ADD, modCountKey, packForAtomicOp(1));
+            txn.clearModificationCount(tableID);
         }
 
         @Override
@@ -154,6 +166,21 @@ public class FDBTableStatusCache implements TableStatusCache {
             return getRowCount(txnService.getTransaction(session), true);
         }
 
+        @Override
+        public long getModificationCount(Session session) {
+            // Snapshot, like the approximate row count: mutate() is blind, so
+            // concurrent writers never conflict on this key.
+            // Planning checks it for every index of the table, so only
+            // read it once per transaction, unless this one writes.
+            TransactionState txn = txnService.getTransaction(session);
+            Long count = txn.getModificationCount(tableID);
+            if (count == null) {
+                count = unpackForAtomicOp(txn.getSnapshotValue(modCountKey));
+                txn.setModificationCount(tableID, count);
+            }
+            return count;
+        }
+
         @Override
         public int getTableID() {
             return tableID;
@@ -168,6 +195,8 @@ public class FDBTableStatusCache implements TableStatusCache {
         private void clearState(Session session) {
             TransactionState txn = txnService.getTransaction(session);
             txn.clearKey(rowCountKey);
+            txn.clearKey(modCountKey);
+            txn.clearModificationCount(tableID);
         }
 
         private long getRowCount(TransactionState txn, boolean snapshot) {
@@ -35,6 +35,9 @@ import static com.foundationdb.server.store.MemoryStore.unpackLong;
 
 public class MemoryTableStatusCache implements TableStatusCache
 {
+    /** Appended to the row count key to form the modification count key. */
+    private static final byte[] MOD_COUNT_SUFFIX = { 'm' };
+
     private final Map<Integer,VirtualTableStatus> virtualTableStatusMap = new HashMap<>();
     private final MemoryTransactionService txnService;
     private final byte[] statusPrefix;
@@ -83,6 +86,7 @@ public class MemoryTableStatusCache implements TableStatusCache
             MemoryTableStatus tmStatus = (MemoryTableStatus)status;
             MemoryTransaction txn = txnService.getTransaction(session);
             txn.clear(tmStatus.statusKey);
+            txn.clear(tmStatus.modCountKey);
         }
     }
 
@@ -95,6 +99,7 @@ public class MemoryTableStatusCache implements TableStatusCache
     {
         private final int tableID;
         private final byte[] statusKey;
+        private final byte[] modCountKey;
 
         private MemoryTableStatus(Table table) {
             this.tableID = table.getTableId();
@@ -103,6 +108,7 @@ public class MemoryTableStatusCache implements TableStatusCache
             assert pk != null : table;
             MemoryStorageDescription sd = (MemoryStorageDescription)pk.getIndex().getStorageDescription();
             this.statusKey = join(statusPrefix, sd.getUUIDBytes());
+            this.modCountKey = join(statusKey, MOD_COUNT_SUFFIX);
         }
 
         @Override
@@ -112,7 +118,15 @@ public class MemoryTableStatusCache implements TableStatusCache
 
         @Override
         public void rowsWritten(Session session, long count) {
-            setRowCount(session, getRowCount(session) + count);
+            MemoryTransaction txn = txnService.getTransaction(session);
+            txn.add(statusKey, count);
+            txn.add(modCountKey, Math.abs(count));
+        }
+
+        @Override
+        public void rowUpdated(Session session) {
+            MemoryTransaction txn = txnService.getTransaction(session);
+            txn.add(modCountKey, 1);
         }
 
         @Override
@@ -134,6 +148,13 @@ public class MemoryTableStatusCache implements TableStatusCache
             return (value == null) ? 0 : unpackLong(value);
         }
 
+        @Override
+        public long getModificationCount(Session session) {
+            MemoryTransaction txn = txnService.getTransaction(session);
+            byte[] value = txn.getUncommitted(modCountKey);
+            return (value == null) ? 0 : unpackLong(value);
+        }
+
         @Override
         public int getTableID() {
             return tableID;
@@ -91,11 +91,13 @@ public class PersistitAccumulatorTableStatusCache implements TableStatusCache {
     private class AccumulatorStatus implements TableStatus {
         private final int expectedID;
         private volatile AccumulatorAdapter rowCount;
+        private volatile AccumulatorAdapter modificationCount;
 
         public AccumulatorStatus (Table table) {
             this.expectedID = table.getTableId();
             Tree tree = getTreeForTable(table);
             rowCount = new AccumulatorAdapter(AccumulatorAdapter.AccumInfo.ROW_COUNT, tree);
+            modificationCount = new AccumulatorAdapter(AccumulatorAdapter.AccumInfo.MODIFICATION_COUNT, tree);
         }
 
         @Override
@@ -122,6 +124,11 @@ public class PersistitAccumulatorTableStatusCache implements TableStatusCache {
             return rowCount.getLiveValue();
         }
 
+        @Override
+        public long getModificationCount(Session session) {
+            return modificationCount.getLiveValue();
+        }
+
         @Override
         public int getTableID() {
             return expectedID;
@@ -130,11 +137,18 @@ public class PersistitAccumulatorTableStatusCache implements TableStatusCache {
         @Override
         public void rowDeleted(Session session) {
             rowCount.sumAdd(-1);
+            modificationCount.sumAdd(1);
         }
 
         @Override
         public void rowsWritten(Session session, long count) {
             rowCount.sumAdd(count);
+            modificationCount.sumAdd(Math.abs(count));
+        }
+
+        @Override
+        public void rowUpdated(Session session) {
+            modificationCount.sumAdd(1);
         }
 
         @Override
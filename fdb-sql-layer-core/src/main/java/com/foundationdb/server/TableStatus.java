@@ -31,6 +31,9 @@ public interface TableStatus {
     /** Record that a row has been written. */
     void rowsWritten(Session session, long count);
 
+    /** Record that a row has been updated in place. */
+    void rowUpdated(Session session);
+
     /** Reset, but do not remove, the state of a table. */
     void truncate(Session session);
 
@@ -44,6 +47,13 @@ public interface TableStatus {
      */
     long getApproximateRowCount(Session session);
 
+    /**
+     * @return Approximate number of rows written, updated or deleted since the
+     * table was created. Only ever increases; used to judge how far index
+     * statistics have drifted since they were gathered.
+     */
+    long getModificationCount(Session session);
+
     /** @return The table ID this status is for */
     int getTableID();
 
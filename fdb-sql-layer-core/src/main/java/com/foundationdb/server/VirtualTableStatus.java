@@ -45,6 +45,11 @@ public class VirtualTableStatus implements TableStatus
         return getRowCount(session);
     }
 
+    @Override
+    public long getModificationCount(Session session) {
+        return 0;
+    }
+
     @Override
     public int getTableID() {
         return tableID;
@@ -60,6 +65,11 @@ public class VirtualTableStatus implements TableStatus
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public synchronized void rowUpdated(Session session) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public synchronized void truncate(Session session) {
         throw new UnsupportedOperationException();
@@ -20,6 +20,7 @@ package com.foundationdb.server.collation;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
 import com.ibm.icu.text.Collator;
+import com.ibm.icu.text.RawCollationKey;
 import com.persistit.Key;
 import com.persistit.util.Util;
 
@@ -35,6 +36,15 @@ public class AkCollatorICU extends AkCollator {
         }
     };
 
+    private final ThreadLocal<SortKeyCache> sortKeys = new ThreadLocal<SortKeyCache>() {
+        protected SortKeyCache initialValue() {
+            return new SortKeyCache(collator.get());
+        }
+    };
+
+    private final boolean caseSensitive;
+    private final boolean asciiIgnoresCase;
+
     /**
      * Create an AkCollator which may be used in across multiple threads. Each
      * instance of AkCollator has a ThreadLocal which optionally contains a
@@ -49,7 +59,9 @@ public class AkCollatorICU extends AkCollator {
     AkCollatorICU(final String scheme, final int collationId) {
         super(scheme, collationId);
         collationSpecifier = new CollationSpecifier(scheme);
-        collator.get(); // force the collator to initialize (to test scheme)
+        Collator c = collator.get(); // force the collator to initialize (to test scheme)
+        caseSensitive = c.getStrength() > Collator.SECONDARY;
+        asciiIgnoresCase = !caseSensitive && asciiLettersIgnoreCase(c);
     }
 
     @Override
@@ -68,16 +80,24 @@ public class AkCollatorICU extends AkCollator {
 
     @Override
     public int compare(String source, String target) {
+        // Grouping and DISTINCT mostly compare equal values: those can be
+        // answered without ICU.
+        if (source.equals(target) ||
+            (asciiIgnoresCase && asciiEqualsIgnoreCase(source, target))) {
+            return 0;
+        }
         return collator.get().compare(source, target);
     }
 
     @Override
     public boolean isCaseSensitive() {
-        return collator.get().getStrength() > Collator.SECONDARY;
+        return caseSensitive;
     }
 
     /**
-     * Construct the sort key bytes for the given String value
+     * Construct the sort key bytes for the given String value. Recently
+     * encoded values are cached per thread, so the result may be shared
+     * and must not be modified.
      * 
      * @param value
      *            the String
@@ -85,8 +105,7 @@ public class AkCollatorICU extends AkCollator {
      */
     @Override
     public byte[] encodeSortKeyBytes(String value) {
-        byte[] bytes = collator.get().getCollationKey(value).toByteArray();
-        return Arrays.copyOf(bytes, bytes.length - 1); // Remove terminating null.
+        return sortKeys.get().get(value);
     }
 
     /** Decode the value to a string of hex digits. */
@@ -99,9 +118,7 @@ public class AkCollatorICU extends AkCollator {
 
     @Override
     public int hashCode(String string) {
-        byte[] bytes = collator.get().getCollationKey(string).toByteArray();
-        bytes = Arrays.copyOfRange(bytes, 0, bytes.length-1); // remove null terminating character
-        return hashCode(bytes);
+        return hashCode(encodeSortKeyBytes(string));
     }
 
     @Override
@@ -119,5 +136,84 @@ public class AkCollatorICU extends AkCollator {
         return collationSpecifier.toString();
     }
 
+    /** Whether <code>collator</code> treats every ASCII letter as equal to its upper case. */
+    private static boolean asciiLettersIgnoreCase(Collator collator) {
+        for (char c = 'a'; c <= 'z'; c++) {
+            if (collator.compare(String.valueOf(c), String.valueOf((char)(c - 'a' + 'A'))) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Whether the two strings are all ASCII and the same but for the case of letters. */
+    static boolean asciiEqualsIgnoreCase(String s1, String s2) {
+        int length = s1.length();
+        if (s2.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c1 = s1.charAt(i);
+            char c2 = s2.charAt(i);
+            if ((c1 | c2) >= 0x80) {
+                return false;
+            }
+            if ((c1 != c2) && (asciiLower(c1) != asciiLower(c2))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char asciiLower(char c) {
+        return ((c >= 'A') && (c <= 'Z')) ? (char)(c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * A thread's collator and its most recently encoded sort keys, in a
+     * direct-mapped table so that a lookup costs a hash and an
+     * <code>equals</code>. Long values are not kept.
+     */
+    static final class SortKeyCache {
+        static final int SIZE = 256; // Power of 2
+        static final int MAX_LENGTH = 64;
+
+        private final Collator collator;
+        private final RawCollationKey rawKey = new RawCollationKey();
+        private final String[] values = new String[SIZE];
+        private final byte[][] keys = new byte[SIZE][];
+
+        SortKeyCache(Collator collator) {
+            this.collator = collator;
+        }
+
+        public byte[] get(String value) {
+            if (value.length() > MAX_LENGTH) {
+                return encode(value);
+            }
+            int h = value.hashCode();
+            int slot = (h ^ (h >>> 16)) & (SIZE - 1);
+            if (value.equals(values[slot])) {
+                return keys[slot];
+            }
+            byte[] key = encode(value);
+            values[slot] = value;
+            keys[slot] = key;
+            return key;
+        }
+
+        private byte[] encode(String value) {
+            collator.getRawCollationKey(value, rawKey);
+            // Sort keys contain no zero bytes but the terminating one,
+            // which is removed.
+            byte[] bytes = rawKey.bytes;
+            int length = 0;
+            while ((length < rawKey.size) && (bytes[length] != 0)) {
+                length++;
+            }
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+
     private static final HashFunction hashFunction = Hashing.goodFastHash(32); // Because we're returning ints
 }
@@ -263,6 +263,7 @@ public enum ErrorCode {
     //40006-9 open
     TABLE_VERSION_CHANGED   ("40", "00A", Importance.ERROR, TableVersionChangedException.class),
     LOCK_TIMEOUT            ("40", "00B", Importance.DEBUG, LockTimeoutException.class),
+    TRANSACTION_CONFLICT    ("40", "00C", Importance.DEBUG, TransactionConflictException.class),
 
     // Class 42 - syntax error or access rule violation
     // These exceptions are re-thrown errors from the parser and from the
@@ -477,6 +478,7 @@ public enum ErrorCode {
     NOT_ALLOWED_BY_CONFIG   ("53", "00G", Importance.ERROR, NotAllowedByConfigException.class),
     JOIN_GRAPH_FAILURE      ("53", "00H", Importance.ERROR, FailedJoinGraphCreationException.class),
     CORRUPTED_PLAN          ("53", "00I", Importance.ERROR, CorruptedPlanException.class),
+    SPILL_IO                ("53", "00J", Importance.ERROR, SpillIOException.class),
     
     // Class 55 - Type conversion errors
     UNKNOWN_TYPE            ("55", "001", Importance.DEBUG, UnknownDataTypeException.class),
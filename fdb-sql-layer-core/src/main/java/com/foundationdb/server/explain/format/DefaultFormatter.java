@@ -279,6 +279,9 @@ public class DefaultFormatter
         case HKEY_OPERATOR:
             appendHKeyOperator(name, atts);
             break;
+        case EXCHANGE:
+            appendExchangeOperator(name, atts);
+            break;
         default:
             throw new UnsupportedOperationException("Formatter does not recognize " + 
                                                     explainer.getType());
@@ -810,6 +813,23 @@ public class DefaultFormatter
     protected void appendBufferOperator(String name, Attributes atts) {
     }
 
+    protected void appendExchangeOperator(String name, Attributes atts) {
+        if (levelOfDetail != LevelOfDetail.BRIEF) {
+            sb.append(atts.get(Label.INPUT_OPERATOR).size()).append(" partitions");
+            if (atts.containsKey(Label.EXPRESSIONS)) {
+                sb.append(", ORDER BY ");
+                int i = 0;
+                for (Explainer ex : atts.get(Label.EXPRESSIONS)) {
+                    if (i > 0) {
+                        sb.append(", ");
+                    }
+                    append(ex);
+                    sb.append(' ').append(atts.get(Label.ORDERING).get(i++).get());
+                }
+            }
+        }
+    }
+
     protected void appendHKeyOperator(String name, Attributes atts) {
         if (levelOfDetail != LevelOfDetail.BRIEF) {
             append(atts.getAttribute(Label.OUTPUT_TYPE));
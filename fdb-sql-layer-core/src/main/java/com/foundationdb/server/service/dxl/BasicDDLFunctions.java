@@ -778,6 +778,8 @@ public class BasicDDLFunctions implements DDLFunctions {
         Collection<Index> indexes = new HashSet<>();
         if (indexesToUpdate == null) {
             indexes.addAll(table.getIndexes());
+            // Column statistics are kept with the primary key, even when hidden.
+            indexes.add(table.getPrimaryKeyIncludingInternal().getIndex());
             for (Index index : table.getGroup().getIndexes()) {
                 if (table == index.leafMostTable())
                     indexes.add(index);
@@ -64,15 +64,25 @@ public interface ExternalDataService {
     static final long COMMIT_FREQUENCY_NEVER = -1;
     static final long COMMIT_FREQUENCY_PERIODICALLY = -2;
 
+    /** Use the configured number of writer threads. */
+    static final int WRITER_THREADS_DEFAULT = 0;
+
+    /**
+     * Load rows parsed from CSV.
+     *
+     * @param writerThreads With more than one, rows are parsed on the calling thread and
+     * written in batches of <code>commitFrequency</code> rows, each in its own transaction,
+     * by that many threads concurrently. Batches may commit in any order.
+     */
     long loadTableFromCsv(Session session, InputStream inputStream, 
                           CsvFormat format, long skipRows,
                           Table toTable, List<Column> toColumns,
-                          long commitFrequency, int maxRetries,
+                          long commitFrequency, int maxRetries, int writerThreads,
                           QueryContext context) throws IOException;
 
     long loadTableFromMysqlDump(Session session, InputStream inputStream, String encoding,
                                 Table toTable, List<Column> toColumns,
-                                long commitFrequency, int maxRetries,
+                                long commitFrequency, int maxRetries, int writerThreads,
                                 QueryContext context) throws IOException;
     
 }
@@ -33,6 +33,7 @@ import com.foundationdb.qp.row.Row;
 import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.server.error.InvalidOperationException;
 import com.foundationdb.server.error.NoSuchTableException;
+import com.foundationdb.server.error.QueryCanceledException;
 import com.foundationdb.server.service.Service;
 import com.foundationdb.server.service.ServiceManager;
 import com.foundationdb.server.service.config.ConfigurationService;
@@ -57,6 +58,16 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ExternalDataServiceImpl implements ExternalDataService, Service {
     protected final ConfigurationService configService;
@@ -64,9 +75,13 @@ public class ExternalDataServiceImpl implements ExternalDataService, Service {
     protected final Store store;
     protected final TransactionService transactionService;
     protected final ServiceManager serviceManager;
+    private ExecutorService writers;
     
     private static final Logger logger = LoggerFactory.getLogger(ExternalDataServiceImpl.class);
 
+    public static final String WRITER_THREADS_PROPERTY = "fdbsql.load.writer_threads";
+    public static final String BATCH_SIZE_PROPERTY = "fdbsql.load.batch_size";
+
     public static final CacheValueGenerator<PlanGenerator> CACHED_PLAN_GENERATOR =
             new CacheValueGenerator<PlanGenerator>() {
                 @Override
@@ -209,7 +224,7 @@ public class ExternalDataServiceImpl implements ExternalDataService, Service {
     public long loadTableFromCsv(Session session, InputStream inputStream, 
                                  CsvFormat format, long skipRows,
                                  Table toTable, List<Column> toColumns,
-                                 long commitFrequency, int maxRetries,
+                                 long commitFrequency, int maxRetries, int writerThreads,
                                  QueryContext context) 
             throws IOException {
         CsvRowReader reader = new CsvRowReader(toTable, toColumns, inputStream, format,
@@ -217,27 +232,37 @@ public class ExternalDataServiceImpl implements ExternalDataService, Service {
         if (skipRows > 0)
             reader.skipRows(skipRows);
         return loadTableFromRowReader(session, inputStream, reader, 
-                                      commitFrequency, maxRetries);
+                                      commitFrequency, maxRetries, writerThreads);
     }
 
     @Override
     public long loadTableFromMysqlDump(Session session, InputStream inputStream, 
                                        String encoding,
                                        Table toTable, List<Column> toColumns,
-                                       long commitFrequency, int maxRetries,
+                                       long commitFrequency, int maxRetries, int writerThreads,
                                        QueryContext context) 
             throws IOException {
         MysqlDumpRowReader reader = new MysqlDumpRowReader(toTable, toColumns,
                                                            inputStream, encoding, 
                                                            context, getTypesTranslator());
         return loadTableFromRowReader(session, inputStream, reader, 
-                                      commitFrequency, maxRetries);
+                                      commitFrequency, maxRetries, writerThreads);
     }
 
     protected long loadTableFromRowReader(Session session, 
                                           InputStream inputStream, RowReader reader, 
-                                          long commitFrequency, int maxRetries)
+                                          long commitFrequency, int maxRetries,
+                                          int writerThreads)
             throws IOException {
+        if (writerThreads == WRITER_THREADS_DEFAULT) {
+            writerThreads = Integer.parseInt(configService.getProperty(WRITER_THREADS_PROPERTY));
+        }
+        if ((writerThreads > 1) && (commitFrequency != COMMIT_FREQUENCY_NEVER)) {
+            int batchSize = (commitFrequency > 0) ?
+                (int)Math.min(commitFrequency, Integer.MAX_VALUE) :
+                Integer.parseInt(configService.getProperty(BATCH_SIZE_PROPERTY));
+            return new ParallelLoad(session, reader, batchSize, maxRetries, writerThreads).load();
+        }
         long pending = 0, total = 0;
         List<Row> rows = maxRetries > 0 ? new ArrayList<Row>() : null;
         boolean transaction = false;
@@ -341,6 +366,277 @@ public class ExternalDataServiceImpl implements ExternalDataService, Service {
         return total;
     }
 
+    /** Rows parsed on the calling thread are handed off in batches to
+     * writer threads, each with its own session. Every batch is written
+     * and committed in its own transaction, with deferrable foreign key
+     * and uniqueness checks left until that commit.
+     */
+    class ParallelLoad {
+        private final Session session;
+        private final RowReader reader;
+        private final int batchSize, maxRetries, nwriters;
+        private final BlockingQueue<List<Row>> batches;
+        private final List<Future<Void>> futures;
+        private volatile boolean aborted;
+
+        private final List<Row> END = Collections.emptyList();
+
+        ParallelLoad(Session session, RowReader reader,
+                     int batchSize, int maxRetries, int nwriters) {
+            this.session = session;
+            this.reader = reader;
+            this.batchSize = batchSize;
+            this.maxRetries = maxRetries;
+            this.nwriters = nwriters;
+            // Enough to keep every writer busy while the next batch is parsed.
+            this.batches = new ArrayBlockingQueue<>(nwriters);
+            this.futures = new ArrayList<>(nwriters);
+        }
+
+        public long load() throws IOException {
+            for (int i = 0; i < nwriters; i++) {
+                futures.add(writers.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            write();
+                            return null;
+                        }
+                    }));
+            }
+            long total = 0;
+            Throwable failure = null;
+            try {
+                total = parse();
+            }
+            catch (IOException | RuntimeException | Error ex) {
+                failure = ex;
+                aborted = true;
+                batches.clear();
+            }
+            failure = finish(failure);
+            if (failure instanceof QueryCanceledException) {
+                // A writer may have noticed first.
+                session.cancelCurrentQuery(false);
+            }
+            if (failure instanceof IOException)
+                throw (IOException)failure;
+            if (failure instanceof RuntimeException)
+                throw (RuntimeException)failure;
+            if (failure != null)
+                throw (Error)failure;
+            return total;
+        }
+
+        private long parse() throws IOException {
+            long total = 0;
+            List<Row> batch = new ArrayList<>(batchSize);
+            boolean transaction = false;
+            try {
+                Row row;
+                do {
+                    if (!transaction) {
+                        // As in the serial case, for auto increment.
+                        transactionService.beginTransaction(session);
+                        transaction = true;
+                    }
+                    row = reader.nextRow();
+                    logger.trace("Read row: {}", row);
+                    if (row != null) {
+                        batch.add(row);
+                        total++;
+                    }
+                    if ((row == null) || (batch.size() >= batchSize)) {
+                        transaction = false;
+                        transactionService.commitTransaction(session);
+                        if (!batch.isEmpty()) {
+                            logger.debug("Queueing {} rows", batch.size());
+                            if (!put(batch)) {
+                                // A writer failed; finish() reports why.
+                                break;
+                            }
+                            batch = new ArrayList<>(batchSize);
+                        }
+                    }
+                } while (row != null);
+            }
+            finally {
+                if (transaction) {
+                    transactionService.rollbackTransaction(session);
+                }
+            }
+            return total;
+        }
+
+        /** Queue a batch, unless writers have begun to fail. */
+        private boolean put(List<Row> batch) {
+            try {
+                while (!batches.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                    if (session.isCurrentQueryCanceled()) {
+                        // Before the flag is cleared, so writers stop too.
+                        aborted = true;
+                        throw new QueryCanceledException(session);
+                    }
+                    if (aborted) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new QueryCanceledException(session);
+            }
+        }
+
+        /** Tell writers there is no more and wait for them, returning
+         * the first failure from any thread. */
+        private Throwable finish(Throwable failure) {
+            int ended = 0;
+            boolean interrupted = false;
+            while (ended < nwriters) {
+                try {
+                    if (batches.offer(END, 100, TimeUnit.MILLISECONDS)) {
+                        ended++;
+                    }
+                    else {
+                        boolean anyRunning = false;
+                        for (Future<Void> future : futures) {
+                            if (!future.isDone()) {
+                                anyRunning = true;
+                                break;
+                            }
+                        }
+                        if (!anyRunning) break;
+                    }
+                }
+                catch (InterruptedException ex) {
+                    interrupted = true;
+                    aborted = true;
+                    batches.clear();
+                }
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    while (true) {
+                        try {
+                            future.get();
+                            break;
+                        }
+                        catch (InterruptedException ex) {
+                            interrupted = true;
+                            aborted = true;
+                        }
+                    }
+                }
+                catch (ExecutionException ex) {
+                    // Other writers stopping is not the reason.
+                    if ((failure == null) ||
+                        ((failure instanceof QueryCanceledException) &&
+                         !(ex.getCause() instanceof QueryCanceledException))) {
+                        failure = ex.getCause();
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+                if (failure == null) {
+                    failure = new QueryCanceledException(session);
+                }
+            }
+            return failure;
+        }
+
+        private void write() {
+            Session writerSession = serviceManager.getSessionService().createSession();
+            try {
+                transactionService.setSessionOption(writerSession, TransactionService.SessionOption.CONSTRAINT_CHECK_TIME, "DELAYED");
+                while (true) {
+                    List<Row> batch = batches.take();
+                    if (batch == END) break;
+                    if (aborted) continue;
+                    writeBatch(writerSession, batch);
+                }
+            }
+            catch (InterruptedException ex) {
+                aborted = true;
+                throw new QueryCanceledException(writerSession);
+            }
+            catch (RuntimeException | Error ex) {
+                aborted = true;
+                throw ex;
+            }
+            finally {
+                writerSession.close();
+            }
+        }
+
+        private void writeBatch(Session session, List<Row> rows) {
+            boolean transaction = false;
+            Exception retryException = null;
+            int sessionCounter = -1;
+            try {
+                for (int i = 0; i <= maxRetries; i++) {
+                    try {
+                        retryHook(session, i, maxRetries, retryException);
+                        if (!transaction) {
+                            transactionService.beginTransaction(session);
+                            transaction = true;
+                        }
+                        if (i > 0) {
+                            logger.debug("retry #{} from {}", i, retryException);
+                            if (transactionService.checkSucceeded(session,
+                                                                  retryException,
+                                                                  sessionCounter)) {
+                                logger.debug("transaction had succeeded");
+                                return;
+                            }
+                            // See loadTableFromRowReader.
+                            retryException = null;
+                            sessionCounter = -1;
+                        }
+                        transactionService.setDeferredForeignKey(session, null, true);
+                        for (Row row : rows) {
+                            checkCanceled(session);
+                            store.writeRow(session, row, null, null);
+                        }
+                        logger.debug("Committing {} rows", rows.size());
+                        sessionCounter = transactionService.markForCheck(session);
+                        transaction = false;
+                        transactionService.commitTransaction(session);
+                        return;
+                    }
+                    catch (InvalidOperationException ex) {
+                        if ((i >= maxRetries) ||
+                            !ex.getCode().isRollbackClass()) {
+                            throw ex;
+                        }
+                        if (retryException == null) {
+                            retryException = ex;
+                        }
+                        if (transaction) {
+                            transaction = false;
+                            transactionService.rollbackTransaction(session);
+                        }
+                    }
+                }
+            }
+            finally {
+                if (transaction) {
+                    transactionService.rollbackTransaction(session);
+                }
+            }
+        }
+
+        /** Stop a writer part way through a batch if the calling
+         * session's query was canceled or the load has failed. */
+        private void checkCanceled(Session writerSession) {
+            if (session.isCurrentQueryCanceled() || aborted) {
+                aborted = true;
+                throw new QueryCanceledException(writerSession);
+            }
+        }
+    }
+
     
     // For testing by failure injection.
     protected void retryHook(Session session, int i, int maxRetries,
@@ -351,14 +647,26 @@ public class ExternalDataServiceImpl implements ExternalDataService, Service {
     
     @Override
     public void start() {
+        writers = Executors.newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Load-Writer-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
     }
 
     @Override
     public void stop() {
+        writers.shutdownNow();
     }
 
     @Override
     public void crash() {
+        stop();
     }
 
 }
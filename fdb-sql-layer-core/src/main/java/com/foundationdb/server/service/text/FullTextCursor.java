@@ -27,44 +27,61 @@ import com.foundationdb.qp.rowtype.HKeyRowType;
 import com.foundationdb.server.error.AkibanInternalException;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TopDocs;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.primitives.UnsignedBytes;
+
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
 
 public class FullTextCursor extends RowCursorImpl
 {
     private final QueryContext context;
     private final HKeyRowType rowType;
-    private final SearcherManager searcherManager;
+    private final Searcher source;
     private final Query query;
     private final int limit;
     //private final StoreAdapter adapter;
     private IndexSearcher searcher;
     private TopDocs results = null;
     private int position;
+    // Unlimited searches: all matching documents, in index order, and the
+    // next batch of their hkeys.
+    private DocIdCollector allDocs = null;
+    private final byte[][] keyBatch = new byte[KEY_BATCH_SIZE][];
+    private int keyBatchSize, keyBatchPosition;
 
     public static final Sort SORT = new Sort(SortField.FIELD_SCORE,
                                              new SortField(IndexedField.KEY_FIELD,
                                                            SortField.Type.STRING));
 
+    /** Hkeys of an unlimited search are sorted this many at a time,
+     * so that the group lookups that follow go in key order. */
+    static final int KEY_BATCH_SIZE = 128;
+    private static final Set<String> KEY_FIELDS = Collections.singleton(IndexedField.KEY_FIELD);
+
     private static final Logger logger = LoggerFactory.getLogger(FullTextCursor.class);
 
     public FullTextCursor(QueryContext context, HKeyRowType rowType, 
-                          SearcherManager searcherManager, Query query, int limit) {
+                          Searcher source, Query query, int limit) {
         this.context = context;
         this.rowType = rowType;
-        this.searcherManager = searcherManager;
+        this.source = source;
         this.query = query;
         this.limit = limit;
         //adapter = context.getStore();
-        searcher = searcherManager.acquire();
+        searcher = source.acquire();
     }
 
     @Override
@@ -76,13 +93,23 @@ public class FullTextCursor extends RowCursorImpl
         }
         else {
             try {
-                results = searcher.search(query, limit, SORT);
+                if (limit == Searcher.DEFAULT_LIMIT) {
+                    // Neither scoring nor sorting every match pays when
+                    // they are all returned.
+                    allDocs = new DocIdCollector();
+                    searcher.search(query, allDocs);
+                    allDocs.sort();
+                }
+                else {
+                    results = searcher.search(query, limit, SORT);
+                }
             }
             catch (IOException ex) {
                 throw new AkibanInternalException("Error searching index", ex);
             }
         }
         position = 0;
+        keyBatchSize = keyBatchPosition = 0;
     }
     
     @Override
@@ -90,6 +117,9 @@ public class FullTextCursor extends RowCursorImpl
         CursorLifecycle.checkIdleOrActive(this);
         if (isIdle())
             return null;
+        if (allDocs != null) {
+            return nextInKeyOrder();
+        }
         if (position >= results.scoreDocs.length) {
             setIdle();
             results = null;
@@ -111,8 +141,10 @@ public class FullTextCursor extends RowCursorImpl
     public void close() {
         super.close();
         results = null;
+        allDocs = null;
+        Arrays.fill(keyBatch, null);
         try {
-            searcherManager.release(searcher);
+            source.release(searcher);
         }
         catch (IOException ex) {
             throw new AkibanInternalException("Error releasing searcher", ex);
@@ -120,12 +152,75 @@ public class FullTextCursor extends RowCursorImpl
         searcher = null;
     }
 
+    protected Row nextInKeyOrder() {
+        if (keyBatchPosition >= keyBatchSize) {
+            keyBatchSize = keyBatchPosition = 0;
+            try {
+                while ((keyBatchSize < KEY_BATCH_SIZE) && (position < allDocs.size)) {
+                    Document doc = searcher.doc(allDocs.docs[position++], KEY_FIELDS);
+                    keyBatch[keyBatchSize++] = RowIndexer.decodeString(doc.get(IndexedField.KEY_FIELD));
+                }
+            }
+            catch (IOException ex) {
+                throw new AkibanInternalException("Error reading document", ex);
+            }
+            if (keyBatchSize == 0) {
+                setIdle();
+                allDocs = null;
+                return null;
+            }
+            Arrays.sort(keyBatch, 0, keyBatchSize, UnsignedBytes.lexicographicalComparator());
+        }
+        byte[] bytes = keyBatch[keyBatchPosition];
+        keyBatch[keyBatchPosition++] = null;
+        Row row = toHkeyRow(bytes);
+        logger.debug("FullTextCursor: yield {}", row);
+        return row;
+    }
+
     /* Allocate a new <code>HKey</code> and copy the given
      * key bytes into it. */
     protected Row toHkeyRow(String encoded) {
+        return toHkeyRow(RowIndexer.decodeString(encoded));
+    }
+
+    protected Row toHkeyRow(byte[] decodedBytes) {
         HKey hkey = context.getStore().getKeyCreator().newHKey(rowType.hKey());
-        byte decodedBytes[] = RowIndexer.decodeString(encoded);
         hkey.copyFrom(decodedBytes);
         return (Row)(ValuesHKey)hkey;
     }
+
+    /** Collect the ids of all matching documents, without scoring. */
+    static class DocIdCollector extends Collector {
+        int[] docs = new int[16];
+        int size;
+        private int docBase;
+
+        @Override
+        public void setScorer(Scorer scorer) {
+        }
+
+        @Override
+        public void collect(int doc) {
+            if (size >= docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = docBase + doc;
+        }
+
+        @Override
+        public void setNextReader(AtomicReaderContext context) {
+            docBase = context.docBase;
+        }
+
+        @Override
+        public boolean acceptsDocsOutOfOrder() {
+            return true;
+        }
+
+        /** Put into index order, which is also the cheapest order to read stored fields. */
+        public void sort() {
+            Arrays.sort(docs, 0, size);
+        }
+    }
 }
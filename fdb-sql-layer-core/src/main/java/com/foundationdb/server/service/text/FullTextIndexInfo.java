@@ -26,6 +26,8 @@ import com.foundationdb.ais.model.IndexName;
 import com.foundationdb.ais.model.Table;
 import com.foundationdb.qp.operator.API;
 import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.operator.RowCursor;
 import com.foundationdb.qp.rowtype.*;
 import com.foundationdb.qp.rowtype.TableRowType;
 import com.foundationdb.qp.util.SchemaCache;
@@ -33,7 +35,9 @@ import com.foundationdb.server.error.NoSuchIndexException;
 import com.foundationdb.server.error.NoSuchTableException;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.queryparser.flexible.standard.StandardQueryParser;
+import org.apache.lucene.search.Query;
 
 import java.io.File;
 import java.io.IOException;
@@ -234,18 +238,48 @@ public class FullTextIndexInfo
         return parser;
     }
 
+    /** Get the searcher, reading from the writer if the updater has opened
+     * one, and otherwise just from the directory, so that searching alone
+     * does not open a writer and take its lock. The exception is an index
+     * that has never been committed, which there is nothing to read from
+     * until a writer creates it. */
     protected Searcher getSearcher() throws IOException {
         Searcher searcher;
         synchronized (shared) {
             searcher = shared.getSearcher();
+            Indexer indexer = shared.getIndexer();
+            if ((searcher != null) && (indexer != null) &&
+                !searcher.readsFrom(indexer.getWriter())) {
+                // A writer has been opened since: switch to reading from it.
+                // Cursors still reading keep the old one open until they close.
+                shared.setSearcher(null);
+                searcher.close();
+                searcher = null;
+            }
             if (searcher == null) {
-                searcher = new Searcher(shared, getAnalyzer());
+                if ((indexer == null) && !DirectoryReader.indexExists(shared.open())) {
+                    indexer = getIndexer();
+                }
+                if (indexer != null) {
+                    searcher = new Searcher(shared, indexer.getWriter());
+                }
+                else {
+                    searcher = new Searcher(shared);
+                }
             }
             shared.setSearcher(searcher);
         }
         return searcher;
     }
 
+    /** Search with the current searcher. The cursor gets its reader under the
+     * same lock that {@link #rollbackIndexer} replaces the searcher under. */
+    public RowCursor search(QueryContext context, Query query, int limit) throws IOException {
+        synchronized (shared) {
+            return getSearcher().search(context, hKeyRowType, query, limit);
+        }
+    }
+
     public Indexer getIndexer() throws IOException {
         Indexer indexer;
         synchronized (shared) {
@@ -269,8 +303,20 @@ public class FullTextIndexInfo
         path.delete();
     }
 
+    public Object getUpdateLock() {
+        return shared.getUpdateLock();
+    }
+
+    /** Commit the writer and let searches see what was committed. */
     public void commitIndexer() throws IOException {
         shared.getIndexer().getWriter().commit();
+        Searcher searcher;
+        synchronized (shared) {
+            searcher = shared.getSearcher();
+        }
+        if (searcher != null) {
+            searcher.refresh();
+        }
     }
 
     public void rollbackIndexer() throws IOException {
@@ -280,8 +326,16 @@ public class FullTextIndexInfo
                 try {
                     indexer.getWriter().rollback();
                 } finally {
-                    // Rollback causes the writer to be closed. Always get rid of it.
+                    // Rollback causes the writer to be closed. Always get rid of it,
+                    // and of the searcher reading from it. Cursors still reading keep
+                    // it open until they are closed; the next search reads from the
+                    // directory until a new writer is opened.
                     shared.setIndexer(null);
+                    Searcher searcher = shared.getSearcher();
+                    if (searcher != null) {
+                        shared.setSearcher(null);
+                        searcher.close();
+                    }
                 }
             }
         }
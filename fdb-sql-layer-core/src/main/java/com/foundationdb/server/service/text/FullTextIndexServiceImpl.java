@@ -95,7 +95,6 @@ public class FullTextIndexServiceImpl extends FullTextIndexInfosImpl
     private final Store store;
     private final TransactionService transactionService;
     private final Object BACKGROUND_CHANGE_LOCK = new Object();
-    private final Object BACKGROUND_UPDATE_LOCK = new Object();
 
     private BackgroundRunner backgroundUpdate;
     private long backgroundInterval;
@@ -123,8 +122,8 @@ public class FullTextIndexServiceImpl extends FullTextIndexInfosImpl
 
     private void dropIndex(Session session, FullTextIndex index) {
         logger.trace("Delete {}", index.getIndexName());
-        synchronized(BACKGROUND_UPDATE_LOCK) {
-            FullTextIndexInfo info = getIndex(session, index.getIndexName(), index.getIndexedTable().getAIS());
+        FullTextIndexInfo info = getIndex(session, index.getIndexName(), index.getIndexedTable().getAIS());
+        synchronized(info.getUpdateLock()) {
             try {
                 info.close();
             } catch(IOException e) {
@@ -142,7 +141,7 @@ public class FullTextIndexServiceImpl extends FullTextIndexInfosImpl
     public RowCursor searchIndex(QueryContext context, IndexName name, Query query, int limit) {
         FullTextIndexInfo index = getIndex(context.getSession(), name, null);
         try {
-            return index.getSearcher().search(context, index.getHKeyRowType(),  query, limit);
+            return index.search(context, query, limit);
         }
         catch (IOException ex) {
             throw new AkibanInternalException("Error searching index", ex);
@@ -397,38 +396,43 @@ public class FullTextIndexServiceImpl extends FullTextIndexInfosImpl
                 if(changesRowCount(session) == 0) {
                     break;
                 }
-                // Only interact with FullTextIndexInfo under lock as to not fight concurrent DROP
-                synchronized(BACKGROUND_UPDATE_LOCK) {
-                    FullTextIndexInfo indexInfo = null;
-                    try(HKeyBytesStream rows = new HKeyBytesStream(session)) {
-                        if(rows.hasStream()) {
-                            IndexName name = rows.getIndexName();
-                            indexInfo = getIndexIfExists(session, name, null);
-                            if(indexInfo == null) {
-                                // Index has been deleted. Will conflict on so give up.
-                                break;
-                            } else {
-                                updateIndex(session, indexInfo, rows);
-                            }
-                        }
+                try(HKeyBytesStream rows = new HKeyBytesStream(session)) {
+                    if(!rows.hasStream()) {
                         txn.commit();
-                        // Only commit changes to Lucene after successful iteration
-                        // and removal of pending update rows
-                        if(indexInfo != null) {
-                            indexInfo.commitIndexer();
-                            indexInfo = null;
+                        continue;
+                    }
+                    IndexName name = rows.getIndexName();
+                    FullTextIndexInfo indexInfo = getIndexIfExists(session, name, null);
+                    if(indexInfo == null) {
+                        // Index has been deleted. Will conflict on so give up.
+                        break;
+                    }
+                    // Only interact with FullTextIndexInfo under its own lock as to not fight
+                    // concurrent DROP. Searches, and DROP of other indexes, do not wait on it.
+                    synchronized(indexInfo.getUpdateLock()) {
+                        if(getIndexIfExists(session, name, null) != indexInfo) {
+                            break;
                         }
-                    } catch(IOException e) {
-                        throw new AkibanInternalException("Error updating index", e);
-                    } finally {
-                        if(indexInfo != null) {
-                            try {
-                                indexInfo.rollbackIndexer();
-                            } catch(IOException e) {
-                                logger.warn( "Error rolling back update to {}", indexInfo.getIndex().getIndexName(), e);
+                        boolean committed = false;
+                        try {
+                            updateIndex(session, indexInfo, rows);
+                            txn.commit();
+                            // Only commit changes to Lucene after successful iteration
+                            // and removal of pending update rows
+                            indexInfo.commitIndexer();
+                            committed = true;
+                        } finally {
+                            if(!committed) {
+                                try {
+                                    indexInfo.rollbackIndexer();
+                                } catch(IOException e) {
+                                    logger.warn( "Error rolling back update to {}", indexInfo.getIndex().getIndexName(), e);
+                                }
                             }
                         }
                     }
+                } catch(IOException e) {
+                    throw new AkibanInternalException("Error updating index", e);
                 }
             }
         }
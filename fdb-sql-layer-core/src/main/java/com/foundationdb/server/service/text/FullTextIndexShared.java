@@ -41,6 +41,7 @@ public class FullTextIndexShared implements CacheValueGenerator<FullTextIndexInf
     private StandardQueryParser parser;
     private Indexer indexer;
     private Searcher searcher;
+    private final Object updateLock = new Object();
 
     public FullTextIndexShared(IndexName name) {
         this.name = name;
@@ -143,4 +144,9 @@ public class FullTextIndexShared implements CacheValueGenerator<FullTextIndexInf
         this.searcher = searcher;
     }
 
+    /** Held while applying changes to this index or dropping it. */
+    public Object getUpdateLock() {
+        return updateLock;
+    }
+
 }
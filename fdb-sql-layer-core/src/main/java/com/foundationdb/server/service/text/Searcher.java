@@ -21,41 +21,86 @@ import com.foundationdb.qp.operator.RowCursor;
 import com.foundationdb.qp.operator.QueryContext;
 import com.foundationdb.qp.rowtype.HKeyRowType;
 
-import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.search.SearcherManager;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 public class Searcher implements Closeable
 {
     public static final int DEFAULT_LIMIT = Integer.MAX_VALUE;
 
     private final FullTextIndexShared index;
+    private final IndexWriter writer;
     private final SearcherManager searcherManager;
+    private int acquired;
+    private boolean retired;
 
-    public Searcher(FullTextIndexShared index, Analyzer analyzer) throws IOException {
+    /** Searches read what is committed to the index's directory as of
+     * the last {@link #refresh}, without opening a writer. */
+    public Searcher(FullTextIndexShared index) throws IOException {
         this.index = index;
+        this.writer = null;
         this.searcherManager = new SearcherManager(index.open(), new SearcherFactory());
     }
 
+    /** Searches are near-real-time, reading from <code>writer</code>
+     * as of the last {@link #refresh}. */
+    public Searcher(FullTextIndexShared index, IndexWriter writer) throws IOException {
+        this.index = index;
+        this.writer = writer;
+        this.searcherManager = new SearcherManager(writer, true, new SearcherFactory());
+    }
+
+    /** Whether searches read from <code>writer</code>. */
+    public boolean readsFrom(IndexWriter writer) {
+        return (this.writer == writer);
+    }
+
     public RowCursor search(QueryContext context, HKeyRowType rowType,
                             Query query, int limit)
             throws IOException {
-        searcherManager.maybeRefresh(); // TODO: Move to better place.
         if (limit <= 0) limit = DEFAULT_LIMIT;
-        return new FullTextCursor(context, rowType, searcherManager, query, limit);
+        return new FullTextCursor(context, rowType, this, query, limit);
+    }
+
+    /** Get the current reader for a cursor; it must be {@link #release}d. */
+    protected synchronized IndexSearcher acquire() {
+        IndexSearcher searcher = searcherManager.acquire();
+        acquired++;
+        return searcher;
+    }
+
+    protected void release(IndexSearcher searcher) throws IOException {
+        searcherManager.release(searcher);
+        synchronized (this) {
+            acquired--;
+            if (retired && (acquired == 0)) {
+                searcherManager.close();
+            }
+        }
+    }
+
+    /** Make changes so far visible to new searches: everything written,
+     * when reading from a writer, else everything committed. */
+    public void refresh() throws IOException {
+        searcherManager.maybeRefresh();
     }
 
+    /** Close now if no cursor is reading, else when the last one is released.
+     * Only for a searcher that no longer hands out new searches. */
     @Override
-    public void close() throws IOException {
-        searcherManager.close();
+    public synchronized void close() throws IOException {
+        if (!retired) {
+            retired = true;
+            if (acquired == 0) {
+                searcherManager.close();
+            }
+        }
     }
 
 }
@@ -766,6 +766,7 @@ public abstract class AbstractStore<SType extends AbstractStore,SDType,SSDType e
             for(TableIndex index : oldRow.rowType().table().getIndexesIncludingInternal()) {
                 updateIndex(session, index, oldRow, newRow, hKey, indexRowBuffer);
             }
+            oldRow.rowType().table().tableStatus().rowUpdated(session);
         } else {
             // A PK or FK field has changed. Process the update by delete and insert.
             // tablesRequiringHKeyMaintenance contains the ordinals of the tables whose hKey could have been affected.
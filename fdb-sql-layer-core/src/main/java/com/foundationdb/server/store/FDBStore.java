@@ -194,7 +194,10 @@ public class FDBStore extends AbstractStore<FDBStore,FDBStoreData,FDBStorageDesc
         boolean withConcurrentDML = Boolean.parseBoolean(configService.getProperty(FEATURE_DDL_WITH_DML_PROP));
         this.sequenceCacheSize = Integer.parseInt(configService.getProperty(CONFIG_SEQUENCE_CACHE_SIZE));
         this.constraintHandler = new FDBConstraintHandler(this, configService, typesRegistryService, serviceManager, txnService);
-        this.onlineHelper = new OnlineHelper(txnService, schemaManager, this, typesRegistryService, constraintHandler, withConcurrentDML);
+        int indexBuildSortRows = Integer.parseInt(configService.getProperty(OnlineHelper.INDEX_BUILD_SORT_ROWS_PROP));
+        int indexBuildThreads = Integer.parseInt(configService.getProperty(OnlineHelper.INDEX_BUILD_THREADS_PROP));
+        this.onlineHelper = new OnlineHelper(txnService, schemaManager, this, typesRegistryService, constraintHandler, withConcurrentDML,
+                                             indexBuildSortRows, indexBuildThreads);
         listenerService.registerRowListener(onlineHelper);
     }
 
@@ -328,6 +331,13 @@ public class FDBStore extends AbstractStore<FDBStore,FDBStoreData,FDBStorageDesc
         txn.setBytes(packedKey, EMPTY_BYTE_ARRAY);
         
     }
+
+    @Override
+    public void writeIndexKey(Session session, TableIndex index, Row row, Key indexKey) {
+        TransactionState txn = txnService.getTransaction(session);
+        checkUniqueness(session, txn, index, row, indexKey);
+        txn.setBytes(packedTuple(index, indexKey), EMPTY_BYTE_ARRAY);
+    }
     
     @Override
     public void deleteIndexRow(Session session, TableIndex index, Row row, Key hKey, WriteIndexRow indexRow,
@@ -49,6 +49,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
@@ -121,6 +122,7 @@ public class FDBTransactionService implements TransactionService {
         boolean forceImmediateForeignKeyCheck;
         int resetCount;
         FDBScanTransactionOptions scanOptions = FDBScanTransactionOptions.NORMAL;
+        Map<Integer,Long> modificationCounts;
 
         public TransactionState(FDBPendingIndexChecks.CheckTime checkTime, Session session) {
             this.transaction = createTransaction();
@@ -302,6 +304,8 @@ public class FDBTransactionService implements TransactionService {
             this.forceImmediateForeignKeyCheck = false;
             if (indexChecks != null)
                 indexChecks.clear();
+            if (modificationCounts != null)
+                modificationCounts.clear();
             resetCount++;
         }
 
@@ -339,6 +343,23 @@ public class FDBTransactionService implements TransactionService {
             return new FDBScanTransactionOptions(commitScanLimit, commitAfterMillis);
         }
 
+        /** The modification count of a table, as already read in
+         * this transaction, or <code>null</code>. */
+        public Long getModificationCount(int tableID) {
+            return (modificationCounts == null) ? null : modificationCounts.get(tableID);
+        }
+
+        public void setModificationCount(int tableID, long count) {
+            if (modificationCounts == null)
+                modificationCounts = new HashMap<>();
+            modificationCounts.put(tableID, count);
+        }
+
+        public void clearModificationCount(int tableID) {
+            if (modificationCounts != null)
+                modificationCounts.remove(tableID);
+        }
+
         public boolean isDeferred(ForeignKey foreignKey) {
             return foreignKey.isDeferred(deferredForeignKeys);
         }
@@ -35,7 +35,7 @@ import com.foundationdb.qp.storeadapter.indexrow.SpatialColumnHandler;
 import com.foundationdb.qp.storeadapter.indexrow.MemoryIndexRow;
 import com.foundationdb.qp.util.SchemaCache;
 import com.foundationdb.server.error.DuplicateKeyException;
-import com.foundationdb.server.error.LockTimeoutException;
+import com.foundationdb.server.error.TransactionConflictException;
 import com.foundationdb.server.service.Service;
 import com.foundationdb.server.service.ServiceManager;
 import com.foundationdb.server.service.config.ConfigurationService;
@@ -95,12 +95,16 @@ public class MemoryStore extends AbstractStore<MemoryStore, MemoryStoreData, Mem
                                                               typesRegistryService,
                                                               serviceManager);
         boolean withConcurrentDML = Boolean.parseBoolean(configService.getProperty(FEATURE_DDL_WITH_DML_PROP));
+        int indexBuildSortRows = Integer.parseInt(configService.getProperty(OnlineHelper.INDEX_BUILD_SORT_ROWS_PROP));
+        int indexBuildThreads = Integer.parseInt(configService.getProperty(OnlineHelper.INDEX_BUILD_THREADS_PROP));
         this.onlineHelper = new OnlineHelper(txnService,
                                              schemaManager,
                                              this,
                                              typesRegistryService,
                                              constraintHandler,
-                                             withConcurrentDML);
+                                             withConcurrentDML,
+                                             indexBuildSortRows,
+                                             indexBuildThreads);
         listenerService.registerRowListener(onlineHelper);
     }
 
@@ -257,6 +261,13 @@ public class MemoryStore extends AbstractStore<MemoryStore, MemoryStoreData, Mem
         txn.set(rawKey, BYTES_EMPTY);
     }
 
+    @Override
+    public void writeIndexKey(Session session, TableIndex index, Row row, Key indexKey) {
+        MemoryTransaction txn = getTransaction(session);
+        checkUniqueness(session, txn, index, row, indexKey);
+        txn.set(packKey(index, indexKey), BYTES_EMPTY);
+    }
+
     @Override
     public void deleteIndexRow(Session session,
                                TableIndex index,
@@ -404,7 +415,7 @@ public class MemoryStore extends AbstractStore<MemoryStore, MemoryStoreData, Mem
 
     @Override
     public Class<? extends Exception> getOnlineDMLFailureException() {
-        return LockTimeoutException.class;
+        return TransactionConflictException.class;
     }
 
     @Override
@@ -517,6 +528,14 @@ public class MemoryStore extends AbstractStore<MemoryStore, MemoryStoreData, Mem
         }
     }
 
+    /** Iterate over the raw index entries from <code>begin</code> to the end of the index, or backwards if <code>reverse</code>. */
+    public void indexIterator(Session session, MemoryStoreData storeData, byte[] begin, boolean reverse) {
+        assert storeData.storageDescription.getObject() instanceof Index : storeData.storageDescription;
+        MemoryTransaction txn = getTransaction(session);
+        byte[] end = join(packKey(storeData.storageDescription), BYTES_FF);
+        storeData.iterator = txn.getRange(begin, end, reverse);
+    }
+
     public void setRollbackPending(Session session) {
         txnService.setRollbackPending(session);
     }
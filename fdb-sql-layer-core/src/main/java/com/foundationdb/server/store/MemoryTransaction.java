@@ -31,5 +31,10 @@ public interface MemoryTransaction
     void set(byte[] key, byte[] value);
 
     void clear(byte[] key);
+
+    /** Add to a long value, without reading it, so that concurrent
+     * additions do not conflict. */
+    void add(byte[] key, long delta);
+
     void clearRange(byte[] beginKey, byte[] endKey);
 }
@@ -20,10 +20,9 @@ package com.foundationdb.server.store;
 import com.foundationdb.ais.model.ForeignKey;
 import com.foundationdb.server.error.AkibanInternalException;
 import com.foundationdb.server.error.InvalidOperationException;
-import com.foundationdb.server.error.LockTimeoutException;
 import com.foundationdb.server.error.NoTransactionInProgressException;
-import com.foundationdb.server.error.QueryCanceledException;
 import com.foundationdb.server.error.TransactionAbortedException;
+import com.foundationdb.server.error.TransactionConflictException;
 import com.foundationdb.server.error.TransactionInProgressException;
 import com.foundationdb.server.service.session.Session;
 import com.foundationdb.server.service.session.Session.Key;
@@ -45,32 +44,34 @@ import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Queue;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
- * KV storage (via TreeMap<byte[],byte[]) and transaction provider.
+ * KV storage (via ConcurrentSkipListMap<byte[],Version>) and transaction provider.
  *
- * Per-key locking providing repeatable read semantics. No gap locking.
+ * Multi-version concurrency control with optimistic, serializable transactions.
  *
- * gets() take read (shared) locks, sets() and clears() take write (exclusive) locks
- * and shared can be upgraded to exclusive 'optimistically' via tag (StampedLock-ish).
+ * Each key maps to a chain of committed versions, newest first. A transaction reads
+ * the newest version no later than the commit version current when it first read, so
+ * readers never wait for writers or for each other.
  *
- * Uncommitted writes go directly into master KV after (exclusive) lock is acquired and an
- * undo log is maintained to restore proper state on rollback.
+ * Uncommitted writes are kept with the transaction and installed at commit, after
+ * checking that nothing it read or wrote, keys and ranges, has since been committed
+ * by another. If something was, a retryable error is thrown. Only committers are
+ * serialized, and only for that check and install.
  *
- * Lock acquisition has an aggressive (1s) timeout after which a retryable error is thrown.
+ * Versions no longer visible to any transaction are pruned as keys are committed.
  */
 public class MemoryTransactionService implements TransactionService
 {
@@ -78,20 +79,31 @@ public class MemoryTransactionService implements TransactionService
 
     private static final int PERIODIC_COMMIT_MILLS = 500;
     private static final int PERIODIC_COMMIT_BYTES = 100000;
-    private static final int LOCK_TIMEOUT_MILLIS = 1 * 1000;
     private static final Key<MemoryTransactionImpl> TXN_KEY = Key.named("TXN");
     private static final StackKey<Callback> PRE_COMMIT_KEY = StackKey.stackNamed("TXN_PRE_COMMIT");
     private static final StackKey<Callback> AFTER_END_KEY = StackKey.stackNamed("TXN_AFTER_END");
     private static final StackKey<Callback> AFTER_COMMIT_KEY = StackKey.stackNamed("TXN_AFTER_COMMIT");
     private static final StackKey<Callback> AFTER_ROLLBACK_KEY = StackKey .stackNamed("TXN_AFTER_ROLLBACK");
 
-    private final ConcurrentMap<BytesHolder,TaggedLock> locks;
-    private final KVMap db;
+    private static final Comparator<byte[]> COMPARATOR = UnsignedBytes.lexicographicalComparator();
+    /** Marks a key cleared by a transaction, distinct from any value (always copied). */
+    private static final byte[] CLEARED = new byte[0];
+
+    private final ConcurrentSkipListMap<byte[],Version> db;
+    /** Version of the last commit. */
+    private final AtomicLong commitVersion;
+    /** Transactions holding a snapshot, which limits version pruning. */
+    private final Set<MemoryTransactionImpl> active;
+    /** Keys whose pruning had to stop at an active snapshot. Guarded by <code>commitLock</code>. */
+    private final Set<BytesHolder> pruneLater;
+    private final Object commitLock = new Object();
 
     @Inject
     public MemoryTransactionService() {
-        this.locks = new ConcurrentHashMap<>();
-        this.db = new KVMap();
+        this.db = new ConcurrentSkipListMap<>(COMPARATOR);
+        this.commitVersion = new AtomicLong();
+        this.active = Collections.newSetFromMap(new ConcurrentHashMap<MemoryTransactionImpl,Boolean>());
+        this.pruneLater = new HashSet<>();
     }
 
     //
@@ -105,9 +117,9 @@ public class MemoryTransactionService implements TransactionService
 
     @Override
     public void stop() {
-        locks.clear();
-        synchronized(db) {
+        synchronized(commitLock) {
             db.clear();
+            pruneLater.clear();
         }
     }
 
@@ -395,9 +407,9 @@ public class MemoryTransactionService implements TransactionService
         private final byte[] key;
         private final byte[] value;
 
-        public CopiedEntry(Entry<byte[], byte[]> entry) {
-            this.key = copy(entry.getKey());
-            this.value = copy(entry.getValue());
+        public CopiedEntry(byte[] key, byte[] value) {
+            this.key = copy(key);
+            this.value = copy(value);
         }
 
         @Override
@@ -421,92 +433,142 @@ public class MemoryTransactionService implements TransactionService
         }
     }
 
-    private static class KVMap extends TreeMap<byte[], byte[]>
+    /** One committed value of a key, linked to the one it replaced. */
+    private static class Version
     {
-        private static final Comparator<byte[]> COMPARATOR = UnsignedBytes.lexicographicalComparator();
+        final long version;
+        final byte[] value; // null when cleared
+        volatile Version older;
 
-        private static final Comparator<byte[]> REVERSE_COMPARATOR = new Comparator<byte[]>() {
-            @Override
-            public int compare(byte[] o1, byte[] o2) {
-                return COMPARATOR.compare(o2, o1);
-            }
-        };
+        Version(long version, byte[] value, Version older) {
+            this.version = version;
+            this.value = value;
+            this.older = older;
+        }
 
-        public KVMap() {
-            this(Collections.<byte[],byte[]>emptyMap(), false);
+        /** Get the version visible as of <code>readVersion</code>, if any. */
+        static Version visible(Version v, long readVersion) {
+            while((v != null) && (v.version > readVersion)) {
+                v = v.older;
+            }
+            return v;
         }
 
-        public KVMap(Map<byte[], byte[]> map, boolean reverse) {
-            super(reverse ? REVERSE_COMPARATOR : COMPARATOR);
-            putAll(map);
+        @Override
+        public String toString() {
+            return "Version(" + version + "=" + (value == null ? null : Strings.hex(value)) + ")";
         }
     }
 
-    private static class TaggedLock
+    /** A range read, for checking at commit. */
+    private static class ReadRange
     {
-        private final ReadWriteLock rwLock;
-        // ReadWriteLock does not support upgrading read to write.
-        // Tag is checked pre-read.unlock() and must match post-write.lock().
-        private final AtomicLong tag;
-
-        public TaggedLock() {
-            this.rwLock = new ReentrantReadWriteLock(true);
-            this.tag = new AtomicLong(0);
-        }
+        final byte[] beginKey;
+        final byte[] endKey;
 
-        public void readUnlock() {
-            rwLock.readLock().unlock();
+        ReadRange(byte[] beginKey, byte[] endKey) {
+            this.beginKey = beginKey;
+            this.endKey = endKey;
         }
+    }
 
-        public void writeUnlock() {
-            rwLock.writeLock().unlock();
+    /** Merges a snapshot of committed versions with the transaction's own writes. */
+    private static class SnapshotIterator implements Iterator<Entry<byte[], byte[]>>
+    {
+        private final Iterator<Entry<byte[], Version>> committed;
+        private final Iterator<Entry<byte[], byte[]>> written;
+        private final Comparator<byte[]> comparator;
+        private final long readVersion;
+        private byte[] committedKey, committedValue;
+        private Entry<byte[], byte[]> writtenEntry;
+        private Entry<byte[], byte[]> next;
+
+        SnapshotIterator(NavigableMap<byte[], Version> committed, NavigableMap<byte[], byte[]> written,
+                         long readVersion, boolean reverse) {
+            if(reverse) {
+                this.committed = committed.descendingMap().entrySet().iterator();
+                this.written = written.descendingMap().entrySet().iterator();
+                this.comparator = Collections.reverseOrder(COMPARATOR);
+            } else {
+                this.committed = committed.entrySet().iterator();
+                this.written = written.entrySet().iterator();
+                this.comparator = COMPARATOR;
+            }
+            this.readVersion = readVersion;
+            advanceCommitted();
+            advanceWritten();
         }
 
-        public void readLock(Session session) {
-            tryLock(session, rwLock.readLock(), "shared");
+        @Override
+        public boolean hasNext() {
+            while((next == null) && ((committedKey != null) || (writtenEntry != null))) {
+                int c;
+                if(committedKey == null) {
+                    c = +1;
+                } else if(writtenEntry == null) {
+                    c = -1;
+                } else {
+                    c = comparator.compare(committedKey, writtenEntry.getKey());
+                }
+                if(c < 0) {
+                    next = new CopiedEntry(committedKey, committedValue);
+                    advanceCommitted();
+                } else {
+                    if(writtenEntry.getValue() != CLEARED) {
+                        next = new CopiedEntry(writtenEntry.getKey(), writtenEntry.getValue());
+                    }
+                    if(c == 0) {
+                        advanceCommitted();
+                    }
+                    advanceWritten();
+                }
+            }
+            return (next != null);
         }
 
-        public void writeLock(Session session) {
-            tryLock(session, rwLock.writeLock(), "exclusive");
-            tag.incrementAndGet();
+        @Override
+        public Entry<byte[], byte[]> next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry<byte[], byte[]> result = next;
+            next = null;
+            return result;
         }
 
-        public void upgradeLock(Session session) {
-            final long saveTag = tag.get();
-            readUnlock();
-            tryLock(session, rwLock.writeLock(), "upgrade");
-            if(saveTag != tag.get()) {
-                writeUnlock();
-                throwTimeout(session, "optimistic upgrade");
-            }
-            tag.incrementAndGet();
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
         }
 
-        private static void tryLock(Session session, Lock lock, String lockType) {
-            try {
-                if(!lock.tryLock(LOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
-                    throwTimeout(session, lockType);
+        private void advanceCommitted() {
+            committedKey = committedValue = null;
+            while(committed.hasNext()) {
+                Entry<byte[], Version> entry = committed.next();
+                Version v = Version.visible(entry.getValue(), readVersion);
+                if((v != null) && (v.value != null)) {
+                    committedKey = entry.getKey();
+                    committedValue = v.value;
+                    break;
                 }
-            } catch(InterruptedException e) {
-                throw new QueryCanceledException(session);
             }
         }
 
-        private static void throwTimeout(Session session, String lockType) {
-            LOG.trace("lock timeout: {}", lockType);
-            // No telling where this happened, e.g. row could be half written.
-            getTransactionInternal(session).isRollbackPending = true;
-            throw new LockTimeoutException(LOCK_TIMEOUT_MILLIS, lockType, MemoryTransactionService.class.getSimpleName());
+        private void advanceWritten() {
+            writtenEntry = written.hasNext() ? written.next() : null;
         }
     }
 
     private class MemoryTransactionImpl implements MemoryTransaction
     {
         final Session session;
-        final List<UndoOp> undoLog;
-        final Set<BytesHolder> readLocked;
-        final Set<BytesHolder> writeLocked;
+        // Reads can come from more than one thread, as from a parallel scan.
+        final ConcurrentSkipListMap<byte[], byte[]> writes;
+        final Set<BytesHolder> readKeys;
+        final Map<BytesHolder,Long> additions;
+        final Queue<ReadRange> readRanges;
 
+        volatile long readVersion;
         long startMillis;
         long commitMillis;
         long bytesWritten;
@@ -516,51 +578,30 @@ public class MemoryTransactionService implements TransactionService
 
         private MemoryTransactionImpl(Session session) {
             this.session = session;
-            this.undoLog = new ArrayList<>();
-            this.readLocked = new HashSet<>();
-            this.writeLocked = new HashSet<>();
+            this.writes = new ConcurrentSkipListMap<>(COMPARATOR);
+            this.readKeys = Collections.newSetFromMap(new ConcurrentHashMap<BytesHolder,Boolean>());
+            this.additions = new ConcurrentHashMap<>();
+            this.readRanges = new ConcurrentLinkedQueue<>();
+            this.readVersion = -1;
             reset();
         }
 
-        private void readLock(byte[] rawKey) {
-            BytesHolder key = new BytesHolder(rawKey);
-            if(readLocked.contains(key) || writeLocked.contains(key)) {
-                // Already locked
-                return;
-            }
-            TaggedLock lock = locks.get(key);
-            if(lock == null) {
-                lock = new TaggedLock();
-                TaggedLock prevLock = locks.putIfAbsent(key, lock);
-                if(prevLock != null) {
-                    lock = prevLock;
+        /** Take a snapshot as of the latest commit, if not already holding one. */
+        private long snapshot() {
+            long version = readVersion;
+            if(version < 0) {
+                synchronized(this) {
+                    version = readVersion;
+                    if(version < 0) {
+                        // Become visible to pruning before choosing the version,
+                        // with one no later than it, so nothing needed is pruned.
+                        readVersion = commitVersion.get();
+                        active.add(this);
+                        version = readVersion = commitVersion.get();
+                    }
                 }
             }
-            lock.readLock(session);
-            readLocked.add(key);
-        }
-
-        private void writeLock(byte[] rawKey) {
-            BytesHolder key = new BytesHolder(rawKey);
-            if(writeLocked.contains(key)) {
-                // Already locked
-                return;
-            }
-            TaggedLock lock = locks.get(key);
-            if(lock == null) {
-                lock = new TaggedLock();
-                TaggedLock prevLock = locks.putIfAbsent(key, lock);
-                if(prevLock != null) {
-                    lock = prevLock;
-                }
-            }
-            if(readLocked.contains(key)) {
-                readLocked.remove(key);
-                lock.upgradeLock(session);
-            } else {
-                lock.writeLock(session);
-            }
-            writeLocked.add(key);
+            return version;
         }
 
         public boolean isTimeToCommit() {
@@ -574,9 +615,8 @@ public class MemoryTransactionService implements TransactionService
         }
 
         public void reset() {
-            assert undoLog.isEmpty();
-            assert readLocked.isEmpty();
-            assert writeLocked.isEmpty();
+            assert writes.isEmpty();
+            assert readVersion < 0;
             startMillis = System.currentTimeMillis();
             commitMillis = -1;
             bytesWritten = 0;
@@ -589,55 +629,133 @@ public class MemoryTransactionService implements TransactionService
             }
         }
 
-        public void runUndo() {
-            if(undoLog.isEmpty()) {
+        public void discardWrites() {
+            writes.clear();
+            additions.clear();
+        }
+
+        public void endSnapshot() {
+            writes.clear();
+            additions.clear();
+            readKeys.clear();
+            readRanges.clear();
+            active.remove(this);
+            readVersion = -1;
+        }
+
+        /** Install writes, if nothing read or written has changed since the snapshot. */
+        public void commit() {
+            if(writes.isEmpty() && additions.isEmpty()) {
+                // Read-only: the snapshot was consistent.
                 return;
             }
-            // Undo in reverse order than applied
-            ListIterator<UndoOp> it = undoLog.listIterator(undoLog.size());
-            synchronized(db) {
-                while(it.hasPrevious()) {
-                    UndoOp op = it.previous();
-                    op.apply(db);
+            long snapshotVersion = snapshot();
+            synchronized(commitLock) {
+                for(BytesHolder key : readKeys) {
+                    checkConflict(key.bytes, db.get(key.bytes), snapshotVersion);
+                }
+                for(ReadRange range : readRanges) {
+                    for(Entry<byte[], Version> entry : db.subMap(range.beginKey, range.endKey).entrySet()) {
+                        checkConflict(entry.getKey(), entry.getValue(), snapshotVersion);
+                    }
+                }
+                for(byte[] key : writes.keySet()) {
+                    checkConflict(key, db.get(key), snapshotVersion);
+                }
+                long version = commitVersion.get() + 1;
+                for(Entry<byte[], byte[]> entry : writes.entrySet()) {
+                    byte[] value = (entry.getValue() == CLEARED) ? null : entry.getValue();
+                    db.put(entry.getKey(), new Version(version, value, db.get(entry.getKey())));
+                }
+                // Additions apply to whatever is latest, not to the snapshot.
+                for(Entry<BytesHolder, Long> entry : additions.entrySet()) {
+                    byte[] key = entry.getKey().bytes;
+                    Version head = db.get(key);
+                    long base = ((head == null) || (head.value == null)) ? 0 : MemoryStore.unpackLong(head.value);
+                    db.put(key, new Version(version, MemoryStore.packLong(base + entry.getValue()), head));
+                }
+                // Publish all at once.
+                commitVersion.set(version);
+                active.remove(this);
+                readVersion = -1;
+                long oldest = oldestSnapshot(version);
+                List<BytesHolder> retry = new ArrayList<>(pruneLater);
+                pruneLater.clear();
+                for(BytesHolder key : retry) {
+                    prune(key.bytes, oldest);
+                }
+                for(byte[] key : writes.keySet()) {
+                    prune(key, oldest);
+                }
+                for(BytesHolder key : additions.keySet()) {
+                    prune(key.bytes, oldest);
                 }
             }
-            undoLog.clear();
+            writes.clear();
+            additions.clear();
         }
 
-        public void runUnlock() {
-            // Release all locks
-            for(BytesHolder key : readLocked) {
-                TaggedLock lock = locks.get(key);
-                lock.readUnlock();
+        private void checkConflict(byte[] key, Version head, long snapshotVersion) {
+            if((head != null) && (head.version > snapshotVersion)) {
+                LOG.trace("conflict on {}", Strings.hex(key));
+                throw new TransactionConflictException(MemoryTransactionService.class.getSimpleName());
+            }
+        }
+
+        private void recordWrite(byte[] key, byte[] value) {
+            try {
+                // Will certainly conflict at commit, so fail now.
+                checkConflict(key, db.get(key), snapshot());
+            } catch(TransactionConflictException e) {
+                // No telling where this happened, e.g. row could be half written.
+                isRollbackPending = true;
+                throw e;
+            }
+            writes.put(key, value);
+            if(!additions.isEmpty()) {
+                additions.remove(new BytesHolder(key));
             }
-            readLocked.clear();
-            for(BytesHolder key : writeLocked) {
-                TaggedLock lock = locks.get(key);
-                lock.writeUnlock();
+        }
+
+        /** Apply any pending addition to what would otherwise be read. */
+        private byte[] withAddition(byte[] key, byte[] value) {
+            if(!additions.isEmpty()) {
+                Long delta = additions.get(new BytesHolder(key));
+                if(delta != null) {
+                    long base = (value == null) ? 0 : MemoryStore.unpackLong(value);
+                    return MemoryStore.packLong(base + delta);
+                }
             }
-            writeLocked.clear();
+            return value;
         }
 
         //
-        // TreeMapTransaction
+        // MemoryTransaction
         //
 
         @Override
         public byte[] get(byte[] key) {
-            readLock(key);
-            byte[] value;
-            synchronized(db) {
-                value = db.get(key);
+            long version = snapshot();
+            byte[] value = writes.get(key);
+            if(value == null) {
+                readKeys.add(new BytesHolder(copy(key)));
+                Version v = Version.visible(db.get(key), version);
+                value = withAddition(key, (v == null) ? null : v.value);
+            } else if(value == CLEARED) {
+                value = null;
             }
             return copy(value);
         }
 
         @Override
         public byte[] getUncommitted(byte[] key) {
-            // No lock
-            byte[] value;
-            synchronized(db) {
-                value = db.get(key);
+            // Latest committed, without conflict checking
+            byte[] value = writes.get(key);
+            if(value == null) {
+                Version v = db.get(key);
+                value = withAddition(key, (v == null) ? null : v.value);
+            } else if(value == CLEARED) {
+                value = null;
             }
             return copy(value);
         }
@@ -649,103 +767,92 @@ public class MemoryTransactionService implements TransactionService
 
         @Override
         public Iterator<Entry<byte[], byte[]>> getRange(byte[] beginKey, byte[] endKey, boolean reverse) {
-            // Duplicate as some consumers want to iterate while calling set/clear
-            final KVMap subMap;
-            synchronized(db) {
-                subMap = new KVMap(db.subMap(beginKey, endKey), reverse);
-            }
-            for(byte[] key : subMap.keySet()) {
-                readLock(key);
-            }
-            final Iterator<Entry<byte[], byte[]>> it = subMap.entrySet().iterator();
-            return new Iterator<Entry<byte[], byte[]>>()  {
-                @Override
-                public boolean hasNext() {
-                    return it.hasNext();
-                }
-
-                @Override
-                public Entry<byte[], byte[]> next() {
-                    Entry<byte[], byte[]> entry = it.next();
-                    return new CopiedEntry(entry);
-                }
-
-                @Override
-                public void remove() {
-                    throw new UnsupportedOperationException();
-                }
-            };
+            long version = snapshot();
+            readRanges.add(new ReadRange(copy(beginKey), copy(endKey)));
+            // Duplicate own writes as some consumers want to iterate while calling set/clear.
+            // Committed versions are immutable as of the snapshot.
+            NavigableMap<byte[], byte[]> written = new TreeMap<>(writes.subMap(beginKey, endKey));
+            return new SnapshotIterator(db.subMap(beginKey, endKey), written, version, reverse);
         }
 
         @Override
         public void set(byte[] key, byte[] value) {
-            writeLock(key);
-            byte[] k = copy(key);
-            byte[] v = copy(value);
-            byte[] prev;
-            synchronized(db) {
-                prev = db.put(k, v);
-            }
+            recordWrite(copy(key), copy(value));
             bytesWritten += key.length;
             bytesWritten += value.length;
-            undoLog.add(new UndoOp(k, prev));
         }
 
         @Override
         public void clear(byte[] key) {
-            writeLock(key);
-            byte[] prev;
-            synchronized(db) {
-                prev = db.remove(key);
+            recordWrite(copy(key), CLEARED);
+            bytesWritten += key.length;
+        }
+
+        @Override
+        public void add(byte[] key, long delta) {
+            byte[] value = writes.get(key);
+            if(value != null) {
+                // Already set outright, so adjust that.
+                long base = (value == CLEARED) ? 0 : MemoryStore.unpackLong(value);
+                writes.put(key, MemoryStore.packLong(base + delta));
+            } else {
+                BytesHolder holder = new BytesHolder(copy(key));
+                Long prev = additions.get(holder);
+                additions.put(holder, (prev == null) ? delta : prev + delta);
             }
             bytesWritten += key.length;
-            undoLog.add(new UndoOp(copy(key), prev));
         }
 
         @Override
         public void clearRange(byte[] beginKey, byte[] endKey) {
-            KVMap subMap;
-            synchronized(db) {
-                subMap = new KVMap(db.subMap(beginKey, endKey), false);
-            }
-            for(Entry<byte[], byte[]> entry : subMap.entrySet()) {
-                writeLock(entry.getKey());
-                undoLog.add(new UndoOp(entry.getKey(), entry.getValue()));
-                bytesWritten += entry.getKey().length;
-            }
-            synchronized(db) {
-                for(byte[] key : subMap.keySet()) {
-                    db.remove(key);
-                }
+            Iterator<Entry<byte[], byte[]>> it = getRange(beginKey, endKey);
+            while(it.hasNext()) {
+                byte[] key = it.next().getKey();
+                recordWrite(key, CLEARED);
+                bytesWritten += key.length;
             }
         }
     }
 
-    private static class UndoOp
-    {
-        private final byte[] key;
-        private final byte[] value;
-
-        private UndoOp(byte[] key, byte[] value) {
-            this.key = key;
-            this.value = value;
+    /** Oldest version any transaction might still read, at most <code>latest</code>. */
+    private long oldestSnapshot(long latest) {
+        long oldest = latest;
+        for(MemoryTransactionImpl txn : active) {
+            long version = txn.readVersion;
+            if((version >= 0) && (version < oldest)) {
+                oldest = version;
+            }
         }
+        return oldest;
+    }
 
-        public void apply(KVMap map) {
-            if(value == null) {
-                map.remove(key);
+    /** Drop versions of <code>key</code> hidden from every snapshot. Called under <code>commitLock</code>. */
+    private void prune(byte[] key, long oldest) {
+        Version head = db.get(key);
+        Version newer = null;
+        Version v = head;
+        while((v != null) && (v.version > oldest)) {
+            newer = v;
+            v = v.older;
+        }
+        if(v == null) {
+            return;
+        }
+        // v is what the oldest snapshot sees, so nothing older is needed.
+        v.older = null;
+        if(v.value == null) {
+            // Nor is this clear, once no one can see what it replaced.
+            if(newer == null) {
+                db.remove(key, v);
             } else {
-                map.put(key, value);
+                newer.older = null;
             }
         }
-
-        @Override
-        public String toString() {
-            return "UndoOp(" + Strings.hex(key) + "=" + (value == null ? null : Strings.hex(value)) + ")";
+        if(newer != null) {
+            pruneLater.add(new BytesHolder(key));
         }
     }
 
-
     private static void clearStack(Session session, Session.StackKey<Callback> key) {
         Deque<Callback> stack = session.get(key);
         if(stack != null) {
@@ -762,15 +869,14 @@ public class MemoryTransactionService implements TransactionService
                 txn.pendingChecks.performChecks(session, txn, MemoryIndexChecks.CheckPass.TRANSACTION);
             }
             runCallbacks(session, PRE_COMMIT_KEY, txn.startMillis, null);
-            // Not much to do, locks are cleared in end().
-            txn.undoLog.clear();
+            txn.commit();
             txn.commitMillis = System.currentTimeMillis();
             runCallbacks(session, AFTER_COMMIT_KEY, txn.commitMillis, null);
         } catch(RuntimeException e1) {
             try {
                 rollbackInternal(session, txn);
                 // Only retryable exception from this store
-                if(allowRetry && (e1 instanceof LockTimeoutException)) {
+                if(allowRetry && (e1 instanceof TransactionConflictException)) {
                     clearState = false;
                     shouldRetry = true;
                 } else {
@@ -796,7 +902,7 @@ public class MemoryTransactionService implements TransactionService
             if(clearState) {
                 session.remove(TXN_KEY);
             }
-            txn.runUnlock();
+            txn.endSnapshot();
         } catch(RuntimeException e) {
             re = MultipleCauseException.combine(re, e);
         } finally {
@@ -826,7 +932,7 @@ public class MemoryTransactionService implements TransactionService
     }
 
     private static void rollbackInternal(Session session, MemoryTransactionImpl txn) {
-        txn.runUndo();
+        txn.discardWrites();
         runCallbacks(session, AFTER_ROLLBACK_KEY, -1, null);
     }
 
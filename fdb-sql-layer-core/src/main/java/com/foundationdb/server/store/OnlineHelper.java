@@ -39,6 +39,7 @@ import com.foundationdb.qp.operator.Rebindable;
 import com.foundationdb.qp.operator.SimpleQueryContext;
 import com.foundationdb.qp.operator.StoreAdapter;
 import com.foundationdb.qp.operator.Delete_Returning;
+import com.foundationdb.qp.row.ImmutableRow;
 import com.foundationdb.qp.row.OverlayingRow;
 import com.foundationdb.qp.row.ProjectedRow;
 import com.foundationdb.qp.row.Row;
@@ -54,6 +55,7 @@ import com.foundationdb.server.error.ConstraintViolationException;
 import com.foundationdb.server.error.InvalidOperationException;
 import com.foundationdb.server.error.NoSuchRowException;
 import com.foundationdb.server.error.NotAllowedByConfigException;
+import com.foundationdb.server.error.QueryCanceledException;
 import com.foundationdb.server.error.SQLParserInternalException;
 import com.foundationdb.server.types.common.types.TypesTranslator;
 import com.foundationdb.server.types.service.TypesRegistryService;
@@ -95,22 +97,37 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class OnlineHelper implements RowListener
 {
     private static final Logger LOG = LoggerFactory.getLogger(OnlineHelper.class);
     private static final Object TRANSFORM_CACHE_KEY = new Object();
 
+    /** Table index entries held and sorted before writing (0 writes in group order). */
+    public static final String INDEX_BUILD_SORT_ROWS_PROP = "fdbsql.online.index_build.sort_rows";
+    /** Threads extracting and sorting held index entries (1 sorts on the calling thread). */
+    public static final String INDEX_BUILD_THREADS_PROP = "fdbsql.online.index_build.threads";
+
     private final TransactionService txnService;
     private final SchemaManager schemaManager;
     private final Store store;
     private final TypesRegistryService typesRegistry;
     private final ConstraintHandler constraintHandler;
     private final boolean withConcurrentDML;
+    private final int indexBuildSortRows;
+    private final int indexBuildThreads;
 
     public OnlineHelper(TransactionService txnService,
                         SchemaManager schemaManager,
@@ -118,12 +135,25 @@ public class OnlineHelper implements RowListener
                         TypesRegistryService typesRegistry,
                         ConstraintHandler constraintHandler,
                         boolean withConcurrentDML) {
+        this(txnService, schemaManager, store, typesRegistry, constraintHandler, withConcurrentDML, 0, 1);
+    }
+
+    public OnlineHelper(TransactionService txnService,
+                        SchemaManager schemaManager,
+                        Store store,
+                        TypesRegistryService typesRegistry,
+                        ConstraintHandler constraintHandler,
+                        boolean withConcurrentDML,
+                        int indexBuildSortRows,
+                        int indexBuildThreads) {
         this.txnService = txnService;
         this.schemaManager = schemaManager;
         this.store = store;
         this.typesRegistry = typesRegistry;
         this.constraintHandler = constraintHandler;
         this.withConcurrentDML = withConcurrentDML;
+        this.indexBuildSortRows = indexBuildSortRows;
+        this.indexBuildThreads = Math.max(indexBuildThreads, 1);
     }
 
     public void buildIndexes(Session session, QueryContext context) {
@@ -427,41 +457,87 @@ public class OnlineHelper implements RowListener
                                    final TransformCache transformCache,
                                    Multimap<Group,RowType> tableIndexes) {
         final WriteIndexRow buffer = new WriteIndexRow();
-        for(Entry<Group, Collection<RowType>> entry : tableIndexes.asMap().entrySet()) {
-            if(entry.getValue().isEmpty()) {
-                continue;
-            }
-            Operator plan = API.filter_Default(
-                    API.groupScan_Default(entry.getKey()),
-                    entry.getValue()
-            );
-            runPlan(session, contextIfNull(context, adapter), schemaManager, txnService, plan, new RowHandler() {
+        ExecutorService workers = null;
+        if((indexBuildSortRows > 0) && (indexBuildThreads > 1)) {
+            workers = Executors.newFixedThreadPool(indexBuildThreads, new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger();
+
                 @Override
-                public void handleRow(final Row row) {
-                    TableTransform transform = transformCache.get(row.rowType().typeId());
-                    simpleCheckConstraints(session, transformCache, row);
-                    for(final TableIndex index : transform.tableIndexes) {
-                        final Key hKey = store.createKey();
-                        row.hKey().copyTo(hKey);
-                        if (index.isSpatial()) {
-                            final SpatialColumnHandler spatialColumnHandler = new SpatialColumnHandler(index);
-                            spatialColumnHandler.processSpatialObject(
-                                row,
-                                new SpatialColumnHandler.Operation()
-                                {
-                                    @Override
-                                    public void handleZValue(long z)
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Online-Index-Sort-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        try {
+            for(Entry<Group, Collection<RowType>> entry : tableIndexes.asMap().entrySet()) {
+                if(entry.getValue().isEmpty()) {
+                    continue;
+                }
+                Operator plan = API.filter_Default(
+                        API.groupScan_Default(entry.getKey()),
+                        entry.getValue()
+                );
+                final SortedIndexBuffer sorted = (indexBuildSortRows > 0) ?
+                    new SortedIndexBuffer(session, workers, indexBuildThreads, indexBuildSortRows) : null;
+                runPlan(session, contextIfNull(context, adapter), schemaManager, txnService, plan, new BufferingRowHandler() {
+                    @Override
+                    public void handleRow(final Row row) {
+                        TableTransform transform = transformCache.get(row.rowType().typeId());
+                        simpleCheckConstraints(session, transformCache, row);
+                        Row copy = null;
+                        for(final TableIndex index : transform.tableIndexes) {
+                            final Key hKey = store.createKey();
+                            row.hKey().copyTo(hKey);
+                            if (index.isSpatial()) {
+                                final SpatialColumnHandler spatialColumnHandler = new SpatialColumnHandler(index);
+                                spatialColumnHandler.processSpatialObject(
+                                    row,
+                                    new SpatialColumnHandler.Operation()
                                     {
-                                        store.writeIndexRow(session, index, row, hKey, buffer,
-                                                            spatialColumnHandler, z, true);
-                                    }
-                                });
-                        } else {
-                            store.writeIndexRow(session, index, row, hKey, buffer, null, -1L, true);
+                                        @Override
+                                        public void handleZValue(long z)
+                                        {
+                                            store.writeIndexRow(session, index, row, hKey, buffer,
+                                                                spatialColumnHandler, z, true);
+                                        }
+                                    });
+                            } else if (sorted != null) {
+                                if (copy == null) {
+                                    copy = new ImmutableRow(row);
+                                }
+                                sorted.add(index, copy, hKey);
+                            } else {
+                                store.writeIndexRow(session, index, row, hKey, buffer, null, -1L, true);
+                            }
                         }
                     }
-                }
-            });
+
+                    @Override
+                    public boolean isFull() {
+                        return (sorted != null) && sorted.isFull();
+                    }
+
+                    @Override
+                    public void flush() {
+                        if (sorted != null) {
+                            sorted.flush();
+                        }
+                    }
+
+                    @Override
+                    public void discard() {
+                        if (sorted != null) {
+                            sorted.discard();
+                        }
+                    }
+                });
+            }
+        } finally {
+            if(workers != null) {
+                workers.shutdownNow();
+            }
         }
     }
     
@@ -708,6 +784,7 @@ public class OnlineHelper implements RowListener
         QueryBindings bindings = context.createBindings();
         Cursor cursor = API.cursor(plan, context, bindings);
         Rebindable rebindable = getRebindable(cursor);
+        BufferingRowHandler buffering = (handler instanceof BufferingRowHandler) ? (BufferingRowHandler)handler : null;
         cursor.openTopLevel();
         try {
             boolean done = false;
@@ -747,6 +824,10 @@ public class OnlineHelper implements RowListener
                                 LOG.trace("skipped row: {}", row);
                             }
                         }
+                        if((buffering != null) &&
+                           (buffering.isFull() || txnService.shouldPeriodicallyCommit(session))) {
+                            buffering.flush();
+                        }
                         didCommit = txnService.periodicallyCommit(session);
                     } catch(InvalidOperationException e) {
                         if(!e.getCode().isRollbackClass()) {
@@ -756,10 +837,22 @@ public class OnlineHelper implements RowListener
                     }
                 } else {
                     // Cursor exhausted, completely finished
-                    didRollback = txnService.commitOrRetryTransaction(session);
-                    done = didCommit = !didRollback;
-                    if(didCommit) {
-                        txnService.beginTransaction(session);
+                    try {
+                        if(buffering != null) {
+                            buffering.flush();
+                        }
+                    } catch(InvalidOperationException e) {
+                        if(!e.getCode().isRollbackClass()) {
+                            throw e;
+                        }
+                        didRollback = true;
+                    }
+                    if(!didRollback) {
+                        didRollback = txnService.commitOrRetryTransaction(session);
+                        done = didCommit = !didRollback;
+                        if(didCommit) {
+                            txnService.beginTransaction(session);
+                        }
                     }
                 }
                 if(didCommit) {
@@ -771,6 +864,9 @@ public class OnlineHelper implements RowListener
                     LOG.debug("Rolling back to row: {}", lastCommitted);
                     checkOnlineError = true;
                     checkers.clear();
+                    if(buffering != null) {
+                        buffering.discard();
+                    }
                     txnService.rollbackTransactionIfOpen(session);
                     txnService.beginTransaction(session);
                     cursor.closeTopLevel();
@@ -1090,6 +1186,152 @@ public class OnlineHelper implements RowListener
         void handleRow(Row row);
     }
 
+    /** A handler that holds on to writes until its transaction is about to commit. */
+    private interface BufferingRowHandler extends RowHandler {
+        boolean isFull();
+        /** Write everything held, in the current transaction. */
+        void flush();
+        /** Forget everything held, as its transaction rolled back. */
+        void discard();
+    }
+
+    /**
+     * Table index entries for rows read since the last flush, written in index order
+     * instead of group order. Keys are built and each index sorted on the workers,
+     * if any, and those keys written as is on the session's thread, in the transaction
+     * that read the rows.
+     */
+    private class SortedIndexBuffer
+    {
+        private final Session session;
+        private final ExecutorService workers;
+        private final int nworkers;
+        private final int maxEntries;
+        private final Map<TableIndex,List<IndexEntry>> entries = new LinkedHashMap<>();
+        private int size;
+
+        public SortedIndexBuffer(Session session, ExecutorService workers, int nworkers, int maxEntries) {
+            this.session = session;
+            this.workers = workers;
+            this.nworkers = (workers == null) ? 1 : nworkers;
+            this.maxEntries = maxEntries;
+        }
+
+        public void add(TableIndex index, Row row, Key hKey) {
+            List<IndexEntry> list = entries.get(index);
+            if(list == null) {
+                list = new ArrayList<>();
+                entries.put(index, list);
+            }
+            list.add(new IndexEntry(row, hKey));
+            size++;
+        }
+
+        public boolean isFull() {
+            return size >= maxEntries;
+        }
+
+        public void flush() {
+            if(size == 0) {
+                return;
+            }
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for(final Entry<TableIndex,List<IndexEntry>> entry : entries.entrySet()) {
+                final List<IndexEntry> list = entry.getValue();
+                int chunk = (list.size() + nworkers - 1) / nworkers;
+                for(int start = 0; start < list.size(); start += chunk) {
+                    final List<IndexEntry> slice = list.subList(start, Math.min(start + chunk, list.size()));
+                    tasks.add(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            WriteIndexRow indexRow = new WriteIndexRow();
+                            for(IndexEntry indexEntry : slice) {
+                                indexEntry.key = store.createKey();
+                                indexRow.resetForWrite(entry.getKey(), indexEntry.key);
+                                indexRow.initialize(indexEntry.row, indexEntry.hKey, null, -1L);
+                            }
+                            return null;
+                        }
+                    });
+                }
+            }
+            runAll(tasks);
+            tasks.clear();
+            for(final List<IndexEntry> list : entries.values()) {
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        Collections.sort(list);
+                        return null;
+                    }
+                });
+            }
+            runAll(tasks);
+            for(Entry<TableIndex,List<IndexEntry>> entry : entries.entrySet()) {
+                for(IndexEntry indexEntry : entry.getValue()) {
+                    store.writeIndexKey(session, entry.getKey(), indexEntry.row, indexEntry.key);
+                }
+            }
+            LOG.trace("Wrote {} sorted index entries", size);
+            discard();
+        }
+
+        public void discard() {
+            entries.clear();
+            size = 0;
+        }
+
+        private void runAll(List<Callable<Void>> tasks) {
+            if(workers == null || tasks.size() < 2) {
+                for(Callable<Void> task : tasks) {
+                    try {
+                        task.call();
+                    } catch(Exception e) {
+                        throw propagate(e);
+                    }
+                }
+                return;
+            }
+            try {
+                for(Future<Void> future : workers.invokeAll(tasks)) {
+                    future.get();
+                }
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new QueryCanceledException(session);
+            } catch(ExecutionException e) {
+                throw propagate(e.getCause());
+            }
+        }
+
+        private RuntimeException propagate(Throwable t) {
+            if(t instanceof RuntimeException) {
+                return (RuntimeException)t;
+            }
+            if(t instanceof Error) {
+                throw (Error)t;
+            }
+            return new IllegalStateException(t);
+        }
+    }
+
+    private static class IndexEntry implements Comparable<IndexEntry>
+    {
+        public final Row row;
+        public final Key hKey;
+        public Key key;
+
+        public IndexEntry(Row row, Key hKey) {
+            this.row = row;
+            this.hKey = hKey;
+        }
+
+        @Override
+        public int compareTo(IndexEntry other) {
+            return key.compareTo(other.key);
+        }
+    }
+
     /**
      * Helper for saving concurrently handled rows.
      * Concrete implementations *must* be thread safe.
@@ -102,12 +102,16 @@ public class PersistitStore extends AbstractStore<PersistitStore,Exchange,Persis
         cm.registerValueCoder(AbstractRow.class, rowValueCoder = new RowValueCoder());
         cm.registerValueCoder(ImmutableRow.class, rowValueCoder);
         boolean withConcurrentDML = false;
+        int indexBuildSortRows = 0, indexBuildThreads = 1;
         if (config != null) {
             writeLockEnabled = Boolean.parseBoolean(config.getProperty(WRITE_LOCK_ENABLED_CONFIG));
             withConcurrentDML = Boolean.parseBoolean(config.getProperty(FEATURE_DDL_WITH_DML_PROP));
+            indexBuildSortRows = Integer.parseInt(config.getProperty(OnlineHelper.INDEX_BUILD_SORT_ROWS_PROP));
+            indexBuildThreads = Integer.parseInt(config.getProperty(OnlineHelper.INDEX_BUILD_THREADS_PROP));
         }
         this.constraintHandler = new PersistitConstraintHandler(this, config, typesRegistryService, serviceManager, (PersistitTransactionService)txnService);
-        this.onlineHelper = new OnlineHelper(txnService, schemaManager, this, typesRegistryService, constraintHandler, withConcurrentDML);
+        this.onlineHelper = new OnlineHelper(txnService, schemaManager, this, typesRegistryService, constraintHandler, withConcurrentDML,
+                                             indexBuildSortRows, indexBuildThreads);
         listenerService.registerRowListener(onlineHelper);
 
         // System routine
@@ -247,6 +251,21 @@ public class PersistitStore extends AbstractStore<PersistitStore,Exchange,Persis
             releaseExchange(session, iEx);
         }
     }
+
+    @Override
+    public void writeIndexKey(Session session, TableIndex index, Row row, Key indexKey) {
+        Exchange iEx = getExchange(session, index);
+        try {
+            lockKeysForIndex(session, index, row);
+            indexKey.copyTo(iEx.getKey());
+            checkUniqueness(session, row, index, iEx);
+            iEx.store();
+        } catch(PersistitException | RollbackException e) {
+            throw PersistitAdapter.wrapPersistitException(session, e);
+        } finally {
+            releaseExchange(session, iEx);
+        }
+    }
     
     private void checkUniqueness(Session session, Row row, Index index, Exchange iEx) throws PersistitException
     {
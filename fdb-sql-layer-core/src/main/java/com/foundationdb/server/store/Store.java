@@ -54,6 +54,9 @@ public interface Store extends KeyCreator {
     /** Save the TableIndex row for {@code rowData}. {@code hKey} must be populated. */
     void writeIndexRow(Session session, TableIndex index, Row row, Key hKey, WriteIndexRow buffer,
                         SpatialColumnHandler spatialColumnHandler, long zValue, boolean doLock);
+    /** Save the TableIndex row for {@code row} whose key, {@code indexKey}, has already been
+     * built with a {@link WriteIndexRow}, checking uniqueness as {@link #writeIndexRow} does. */
+    void writeIndexKey(Session session, TableIndex index, Row row, Key indexKey);
     /** Clear the TableIndex row for {@code rowData]. {@code hKey} must be populated. */
     void deleteIndexRow(Session session, TableIndex index, Row row, Key hKey, WriteIndexRow buffer,
             SpatialColumnHandler spatialColumnHandler, long zValue, boolean doLock);
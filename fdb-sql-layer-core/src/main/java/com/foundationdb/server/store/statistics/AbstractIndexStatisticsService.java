@@ -28,6 +28,12 @@ import com.foundationdb.ais.model.TableIndex;
 import com.foundationdb.ais.model.TableName;
 import com.foundationdb.ais.model.aisb2.AISBBasedBuilder;
 import com.foundationdb.ais.model.aisb2.NewAISBuilder;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.virtualadapter.BasicFactoryBase;
+import com.foundationdb.qp.virtualadapter.VirtualAdapter;
+import com.foundationdb.qp.virtualadapter.VirtualGroupCursor.GroupScan;
 import com.foundationdb.server.service.Service;
 import com.foundationdb.server.service.config.ConfigurationService;
 import com.foundationdb.server.service.listener.ListenerService;
@@ -46,11 +52,14 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
@@ -65,6 +74,13 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
     private static final String BUCKET_COUNT_PROPERTY = "fdbsql.index_statistics.bucket_count";
     private static final String BUCKET_TIME_PROPERTY = "fdbsql.index_statistics.time_limit";
     private static final String BACKGROUND_TIME_PROPERTY = "fdbsql.index_statistics.background";
+    private static final String BACKGROUND_THREADS_PROPERTY = "fdbsql.index_statistics.background_threads";
+    private static final String SAMPLE_RATE_PROPERTY = "fdbsql.index_statistics.sample_rate";
+    private static final String SAMPLE_BLOCK_PROPERTY = "fdbsql.index_statistics.sample_block";
+    private static final String CHANGE_THRESHOLD_PROPERTY = "fdbsql.index_statistics.change_threshold";
+    private static final String COLUMN_STATISTICS_PROPERTY = "fdbsql.index_statistics.column_statistics";
+    private static final String MOST_COMMON_VALUES_PROPERTY = "fdbsql.index_statistics.most_common_values";
+    private static final String COLUMN_GROUPS_PROPERTY = "fdbsql.index_statistics.column_groups";
     private static final long TIME_LIMIT_UNLIMITED = -1;
     private static final long TIME_LIMIT_DISABLED = -2;
 
@@ -79,7 +95,10 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
     private AbstractStoreIndexStatistics storeStats;
     private Map<Index,IndexStatistics> cache;
     private BackgroundState backgroundState;
-    private int bucketCount;
+    private int bucketCount, sampleBlockSize, mostCommonValueCount;
+    private boolean columnStatistics;
+    private Map<TableName,List<List<String>>> columnGroups;
+    private double sampleRate, changeThreshold;
     private long scanTimeLimit, sleepTime, backgroundTimeLimit, backgroundSleepTime;
 
     protected AbstractIndexStatisticsService(Store store,
@@ -108,11 +127,53 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
         cache = Collections.synchronizedMap(new WeakHashMap<Index,IndexStatistics>());
         storeStats = createStoreIndexStatistics();
         bucketCount = Integer.parseInt(configurationService.getProperty(BUCKET_COUNT_PROPERTY));
+        sampleRate = Double.parseDouble(configurationService.getProperty(SAMPLE_RATE_PROPERTY));
+        sampleBlockSize = Integer.parseInt(configurationService.getProperty(SAMPLE_BLOCK_PROPERTY));
+        changeThreshold = Double.parseDouble(configurationService.getProperty(CHANGE_THRESHOLD_PROPERTY));
+        columnStatistics = Boolean.parseBoolean(configurationService.getProperty(COLUMN_STATISTICS_PROPERTY));
+        mostCommonValueCount = Integer.parseInt(configurationService.getProperty(MOST_COMMON_VALUES_PROPERTY));
+        columnGroups = parseColumnGroups(configurationService.getProperty(COLUMN_GROUPS_PROPERTY));
         parseTimeLimit(BUCKET_TIME_PROPERTY, false);
         parseTimeLimit(BACKGROUND_TIME_PROPERTY, true);
+        int backgroundThreads = Integer.parseInt(configurationService.getProperty(BACKGROUND_THREADS_PROPERTY));
         registerStatsTables();
+        registerStalenessTable();
         listenerService.registerTableListener(this);
-        backgroundState = new BackgroundState(backgroundTimeLimit != TIME_LIMIT_DISABLED);
+        backgroundState = new BackgroundState(backgroundTimeLimit != TIME_LIMIT_DISABLED,
+                                              Math.max(backgroundThreads, 1));
+    }
+
+    /** Parse <code>schema.table(column,column...);...</code>. */
+    protected static Map<TableName,List<List<String>>> parseColumnGroups(String value) {
+        Map<TableName,List<List<String>>> result = new HashMap<>();
+        if (value == null) {
+            return result;
+        }
+        for (String group : value.split(";")) {
+            group = group.trim();
+            if (group.isEmpty()) continue;
+            int lparen = group.indexOf('(');
+            int dot = group.indexOf('.');
+            if ((dot < 0) || (lparen < dot) || !group.endsWith(")")) {
+                throw new IllegalArgumentException("Column group should be schema.table(column,column...): " + group);
+            }
+            TableName tableName = new TableName(group.substring(0, dot).trim(),
+                                                group.substring(dot + 1, lparen).trim());
+            List<String> columns = new ArrayList<>();
+            for (String column : group.substring(lparen + 1, group.length() - 1).split(",")) {
+                columns.add(column.trim());
+            }
+            if (columns.size() < 2) {
+                throw new IllegalArgumentException("Column group should have at least two columns: " + group);
+            }
+            List<List<String>> groups = result.get(tableName);
+            if (groups == null) {
+                groups = new ArrayList<>();
+                result.put(tableName, groups);
+            }
+            groups.add(columns);
+        }
+        return result;
     }
 
     private void parseTimeLimit(String key, boolean background) {
@@ -181,6 +242,10 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
         }
         result = storeStats.loadIndexStatistics(session, index);
         if (result != null) {
+            if (result.getModificationCount() < 0) {
+                // Analyzed before changes were counted; count them from now.
+                result.setModificationCount(modificationCount(session, index));
+            }
             cache.put(index, result);
             return result;
         }
@@ -221,7 +286,13 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
         }
         for (Index index : indexes) {
             assert !index.leafMostTable().isVirtual() : index;
+            // Read first, so that changes made during the scan count against the result.
+            long modificationCount = modificationCount(session, index);
             IndexStatistics indexStatistics = storeStats.computeIndexStatistics(session, index, on, sleep);
+            if (columnStatistics && isColumnStatisticsIndex(index)) {
+                storeStats.computeColumnStatistics(session, index.leafMostTable(), indexStatistics, on, sleep);
+            }
+            indexStatistics.setModificationCount(modificationCount);
             storeStats.storeIndexStatistics(session, index, indexStatistics);
             updates.put(index, indexStatistics);
         }
@@ -245,6 +316,7 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
         for (Map.Entry<Index,IndexStatistics> entry : stats.entrySet()) {
             Index index = entry.getKey();
             IndexStatistics indexStatistics = entry.getValue();
+            indexStatistics.setModificationCount(modificationCount(session, index));
             storeStats.storeIndexStatistics(session, index, indexStatistics);
             cache.put(index, indexStatistics);
             backgroundState.remove(index);
@@ -281,6 +353,50 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
         return bucketCount;
     }
 
+    @Override
+    public double sampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public int sampleBlockSize() {
+        return sampleBlockSize;
+    }
+
+    @Override
+    public int mostCommonValueCount() {
+        return mostCommonValueCount;
+    }
+
+    @Override
+    public List<List<Column>> columnGroups(Table table) {
+        List<List<String>> names = columnGroups.get(table.getName());
+        if (names == null) {
+            return Collections.emptyList();
+        }
+        List<List<Column>> result = new ArrayList<>(names.size());
+        groups:
+        for (List<String> group : names) {
+            List<Column> columns = new ArrayList<>(group.size());
+            for (String name : group) {
+                Column column = table.getColumn(name);
+                if (column == null) {
+                    log.warn("Column group {} of {} has unknown column {}", group, table.getName(), name);
+                    continue groups;
+                }
+                columns.add(column);
+            }
+            result.add(columns);
+        }
+        return result;
+    }
+
+    @Override
+    public double modifiedFraction(Session session, Table table, IndexStatistics stats) {
+        return (double)modifiedCount(session, table, stats) /
+               (double)Math.max(stats.getRowCount(), 1);
+    }
+
     @Override
     public void missingStats(Session session, Index index, Column column) {
         if (index == null) {
@@ -329,9 +445,37 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
                 stats.setWarned(true);
                 backgroundState.offer(table);
             }
+            else if ((changeThreshold > 0) &&
+                     (modifiedFraction(session, table, stats) >= changeThreshold)) {
+                stats.setValidity(IndexStatistics.Validity.OUTDATED);
+                log.info("Table {} has had {} rows changed since {}; updating statistics", new Object[] { table.getName(), modifiedCount(session, table, stats), new Date(stats.getAnalysisTimestamp()) });
+                stats.setWarned(true);
+                backgroundState.offer(table);
+            }
         }
     }
 
+    /** The modification count that statistics for <code>index</code> are
+     * compared against, from the same table as its row count estimate.
+     */
+    private static long modificationCount(Session session, Index index) {
+        return index.leafMostTable().tableStatus().getModificationCount(session);
+    }
+
+    /** Column statistics are kept with those of the table's primary key,
+     * which every table has, even if hidden. */
+    public static boolean isColumnStatisticsIndex(Index index) {
+        return index.isTableIndex() &&
+               (index == ((TableIndex)index).getTable().getPrimaryKeyIncludingInternal().getIndex());
+    }
+
+    private static long modifiedCount(Session session, Table table, IndexStatistics stats) {
+        if (stats.getModificationCount() < 0) {
+            return 0;
+        }
+        return Math.max(table.tableStatus().getModificationCount(session) - stats.getModificationCount(), 0);
+    }
+
     //
     // TableListener
     //
@@ -391,6 +535,74 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
                 .joinTo(INDEX_STATISTICS_TABLE_NAME.getSchemaName(), INDEX_STATISTICS_TABLE_NAME.getTableName(), "fk_0")
                 .on("table_id", "table_id")
                 .and("index_id", "index_id");
+        builder.table(INDEX_STATISTICS_SAMPLE_TABLE_NAME.getTableName())
+                .colBigInt("table_id", false)
+                .colBigInt("index_id", false)
+                .colBigInt("probe_count", true)
+                .colDouble("error_bound", true)
+                .pk("table_id", "index_id")
+                .joinTo(INDEX_STATISTICS_TABLE_NAME.getSchemaName(), INDEX_STATISTICS_TABLE_NAME.getTableName(), "fk_0")
+                .on("table_id", "table_id")
+                .and("index_id", "index_id");
+        builder.table(INDEX_STATISTICS_MODIFICATION_TABLE_NAME.getTableName())
+                .colBigInt("table_id", false)
+                .colBigInt("index_id", false)
+                .colBigInt("modification_count", true)
+                .pk("table_id", "index_id")
+                .joinTo(INDEX_STATISTICS_TABLE_NAME.getSchemaName(), INDEX_STATISTICS_TABLE_NAME.getTableName(), "fk_0")
+                .on("table_id", "table_id")
+                .and("index_id", "index_id");
+        builder.table(INDEX_STATISTICS_COLUMN_TABLE_NAME.getTableName())
+                .colBigInt("table_id", false)
+                .colBigInt("index_id", false)
+                .colInt("column_position", false)
+                .colBigInt("row_count", true)
+                .colBigInt("null_count", true)
+                .colBigInt("distinct_count", true)
+                .colVarBinary("sketch", 1 << HyperLogLog.MAX_PRECISION, true)
+                .pk("table_id", "index_id", "column_position")
+                .joinTo(INDEX_STATISTICS_TABLE_NAME.getSchemaName(), INDEX_STATISTICS_TABLE_NAME.getTableName(), "fk_0")
+                .on("table_id", "table_id")
+                .and("index_id", "index_id");
+        builder.table(INDEX_STATISTICS_COLUMN_VALUE_TABLE_NAME.getTableName())
+                .colBigInt("table_id", false)
+                .colBigInt("index_id", false)
+                .colInt("column_position", false)
+                .colInt("item_number", false)
+                .colString("key_string", 2048, true, "latin1")
+                .colVarBinary("key_bytes", 4096, true)
+                .colBigInt("eq_count", true)
+                .pk("table_id", "index_id", "column_position", "item_number")
+                .joinTo(INDEX_STATISTICS_COLUMN_TABLE_NAME.getSchemaName(), INDEX_STATISTICS_COLUMN_TABLE_NAME.getTableName(), "fk_0")
+                .on("table_id", "table_id")
+                .and("index_id", "index_id")
+                .and("column_position", "column_position");
+        builder.table(INDEX_STATISTICS_COLUMN_GROUP_TABLE_NAME.getTableName())
+                .colBigInt("table_id", false)
+                .colBigInt("index_id", false)
+                .colInt("group_number", false)
+                .colString("column_positions", 1024, true, "latin1")
+                .colBigInt("row_count", true)
+                .colBigInt("null_count", true)
+                .colBigInt("distinct_count", true)
+                .colVarBinary("sketch", 1 << HyperLogLog.MAX_PRECISION, true)
+                .pk("table_id", "index_id", "group_number")
+                .joinTo(INDEX_STATISTICS_TABLE_NAME.getSchemaName(), INDEX_STATISTICS_TABLE_NAME.getTableName(), "fk_0")
+                .on("table_id", "table_id")
+                .and("index_id", "index_id");
+        builder.table(INDEX_STATISTICS_COLUMN_GROUP_VALUE_TABLE_NAME.getTableName())
+                .colBigInt("table_id", false)
+                .colBigInt("index_id", false)
+                .colInt("group_number", false)
+                .colInt("item_number", false)
+                .colString("key_string", 2048, true, "latin1")
+                .colVarBinary("key_bytes", 4096, true)
+                .colBigInt("eq_count", true)
+                .pk("table_id", "index_id", "group_number", "item_number")
+                .joinTo(INDEX_STATISTICS_COLUMN_GROUP_TABLE_NAME.getSchemaName(), INDEX_STATISTICS_COLUMN_GROUP_TABLE_NAME.getTableName(), "fk_0")
+                .on("table_id", "table_id")
+                .and("index_id", "index_id")
+                .and("group_number", "group_number");
 
         // TODO: Use "tuple" as storage description
         // TODO: What happens if we're using a different schema manager? 
@@ -410,6 +622,36 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
             for (TableIndex ti : collection_isetn) {
                 ti.setStorageDescription(new FDBStorageDescription(ti, "rowdata"));
             }
+
+            Collection<TableIndex> collection_isstn = builder.unvalidatedAIS().getTable(INDEX_STATISTICS_SAMPLE_TABLE_NAME).getIndexes();
+            for (TableIndex ti : collection_isstn) {
+                ti.setStorageDescription(new FDBStorageDescription(ti, "rowdata"));
+            }
+
+            Collection<TableIndex> collection_ismtn = builder.unvalidatedAIS().getTable(INDEX_STATISTICS_MODIFICATION_TABLE_NAME).getIndexes();
+            for (TableIndex ti : collection_ismtn) {
+                ti.setStorageDescription(new FDBStorageDescription(ti, "rowdata"));
+            }
+
+            Collection<TableIndex> collection_isctn = builder.unvalidatedAIS().getTable(INDEX_STATISTICS_COLUMN_TABLE_NAME).getIndexes();
+            for (TableIndex ti : collection_isctn) {
+                ti.setStorageDescription(new FDBStorageDescription(ti, "rowdata"));
+            }
+
+            Collection<TableIndex> collection_iscvtn = builder.unvalidatedAIS().getTable(INDEX_STATISTICS_COLUMN_VALUE_TABLE_NAME).getIndexes();
+            for (TableIndex ti : collection_iscvtn) {
+                ti.setStorageDescription(new FDBStorageDescription(ti, "rowdata"));
+            }
+
+            Collection<TableIndex> collection_iscgtn = builder.unvalidatedAIS().getTable(INDEX_STATISTICS_COLUMN_GROUP_TABLE_NAME).getIndexes();
+            for (TableIndex ti : collection_iscgtn) {
+                ti.setStorageDescription(new FDBStorageDescription(ti, "rowdata"));
+            }
+
+            Collection<TableIndex> collection_iscgvtn = builder.unvalidatedAIS().getTable(INDEX_STATISTICS_COLUMN_GROUP_VALUE_TABLE_NAME).getIndexes();
+            for (TableIndex ti : collection_iscgvtn) {
+                ti.setStorageDescription(new FDBStorageDescription(ti, "rowdata"));
+            }
         }
         
         builder.procedure(TableName.SYS_SCHEMA, "index_stats_delete")
@@ -440,12 +682,48 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
         AkibanInformationSchema ais = createStatsTables(schemaManager);
         schemaManager.registerStoredInformationSchemaTable(ais.getTable(INDEX_STATISTICS_TABLE_NAME), INDEX_STATISTICS_TABLE_VERSION);
         schemaManager.registerStoredInformationSchemaTable(ais.getTable(INDEX_STATISTICS_ENTRY_TABLE_NAME), INDEX_STATISTICS_TABLE_VERSION);
+        schemaManager.registerStoredInformationSchemaTable(ais.getTable(INDEX_STATISTICS_SAMPLE_TABLE_NAME), INDEX_STATISTICS_TABLE_VERSION);
+        schemaManager.registerStoredInformationSchemaTable(ais.getTable(INDEX_STATISTICS_MODIFICATION_TABLE_NAME), INDEX_STATISTICS_TABLE_VERSION);
+        schemaManager.registerStoredInformationSchemaTable(ais.getTable(INDEX_STATISTICS_COLUMN_TABLE_NAME), INDEX_STATISTICS_TABLE_VERSION);
+        schemaManager.registerStoredInformationSchemaTable(ais.getTable(INDEX_STATISTICS_COLUMN_VALUE_TABLE_NAME), INDEX_STATISTICS_TABLE_VERSION);
+        schemaManager.registerStoredInformationSchemaTable(ais.getTable(INDEX_STATISTICS_COLUMN_GROUP_TABLE_NAME), INDEX_STATISTICS_TABLE_VERSION);
+        schemaManager.registerStoredInformationSchemaTable(ais.getTable(INDEX_STATISTICS_COLUMN_GROUP_VALUE_TABLE_NAME), INDEX_STATISTICS_TABLE_VERSION);
 
         for(Routine routine : ais.getRoutines().values()) {
             schemaManager.registerSystemRoutine(routine);
         }
     }
 
+    private void registerStalenessTable() {
+        NewAISBuilder builder = AISBBasedBuilder.create(schemaManager.getTypesTranslator());
+        builder.table(INDEX_STATISTICS_STALENESS_TABLE_NAME)
+                .colString("schema_name", 128, false)
+                .colString("table_name", 128, false)
+                .colString("index_name", 128, false)
+                .colSystemTimestamp("analysis_timestamp", true)
+                .colBigInt("row_count", true)
+                .colBigInt("current_row_count", true)
+                .colBigInt("modified_count", true)
+                .colDouble("modified_fraction", true)
+                .colString("is_outdated", 3, false);
+        AkibanInformationSchema ais = builder.ais(false);
+        schemaManager.registerVirtualTable(ais.getTable(INDEX_STATISTICS_STALENESS_TABLE_NAME), new StalenessFactory());
+    }
+
+    /** Non-system indexes, in no particular order. */
+    private static Collection<Index> allIndexes(AkibanInformationSchema ais) {
+        List<Index> indexes = new ArrayList<>();
+        for (Table table : ais.getTables().values()) {
+            if (!table.getName().inSystemSchema() && !table.isVirtual()) {
+                indexes.addAll(table.getIndexes());
+                if (table.isRoot()) {
+                    indexes.addAll(table.getGroup().getIndexes());
+                }
+            }
+        }
+        return indexes;
+    }
+
     private Collection<Index> indexesInSchema(Session session, String schema) {
         Set<Index> indexes = new HashSet<>();
         AkibanInformationSchema ais = schemaManager.getAis(session);
@@ -456,28 +734,106 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
         return indexes;
     }
 
+    /** One row for each index with statistics, showing how many of the
+     * rows they were computed from have changed since.
+     */
+    private class StalenessFactory extends BasicFactoryBase {
+        public StalenessFactory() {
+            super(INDEX_STATISTICS_STALENESS_TABLE_NAME);
+        }
+
+        @Override
+        public GroupScan getGroupScan(VirtualAdapter adapter, Group group) {
+            return new Scan(adapter.getSession(), getRowType(group.getAIS()));
+        }
+
+        @Override
+        public long rowCount(Session session) {
+            return allIndexes(schemaManager.getAis(session)).size();
+        }
+
+        private class Scan implements GroupScan {
+            private final Session session;
+            private final RowType rowType;
+            private final Iterator<Index> indexes;
+            private long rowCounter = 0;
+
+            public Scan(Session session, RowType rowType) {
+                this.session = session;
+                this.rowType = rowType;
+                this.indexes = allIndexes(schemaManager.getAis(session)).iterator();
+            }
+
+            @Override
+            public Row next() {
+                while (indexes.hasNext()) {
+                    Index index = indexes.next();
+                    IndexStatistics stats = getIndexStatistics(session, index);
+                    if (stats == null) {
+                        continue;
+                    }
+                    Table table = index.leafMostTable();
+                    double fraction = modifiedFraction(session, table, stats);
+                    boolean outdated = (stats.getValidity() == IndexStatistics.Validity.OUTDATED) ||
+                                       ((changeThreshold > 0) && (fraction >= changeThreshold));
+                    return new ValuesHolderRow(rowType,
+                                               index.getIndexName().getSchemaName(),
+                                               index.getIndexName().getTableName(),
+                                               index.getIndexName().getName(),
+                                               stats.getAnalysisTimestamp() / 1000,
+                                               stats.getRowCount(),
+                                               table.tableStatus().getApproximateRowCount(session),
+                                               modifiedCount(session, table, stats),
+                                               fraction,
+                                               boolResult(outdated),
+                                               ++rowCounter /*hidden pk*/);
+                }
+                return null;
+            }
+
+            @Override
+            public void close() {
+            }
+        }
+    }
+
+    /** Indexes waiting to have their statistics updated in the background,
+     * by up to <code>maxThreads</code> threads, each analyzing one index
+     * at a time in its own session.
+     */
     class BackgroundState implements Runnable {
         private final Queue<IndexName> queue = new ArrayDeque<>();
+        private final Set<IndexName> running = new HashSet<>();
+        private final List<Thread> threads = new ArrayList<>();
+        private final int maxThreads;
+        private int threadNumber = 0;
         private boolean active;
-        private Thread thread = null;
 
-        public BackgroundState(boolean active) {
+        public BackgroundState(boolean active, int maxThreads) {
             this.active = active;
+            this.maxThreads = maxThreads;
         }
 
         public synchronized void offer(Table table) {
             for (Index index : table.getIndexes()) {
                 offer(index);
             }
+            if (columnStatistics) {
+                offer(table.getPrimaryKeyIncludingInternal().getIndex());
+            }
         }
 
         public synchronized void offer(Index index) {
             if (active) {
                 IndexName entry = index.getIndexName();
-                if (!queue.contains(entry)) {
+                if (!queue.contains(entry) && !running.contains(entry)) {
                     if (queue.offer(entry)) {
-                        if (thread == null) {
-                            thread = new Thread(this, "IndexStatistics-Background");
+                        // Start another thread unless there are enough
+                        // idle ones to take everything queued.
+                        if ((threads.size() < maxThreads) &&
+                            (threads.size() - running.size() < queue.size())) {
+                            Thread thread = new Thread(this, "IndexStatistics-Background-" + (++threadNumber));
+                            threads.add(thread);
                             thread.start();
                         }
                     }
@@ -495,10 +851,16 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
             queue.remove(index.getIndexName());
         }
 
-        public synchronized void stop() {
-            active = false;
-            if (thread != null) {
+        public void stop() {
+            List<Thread> stopping;
+            synchronized (this) {
+                active = false;
+                stopping = new ArrayList<>(threads);
+            }
+            for (Thread thread : stopping) {
                 thread.interrupt();
+            }
+            for (Thread thread : stopping) {
                 try {
                     thread.join(1000); // Wait a little for it to shut down.
                 }
@@ -511,16 +873,24 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
         @Override
         public void run() {
             try (Session session = sessionService.createSession()) {
-                while (active) {
+                while (true) {
                     IndexName entry;
                     synchronized (this) {
-                        entry = queue.poll();
+                        entry = active ? queue.poll() : null;
                         if (entry == null) {
-                            thread = null;
+                            threads.remove(Thread.currentThread());
                             break;
                         }
+                        running.add(entry);
+                    }
+                    try {
+                        updateIndex(session, entry);
+                    }
+                    finally {
+                        synchronized (this) {
+                            running.remove(entry);
+                        }
                     }
-                    updateIndex(session, entry);
                 }
             }
             catch (Exception ex) {
@@ -528,7 +898,7 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
                 // TODO: Disable background altogether by turning off active?
                 synchronized (this) {
                     queue.clear();
-                    thread = null;
+                    threads.remove(Thread.currentThread());
                 }
             }
         }
@@ -540,7 +910,7 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
                 AkibanInformationSchema ais = schemaManager.getAis(session);
                 Table table = ais.getTable(indexName.getFullTableName());
                 if (table != null)
-                    index = table.getIndex(indexName.getName());
+                    index = table.getIndexIncludingInternal(indexName.getName());
                 if (index == null) {
                     Group group = ais.getGroup(indexName.getFullTableName());
                     if (group != null)
@@ -17,6 +17,7 @@
 
 package com.foundationdb.server.store.statistics;
 
+import com.foundationdb.ais.model.HKeySegment;
 import com.foundationdb.ais.model.Index;
 import com.foundationdb.ais.model.Table;
 import com.foundationdb.qp.row.Row;
@@ -25,10 +26,18 @@ import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.qp.util.SchemaCache;
 import com.foundationdb.server.service.session.Session;
 import com.foundationdb.server.store.Store;
+import com.persistit.Key;
 
 import java.util.ArrayList;
+import java.util.List;
 
+import static com.foundationdb.server.store.statistics.IndexStatisticsService.INDEX_STATISTICS_COLUMN_GROUP_TABLE_NAME;
+import static com.foundationdb.server.store.statistics.IndexStatisticsService.INDEX_STATISTICS_COLUMN_GROUP_VALUE_TABLE_NAME;
+import static com.foundationdb.server.store.statistics.IndexStatisticsService.INDEX_STATISTICS_COLUMN_TABLE_NAME;
+import static com.foundationdb.server.store.statistics.IndexStatisticsService.INDEX_STATISTICS_COLUMN_VALUE_TABLE_NAME;
 import static com.foundationdb.server.store.statistics.IndexStatisticsService.INDEX_STATISTICS_ENTRY_TABLE_NAME;
+import static com.foundationdb.server.store.statistics.IndexStatisticsService.INDEX_STATISTICS_MODIFICATION_TABLE_NAME;
+import static com.foundationdb.server.store.statistics.IndexStatisticsService.INDEX_STATISTICS_SAMPLE_TABLE_NAME;
 import static com.foundationdb.server.store.statistics.IndexStatisticsService.INDEX_STATISTICS_TABLE_NAME;
 
 /** Manage index statistics for a Store
@@ -45,6 +54,19 @@ import static com.foundationdb.server.store.statistics.IndexStatisticsService.IN
  * 3: (a, b, c)
  * -2: (b)
  * -3: (c)
+ *
+ * index_statistics_sample has a row only for indexes that were sampled by key range,
+ * with the number of ranges read and the resulting error bound.
+ *
+ * index_statistics_modification has the modification count of the index's table at the time
+ * it was analyzed, from which the number of rows changed since is known.
+ *
+ * index_statistics_column has a row for each analyzed column of the table, under its
+ * primary key's statistics, with the serialized HyperLogLog sketch of its distinct values.
+ * index_statistics_column_value, a child of that, has the column's most common values.
+ *
+ * index_statistics_column_group and index_statistics_column_group_value are the same
+ * for declared sets of columns, numbered in declaration order.
  */
 public abstract class AbstractStoreIndexStatistics<S extends Store> {
     private final S store;
@@ -61,7 +83,46 @@ public abstract class AbstractStoreIndexStatistics<S extends Store> {
     public abstract void removeStatistics(Session session, Index index);
     /** Sample index values and build statistics histograms. */
     public abstract IndexStatistics computeIndexStatistics(Session session, Index index, long scanTimeLimit, long sleepTime);
+    /** Scan the rows of the table and add statistics for each of its columns.
+     * Rows of other tables in its group are skipped by key, see {@link TableKeyFilter}. */
+    public abstract void computeColumnStatistics(Session session, Table table, IndexStatistics indexStatistics, long scanTimeLimit, long sleepTime);
+
+
+    /** Recognizes the group keys of one table's rows: the right depth, with
+     * that table's ordinals where its hkey has them. Lets a group scan skip
+     * other tables' rows without expanding them. */
+    protected static class TableKeyFilter {
+        private final int depth;
+        private final int[] ordinalPositions, ordinals;
 
+        public TableKeyFilter(Table table) {
+            List<HKeySegment> segments = table.hKey().segments();
+            ordinalPositions = new int[segments.size()];
+            ordinals = new int[segments.size()];
+            int position = 0;
+            for (int i = 0; i < segments.size(); i++) {
+                HKeySegment segment = segments.get(i);
+                ordinalPositions[i] = position;
+                ordinals[i] = segment.table().getOrdinal();
+                position += 1 + segment.columns().size();
+            }
+            depth = position;
+        }
+
+        public boolean matches(Key hKey) {
+            if (hKey.getDepth() != depth) {
+                return false;
+            }
+            // Leaf first: that is where siblings and descendants differ.
+            for (int i = ordinals.length - 1; i >= 0; i--) {
+                hKey.indexTo(ordinalPositions[i]);
+                if ((hKey.decodeType() != Integer.class) || (hKey.decodeInt() != ordinals[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 
     protected long estimateIndexRowCount(Session session, Index index) {
         switch(index.getIndexType()) {
@@ -87,6 +148,42 @@ public abstract class AbstractStoreIndexStatistics<S extends Store> {
         return SchemaCache.globalSchema(table.getAIS()).tableRowType(table);
     }
     
+    protected RowType getIndexStatsSampleRowType (Session session) {
+        Table table = store.getAIS(session).getTable(INDEX_STATISTICS_SAMPLE_TABLE_NAME);
+        assert (table != null);
+        return SchemaCache.globalSchema(table.getAIS()).tableRowType(table);
+    }
+    
+    protected RowType getIndexStatsModificationRowType (Session session) {
+        Table table = store.getAIS(session).getTable(INDEX_STATISTICS_MODIFICATION_TABLE_NAME);
+        assert (table != null);
+        return SchemaCache.globalSchema(table.getAIS()).tableRowType(table);
+    }
+    
+    protected RowType getIndexStatsColumnRowType (Session session) {
+        Table table = store.getAIS(session).getTable(INDEX_STATISTICS_COLUMN_TABLE_NAME);
+        assert (table != null);
+        return SchemaCache.globalSchema(table.getAIS()).tableRowType(table);
+    }
+    
+    protected RowType getIndexStatsColumnValueRowType (Session session) {
+        Table table = store.getAIS(session).getTable(INDEX_STATISTICS_COLUMN_VALUE_TABLE_NAME);
+        assert (table != null);
+        return SchemaCache.globalSchema(table.getAIS()).tableRowType(table);
+    }
+    
+    protected RowType getIndexStatsColumnGroupRowType (Session session) {
+        Table table = store.getAIS(session).getTable(INDEX_STATISTICS_COLUMN_GROUP_TABLE_NAME);
+        assert (table != null);
+        return SchemaCache.globalSchema(table.getAIS()).tableRowType(table);
+    }
+    
+    protected RowType getIndexStatsColumnGroupValueRowType (Session session) {
+        Table table = store.getAIS(session).getTable(INDEX_STATISTICS_COLUMN_GROUP_VALUE_TABLE_NAME);
+        assert (table != null);
+        return SchemaCache.globalSchema(table.getAIS()).tableRowType(table);
+    }
+    
     /* Storage formats.
      * Keep in sync with IndexStatisticsServiceImpl
      */
@@ -103,6 +200,35 @@ public abstract class AbstractStoreIndexStatistics<S extends Store> {
     private static final int LT_COUNT_FIELD_INDEX = 7;
     private static final int DISTINCT_COUNT_FIELD_INDEX = 8;
 
+    // Parent keys the same.
+    private static final int PROBE_COUNT_FIELD_INDEX = 2;
+    private static final int ERROR_BOUND_FIELD_INDEX = 3;
+
+    // Parent keys the same.
+    private static final int MODIFICATION_COUNT_FIELD_INDEX = 2;
+
+    // Parent keys the same.
+    private static final int COLUMN_POSITION_FIELD_INDEX = 2;
+    private static final int COLUMN_ROW_COUNT_FIELD_INDEX = 3;
+    private static final int NULL_COUNT_FIELD_INDEX = 4;
+    private static final int COLUMN_DISTINCT_COUNT_FIELD_INDEX = 5;
+    private static final int SKETCH_FIELD_INDEX = 6;
+
+    // Column keys the same.
+    private static final int VALUE_ITEM_NUMBER_FIELD_INDEX = 3;
+    private static final int VALUE_KEY_STRING_FIELD_INDEX = 4;
+    private static final int VALUE_KEY_BYTES_FIELD_INDEX = 5;
+    private static final int VALUE_EQ_COUNT_FIELD_INDEX = 6;
+
+    // Parent keys the same.
+    private static final int GROUP_NUMBER_FIELD_INDEX = 2;
+    private static final int GROUP_COLUMN_POSITIONS_FIELD_INDEX = 3;
+    private static final int GROUP_ROW_COUNT_FIELD_INDEX = 4;
+    private static final int GROUP_NULL_COUNT_FIELD_INDEX = 5;
+    private static final int GROUP_DISTINCT_COUNT_FIELD_INDEX = 6;
+    private static final int GROUP_SKETCH_FIELD_INDEX = 7;
+    // Group value fields are the same as column value ones.
+
     protected final IndexStatistics decodeIndexStatisticsRow(Row row, Index index) {
         long analysisTimeStamp = (long)row.value(ANALYSIS_TIMESTAMP_FIELD_INDEX).getInt32();
         long rowCount = row.value(ROW_COUNT_FIELD_INDEX).getInt64();
@@ -112,6 +238,30 @@ public abstract class AbstractStoreIndexStatistics<S extends Store> {
     }
 
     protected final void decodeIndexStatisticsEntryRow (Row row, IndexStatistics indexStatistics) {
+        if (row.rowType().table().getName().equals(INDEX_STATISTICS_SAMPLE_TABLE_NAME)) {
+            decodeIndexStatisticsSampleRow(row, indexStatistics);
+            return;
+        }
+        if (row.rowType().table().getName().equals(INDEX_STATISTICS_MODIFICATION_TABLE_NAME)) {
+            decodeIndexStatisticsModificationRow(row, indexStatistics);
+            return;
+        }
+        if (row.rowType().table().getName().equals(INDEX_STATISTICS_COLUMN_TABLE_NAME)) {
+            decodeIndexStatisticsColumnRow(row, indexStatistics);
+            return;
+        }
+        if (row.rowType().table().getName().equals(INDEX_STATISTICS_COLUMN_VALUE_TABLE_NAME)) {
+            decodeIndexStatisticsColumnValueRow(row, indexStatistics);
+            return;
+        }
+        if (row.rowType().table().getName().equals(INDEX_STATISTICS_COLUMN_GROUP_TABLE_NAME)) {
+            decodeIndexStatisticsColumnGroupRow(row, indexStatistics);
+            return;
+        }
+        if (row.rowType().table().getName().equals(INDEX_STATISTICS_COLUMN_GROUP_VALUE_TABLE_NAME)) {
+            decodeIndexStatisticsColumnGroupValueRow(row, indexStatistics);
+            return;
+        }
         int columnCount = row.value(COLUMN_COUNT_FIELD_INDEX).getInt32();
         //int itemNumber  = row.value(ITEM_NUMBER_FIELD_INDEX).getInt32();
         String keyString = row.value(KEY_STRING_FIELD_INDEX).getString();
@@ -133,6 +283,68 @@ public abstract class AbstractStoreIndexStatistics<S extends Store> {
         histogram.getEntries().add(new HistogramEntry(keyString, keyBytes, eqCount, ltCount, distinctCount));
     }
     
+    protected final void decodeIndexStatisticsSampleRow (Row row, IndexStatistics indexStatistics) {
+        long probeCount = row.value(PROBE_COUNT_FIELD_INDEX).getInt64();
+        double errorBound = row.value(ERROR_BOUND_FIELD_INDEX).getDouble();
+        indexStatistics.setSampling(probeCount, errorBound);
+    }
+
+    protected final void decodeIndexStatisticsModificationRow (Row row, IndexStatistics indexStatistics) {
+        indexStatistics.setModificationCount(row.value(MODIFICATION_COUNT_FIELD_INDEX).getInt64());
+    }
+
+    protected final void decodeIndexStatisticsColumnRow (Row row, IndexStatistics indexStatistics) {
+        int columnPosition = row.value(COLUMN_POSITION_FIELD_INDEX).getInt32();
+        long rowCount = row.value(COLUMN_ROW_COUNT_FIELD_INDEX).getInt64();
+        long nullCount = row.value(NULL_COUNT_FIELD_INDEX).getInt64();
+        long distinctCount = row.value(COLUMN_DISTINCT_COUNT_FIELD_INDEX).getInt64();
+        HyperLogLog sketch = null;
+        if (!row.value(SKETCH_FIELD_INDEX).isNull()) {
+            sketch = new HyperLogLog(row.value(SKETCH_FIELD_INDEX).getBytes());
+        }
+        indexStatistics.addColumnStatistics(new ColumnStatistics(columnPosition, rowCount, nullCount,
+                                                                 distinctCount, sketch));
+    }
+
+    protected final void decodeIndexStatisticsColumnValueRow (Row row, IndexStatistics indexStatistics) {
+        int columnPosition = row.value(COLUMN_POSITION_FIELD_INDEX).getInt32();
+        //int itemNumber  = row.value(VALUE_ITEM_NUMBER_FIELD_INDEX).getInt32();
+        String keyString = row.value(VALUE_KEY_STRING_FIELD_INDEX).getString();
+        byte[] keyBytes = row.value(VALUE_KEY_BYTES_FIELD_INDEX).getBytes();
+        long eqCount = row.value(VALUE_EQ_COUNT_FIELD_INDEX).getInt64();
+        // Children follow their column's row.
+        ColumnStatistics columnStatistics = indexStatistics.getColumnStatistics(columnPosition);
+        columnStatistics.getMostCommonValues().add(new HistogramEntry(keyString, keyBytes, eqCount, 0, 0));
+    }
+
+    protected final void decodeIndexStatisticsColumnGroupRow (Row row, IndexStatistics indexStatistics) {
+        //int groupNumber = row.value(GROUP_NUMBER_FIELD_INDEX).getInt32();
+        String[] positions = row.value(GROUP_COLUMN_POSITIONS_FIELD_INDEX).getString().split(",");
+        int[] columnPositions = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            columnPositions[i] = Integer.parseInt(positions[i]);
+        }
+        long rowCount = row.value(GROUP_ROW_COUNT_FIELD_INDEX).getInt64();
+        long nullCount = row.value(GROUP_NULL_COUNT_FIELD_INDEX).getInt64();
+        long distinctCount = row.value(GROUP_DISTINCT_COUNT_FIELD_INDEX).getInt64();
+        HyperLogLog sketch = null;
+        if (!row.value(GROUP_SKETCH_FIELD_INDEX).isNull()) {
+            sketch = new HyperLogLog(row.value(GROUP_SKETCH_FIELD_INDEX).getBytes());
+        }
+        indexStatistics.addColumnGroupStatistics(new ColumnGroupStatistics(columnPositions, rowCount, nullCount,
+                                                                           distinctCount, sketch));
+    }
+
+    protected final void decodeIndexStatisticsColumnGroupValueRow (Row row, IndexStatistics indexStatistics) {
+        int groupNumber = row.value(GROUP_NUMBER_FIELD_INDEX).getInt32();
+        String keyString = row.value(VALUE_KEY_STRING_FIELD_INDEX).getString();
+        byte[] keyBytes = row.value(VALUE_KEY_BYTES_FIELD_INDEX).getBytes();
+        long eqCount = row.value(VALUE_EQ_COUNT_FIELD_INDEX).getInt64();
+        // Groups are numbered from one, and read in order.
+        ColumnGroupStatistics groupStatistics = indexStatistics.getColumnGroupStatistics().get(groupNumber - 1);
+        groupStatistics.getMostCommonValues().add(new HistogramEntry(keyString, keyBytes, eqCount, 0, 0));
+    }
+
     /** Store statistics into database. */
     public final void storeIndexStatistics(Session session, Index index, IndexStatistics indexStatistics) {
         int tableId = index.leafMostTable().getTableId();
@@ -150,6 +362,46 @@ public abstract class AbstractStoreIndexStatistics<S extends Store> {
                         indexStatistics.getRowCount(),
                         indexStatistics.getSampledCount());
         store.writeRow(session, row, null, null);
+
+        if (indexStatistics.getProbeCount() > 0) {
+            RowType indexStatisticsSampleRowType = SchemaCache.globalSchema(index.getAIS()).tableRowType(store.getAIS(session).getTable(INDEX_STATISTICS_SAMPLE_TABLE_NAME));
+            row = new ValuesHolderRow (indexStatisticsSampleRowType,
+                        tableId,
+                        index.getIndexId(),
+                        indexStatistics.getProbeCount(),
+                        indexStatistics.getErrorBound());
+            store.writeRow(session, row, null, null);
+        }
+
+        if (indexStatistics.getModificationCount() >= 0) {
+            RowType indexStatisticsModificationRowType = SchemaCache.globalSchema(index.getAIS()).tableRowType(store.getAIS(session).getTable(INDEX_STATISTICS_MODIFICATION_TABLE_NAME));
+            row = new ValuesHolderRow (indexStatisticsModificationRowType,
+                        tableId,
+                        index.getIndexId(),
+                        indexStatistics.getModificationCount());
+            store.writeRow(session, row, null, null);
+        }
+
+        if (!indexStatistics.getColumnStatistics().isEmpty()) {
+            RowType indexStatisticsColumnRowType = SchemaCache.globalSchema(index.getAIS()).tableRowType(store.getAIS(session).getTable(INDEX_STATISTICS_COLUMN_TABLE_NAME));
+            RowType indexStatisticsColumnValueRowType = SchemaCache.globalSchema(index.getAIS()).tableRowType(store.getAIS(session).getTable(INDEX_STATISTICS_COLUMN_VALUE_TABLE_NAME));
+            for (ColumnStatistics columnStatistics : indexStatistics.getColumnStatistics()) {
+                storeIndexStatisticsColumn(session, index, tableId,
+                                           indexStatisticsColumnRowType, indexStatisticsColumnValueRowType,
+                                           columnStatistics);
+            }
+        }
+
+        if (!indexStatistics.getColumnGroupStatistics().isEmpty()) {
+            RowType indexStatisticsColumnGroupRowType = SchemaCache.globalSchema(index.getAIS()).tableRowType(store.getAIS(session).getTable(INDEX_STATISTICS_COLUMN_GROUP_TABLE_NAME));
+            RowType indexStatisticsColumnGroupValueRowType = SchemaCache.globalSchema(index.getAIS()).tableRowType(store.getAIS(session).getTable(INDEX_STATISTICS_COLUMN_GROUP_VALUE_TABLE_NAME));
+            int groupNumber = 0;
+            for (ColumnGroupStatistics groupStatistics : indexStatistics.getColumnGroupStatistics()) {
+                storeIndexStatisticsColumnGroup(session, index, tableId, ++groupNumber,
+                                                indexStatisticsColumnGroupRowType, indexStatisticsColumnGroupValueRowType,
+                                                groupStatistics);
+            }
+        }
                        
          // Multi-column
         for(int prefixColumns = 1; prefixColumns <= index.getKeyColumns().size(); prefixColumns++) {
@@ -178,6 +430,75 @@ public abstract class AbstractStoreIndexStatistics<S extends Store> {
         }
     }
 
+    private void storeIndexStatisticsColumn(Session session,
+                                            Index index,
+                                            int tableId,
+                                            RowType indexStatisticsColumnRowType,
+                                            RowType indexStatisticsColumnValueRowType,
+                                            ColumnStatistics columnStatistics)
+    {
+        HyperLogLog sketch = columnStatistics.getSketch();
+        Row row = new ValuesHolderRow (indexStatisticsColumnRowType,
+                    tableId,
+                    index.getIndexId(),
+                    columnStatistics.getColumnPosition(),
+                    columnStatistics.getRowCount(),
+                    columnStatistics.getNullCount(),
+                    columnStatistics.getDistinctCount(),
+                    (sketch == null) ? null : sketch.getRegisters());
+        store.writeRow(session, row, null, null);
+        int itemNumber = 0;
+        for (HistogramEntry entry : columnStatistics.getMostCommonValues()) {
+            row = new ValuesHolderRow (indexStatisticsColumnValueRowType,
+                        tableId,
+                        index.getIndexId(),
+                        columnStatistics.getColumnPosition(),
+                        ++itemNumber,
+                        entry.getKeyString(),
+                        entry.getKeyBytes(),
+                        entry.getEqualCount());
+            store.writeRow(session, row, null, null);
+        }
+    }
+
+    private void storeIndexStatisticsColumnGroup(Session session,
+                                                 Index index,
+                                                 int tableId,
+                                                 int groupNumber,
+                                                 RowType indexStatisticsColumnGroupRowType,
+                                                 RowType indexStatisticsColumnGroupValueRowType,
+                                                 ColumnGroupStatistics groupStatistics)
+    {
+        StringBuilder positions = new StringBuilder();
+        for (int position : groupStatistics.getColumnPositions()) {
+            if (positions.length() > 0) positions.append(',');
+            positions.append(position);
+        }
+        HyperLogLog sketch = groupStatistics.getSketch();
+        Row row = new ValuesHolderRow (indexStatisticsColumnGroupRowType,
+                    tableId,
+                    index.getIndexId(),
+                    groupNumber,
+                    positions.toString(),
+                    groupStatistics.getRowCount(),
+                    groupStatistics.getNullCount(),
+                    groupStatistics.getDistinctCount(),
+                    (sketch == null) ? null : sketch.getRegisters());
+        store.writeRow(session, row, null, null);
+        int itemNumber = 0;
+        for (HistogramEntry entry : groupStatistics.getMostCommonValues()) {
+            row = new ValuesHolderRow (indexStatisticsColumnGroupValueRowType,
+                        tableId,
+                        index.getIndexId(),
+                        groupNumber,
+                        ++itemNumber,
+                        entry.getKeyString(),
+                        entry.getKeyBytes(),
+                        entry.getEqualCount());
+            store.writeRow(session, row, null, null);
+        }
+    }
+
     private void storeIndexStatisticsEntry(Session session,
                                            Index index,
                                            int tableId,
@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.store.statistics;
+
+import com.foundationdb.ais.model.Table;
+
+import java.util.Arrays;
+
+/** Joint statistics for a set of columns of a table, declared to be
+ * analyzed together because their values are correlated.
+ *
+ * A row where any of the columns is null counts as null. The most
+ * common values are keys with all the columns, in
+ * the declared order.
+ */
+public class ColumnGroupStatistics extends ColumnStatistics
+{
+    private final int[] columnPositions;
+
+    public ColumnGroupStatistics(int[] columnPositions, long rowCount, long nullCount,
+                                 long distinctCount, HyperLogLog sketch) {
+        super(columnPositions[0], rowCount, nullCount, distinctCount, sketch);
+        this.columnPositions = columnPositions;
+    }
+
+    /** Positions of the columns in their table, in the declared order. */
+    public int[] getColumnPositions() {
+        return columnPositions;
+    }
+
+    @Override
+    public String toString(Table table) {
+        StringBuilder str = new StringBuilder(getClass().getSimpleName());
+        str.append(" for ");
+        if (table != null) {
+            for (int i = 0; i < columnPositions.length; i++) {
+                if (i > 0) str.append(", ");
+                str.append(table.getColumnsIncludingInternal().get(columnPositions[i]).getName());
+            }
+        }
+        else
+            str.append(Arrays.toString(columnPositions));
+        str.append(": ").append(getDistinctCount()).append(" distinct, ")
+           .append(getNullCount()).append(" null of ").append(getRowCount())
+           .append("\n").append(getMostCommonValues());
+        return str.toString();
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.store.statistics;
+
+import com.foundationdb.ais.model.Table;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Statistics for a single table column, whether or not it is indexed.
+ * Kept with the statistics of the table's primary key, hidden or not.
+ *
+ * The most common values are {@link HistogramEntry}s with only an
+ * equal count, in key order. Their counts are lower bounds, off by
+ * at most the number of rows divided by the number of values tracked
+ * while analyzing.
+ */
+public class ColumnStatistics
+{
+    private final int columnPosition;
+    private final long rowCount, nullCount, distinctCount;
+    private final HyperLogLog sketch;
+    private final List<HistogramEntry> mostCommonValues;
+
+    public ColumnStatistics(int columnPosition, long rowCount, long nullCount,
+                            long distinctCount, HyperLogLog sketch) {
+        this.columnPosition = columnPosition;
+        this.rowCount = rowCount;
+        this.nullCount = nullCount;
+        this.distinctCount = distinctCount;
+        this.sketch = sketch;
+        this.mostCommonValues = new ArrayList<>();
+    }
+
+    /** Position of the column in its table. */
+    public int getColumnPosition() {
+        return columnPosition;
+    }
+
+    /** The number of rows in the table when it was analyzed. */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getNullCount() {
+        return nullCount;
+    }
+
+    /** Estimated number of distinct non-null values. */
+    public long getDistinctCount() {
+        return distinctCount;
+    }
+
+    /** The sketch the distinct count was estimated from, or <code>null</code>. */
+    public HyperLogLog getSketch() {
+        return sketch;
+    }
+
+    public List<HistogramEntry> getMostCommonValues() {
+        return mostCommonValues;
+    }
+
+    /** Total number of rows having one of the most common values. */
+    public long mostCommonCount() {
+        long total = 0;
+        for (HistogramEntry entry : mostCommonValues) {
+            total += entry.getEqualCount();
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return toString(null);
+    }
+
+    public String toString(Table table) {
+        StringBuilder str = new StringBuilder(getClass().getSimpleName());
+        str.append(" for ");
+        if (table != null)
+            str.append(table.getColumnsIncludingInternal().get(columnPosition).getName());
+        else
+            str.append(columnPosition);
+        str.append(": ").append(distinctCount).append(" distinct, ")
+           .append(nullCount).append(" null of ").append(rowCount)
+           .append("\n").append(mostCommonValues);
+        return str.toString();
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.store.statistics;
+
+import com.foundationdb.ais.model.Column;
+import com.foundationdb.ais.model.Table;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.PersistitKeyValueTarget;
+import com.foundationdb.server.service.tree.KeyCreator;
+import com.foundationdb.server.types.value.ValueSource;
+import com.google.common.primitives.UnsignedBytes;
+import com.persistit.Key;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/** Compute {@link ColumnStatistics} for each column of a table from its rows.
+ *
+ * Values are encoded the way an index on them would be,
+ * so that collation is respected and the most common values compare
+ * directly with keys encoded by the cost estimator. Each is added to a
+ * {@link HyperLogLog} sketch and to a Misra-Gries summary of
+ * <code>4 * valueCount</code> counters, from which the most frequent
+ * <code>valueCount</code> are kept.
+ *
+ * Columns whose values could be too long for a key are skipped. So are
+ * declared column groups whose values together could be.
+ */
+class ColumnStatisticsGenerator
+{
+    static final long MAX_VALUE_SIZE = 512;
+    static final long MAX_GROUP_VALUE_SIZE = 1024;
+    private static final int COUNTERS_PER_VALUE = 4;
+
+    private final Key key;
+    private final PersistitKeyValueTarget keyTarget;
+    private final List<ColumnState> columns = new ArrayList<>();
+    private final int valueCount;
+    private long rowCount;
+
+    public ColumnStatisticsGenerator(Table table, KeyCreator keyCreator, IndexStatisticsService indexStatisticsService) {
+        this.key = keyCreator.createKey();
+        this.keyTarget = new PersistitKeyValueTarget(getClass().getSimpleName());
+        this.valueCount = indexStatisticsService.mostCommonValueCount();
+        for (Column column : table.getColumns()) {
+            Long size = column.getMaxStorageSize();
+            if ((size != null) && (size <= MAX_VALUE_SIZE)) {
+                columns.add(new ColumnState(new Column[] { column }, false));
+            }
+        }
+        groups:
+        for (List<Column> group : indexStatisticsService.columnGroups(table)) {
+            long total = 0;
+            for (Column column : group) {
+                Long size = column.getMaxStorageSize();
+                if (size == null) continue groups;
+                total += size;
+            }
+            if (total <= MAX_GROUP_VALUE_SIZE) {
+                columns.add(new ColumnState(group.toArray(new Column[group.size()]), true));
+            }
+        }
+    }
+
+    public void visit(Row row) {
+        rowCount++;
+        states:
+        for (ColumnState state : columns) {
+            key.clear();
+            keyTarget.attach(key);
+            for (Column column : state.columns) {
+                ValueSource value = row.value(column.getPosition());
+                if (value.isNull()) {
+                    state.nullCount++;
+                    continue states;
+                }
+                column.getType().writeCollating(value, keyTarget);
+            }
+            state.visit(key.getEncodedBytes(), key.getEncodedSize());
+        }
+    }
+
+    public void finish(IndexStatistics indexStatistics) {
+        for (ColumnState state : columns) {
+            ColumnStatistics stats = state.finish();
+            if (stats instanceof ColumnGroupStatistics)
+                indexStatistics.addColumnGroupStatistics((ColumnGroupStatistics)stats);
+            else
+                indexStatistics.addColumnStatistics(stats);
+        }
+    }
+
+    private class ColumnState {
+        final Column[] columns;
+        final boolean group;
+        final HyperLogLog sketch = new HyperLogLog();
+        final Map<ByteBuffer,long[]> counters = new HashMap<>();
+        final int maxCounters = valueCount * COUNTERS_PER_VALUE;
+        long nullCount;
+
+        ColumnState(Column[] columns, boolean group) {
+            this.columns = columns;
+            this.group = group;
+        }
+
+        void visit(byte[] bytes, int length) {
+            sketch.add(bytes, 0, length);
+            if (maxCounters == 0) return;
+            long[] counter = counters.get(ByteBuffer.wrap(bytes, 0, length));
+            if (counter != null) {
+                counter[0]++;
+            }
+            else if (counters.size() < maxCounters) {
+                counters.put(ByteBuffer.wrap(Arrays.copyOf(bytes, length)), new long[] { 1 });
+            }
+            else {
+                // Full: this value and one occurrence of every counted one cancel.
+                Iterator<long[]> iter = counters.values().iterator();
+                while (iter.hasNext()) {
+                    if (--iter.next()[0] == 0) {
+                        iter.remove();
+                    }
+                }
+            }
+        }
+
+        ColumnStatistics finish() {
+            long nonNullCount = rowCount - nullCount;
+            long distinctCount = Math.min(Math.max(sketch.estimate(), counters.size()), nonNullCount);
+            ColumnStatistics result;
+            if (group) {
+                int[] positions = new int[columns.length];
+                for (int i = 0; i < columns.length; i++) {
+                    positions[i] = columns[i].getPosition();
+                }
+                result = new ColumnGroupStatistics(positions, rowCount, nullCount,
+                                                   distinctCount, sketch);
+            }
+            else {
+                result = new ColumnStatistics(columns[0].getPosition(), rowCount, nullCount,
+                                              distinctCount, sketch);
+            }
+            List<Map.Entry<ByteBuffer,long[]>> entries = new ArrayList<>(counters.entrySet());
+            Collections.sort(entries, new Comparator<Map.Entry<ByteBuffer,long[]>>() {
+                    @Override
+                    public int compare(Map.Entry<ByteBuffer,long[]> e1, Map.Entry<ByteBuffer,long[]> e2) {
+                        return Long.compare(e2.getValue()[0], e1.getValue()[0]);
+                    }
+                });
+            List<HistogramEntry> mostCommon = result.getMostCommonValues();
+            for (Map.Entry<ByteBuffer,long[]> entry : entries) {
+                long count = entry.getValue()[0];
+                // Only values noticeably more common than average are worth singling out.
+                if ((mostCommon.size() >= valueCount) ||
+                    (count <= 1) || (count * distinctCount * 4 <= nonNullCount * 5)) {
+                    break;
+                }
+                byte[] bytes = entry.getKey().array();
+                mostCommon.add(new HistogramEntry(keyString(bytes), bytes, count, 0, 0));
+            }
+            Collections.sort(mostCommon, new Comparator<HistogramEntry>() {
+                    private final Comparator<byte[]> bytesComparator = UnsignedBytes.lexicographicalComparator();
+
+                    @Override
+                    public int compare(HistogramEntry e1, HistogramEntry e2) {
+                        return bytesComparator.compare(e1.getKeyBytes(), e2.getKeyBytes());
+                    }
+                });
+            return result;
+        }
+    }
+
+    private String keyString(byte[] bytes) {
+        key.clear();
+        System.arraycopy(bytes, 0, key.getEncodedBytes(), 0, bytes.length);
+        key.setEncodedSize(bytes.length);
+        return key.toString();
+    }
+}
@@ -16,6 +16,7 @@
  */
 package com.foundationdb.server.store.statistics;
 
+import com.foundationdb.KeySelector;
 import com.foundationdb.ais.model.Index;
 import com.foundationdb.ais.model.IndexColumn;
 import com.foundationdb.ais.model.Table;
@@ -30,12 +31,17 @@ import com.foundationdb.server.store.FDBScanTransactionOptions;
 import com.foundationdb.server.store.FDBStore;
 import com.foundationdb.server.store.FDBStoreData;
 import com.foundationdb.server.store.FDBStoreDataHelper;
+import com.foundationdb.server.store.FDBStoreDataKeyValueIterator;
 import com.foundationdb.server.store.FDBTransactionService;
+import com.foundationdb.server.store.FDBTransactionService.TransactionState;
+import com.foundationdb.tuple.ByteArrayUtil;
 import com.persistit.Key;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Random;
+
 import static com.foundationdb.server.store.statistics.IndexStatisticsService.INDEX_STATISTICS_TABLE_NAME;
 import static com.foundationdb.server.store.statistics.IndexStatisticsVisitor.VisitorCreator;
 
@@ -103,7 +109,7 @@ public class FDBStoreIndexStatistics extends AbstractStoreIndexStatistics<FDBSto
 
     @Override
     public IndexStatistics computeIndexStatistics(Session session, Index index, long scanTimeLimit, long sleepTime) {
-        FDBScanTransactionOptions transactionOptions;
+        final FDBScanTransactionOptions transactionOptions;
         if (scanTimeLimit > 0) {
             transactionOptions = new FDBScanTransactionOptions(true, -1,
                                                                scanTimeLimit, sleepTime);
@@ -112,8 +118,15 @@ public class FDBStoreIndexStatistics extends AbstractStoreIndexStatistics<FDBSto
             transactionOptions = FDBScanTransactionOptions.SNAPSHOT;
         }
         long indexRowCount = estimateIndexRowCount(session, index);
+        int bucketCount = indexStatisticsService.bucketCount();
+        double keyRangeRate = indexStatisticsService.sampleRate();
+        int blockSize = indexStatisticsService.sampleBlockSize();
+        boolean keyRangeSampling = IndexKeyRangeSampler.shouldSample(indexRowCount, keyRangeRate, blockSize, bucketCount);
         long expectedSampleCount = indexRowCount;
-        int sampleRate = 1, skippedSamples = 0;
+        if (keyRangeSampling) {
+            expectedSampleCount = IndexKeyRangeSampler.expectedSampleCount(indexRowCount, keyRangeRate, blockSize);
+        }
+        int sampleRate = 1;
         int nSingle = index.getKeyColumns().size() - 1;
         if (nSingle > 0) {
             // Multi-column index might need sampling.  In the worst case, the visitor
@@ -121,35 +134,95 @@ public class FDBStoreIndexStatistics extends AbstractStoreIndexStatistics<FDBSto
             // each sampled row. Keep that below samplerCountLimit by sampling every few
             // rows. We could still send everything for the leading column, except that
             // the sample count applies to the whole, not per histograms.
-            sampleRate = (int)((indexRowCount * nSingle + samplerCountLimit - 1) / samplerCountLimit); // Round up.
+            sampleRate = (int)((expectedSampleCount * nSingle + samplerCountLimit - 1) / samplerCountLimit); // Round up.
             if (sampleRate > 1) {
-                expectedSampleCount = indexRowCount / sampleRate;
+                expectedSampleCount = expectedSampleCount / sampleRate;
                 logger.debug("Sampling rate for {} is {}", index, sampleRate);
             }
         }
         IndexStatisticsVisitor<Key,byte[]> visitor = new IndexStatisticsVisitor<>(session, index, indexRowCount, expectedSampleCount, this);
-        int bucketCount = indexStatisticsService.bucketCount();
         visitor.init(bucketCount);
-        FDBStoreData storeData = getStore().createStoreData(session, index);
-        // Whole index, forward.
-        getStore().indexIterator(session, storeData, false, false, true, false,
-                                 transactionOptions);
-        while(storeData.next()) {
-            if (++skippedSamples < sampleRate)
-                continue;       // This value not sampled.
-            skippedSamples = 0;
-            FDBStoreDataHelper.unpackKey(storeData);
-            // TODO: Does anything look at rawValue?
-            visitor.visit(storeData.persistitKey, storeData.rawValue);
+        final FDBStoreData storeData = getStore().createStoreData(session, index);
+        final EveryNthVisitor sampler = new EveryNthVisitor(visitor, sampleRate);
+        IndexKeyRangeSampler keyRangeSampler = null;
+        if (keyRangeSampling) {
+            final TransactionState txn = getStore().getTransaction(session, storeData);
+            final byte[] indexStart = FDBStoreDataHelper.prefixBytes(storeData);
+            final byte[] indexEnd = ByteArrayUtil.strinc(indexStart);
+            keyRangeSampler = new IndexKeyRangeSampler(indexRowCount, keyRangeRate, blockSize) {
+                    @Override
+                    protected byte[] edgeKey(boolean last) {
+                        storeData.iterator = new FDBStoreDataKeyValueIterator(storeData,
+                            txn.getRangeIterator(KeySelector.firstGreaterOrEqual(indexStart),
+                                                 KeySelector.firstGreaterOrEqual(indexEnd),
+                                                 1, last, transactionOptions));
+                        return storeData.next() ? storeData.rawKey : null;
+                    }
+
+                    @Override
+                    protected byte[] visitRange(byte[] start, boolean after, int limit) {
+                        storeData.iterator = new FDBStoreDataKeyValueIterator(storeData,
+                            txn.getRangeIterator(after ?
+                                                 KeySelector.firstGreaterThan(start) :
+                                                 KeySelector.firstGreaterOrEqual(start),
+                                                 KeySelector.firstGreaterOrEqual(indexEnd),
+                                                 limit, false, transactionOptions));
+                        byte[] lastKey = null;
+                        while (storeData.next()) {
+                            lastKey = storeData.rawKey;
+                            sampler.visit(storeData);
+                        }
+                        return lastKey;
+                    }
+                };
+            logger.debug("Sampling {} by key range", index);
+            keyRangeSampler.run(new Random());
+        }
+        else {
+            // Whole index, forward.
+            getStore().indexIterator(session, storeData, false, false, true, false,
+                                     transactionOptions);
+            while(storeData.next()) {
+                sampler.visit(storeData);
+            }
         }
         visitor.finish(bucketCount);
         IndexStatistics indexStatistics = visitor.getIndexStatistics();
+        if (keyRangeSampler != null) {
+            keyRangeSampler.recordSampling(indexStatistics);
+        }
         if (logger.isDebugEnabled()) {
             logger.debug("Analyzed: " + indexStatistics.toString(index));
         }
         return indexStatistics;
     }
 
+    @Override
+    public void computeColumnStatistics(Session session, Table table, IndexStatistics indexStatistics, long scanTimeLimit, long sleepTime) {
+        FDBScanTransactionOptions transactionOptions;
+        if (scanTimeLimit > 0) {
+            transactionOptions = new FDBScanTransactionOptions(true, -1,
+                                                               scanTimeLimit, sleepTime);
+        }
+        else {
+            transactionOptions = FDBScanTransactionOptions.SNAPSHOT;
+        }
+        Schema schema = SchemaCache.globalSchema(table.getAIS());
+        ColumnStatisticsGenerator generator = new ColumnStatisticsGenerator(table, getStore(), indexStatisticsService);
+        FDBStoreData storeData = getStore().createStoreData(session, table.getGroup());
+        TableKeyFilter tableKeys = new TableKeyFilter(table);
+        getStore().groupIterator(session, storeData, transactionOptions);
+        while(storeData.next()) {
+            FDBStoreDataHelper.unpackKey(storeData);
+            if (tableKeys.matches(storeData.persistitKey)) {
+                Row row = getStore().expandRow(session, storeData, schema);
+                assert row.rowType().table() == table : row;
+                generator.visit(row);
+            }
+        }
+        generator.finish(indexStatistics);
+    }
+
 
     //
     // VisitorCreator
@@ -181,4 +254,25 @@ public class FDBStoreIndexStatistics extends AbstractStoreIndexStatistics<FDBSto
                                Schema schema) {
         decodeIndexStatisticsEntryRow(FDBStoreDataHelper.expandRow(schema, storeData), indexStatistics);
     }
+
+    /** Pass every <code>n</code>'th index row on to the visitor. */
+    private static class EveryNthVisitor {
+        private final IndexStatisticsVisitor<Key,byte[]> visitor;
+        private final int n;
+        private int skipped;
+
+        public EveryNthVisitor(IndexStatisticsVisitor<Key,byte[]> visitor, int n) {
+            this.visitor = visitor;
+            this.n = n;
+        }
+
+        public void visit(FDBStoreData storeData) {
+            if (++skipped < n)
+                return;         // This value not sampled.
+            skipped = 0;
+            FDBStoreDataHelper.unpackKey(storeData);
+            // TODO: Does anything look at rawValue?
+            visitor.visit(storeData.persistitKey, storeData.rawValue);
+        }
+    }
 }
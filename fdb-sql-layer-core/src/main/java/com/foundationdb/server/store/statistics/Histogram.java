@@ -62,6 +62,15 @@ public class Histogram
         return indexStatistics;
     }
 
+    /** Bound on the error of fractions estimated from this histogram.
+     * All the histograms of an index come from the same sample, so this is
+     * recorded once for the index.
+     * @see IndexStatistics#getErrorBound
+     */
+    public double getErrorBound() {
+        return (indexStatistics == null) ? 0.0 : indexStatistics.getErrorBound();
+    }
+
     public long totalDistinctCount()
     {
         long total = 0;
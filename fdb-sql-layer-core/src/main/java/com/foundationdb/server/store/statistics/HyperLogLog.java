@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.store.statistics;
+
+/**
+ * HyperLogLog sketch of the number of distinct values in a stream,
+ * in a fixed amount of memory. Each value is hashed to 64 bits; the
+ * leading <code>precision</code> bits choose a register, which keeps
+ * the longest run of leading zeros seen in the rest. The standard
+ * error of the estimate is about <code>1.04 / sqrt(2^precision)</code>,
+ * or 2.3% for the default precision.
+ *
+ * With 64-bit hashes no large range correction is needed; small
+ * cardinalities fall back to linear counting of empty registers.
+ */
+public class HyperLogLog
+{
+    public static final int DEFAULT_PRECISION = 11;
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 16;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision) {
+        if ((precision < MIN_PRECISION) || (precision > MAX_PRECISION)) {
+            throw new IllegalArgumentException("Precision out of range: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /** Reconstitute from stored registers. */
+    public HyperLogLog(byte[] registers) {
+        int precision = Integer.numberOfTrailingZeros(registers.length);
+        if ((registers.length != (1 << precision)) ||
+            (precision < MIN_PRECISION) || (precision > MAX_PRECISION)) {
+            throw new IllegalArgumentException("Not a sketch: " + registers.length + " registers");
+        }
+        this.precision = precision;
+        this.registers = registers;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /** The registers, one byte each, suitable for storing. */
+    public byte[] getRegisters() {
+        return registers;
+    }
+
+    public void add(byte[] bytes, int offset, int length) {
+        addHash(hash(bytes, offset, length));
+    }
+
+    public void addHash(long hash) {
+        int index = (int)(hash >>> (64 - precision));
+        // Guard bit bounds the run of zeros when the rest is all zero.
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte)(Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0.0;
+        int zeros = 0;
+        for (byte rank : registers) {
+            sum += Math.scalb(1.0, -rank);
+            if (rank == 0) zeros++;
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if ((estimate <= 2.5 * m) && (zeros > 0)) {
+            estimate = m * Math.log((double)m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+        case 16:
+            return 0.673;
+        case 32:
+            return 0.697;
+        case 64:
+            return 0.709;
+        default:
+            return 0.7213 / (1.0 + 1.079 / m);
+        }
+    }
+
+    /** 64-bit FNV-1a, followed by the MurmurHash3 finalizer to spread
+     * the low-entropy high bits that pick the register. */
+    static long hash(byte[] bytes, int offset, int length) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < length; i++) {
+            h ^= (bytes[offset + i] & 0xFF);
+            h *= 0x100000001b3L;
+        }
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= (h >>> 33);
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + precision + "): " + estimate();
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.store.statistics;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Key-range sampling of a large index. Rather than visiting every
+ * entry, read runs of <code>blockSize</code> consecutive entries
+ * starting at positions spread over the raw key space between the
+ * first and last entries: one random position in each of
+ * <code>probeCount</code> equal slices, so that they come out in
+ * order and can feed the same visitors as a full scan.
+ *
+ * Positions are uniform in key space, not in rows, so densely
+ * populated key ranges are somewhat under-represented. The recorded
+ * error bound treats each run, rather than each row, as an
+ * independent observation to allow for entries within a run being
+ * correlated.
+ */
+abstract class IndexKeyRangeSampler
+{
+    /** Number of bytes past the common prefix of the first and last
+     * keys used to place the probes. */
+    private static final int POSITION_BYTES = 7;
+    /** Normal quantile for a 95% confidence interval. */
+    private static final double Z_95 = 1.96;
+
+    private final int blockSize;
+    private final int probeCount;
+    private int probesRead;
+
+    protected IndexKeyRangeSampler(long rowCount, double sampleRate, int blockSize) {
+        this.blockSize = blockSize;
+        this.probeCount = (int)Math.min(Integer.MAX_VALUE, probeCount(rowCount, sampleRate, blockSize));
+    }
+
+    /** Is the index large enough that sampling <code>sampleRate</code>
+     * of it still leaves at least one run per histogram bucket?
+     */
+    public static boolean shouldSample(long rowCount, double sampleRate, int blockSize, int bucketCount) {
+        return (sampleRate > 0.0) && (sampleRate < 1.0) && (blockSize > 0) &&
+               (rowCount * sampleRate >= (double)blockSize * bucketCount);
+    }
+
+    /** The number of rows that are expected to be visited. */
+    public static long expectedSampleCount(long rowCount, double sampleRate, int blockSize) {
+        return Math.min(rowCount, probeCount(rowCount, sampleRate, blockSize) * blockSize);
+    }
+
+    private static long probeCount(long rowCount, double sampleRate, int blockSize) {
+        return (long)Math.ceil(rowCount * sampleRate / blockSize);
+    }
+
+    /** Raw key of the first or last entry of the index, or
+     * <code>null</code> if it is empty.
+     */
+    protected abstract byte[] edgeKey(boolean last);
+
+    /** Visit up to <code>limit</code> entries in key order, starting
+     * with the first one at or, if <code>after</code>, following
+     * <code>start</code>.
+     * @return the raw key of the last entry visited or <code>null</code>
+     * if there are no more entries
+     */
+    protected abstract byte[] visitRange(byte[] start, boolean after, int limit);
+
+    public void run(Random random) {
+        byte[] first = edgeKey(false);
+        if (first == null) return;
+        byte[] last = edgeKey(true);
+        int prefixLength = commonPrefixLength(first, last);
+        long lo = position(first, prefixLength);
+        long hi = position(last, prefixLength);
+        double span = (double)(hi - lo);
+        byte[] lastVisited = null;
+        for (int i = 0; i < probeCount; i++) {
+            long pos = lo + (long)((i + random.nextDouble()) * span / probeCount);
+            byte[] start = key(first, prefixLength, pos);
+            byte[] visited;
+            if ((lastVisited != null) && (compareUnsigned(start, lastVisited) <= 0)) {
+                // Previous run extended past this position.
+                visited = visitRange(lastVisited, true, blockSize);
+            }
+            else {
+                visited = visitRange(start, false, blockSize);
+            }
+            probesRead++;
+            if (visited == null) break; // Past the last entry.
+            lastVisited = visited;
+        }
+    }
+
+    /** Record how the sample was taken in <code>indexStatistics</code>,
+     * whose sampled count has already been set by the visitor.
+     */
+    public void recordSampling(IndexStatistics indexStatistics) {
+        indexStatistics.setSampling(probesRead,
+                                    errorBound(indexStatistics.getRowCount(),
+                                               indexStatistics.getSampledCount(),
+                                               probesRead));
+    }
+
+    /** Worst case (<i>p</i> = 0.5) 95% bound on the error of a
+     * fraction estimated from <code>probes</code> observations, with
+     * the finite population correction for having seen
+     * <code>sampledCount</code> of <code>rowCount</code> rows.
+     */
+    static double errorBound(long rowCount, long sampledCount, long probes) {
+        if ((probes <= 0) || (sampledCount >= rowCount))
+            return 0.0;
+        double unsampled = 1.0 - (double)sampledCount / rowCount;
+        return Z_95 * Math.sqrt(0.25 * unsampled / probes);
+    }
+
+    static int commonPrefixLength(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        int i = 0;
+        while ((i < n) && (a[i] == b[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /** The <code>POSITION_BYTES</code> following the prefix as an unsigned number. */
+    static long position(byte[] key, int prefixLength) {
+        long pos = 0;
+        for (int i = 0; i < POSITION_BYTES; i++) {
+            int j = prefixLength + i;
+            pos = (pos << 8) | ((j < key.length) ? (key[j] & 0xFF) : 0);
+        }
+        return pos;
+    }
+
+    static byte[] key(byte[] prefix, int prefixLength, long pos) {
+        byte[] key = Arrays.copyOf(prefix, prefixLength + POSITION_BYTES);
+        for (int i = POSITION_BYTES - 1; i >= 0; i--) {
+            key[prefixLength + i] = (byte)pos;
+            pos >>>= 8;
+        }
+        return key;
+    }
+
+    static int compareUnsigned(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            int c = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (c != 0) return c;
+        }
+        return a.length - b.length;
+    }
+}
@@ -19,6 +19,13 @@ package com.foundationdb.server.store.statistics;
 
 import com.foundationdb.ais.model.Index;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
 /** Index statistics
  */
 public class IndexStatistics
@@ -28,7 +35,9 @@ public class IndexStatistics
     private final String indexName;
     // NOTE: There is no backpointer to the Index in this class because of
     // IndexStatisticsServiceImpl.cache, a WeakHashMap<Index,IndexStatistics>.
-    private long analysisTimestamp, rowCount, sampledCount;
+    private long analysisTimestamp, rowCount, sampledCount, probeCount;
+    private long modificationCount = -1;
+    private double errorBound;
     private Validity validity;
     private boolean warned;
     // Single-column histograms are indexed by column position, starting at 1.
@@ -44,6 +53,10 @@ public class IndexStatistics
     //    multiColumnHistograms[2]: (a, b, c)
     private Histogram[] multiColumnHistograms;
     private Histogram[] singleColumnHistograms;
+    // Only for a table's primary key: statistics for each of the table's columns, by position.
+    private Map<Integer,ColumnStatistics> columnStatistics;
+    // Likewise, for declared sets of columns, in declared order.
+    private List<ColumnGroupStatistics> columnGroupStatistics;
 
     protected IndexStatistics(Index index) {
         this.indexName = index.getIndexName().getName();
@@ -75,7 +88,8 @@ public class IndexStatistics
     }
 
     /** The number of rows that were actually sampled.
-     * Right now, always equal to <code>rowCount</code>.
+     * Equal to <code>rowCount</code> unless the index was sampled by key range
+     * or was too large for the sampler to keep every row.
      */
     public long getSampledCount() {
         return sampledCount;
@@ -84,6 +98,37 @@ public class IndexStatistics
         this.sampledCount = sampledCount;
     }
 
+    /** The number of key ranges that were read to sample the index,
+     * or zero if the whole index was scanned.
+     */
+    public long getProbeCount() {
+        return probeCount;
+    }
+
+    /** The 95% confidence bound on the absolute error of any fraction of
+     * the index's rows estimated from its histograms, or zero if they were
+     * computed from the whole index.
+     */
+    public double getErrorBound() {
+        return errorBound;
+    }
+
+    protected void setSampling(long probeCount, double errorBound) {
+        this.probeCount = probeCount;
+        this.errorBound = errorBound;
+    }
+
+    /** The {@link com.foundationdb.server.TableStatus#getModificationCount}
+     * of the index's leaf-most table when it was analyzed, or -1 if not known.
+     * Rows changed since are the difference from the current count.
+     */
+    public long getModificationCount() {
+        return modificationCount;
+    }
+    protected void setModificationCount(long modificationCount) {
+        this.modificationCount = modificationCount;
+    }
+
     public Validity getValidity() {
         return validity;
     }
@@ -123,6 +168,38 @@ public class IndexStatistics
         histogram.setIndexStatistics(this);
     }
 
+    /** Statistics for the column at <code>columnPosition</code> of the
+     * table, if these are the statistics of its primary key and the column
+     * was analyzed; otherwise <code>null</code>.
+     */
+    public ColumnStatistics getColumnStatistics(int columnPosition) {
+        return (columnStatistics == null) ? null : columnStatistics.get(columnPosition);
+    }
+
+    public Collection<ColumnStatistics> getColumnStatistics() {
+        if (columnStatistics == null)
+            return Collections.emptyList();
+        return columnStatistics.values();
+    }
+
+    protected void addColumnStatistics(ColumnStatistics stats) {
+        if (columnStatistics == null)
+            columnStatistics = new TreeMap<>();
+        columnStatistics.put(stats.getColumnPosition(), stats);
+    }
+
+    public List<ColumnGroupStatistics> getColumnGroupStatistics() {
+        if (columnGroupStatistics == null)
+            return Collections.emptyList();
+        return columnGroupStatistics;
+    }
+
+    protected void addColumnGroupStatistics(ColumnGroupStatistics stats) {
+        if (columnGroupStatistics == null)
+            columnGroupStatistics = new ArrayList<>();
+        columnGroupStatistics.add(stats);
+    }
+
     @Override
     public String toString() {
         return toString(null);
@@ -144,6 +221,14 @@ public class IndexStatistics
             str.append("\n");
             str.append(h.toString(index));
         }
+        for (ColumnStatistics c : getColumnStatistics()) {
+            str.append("\n");
+            str.append(c.toString((index == null) ? null : index.leafMostTable()));
+        }
+        for (ColumnGroupStatistics c : getColumnGroupStatistics()) {
+            str.append("\n");
+            str.append(c.toString((index == null) ? null : index.leafMostTable()));
+        }
         return str.toString();
     }
 
@@ -25,6 +25,7 @@ import com.foundationdb.ais.model.Index;
 
 import java.io.Writer;
 import java.util.Collection;
+import java.util.List;
 import java.io.File;
 import java.io.IOException;
 
@@ -32,6 +33,13 @@ public interface IndexStatisticsService
 {
     public final static TableName INDEX_STATISTICS_TABLE_NAME = new TableName(TableName.INFORMATION_SCHEMA, "index_statistics");
     public final static TableName INDEX_STATISTICS_ENTRY_TABLE_NAME = new TableName(INDEX_STATISTICS_TABLE_NAME.getSchemaName(), "index_statistics_entry");
+    public final static TableName INDEX_STATISTICS_SAMPLE_TABLE_NAME = new TableName(INDEX_STATISTICS_TABLE_NAME.getSchemaName(), "index_statistics_sample");
+    public final static TableName INDEX_STATISTICS_MODIFICATION_TABLE_NAME = new TableName(INDEX_STATISTICS_TABLE_NAME.getSchemaName(), "index_statistics_modification");
+    public final static TableName INDEX_STATISTICS_COLUMN_TABLE_NAME = new TableName(INDEX_STATISTICS_TABLE_NAME.getSchemaName(), "index_statistics_column");
+    public final static TableName INDEX_STATISTICS_COLUMN_VALUE_TABLE_NAME = new TableName(INDEX_STATISTICS_TABLE_NAME.getSchemaName(), "index_statistics_column_value");
+    public final static TableName INDEX_STATISTICS_COLUMN_GROUP_TABLE_NAME = new TableName(INDEX_STATISTICS_TABLE_NAME.getSchemaName(), "index_statistics_column_group");
+    public final static TableName INDEX_STATISTICS_COLUMN_GROUP_VALUE_TABLE_NAME = new TableName(INDEX_STATISTICS_TABLE_NAME.getSchemaName(), "index_statistics_column_group_value");
+    public final static TableName INDEX_STATISTICS_STALENESS_TABLE_NAME = new TableName(INDEX_STATISTICS_TABLE_NAME.getSchemaName(), "index_statistics_staleness");
 
     /** Get available statistics for the given index. */
     public IndexStatistics getIndexStatistics(Session session, Index index);
@@ -62,10 +70,28 @@ public interface IndexStatisticsService
     /** How many buckets to compute per index */
     public int bucketCount();
 
+    /** Fraction of the rows of a large index to read when computing its histograms */
+    public double sampleRate();
+
+    /** How many consecutive rows to read at each sampled position */
+    public int sampleBlockSize();
+
+    /** How many most common values to keep for each column of an analyzed table */
+    public int mostCommonValueCount();
+
+    /** Sets of columns of the given table declared to be analyzed together */
+    public List<List<Column>> columnGroups(Table table);
+
     /** Note missing statistics: warn user, initiate background analyze. */
     public void missingStats(Session session, Index index, Column column);
 
-    /** Check for out of date stats, based on table being much larger. */
+    /** Fraction of the rows the statistics were computed from that have
+     * since been written, updated or deleted, judged from the table's
+     * modification count. */
+    public double modifiedFraction(Session session, Table table, IndexStatistics stats);
+
+    /** Check for out of date stats, based on table being much larger or
+     * many of its rows having changed. */
     public void checkRowCountChanged(Session session, Table table,
                                      IndexStatistics stats, long rowCount);
 }
@@ -62,6 +62,8 @@ public class IndexStatisticsYamlLoader
     public static final String TIMESTAMP_KEY = "Timestamp";
     public static final String ROW_COUNT_KEY = "RowCount";
     public static final String SAMPLED_COUNT_KEY = "SampledCount";
+    public static final String PROBE_COUNT_KEY = "ProbeCount";
+    public static final String ERROR_BOUND_KEY = "ErrorBound";
     public static final String STATISTICS_COLLECTION_KEY = "Statistics";
     public static final String STATISTICS_COLUMN_COUNT_KEY = "Columns";
     public static final String STATISTICS_COLUMN_FIRST_COLUMN_KEY = "FirstColumn";
@@ -133,6 +135,10 @@ public class IndexStatisticsYamlLoader
         Integer sampledCount = (Integer)map.get(SAMPLED_COUNT_KEY);
         if (sampledCount != null)
             stats.setSampledCount(sampledCount.longValue());
+        Integer probeCount = (Integer)map.get(PROBE_COUNT_KEY);
+        Double errorBound = (Double)map.get(ERROR_BOUND_KEY);
+        if (probeCount != null)
+            stats.setSampling(probeCount.longValue(), (errorBound == null) ? 0.0 : errorBound);
         for (Object e : (Iterable)map.get(STATISTICS_COLLECTION_KEY)) {
             Map<?,?> em = (Map<?,?>)e;
             int columnCount = (Integer)em.get(STATISTICS_COLUMN_COUNT_KEY);
@@ -250,6 +256,10 @@ public class IndexStatisticsYamlLoader
         map.put(TIMESTAMP_KEY, new Date(indexStatistics.getAnalysisTimestamp()));
         map.put(ROW_COUNT_KEY, indexStatistics.getRowCount());
         map.put(SAMPLED_COUNT_KEY, indexStatistics.getSampledCount());
+        if (indexStatistics.getProbeCount() > 0) {
+            map.put(PROBE_COUNT_KEY, indexStatistics.getProbeCount());
+            map.put(ERROR_BOUND_KEY, indexStatistics.getErrorBound());
+        }
         List<Object> stats = new ArrayList<>();
         int nkeys = index.getKeyColumns().size();
         if (index.isSpatial()) nkeys -= index.spatialColumns() - 1;
@@ -31,6 +31,9 @@ import com.persistit.Key;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.Random;
+
 import static com.foundationdb.server.store.statistics.IndexStatisticsService.INDEX_STATISTICS_TABLE_NAME;
 import static com.foundationdb.server.store.statistics.IndexStatisticsVisitor.VisitorCreator;
 
@@ -89,30 +92,86 @@ public class MemoryStoreIndexStatistics extends AbstractStoreIndexStatistics<Mem
     }
 
     @Override
-    public IndexStatistics computeIndexStatistics(Session session, Index index, long scanTimeLimit, long sleepTime) {
+    public IndexStatistics computeIndexStatistics(final Session session, Index index, long scanTimeLimit, long sleepTime) {
         long indexRowCount = estimateIndexRowCount(session, index);
-        IndexStatisticsVisitor<Key,byte[]> visitor = new IndexStatisticsVisitor<>(session,
-                                                                                  index,
-                                                                                  indexRowCount,
-                                                                                  indexRowCount /*expectedCount*/,
-                                                                                  this);
         int bucketCount = indexStatisticsService.bucketCount();
+        double sampleRate = indexStatisticsService.sampleRate();
+        int blockSize = indexStatisticsService.sampleBlockSize();
+        boolean keyRangeSampling = IndexKeyRangeSampler.shouldSample(indexRowCount, sampleRate, blockSize, bucketCount);
+        long expectedCount = keyRangeSampling ?
+            IndexKeyRangeSampler.expectedSampleCount(indexRowCount, sampleRate, blockSize) :
+            indexRowCount;
+        final IndexStatisticsVisitor<Key,byte[]> visitor = new IndexStatisticsVisitor<>(session,
+                                                                                        index,
+                                                                                        indexRowCount,
+                                                                                        expectedCount,
+                                                                                        this);
         visitor.init(bucketCount);
-        MemoryStoreData storeData = getStore().createStoreData(session, index);
-        // Whole index, forward.
-        getStore().indexIterator(session, storeData, false);
-        while(storeData.next()) {
-            MemoryStore.unpackKey(storeData);
-            visitor.visit(storeData.persistitKey, storeData.rawValue);
+        final MemoryStoreData storeData = getStore().createStoreData(session, index);
+        IndexKeyRangeSampler keyRangeSampler = null;
+        if(keyRangeSampling) {
+            final byte[] indexStart = MemoryStore.packKey(index);
+            keyRangeSampler = new IndexKeyRangeSampler(indexRowCount, sampleRate, blockSize) {
+                @Override
+                protected byte[] edgeKey(boolean last) {
+                    getStore().indexIterator(session, storeData, indexStart, last);
+                    return storeData.next() ? storeData.rawKey : null;
+                }
+
+                @Override
+                protected byte[] visitRange(byte[] start, boolean after, int limit) {
+                    // Appending a zero byte gives the least key following start.
+                    getStore().indexIterator(session, storeData,
+                                             after ? Arrays.copyOf(start, start.length + 1) : start,
+                                             false);
+                    byte[] lastKey = null;
+                    for(int i = 0; (i < limit) && storeData.next(); i++) {
+                        lastKey = storeData.rawKey;
+                        MemoryStore.unpackKey(storeData);
+                        visitor.visit(storeData.persistitKey, storeData.rawValue);
+                    }
+                    return lastKey;
+                }
+            };
+            keyRangeSampler.run(new Random());
+        } else {
+            // Whole index, forward.
+            getStore().indexIterator(session, storeData, false);
+            while(storeData.next()) {
+                MemoryStore.unpackKey(storeData);
+                visitor.visit(storeData.persistitKey, storeData.rawValue);
+            }
         }
         visitor.finish(bucketCount);
         IndexStatistics indexStatistics = visitor.getIndexStatistics();
+        if(keyRangeSampler != null) {
+            keyRangeSampler.recordSampling(indexStatistics);
+        }
         if(LOG.isDebugEnabled()) {
             LOG.debug("Analyzed: " + indexStatistics.toString(index));
         }
         return indexStatistics;
     }
 
+    @Override
+    public void computeColumnStatistics(Session session, Table table, IndexStatistics indexStatistics, long scanTimeLimit, long sleepTime) {
+        Schema schema = SchemaCache.globalSchema(table.getAIS());
+        ColumnStatisticsGenerator generator = new ColumnStatisticsGenerator(table, getStore(), indexStatisticsService);
+        MemoryStoreData storeData = getStore().createStoreData(session, table.getGroup());
+        TableKeyFilter tableKeys = new TableKeyFilter(table);
+        getStore().groupIterator(session, storeData);
+        while(storeData.next()) {
+            MemoryStore.unpackKey(storeData);
+            if(tableKeys.matches(storeData.persistitKey)) {
+                Row row = getStore().expandRow(session, storeData, schema);
+                assert row.rowType().table() == table : row;
+                generator.visit(row);
+            }
+        }
+        generator.finish(indexStatistics);
+    }
+
+
     //
     // VisitorCreator
     //
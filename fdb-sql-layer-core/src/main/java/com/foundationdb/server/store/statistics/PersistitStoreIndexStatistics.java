@@ -36,6 +36,9 @@ import com.persistit.exception.RollbackException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.Random;
+
 import static com.foundationdb.server.store.statistics.IndexStatisticsService.INDEX_STATISTICS_TABLE_NAME;
 import static com.foundationdb.server.store.statistics.IndexStatisticsVisitor.VisitorCreator;
 
@@ -79,18 +82,55 @@ public class PersistitStoreIndexStatistics extends AbstractStoreIndexStatistics<
     @Override
     public IndexStatistics computeIndexStatistics(Session session, Index index, long scanTimeLimit, long sleepTime) {
         long estimatedRowCount = estimateIndexRowCount(session, index);
-        IndexStatisticsVisitor<Key,Value> visitor = new IndexStatisticsVisitor<>(session, index, estimatedRowCount, estimatedRowCount, this);
         int bucketCount = indexStatsService.bucketCount();
+        double sampleRate = indexStatsService.sampleRate();
+        int blockSize = indexStatsService.sampleBlockSize();
+        boolean keyRangeSampling = IndexKeyRangeSampler.shouldSample(estimatedRowCount, sampleRate, blockSize, bucketCount);
+        long expectedCount = keyRangeSampling ?
+            IndexKeyRangeSampler.expectedSampleCount(estimatedRowCount, sampleRate, blockSize) :
+            estimatedRowCount;
+        IndexStatisticsVisitor<Key,Value> visitor = new IndexStatisticsVisitor<>(session, index, estimatedRowCount, expectedCount, this);
         visitor.init(bucketCount);
-        getStore().traverse(session, index, visitor, scanTimeLimit, sleepTime);
+        IndexKeyRangeSampler keyRangeSampler = null;
+        if (keyRangeSampling) {
+            keyRangeSampler = sampleKeyRanges(session, index, visitor, estimatedRowCount, sampleRate, blockSize);
+        }
+        else {
+            getStore().traverse(session, index, visitor, scanTimeLimit, sleepTime);
+        }
         visitor.finish(bucketCount);
         IndexStatistics indexStatistics = visitor.getIndexStatistics();
+        if (keyRangeSampler != null) {
+            keyRangeSampler.recordSampling(indexStatistics);
+        }
         if (logger.isDebugEnabled()) {
             logger.debug("Analyzed: " + indexStatistics.toString(index));
         }
         return indexStatistics;
     }
 
+    @Override
+    public void computeColumnStatistics(Session session, Table table, IndexStatistics indexStatistics, long scanTimeLimit, long sleepTime) {
+        Schema schema = SchemaCache.globalSchema(table.getAIS());
+        ColumnStatisticsGenerator generator = new ColumnStatisticsGenerator(table, getStore(), indexStatsService);
+        Exchange exchange = getStore().getExchange(session, table.getGroup());
+        try {
+            TableKeyFilter tableKeys = new TableKeyFilter(table);
+            exchange.clear().append(Key.BEFORE);
+            while (exchange.next(true)) {
+                if (tableKeys.matches(exchange.getKey())) {
+                    Row row = getStore().expandRow(session, exchange, schema);
+                    assert row.rowType().table() == table : row;
+                    generator.visit(row);
+                }
+            }
+        } catch(PersistitException | RollbackException e) {
+            throw PersistitAdapter.wrapPersistitException(session, e);
+        } finally {
+            getStore().releaseExchange(session, exchange);
+        }
+        generator.finish(indexStatistics);
+    }
 
     //
     // VisitorCreator
@@ -111,6 +151,59 @@ public class PersistitStoreIndexStatistics extends AbstractStoreIndexStatistics<
     // Internal
     //
 
+    private IndexKeyRangeSampler sampleKeyRanges(final Session session, Index index,
+                                                 final IndexStatisticsVisitor<Key,Value> visitor,
+                                                 long rowCount, double sampleRate, int blockSize) {
+        final Exchange exchange = getStore().getExchange(session, index);
+        try {
+            IndexKeyRangeSampler sampler = new IndexKeyRangeSampler(rowCount, sampleRate, blockSize) {
+                @Override
+                protected byte[] edgeKey(boolean last) {
+                    try {
+                        exchange.clear().append(last ? Key.AFTER : Key.BEFORE);
+                        if (!exchange.traverse(last ? Key.LT : Key.GT, true)) {
+                            return null;
+                        }
+                        return keyBytes(exchange.getKey());
+                    } catch(PersistitException | RollbackException e) {
+                        throw PersistitAdapter.wrapPersistitException(session, e);
+                    }
+                }
+
+                @Override
+                protected byte[] visitRange(byte[] start, boolean after, int limit) {
+                    try {
+                        // Probe positions need not be well-formed keys; traversal only compares bytes.
+                        Key key = exchange.getKey();
+                        System.arraycopy(start, 0, key.getEncodedBytes(), 0, start.length);
+                        key.setEncodedSize(start.length);
+                        if (!exchange.traverse(after ? Key.GT : Key.GTEQ, true)) {
+                            return null;
+                        }
+                        int count = 0;
+                        do {
+                            visitor.visit(exchange.getKey(), exchange.getValue());
+                            if (++count >= limit) {
+                                return keyBytes(exchange.getKey());
+                            }
+                        } while (exchange.next(true));
+                        return null; // Reached the end of the index.
+                    } catch(PersistitException | RollbackException e) {
+                        throw PersistitAdapter.wrapPersistitException(session, e);
+                    }
+                }
+            };
+            sampler.run(new Random());
+            return sampler;
+        } finally {
+            getStore().releaseExchange(session, exchange);
+        }
+    }
+
+    private static byte[] keyBytes(Key key) {
+        return Arrays.copyOf(key.getEncodedBytes(), key.getEncodedSize());
+    }
+
     private IndexStatistics loadIndexStatisticsInternal(Session session, Index index) throws PersistitException {
         Schema schema = SchemaCache.globalSchema(index.getAIS());
         RowType indexRowType = schema.tableRowType(index.leafMostTable());
@@ -158,10 +251,22 @@ public class PersistitStoreIndexStatistics extends AbstractStoreIndexStatistics<
         Schema schema = SchemaCache.globalSchema(index.getAIS());
         RowType indexStatisticsRowType = getIndexStatsRowType(session);
         RowType indexStatisticsEntryRowType = getIndexStatsEntryRowType(session);
+        RowType indexStatisticsSampleRowType = getIndexStatsSampleRowType(session);
+        RowType indexStatisticsModificationRowType = getIndexStatsModificationRowType(session);
+        RowType indexStatisticsColumnRowType = getIndexStatsColumnRowType(session);
+        RowType indexStatisticsColumnValueRowType = getIndexStatsColumnValueRowType(session);
+        RowType indexStatisticsColumnGroupRowType = getIndexStatsColumnGroupRowType(session);
+        RowType indexStatisticsColumnGroupValueRowType = getIndexStatsColumnGroupValueRowType(session);
         exchange.append(Key.BEFORE);
         while (exchange.traverse(Key.Direction.GT, true)) {
             Row row = getStore().expandRow(session, exchange, schema);
-            if (row.rowType() == indexStatisticsEntryRowType &&
+            if ((row.rowType() == indexStatisticsEntryRowType ||
+                 row.rowType() == indexStatisticsSampleRowType ||
+                 row.rowType() == indexStatisticsModificationRowType ||
+                 row.rowType() == indexStatisticsColumnRowType ||
+                 row.rowType() == indexStatisticsColumnValueRowType ||
+                 row.rowType() == indexStatisticsColumnGroupRowType ||
+                 row.rowType() == indexStatisticsColumnGroupValueRowType) &&
                     selectedIndex(row, tableId, indexId)) {
                 getStore().deleteRow(session, row, false);
                 
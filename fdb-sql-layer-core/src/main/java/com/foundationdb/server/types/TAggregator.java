@@ -24,6 +24,16 @@ import com.foundationdb.server.types.value.ValueTarget;
 public interface TAggregator extends TOverload {
     void input(TInstance type, ValueSource source, TInstance stateType, Value state, Object option);
     void emptyValue(ValueTarget state);
+
+    /** Whether states produced by {@link #input} over disjoint inputs
+     * can be combined by {@link #merge}.
+     */
+    boolean canMerge();
+
+    /** Combine a partial state, as produced by {@link #input} over some
+     * other part of the input, into the given state.
+     */
+    void merge(TInstance stateType, ValueSource partial, Value state, Object option);
 //    TInstance resultType(TPreptimeValue value);
 //    TClass getTypeClass();
 //    String name();
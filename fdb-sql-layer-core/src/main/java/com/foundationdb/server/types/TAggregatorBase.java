@@ -17,6 +17,8 @@
 
 package com.foundationdb.server.types;
 
+import com.foundationdb.server.types.value.Value;
+import com.foundationdb.server.types.value.ValueSource;
 import com.foundationdb.util.BitSets;
 import com.google.common.base.Predicate;
 
@@ -56,6 +58,16 @@ public abstract class TAggregatorBase implements TAggregator {
         return InputSetFlags.ALL_OFF;
     }
 
+    @Override
+    public boolean canMerge() {
+        return false;
+    }
+
+    @Override
+    public void merge(TInstance stateType, ValueSource partial, Value state, Object option) {
+        throw new UnsupportedOperationException(displayName() + " cannot merge partial states");
+    }
+
     @Override
     public final String toString() {
         return displayName();
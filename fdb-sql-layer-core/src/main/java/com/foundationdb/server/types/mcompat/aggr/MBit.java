@@ -70,6 +70,16 @@ public abstract class MBit extends TFixedTypeAggregator {
         }    
     }
 
+    @Override
+    public boolean canMerge() {
+        return true;
+    }
+
+    @Override
+    public void merge(TInstance stateType, ValueSource partial, Value state, Object o) {
+        input(stateType, partial, stateType, state, o);
+    }
+
     @Override
     public void emptyValue(ValueTarget state) {
         state.putNull();
@@ -48,6 +48,20 @@ public class MCount extends TAggregatorBase {
         }
     }
 
+    @Override
+    public boolean canMerge() {
+        return true;
+    }
+
+    @Override
+    public void merge(TInstance stateType, ValueSource partial, Value state, Object o) {
+        if (!partial.isNull()) {
+            long count = state.hasAnyValue() ? state.getInt64() : 0;
+            count += partial.getInt64();
+            state.putInt64(count);
+        }
+    }
+
     @Override
     public List<TInputSet> inputSets() {
         return claimNoInputs ? Collections.<TInputSet>emptyList() : super.inputSets();
@@ -70,6 +70,16 @@ public class MMinMaxAggregation extends TAggregatorBase {
             ValueTargets.copyFrom(source, state);
     }
 
+    @Override
+    public boolean canMerge() {
+        return true;
+    }
+
+    @Override
+    public void merge(TInstance stateType, ValueSource partial, Value state, Object o) {
+        input(stateType, partial, stateType, state, o);
+    }
+
     @Override
     public void emptyValue(ValueTarget state) {
         state.putNull();
@@ -73,6 +73,21 @@ public class MStdDevVarAggregate extends TFixedTypeAggregator
         state.putDouble(sum);
     }
 
+    @Override
+    public boolean canMerge()
+    {
+        return (func == Func.SUM) || (func == Func.SUM_SQUARE);
+    }
+
+    @Override
+    public void merge(TInstance stateType, ValueSource partial, Value state, Object del)
+    {
+        if (partial.isNull())
+            return;
+        double sum = state.hasAnyValue() ? state.getDouble() : 0;
+        state.putDouble(sum + partial.getDouble());
+    }
+
     @Override
     public void emptyValue(ValueTarget state)
     {
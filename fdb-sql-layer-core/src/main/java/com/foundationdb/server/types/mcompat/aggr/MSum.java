@@ -127,6 +127,16 @@ public class MSum extends TFixedTypeAggregator {
             sumType.input(type, source, stateType, state);
     }
 
+    @Override
+    public boolean canMerge() {
+        return true;
+    }
+
+    @Override
+    public void merge(TInstance stateType, ValueSource partial, Value state, Object o) {
+        input(stateType, partial, stateType, state, o);
+    }
+
     @Override
     public void emptyValue(ValueTarget state) {
         state.putNull();
@@ -74,12 +74,19 @@ public abstract class TComparisonExpressionBase implements TPreparedExpression {
     @Override
     public TEvaluatableExpression build() {
         TInstance leftInstance = left.resultType();
-        TEvaluatableExpression leftEval = left.build();
+        TEvaluatableExpression leftEval = buildOperand(left);
         TInstance rightInstance = right.resultType();
-        TEvaluatableExpression rightEval = right.build();
+        TEvaluatableExpression rightEval = buildOperand(right);
         return new CompareEvaluation(leftInstance, leftEval, rightInstance, rightEval);
     }
 
+    // Comparing only reads the operands, so fields need not be copied out of the row.
+    private static TEvaluatableExpression buildOperand(TPreparedExpression operand) {
+        if (operand instanceof TPreparedField)
+            return ((TPreparedField)operand).buildReadOnly();
+        return operand.build();
+    }
+
     @Override
     public CompoundExplainer getExplainer(ExplainContext context) {
         CompoundExplainer ex = new TExpressionExplainer(Type.BINARY_OPERATOR, comparison.toString(), context, left, right);
@@ -103,7 +110,7 @@ public abstract class TComparisonExpressionBase implements TPreparedExpression {
         this.right = right;
     }
 
-    private boolean doEval(TInstance leftInstance, ValueSource left, TInstance rightInstance, ValueSource right) {
+    boolean doEval(TInstance leftInstance, ValueSource left, TInstance rightInstance, ValueSource right) {
         int cmpI = compare(leftInstance, left, rightInstance, right);
         final Comparison actualComparison;
 
@@ -131,6 +138,14 @@ public abstract class TComparisonExpressionBase implements TPreparedExpression {
         return result;
     }
 
+    TPreparedExpression getLeft() {
+        return left;
+    }
+
+    TPreparedExpression getRight() {
+        return right;
+    }
+
     private final Comparison comparison;
     private final TPreparedExpression left;
     private final TPreparedExpression right;
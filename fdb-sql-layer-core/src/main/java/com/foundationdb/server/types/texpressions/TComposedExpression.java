@@ -0,0 +1,293 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.types.texpressions;
+
+import com.foundationdb.qp.operator.QueryBindings;
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.types.LazyListBase;
+import com.foundationdb.server.types.TExecutionContext;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.aksql.aktypes.AkBool;
+import com.foundationdb.server.types.value.Value;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.value.ValueTargets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A whole prepared expression tree composed at plan time into a single
+ * evaluation.
+ *
+ * The evaluations that {@link TPreparedExpression#build} makes are handed
+ * the row, context and bindings node by node, and each passes them on to
+ * its inputs for every row. Here fields, literals, comparisons and scalar
+ * functions are instead nodes that are handed the row as they are
+ * evaluated, so a new row is only given to the root. Any other expression
+ * (casts, parameters, subqueries and so on) is left to its own evaluation,
+ * which is handed the row when it is reached.
+ */
+public final class TComposedExpression implements TEvaluatableExpression
+{
+    /** Compose <code>expression</code>, or just build it if there is
+     * nothing to compose. A field on its own evaluates to the row's own
+     * value, as with {@link TPreparedField#buildReadOnly}, so the caller
+     * must only read the result and not hold onto it past the row. */
+    public static TEvaluatableExpression compose(TPreparedExpression expression) {
+        if (expression instanceof TPreparedField)
+            return ((TPreparedField)expression).buildReadOnly();
+        if (!composable(expression))
+            return expression.build();
+        TComposedExpression composed = new TComposedExpression();
+        composed.root = composed.node(expression, true);
+        return composed;
+    }
+
+    @Override
+    public ValueSource resultValue() {
+        if (result == null)
+            throw new IllegalStateException("not evaluated");
+        return result;
+    }
+
+    @Override
+    public void evaluate() {
+        if (row == null)
+            throw new IllegalStateException("no row given");
+        result = root.evaluate(row);
+    }
+
+    @Override
+    public void with(Row row) {
+        this.row = row;
+        this.result = null;
+    }
+
+    @Override
+    public void with(QueryContext context) {
+        for (TExecutionContext executionContext : executionContexts) {
+            executionContext.setQueryContext(context);
+        }
+        for (TEvaluatableExpression interpreted : interpreteds) {
+            interpreted.with(context);
+        }
+        this.result = null;
+    }
+
+    @Override
+    public void with(QueryBindings bindings) {
+        for (TEvaluatableExpression interpreted : interpreteds) {
+            interpreted.with(bindings);
+        }
+        this.result = null;
+    }
+
+    private TComposedExpression() {
+    }
+
+    private static boolean composable(TPreparedExpression expression) {
+        return (expression instanceof TComparisonExpressionBase) ||
+               (expression instanceof TPreparedFunction);
+    }
+
+    /** @param readOnly whether the consumer only reads the node's result */
+    private Node node(TPreparedExpression expression, boolean readOnly) {
+        if (expression instanceof TPreparedField) {
+            TPreparedField field = (TPreparedField)expression;
+            if (readOnly)
+                return new FieldNode(field.getFieldIndex());
+            else
+                return new CopiedFieldNode(field.getFieldIndex(), field.resultType());
+        }
+        if (expression instanceof TPreparedLiteral) {
+            TEvaluatableExpression literal = expression.build();
+            literal.evaluate();
+            return new ConstantNode(literal.resultValue());
+        }
+        if (expression instanceof TComparisonExpressionBase) {
+            TComparisonExpressionBase comparison = (TComparisonExpressionBase)expression;
+            // Comparing only reads the operands.
+            return new ComparisonNode(comparison,
+                                      comparison.getLeft().resultType(),
+                                      node(comparison.getLeft(), true),
+                                      comparison.getRight().resultType(),
+                                      node(comparison.getRight(), true));
+        }
+        if (expression instanceof TPreparedFunction) {
+            TPreparedFunction function = (TPreparedFunction)expression;
+            List<? extends TPreparedExpression> inputs = function.getInputs();
+            Node[] inputNodes = new Node[inputs.size()];
+            for (int i = 0; i < inputNodes.length; i++) {
+                // An overload may look at more than an input's value, such as
+                // the type it carries, so it gets what it always has.
+                inputNodes[i] = node(inputs.get(i), false);
+            }
+            TExecutionContext executionContext = function.newExecutionContext();
+            executionContexts.add(executionContext);
+            return new FunctionNode(function.getOverload(), executionContext,
+                                    function.resultType(), inputNodes);
+        }
+        TEvaluatableExpression interpreted = expression.build();
+        interpreteds.add(interpreted);
+        return new InterpretedNode(interpreted);
+    }
+
+    private Node root;
+    private final List<TExecutionContext> executionContexts = new ArrayList<>();
+    private final List<TEvaluatableExpression> interpreteds = new ArrayList<>();
+    private Row row;
+    private ValueSource result;
+
+    private static abstract class Node {
+        abstract ValueSource evaluate(Row row);
+    }
+
+    private static final class FieldNode extends Node {
+        @Override
+        ValueSource evaluate(Row row) {
+            return row.value(fieldIndex);
+        }
+
+        private FieldNode(int fieldIndex) {
+            this.fieldIndex = fieldIndex;
+        }
+
+        private final int fieldIndex;
+    }
+
+    private static final class CopiedFieldNode extends Node {
+        @Override
+        ValueSource evaluate(Row row) {
+            ValueTargets.copyFrom(row.value(fieldIndex), value);
+            return value;
+        }
+
+        private CopiedFieldNode(int fieldIndex, TInstance type) {
+            this.fieldIndex = fieldIndex;
+            this.value = new Value(type);
+        }
+
+        private final int fieldIndex;
+        private final Value value;
+    }
+
+    private static final class ConstantNode extends Node {
+        @Override
+        ValueSource evaluate(Row row) {
+            return value;
+        }
+
+        private ConstantNode(ValueSource value) {
+            this.value = value;
+        }
+
+        private final ValueSource value;
+    }
+
+    private static final class ComparisonNode extends Node {
+        @Override
+        ValueSource evaluate(Row row) {
+            ValueSource leftSource = left.evaluate(row);
+            if (leftSource.isNull()) {
+                value.putNull();
+                return value;
+            }
+            ValueSource rightSource = right.evaluate(row);
+            if (rightSource.isNull()) {
+                value.putNull();
+                return value;
+            }
+            value.putBool(comparison.doEval(leftType, leftSource, rightType, rightSource));
+            return value;
+        }
+
+        private ComparisonNode(TComparisonExpressionBase comparison,
+                               TInstance leftType, Node left,
+                               TInstance rightType, Node right) {
+            this.comparison = comparison;
+            this.leftType = leftType;
+            this.left = left;
+            this.rightType = rightType;
+            this.right = right;
+        }
+
+        private final TComparisonExpressionBase comparison;
+        private final TInstance leftType, rightType;
+        private final Node left, right;
+        private final Value value = new Value(AkBool.INSTANCE.instance(true));
+    }
+
+    private static final class FunctionNode extends Node {
+        @Override
+        ValueSource evaluate(Row row) {
+            this.row = row;
+            Arrays.fill(inputValues, null);
+            overload.evaluate(context, evaluations, value);
+            return value;
+        }
+
+        private FunctionNode(TValidatedScalar overload, TExecutionContext context,
+                             TInstance resultType, final Node[] inputs) {
+            this.overload = overload;
+            this.context = context;
+            this.value = new Value(resultType);
+            this.inputValues = new ValueSource[inputs.length];
+            // Inputs are still only evaluated if the overload asks for them.
+            this.evaluations = new LazyListBase<ValueSource>() {
+                @Override
+                public ValueSource get(int i) {
+                    ValueSource source = inputValues[i];
+                    if (source == null) {
+                        source = inputs[i].evaluate(FunctionNode.this.row);
+                        inputValues[i] = source;
+                    }
+                    return source;
+                }
+
+                @Override
+                public int size() {
+                    return inputValues.length;
+                }
+            };
+        }
+
+        private final TValidatedScalar overload;
+        private final TExecutionContext context;
+        private final Value value;
+        private final ValueSource[] inputValues;
+        private final LazyListBase<ValueSource> evaluations;
+        private Row row;
+    }
+
+    private static final class InterpretedNode extends Node {
+        @Override
+        ValueSource evaluate(Row row) {
+            evaluation.with(row);
+            evaluation.evaluate();
+            return evaluation.resultValue();
+        }
+
+        private InterpretedNode(TEvaluatableExpression evaluation) {
+            this.evaluation = evaluation;
+        }
+
+        private final TEvaluatableExpression evaluation;
+    }
+}
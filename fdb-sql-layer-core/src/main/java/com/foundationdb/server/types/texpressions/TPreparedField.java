@@ -17,6 +17,7 @@
 
 package com.foundationdb.server.types.texpressions;
 
+import com.foundationdb.qp.operator.QueryBindings;
 import com.foundationdb.qp.operator.QueryContext;
 import com.foundationdb.qp.row.Row;
 import com.foundationdb.server.explain.*;
@@ -44,6 +45,14 @@ public final class TPreparedField implements TPreparedExpression {
         return new Evaluation(typeInstance, fieldIndex);
     }
 
+    /**
+     * Build an evaluation whose result is the row's own value instead of a copy of it,
+     * for callers that only read that result and do not hold onto it past the row.
+     */
+    public TEvaluatableExpression buildReadOnly() {
+        return new ReadOnlyEvaluation(fieldIndex);
+    }
+
     @Override
     public CompoundExplainer getExplainer(ExplainContext context)
     {
@@ -69,6 +78,10 @@ public final class TPreparedField implements TPreparedExpression {
         this.fieldIndex = fieldIndex;
     }
 
+    int getFieldIndex() {
+        return fieldIndex;
+    }
+
     private final TInstance typeInstance;
     private final int fieldIndex;
     
@@ -91,4 +104,42 @@ public final class TPreparedField implements TPreparedExpression {
 
         private int fieldIndex;
     }
+
+    private static final class ReadOnlyEvaluation implements TEvaluatableExpression {
+        @Override
+        public ValueSource resultValue() {
+            if (value == null)
+                throw new IllegalStateException("haven't evaluated since having seen a new context");
+            return value;
+        }
+
+        @Override
+        public void evaluate() {
+            if (row == null)
+                throw new IllegalStateException("no context given");
+            value = row.value(fieldIndex);
+        }
+
+        @Override
+        public void with(Row row) {
+            this.row = row;
+            this.value = null;
+        }
+
+        @Override
+        public void with(QueryContext context) {
+        }
+
+        @Override
+        public void with(QueryBindings bindings) {
+        }
+
+        private ReadOnlyEvaluation(int fieldIndex) {
+            this.fieldIndex = fieldIndex;
+        }
+
+        private final int fieldIndex;
+        private Row row;
+        private ValueSource value;
+    }
 }
@@ -64,17 +64,27 @@ public final class TPreparedFunction implements TPreparedExpression {
         List<TEvaluatableExpression> children = new ArrayList<>(inputs.size());
         for (TPreparedExpression input : inputs)
             children.add(input.build());
-        TExecutionContext executionContext = 
-            new TExecutionContext(preptimeValues,
-                                  inputTypes,
-                                  resultType,
-                                  null,
-                                  null, null, null);
         return new TEvaluatableFunction(
                 overload,
                 resultType,
                 children,
-                executionContext);
+                newExecutionContext());
+    }
+
+    TExecutionContext newExecutionContext() {
+        return new TExecutionContext(preptimeValues,
+                                     inputTypes,
+                                     resultType,
+                                     null,
+                                     null, null, null);
+    }
+
+    TValidatedScalar getOverload() {
+        return overload;
+    }
+
+    List<? extends TPreparedExpression> getInputs() {
+        return inputs;
     }
 
     @Override
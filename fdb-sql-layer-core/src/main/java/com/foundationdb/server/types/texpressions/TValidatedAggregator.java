@@ -34,6 +34,16 @@ public final class TValidatedAggregator extends TValidatedOverload implements TA
         aggregator.emptyValue(state);
     }
 
+    @Override
+    public boolean canMerge() {
+        return aggregator.canMerge();
+    }
+
+    @Override
+    public void merge(TInstance stateType, ValueSource partial, Value state, Object option) {
+        aggregator.merge(stateType, partial, state, option);
+    }
+
     public TValidatedAggregator(TAggregator overload) {
         super(overload);
         this.aggregator = overload;
@@ -21,9 +21,12 @@ import com.foundationdb.qp.operator.API;
 import com.foundationdb.qp.operator.Cursor;
 import com.foundationdb.qp.operator.CursorLifecycle;
 import com.foundationdb.qp.operator.ExecutionBase;
+import com.foundationdb.qp.operator.ListQueryBindingsCursor;
 import com.foundationdb.qp.operator.Operator;
 import com.foundationdb.qp.operator.QueryBindings;
+import com.foundationdb.qp.operator.QueryBindingsCursor;
 import com.foundationdb.qp.operator.RowCursorImpl;
+import com.foundationdb.qp.operator.SingletonQueryBindingsCursor;
 import com.foundationdb.qp.row.ImmutableRow;
 import com.foundationdb.qp.row.Row;
 import com.foundationdb.server.service.monitor.SessionMonitor.StatementTypes;
@@ -53,7 +56,23 @@ class ExecutableModifyOperatorStatement extends ExecutableOperatorStatement
 
     @Override
     public ExecuteResults execute(EmbeddedQueryContext context, QueryBindings bindings) {
-        int updateCount = 0;
+        int[] updateCounts = new int[1];
+        SpoolCursor returningRows = run(context, new SingletonQueryBindingsCursor(bindings), updateCounts);
+        return new ExecuteResults(updateCounts[0], returningRows);
+    }
+
+    /** Run the plan just once, over all the bindings of the batch,
+     * rather than setting up a new cursor for each.
+     */
+    @Override
+    public ExecuteResults executeBatch(EmbeddedQueryContext context, List<QueryBindings> batch) {
+        int[] updateCounts = new int[batch.size()];
+        SpoolCursor returningRows = run(context, new ListQueryBindingsCursor(batch), updateCounts);
+        return new ExecuteResults(updateCounts, returningRows);
+    }
+
+    protected SpoolCursor run(EmbeddedQueryContext context, QueryBindingsCursor bindingsCursor,
+                              int[] updateCounts) {
         SpoolCursor returningRows = null;
         if (resultSetMetaData != null)
             // If there are results, we need to read them all now to get the update
@@ -63,14 +82,20 @@ class ExecutableModifyOperatorStatement extends ExecutableOperatorStatement
         Cursor cursor = null;
         RuntimeException runtimeException = null;
         try {
-            cursor = API.cursor(resultOperator, context, bindings);
-            cursor.openTopLevel();
-            Row row;
-            while ((row = cursor.next()) != null) {
-                updateCount++;
-                if (returningRows != null) {
-                    returningRows.add(row);
+            cursor = API.cursor(resultOperator, context, bindingsCursor);
+            cursor.openBindings();
+            int index = 0;
+            while (cursor.nextBindings() != null) {
+                cursor.open();
+                Row row;
+                while ((row = cursor.next()) != null) {
+                    updateCounts[index]++;
+                    if (returningRows != null) {
+                        returningRows.add(row);
+                    }
                 }
+                cursor.close();
+                index++;
             }
         }
         catch (RuntimeException ex) {
@@ -79,7 +104,10 @@ class ExecutableModifyOperatorStatement extends ExecutableOperatorStatement
         finally {
             try {
                 if (cursor != null) {
-                    cursor.closeTopLevel();
+                    if (!cursor.isClosed()) {
+                        cursor.close();
+                    }
+                    cursor.closeBindings();
                 }
             }
             catch (RuntimeException ex) {
@@ -93,7 +121,7 @@ class ExecutableModifyOperatorStatement extends ExecutableOperatorStatement
         }
         if (returningRows != null)
             returningRows.open(); // Done filling.
-        return new ExecuteResults(updateCount, returningRows);
+        return returningRows;
     }
 
     @Override
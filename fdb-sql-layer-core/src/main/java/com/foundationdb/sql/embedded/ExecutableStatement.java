@@ -21,11 +21,27 @@ import com.foundationdb.qp.operator.QueryBindings;
 import com.foundationdb.server.service.monitor.SessionMonitor.StatementTypes;
 import com.foundationdb.sql.server.ServerStatement;
 
+import java.sql.Statement;
+import java.util.List;
+
 abstract class ExecutableStatement implements ServerStatement
 {
     public abstract ExecuteResults execute(EmbeddedQueryContext context, QueryBindings bindings);
     public abstract StatementTypes getStatementType();
 
+    /** Execute once for each of the given bindings.
+     * Statements that can do better than one execution after
+     * another override this.
+     */
+    public ExecuteResults executeBatch(EmbeddedQueryContext context, List<QueryBindings> batch) {
+        int[] updateCounts = new int[batch.size()];
+        for (int i = 0; i < updateCounts.length; i++) {
+            int updateCount = execute(context, batch.get(i)).getUpdateCount();
+            updateCounts[i] = (updateCount < 0) ? Statement.SUCCESS_NO_INFO : updateCount;
+        }
+        return new ExecuteResults(updateCounts, null);
+    }
+
     public JDBCResultSetMetaData getResultSetMetaData() {
         return null;
     }
@@ -25,6 +25,7 @@ import java.util.Queue;
 class ExecuteResults
 {
     private int updateCount;
+    private int[] updateCounts;
     private RowCursor cursor;
     private Queue<ResultSet> additionalResultSets;
 
@@ -49,6 +50,19 @@ class ExecuteResults
         this.cursor = generatedKeys;
     }
 
+    /** Batch update result, one count for each set of bindings,
+     * possibly with returned keys from all of them.
+     */
+    public ExecuteResults(int[] updateCounts, RowCursor generatedKeys) {
+        this.updateCount = 0;
+        for (int count : updateCounts) {
+            if (count > 0)
+                this.updateCount += count;
+        }
+        this.updateCounts = updateCounts;
+        this.cursor = generatedKeys;
+    }
+
     /** Stored procedure returning result sets of unknown provenance. */
     public ExecuteResults(Queue<ResultSet> resultSets) {
         this.updateCount = -1;
@@ -59,6 +73,10 @@ class ExecuteResults
         return updateCount;
     }
     
+    public int[] getUpdateCounts() {
+        return updateCounts;
+    }
+
     public RowCursor getCursor() {
         return cursor;
     }
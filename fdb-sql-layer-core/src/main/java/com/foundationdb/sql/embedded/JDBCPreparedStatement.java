@@ -18,6 +18,7 @@
 package com.foundationdb.sql.embedded;
 
 import com.foundationdb.qp.operator.QueryBindings;
+import com.foundationdb.server.error.ErrorCode;
 import com.foundationdb.server.types.TInstance;
 import com.foundationdb.server.types.value.ValueSource;
 import com.foundationdb.sql.server.ServerJavaValues;
@@ -36,6 +37,7 @@ public class JDBCPreparedStatement extends JDBCStatement implements PreparedStat
     protected final EmbeddedQueryContext context;
     protected final QueryBindings bindings;
     protected final Values values = new Values();
+    protected List<QueryBindings> batch;
 
     protected JDBCPreparedStatement(JDBCConnection connection, String sql,
                                     ExecutableStatement executableStatement) {
@@ -314,9 +316,48 @@ public class JDBCPreparedStatement extends JDBCStatement implements PreparedStat
         return executeInternal(executableStatement, context, bindings);
     }
 
+    /** The current parameters are copied; all of them must be set. */
     @Override
     public void addBatch() throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        JDBCParameterMetaData parameterMetaData = executableStatement.getParameterMetaData();
+        int nparams = (parameterMetaData == null) ? 0 : parameterMetaData.getParameters().size();
+        QueryBindings copy = context.createBindings();
+        try {
+            for (int i = 0; i < nparams; i++) {
+                copy.setValue(i, bindings.getValue(i));
+            }
+        }
+        catch (RuntimeException ex) {
+            throw JDBCException.throwUnwrapped(ex);
+        }
+        if (batch == null)
+            batch = new ArrayList<>();
+        batch.add(copy);
+    }
+
+    @Override
+    public void addBatch(String sql) throws SQLException {
+        throw new JDBCException("Cannot add SQL to a prepared statement batch", ErrorCode.UNSUPPORTED_SQL);
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        batch = null;
+    }
+
+    /** The statement is executed once, over all the parameter sets. */
+    @Override
+    public int[] executeBatch() throws SQLException {
+        List<QueryBindings> bindingsList = batch;
+        batch = null;
+        if (bindingsList == null)
+            return new int[0];
+        try {
+            return executeBatchInternal(executableStatement, context, bindingsList);
+        }
+        catch (SQLException ex) {
+            throw batchUpdateException(ex, new int[0]);
+        }
     }
 
     @Override
@@ -20,11 +20,13 @@ package com.foundationdb.sql.embedded;
 import com.foundationdb.qp.operator.QueryBindings;
 import com.foundationdb.server.error.ErrorCode;
 import com.foundationdb.server.error.StaleStatementException;
+import com.foundationdb.server.service.monitor.SessionMonitor.StatementTypes;
 import com.foundationdb.sql.embedded.JDBCException.Wrapper;
 import com.foundationdb.sql.server.ServerStatement;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Queue;
 import java.util.List;
 
@@ -49,6 +51,7 @@ public class JDBCStatement implements Statement
     private ResultSet currentResultSet, generatedKeys;
     private List<ResultSet> secondaryResultSets; // For instance, nested.
     private Queue<ResultSet> pendingResultSets; // For instance, from stored procedure.
+    private List<String> batch;
 
     protected JDBCStatement(JDBCConnection connection) {
         this.connection = connection;
@@ -124,6 +127,57 @@ public class JDBCStatement implements Statement
         return hasResultSet;
     }
 
+    /** Execute <code>stmt</code> once for each of the bindings in <code>batch</code>,
+     * as a single statement as far as the connection is concerned.
+     */
+    public int[] executeBatchInternal(ExecutableStatement stmt, EmbeddedQueryContext context, 
+                                      List<QueryBindings> batch)
+            throws SQLException {
+        if (stmt.getStatementType() == StatementTypes.SELECT)
+            throw new JDBCException("Statement is SELECT", ErrorCode.RESULTSET_SELECT_MISMATCH);
+        connection.beforeExecuteStatement(sql, stmt);
+        if (stmt.getAISGenerationMode() == ServerStatement.AISGenerationMode.NOT_ALLOWED) {
+            connection.updateAIS(context);
+            if (stmt.getAISGeneration() != connection.getAIS().getGeneration())
+                throw JDBCException.throwUnwrapped(new StaleStatementException());
+        }
+        int[] updateCounts;
+        Throwable failure = null;
+        try {
+            ExecuteResults results = stmt.executeBatch(context, batch);
+            updateCounts = results.getUpdateCounts();
+            currentUpdateCount = results.getUpdateCount();
+            if (results.getCursor() != null) {
+                generatedKeys = new JDBCResultSet(this, stmt.getResultSetMetaData(), results.getCursor());
+            }
+        }
+        catch (RuntimeException ex) {
+            failure = ex;
+            if (failure instanceof Wrapper) {
+                failure = (SQLException)failure.getCause();
+            }
+
+            final ErrorCode code = ErrorCode.getCodeForRESTException(failure);
+            code.logAtImportance(
+                    LOG, "Batch execution for query {} failed with exception {}", sql, failure);
+
+            throw JDBCException.throwUnwrapped(ex);
+        }
+        catch (Error err) {
+            failure = err;
+            throw err;
+        }
+        finally {
+            connection.afterExecuteStatement(stmt, failure);
+        }
+        return updateCounts;
+    }
+
+    protected static BatchUpdateException batchUpdateException(SQLException ex, int[] updateCounts) {
+        return new BatchUpdateException(ex.getMessage(), ex.getSQLState(), ex.getErrorCode(),
+                                        updateCounts, ex);
+    }
+
     public ResultSet executeQueryInternal(ExecutableStatement stmt, 
                                           EmbeddedQueryContext context,
                                           QueryBindings bindings)
@@ -344,17 +398,35 @@ public class JDBCStatement implements Statement
 
     @Override
     public void addBatch(String sql) throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        if (batch == null)
+            batch = new ArrayList<>();
+        batch.add(sql);
     }
 
     @Override
     public void clearBatch() throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        batch = null;
     }
 
+    /** Each statement is still compiled and executed on its own;
+     * it is prepared statements that run a whole batch at once.
+     */
     @Override
     public int[] executeBatch() throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        List<String> sqls = batch;
+        batch = null;
+        if (sqls == null)
+            return new int[0];
+        int[] updateCounts = new int[sqls.size()];
+        for (int i = 0; i < updateCounts.length; i++) {
+            try {
+                updateCounts[i] = executeUpdate(sqls.get(i));
+            }
+            catch (SQLException ex) {
+                throw batchUpdateException(ex, Arrays.copyOf(updateCounts, i));
+            }
+        }
+        return updateCounts;
     }
 
     @Override
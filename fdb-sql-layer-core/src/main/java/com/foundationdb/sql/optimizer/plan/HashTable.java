@@ -22,6 +22,7 @@ package com.foundationdb.sql.optimizer.plan;
 public class HashTable extends BaseHashTable
 {
     private long estimatedSize;
+    private boolean spill;
 
     public HashTable(long estimatedSize) {
         this.estimatedSize = estimatedSize;
@@ -31,4 +32,16 @@ public class HashTable extends BaseHashTable
         return estimatedSize;
     }
 
+    /** Whether the table was planned to spill to temporary files, in
+     * which case the probe side is partitioned to match and does not keep
+     * its order.
+     */
+    public boolean isSpill() {
+        return spill;
+    }
+
+    public void setSpill(boolean spill) {
+        this.spill = spill;
+    }
+
 }
\ No newline at end of file
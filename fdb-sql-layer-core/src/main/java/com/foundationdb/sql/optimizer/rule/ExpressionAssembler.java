@@ -48,6 +48,7 @@ import com.foundationdb.ais.model.TableName;
 import com.foundationdb.qp.operator.API;
 import com.foundationdb.qp.operator.Operator;
 import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.rowtype.AggregatedRowType;
 import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.server.collation.AkCollator;
 import com.foundationdb.server.error.AkibanInternalException;
@@ -380,6 +381,14 @@ class ExpressionAssembler
     }
 
     public Operator assembleAggregates(Operator inputOperator, RowType rowType, int nkeys, AggregateSource aggregateSource) {
+        return assembleAggregates(inputOperator, rowType, nkeys, aggregateSource, null, false);
+    }
+
+    /** Assemble the aggregation, either sharing the given output row
+     * type or merging partial states produced with it.
+     */
+    public Operator assembleAggregates(Operator inputOperator, RowType rowType, int nkeys, AggregateSource aggregateSource,
+                                       AggregatedRowType outputType, boolean merge) {
         List<ResolvableExpression<TValidatedAggregator>> aggregates = aggregateSource.getResolved();
         int naggrs = aggregates.size();
         List<TAggregator> aggregators = new ArrayList<>(naggrs);
@@ -389,13 +398,25 @@ class ExpressionAssembler
             aggregators.add(aggr.getResolved());
             outputInstances.add(aggr.getType());
         }
+        if (aggregateSource.getImplementation() == AggregateSource.Implementation.HASH)
+            return API.aggregate_Hashed(
+                    inputOperator,
+                    rowType,
+                    nkeys,
+                    aggregators,
+                    outputInstances,
+                    aggregateSource.getOptions(),
+                    outputType,
+                    merge);
         return API.aggregate_Partial(
                 inputOperator,
                 rowType,
                 nkeys,
                 aggregators,
                 outputInstances,
-                aggregateSource.getOptions());
+                aggregateSource.getOptions(),
+                outputType,
+                merge);
     }
 
     // Changes here probably need reflected in OnlineHelper#buildColumnDefault()
@@ -183,6 +183,7 @@ public class JoinAndIndexPicker extends BaseRule
             BaseScan scan = groupGoal.pickBestScan();
             groupGoal.install(scan, null, true, false);
             query.setCostEstimate(scan.getCostEstimate());
+            queryGoal.installHashAggregate(scan.getCostEstimate());
         }
 
         protected void pickJoinsAndIndexes (JoinNode joins) {
@@ -321,6 +322,7 @@ public class JoinAndIndexPicker extends BaseRule
             joinable.getOutput().replaceInput(joinable, 
                                               moveInSemiJoins(rootPlan.install(copy, true)));
             query.setCostEstimate(rootPlan.costEstimate);
+            queryGoal.installHashAggregate(rootPlan.costEstimate);
         }
 
         // If any semi-joins to VALUES are left over at the top, they
@@ -1023,6 +1025,9 @@ public class JoinAndIndexPicker extends BaseRule
             if (needDistinct)
                 left.addDistinct();
             JoinableWithConditionsToRemove loaderJoinable = loader.install(true, false);
+            // A spilled table reorders its probe side by partition.
+            if ((hashTable instanceof HashTable) && ((HashTable)hashTable).isSpill())
+                sortAllowed = false;
             JoinableWithConditionsToRemove inputJoinable = left.install(copy, sortAllowed);
             JoinableWithConditionsToRemove checkJoinable = right.install(copy, false);
             ConditionList joinConditions = mergeJoinConditions(joins);
@@ -1420,11 +1425,17 @@ public class JoinAndIndexPicker extends BaseRule
                 if (maxColumnCount == 0) return null; }
             else
                 maxColumnCount = MAX_COL_COUNT;
-            if (loaderPlan.costEstimate.getRowCount() * hashTableColumns.hashColumns.size() > maxColumnCount)
-                return null;
+            boolean spill = false;
+            if (loaderPlan.costEstimate.getRowCount() * hashTableColumns.hashColumns.size() > maxColumnCount) {
+                // Too big to be sure of fitting in memory: only if it can spill to disk.
+                if (!Boolean.parseBoolean(picker.rulesContext.getProperty("hashTableSpill", "false")))
+                    return null;
+                spill = true;
+            }
             int outerColumnCount = DEFAULT_COLUMN_COUNT;
             int innerColumnCount = DEFAULT_COLUMN_COUNT;
             HashTable hashTable = new HashTable(loaderPlan.costEstimate.getRowCount());
+            hashTable.setSpill(spill);
             for (ExpressionNode expression : hashTableColumns.matchColumns) {
                 if (expression instanceof ColumnExpression) {
                     ColumnSource columnSource = ((ColumnExpression)expression).getTable();
@@ -1450,7 +1461,7 @@ public class JoinAndIndexPicker extends BaseRule
                 .costHashLookup(innerPlan.costEstimate, hashTableColumns.hashColumns.size(), innerColumnCount);
             HashLookupPlan lookupPlan = new HashLookupPlan(costEstimate, hashTable, hashTableColumns);
             costEstimate = picker.getCostEstimator()
-                    .costHashJoin(loaderPlan.costEstimate, outerPlan.costEstimate, costEstimate, hashTableColumns.hashColumns.size(), outerColumnCount, innerColumnCount);
+                    .costHashJoin(loaderPlan.costEstimate, outerPlan.costEstimate, costEstimate, hashTableColumns.hashColumns.size(), outerColumnCount, innerColumnCount, spill);
             return new HashJoinPlan(loaderPlan, outerPlan, lookupPlan,
                     joinPlan.joinType, JoinNode.Implementation.HASH_TABLE,
                     joins, costEstimate, hashTable, hashTableColumns.hashColumns, hashTableColumns.matchColumns, hashTableColumns.tKeyComparables, hashTableColumns.collators);
@@ -55,6 +55,8 @@ import com.foundationdb.server.types.texpressions.TCastExpression;
 import com.foundationdb.server.types.texpressions.TNullExpression;
 import com.foundationdb.server.types.texpressions.TPreparedExpression;
 import com.foundationdb.server.types.texpressions.TPreparedField;
+import com.foundationdb.server.types.texpressions.TPreparedLiteral;
+import com.foundationdb.server.types.texpressions.TValidatedAggregator;
 import com.foundationdb.server.types.value.ValueSource;
 import com.foundationdb.server.types.value.Value;
 import com.foundationdb.server.error.AkibanInternalException;
@@ -93,6 +95,7 @@ public class OperatorAssembler extends BaseRule
     private static final PointTap DELETE_COUNT = Tap.createCount("sql: delete");
     public static final int CREATE_AS_BINDING_POSITION = 2;
 
+    /** Largest limit costed as an in-memory top-N sort; larger ones may spill. */
     public static final int INSERTION_SORT_MAX_LIMIT = 100;
 
     public OperatorAssembler() {
@@ -116,6 +119,11 @@ public class OperatorAssembler extends BaseRule
         private final Schema schema;
         private final ExpressionAssembler expressionAssembler;
         private final Set<Table> affectedTables;
+        // Partitions of each full index scan that was split.
+        private final Map<SingleIndexScan,List<Operator>> parallelScanPartitions = new HashMap<>();
+        // While assembling a single partition, the split scan and its part.
+        private SingleIndexScan partitionIndexScan;
+        private Operator partitionScan;
 
         public Assembler(PlanContext planContext) {
             this.planContext = planContext;
@@ -431,6 +439,31 @@ public class OperatorAssembler extends BaseRule
 
         // Assemble an ordinary stream node.
         protected RowStream assembleStream(PlanNode node) {
+            long outerRowLimit = rowLimit;
+            if (!passesRowLimit(node))
+                rowLimit = -1;
+            try {
+                return assembleStreamNode(node);
+            }
+            finally {
+                rowLimit = outerRowLimit;
+            }
+        }
+
+        // Nodes that do not need more input rows than output ones,
+        // at least not many more, so that a LIMIT above still bounds them.
+        protected boolean passesRowLimit(PlanNode node) {
+            return ((node instanceof Select) ||
+                    (node instanceof Project) ||
+                    (node instanceof Flatten) ||
+                    (node instanceof AncestorLookup) ||
+                    (node instanceof BranchLookup) ||
+                    (node instanceof MapJoin) ||
+                    (node instanceof NullIfEmpty) ||
+                    (node instanceof BaseScan));
+        }
+
+        protected RowStream assembleStreamNode(PlanNode node) {
             if (node instanceof IndexScan)
                 return assembleIndexScan((IndexScan) node);
             else if (node instanceof GroupScan)
@@ -599,21 +632,26 @@ public class OperatorAssembler extends BaseRule
                                                       index);
                 }
             }
+            int lookahead = rulesContext.getPipelineConfiguration().getIndexScanLookaheadQuantum();
             if (index.isSpatial()) {
                 stream.operator = API.indexScan_Default(indexRowType,
                                                         assembleSpatialIndexKeyRange(indexScan, null),
                                                         API.ordering(), // TODO: what ordering?
                                                         selector,
-                                                        rulesContext.getPipelineConfiguration().getIndexScanLookaheadQuantum());
+                                                        lookahead, lookaheadSeed(lookahead, loopRowsEstimate));
                 indexRowType = indexRowType.physicalRowType();
                 stream.rowType = indexRowType;
             }
             else if (indexScan.getConditionRange() == null) {
-                stream.operator = API.indexScan_Default(indexRowType,
-                                                        assembleIndexKeyRange(indexScan, null),
-                                                        assembleIndexOrdering(indexScan, indexRowType),
-                                                        selector,
-                                                        rulesContext.getPipelineConfiguration().getIndexScanLookaheadQuantum());
+                if (forIntersection == IntersectionMode.NONE)
+                    stream.operator = assembleParallelIndexScan(indexScan, indexRowType, selector);
+                if (stream.operator == null) {
+                    stream.operator = API.indexScan_Default(indexRowType,
+                                                            assembleIndexKeyRange(indexScan, null),
+                                                            assembleIndexOrdering(indexScan, indexRowType),
+                                                            selector,
+                                                            lookahead, lookaheadSeed(lookahead, loopRowsEstimate));
+                }
                 stream.rowType = indexRowType;
             }
             else {
@@ -645,7 +683,7 @@ public class OperatorAssembler extends BaseRule
                                                           assembleIndexKeyRange(indexScan, null, rangeSegment),
                                                           assembleIndexOrdering(indexScan, indexRowType),
                                                           selector,
-                                                          rulesContext.getPipelineConfiguration().getIndexScanLookaheadQuantum());
+                                                          lookahead, lookaheadSeed(lookahead, loopRowsEstimate));
                     if (stream.operator == null) {
                         stream.operator = scan;
                         stream.rowType = indexRowType;
@@ -680,6 +718,66 @@ public class OperatorAssembler extends BaseRule
             return stream;
         }
 
+        /** Number of parts to split a large full index scan into. */
+        public static final String PARALLEL_SCAN_DEFAULT = "1";
+        /** Estimated rows below which a scan is never split. */
+        public static final String PARALLEL_SCAN_MIN_ROWS_DEFAULT = "100000";
+
+        /** If the given full index scan is large enough, split it into
+         * ranges of its leading column, using the index's histogram,
+         * and gather them with an exchange, which scans them
+         * concurrently where the store allows.
+         */
+        protected Operator assembleParallelIndexScan(SingleIndexScan indexScan,
+                                                     IndexRowType indexRowType,
+                                                     IndexScanSelector selector) {
+            if ((indexScan == partitionIndexScan) && (partitionScan != null))
+                return partitionScan;
+            int nparts = Integer.parseInt(rulesContext.getProperty("parallelScan", PARALLEL_SCAN_DEFAULT));
+            if (nparts <= 1)
+                return null;
+            if ((indexScan.getEqualityComparands() != null) ||
+                (indexScan.getLowComparand() != null) ||
+                (indexScan.getHighComparand() != null))
+                return null;
+            long minRows = Long.parseLong(rulesContext.getProperty("parallelScanMinRows", PARALLEL_SCAN_MIN_ROWS_DEFAULT));
+            CostEstimate costEstimate = indexScan.getScanCostEstimate();
+            if ((costEstimate == null) || (costEstimate.getRowCount() < minRows))
+                return null;
+            Index index = indexScan.getIndex();
+            List<ValueSource> splitPoints = rulesContext.getCostEstimator().indexSplitPoints(index, nparts);
+            if ((splitPoints == null) || splitPoints.isEmpty())
+                return null;
+            TInstance type = index.getKeyColumns().get(0).getColumn().getType();
+            API.Ordering ordering = assembleIndexOrdering(indexScan, indexRowType);
+            int lookahead = rulesContext.getPipelineConfiguration().getIndexScanLookaheadQuantum();
+            List<Operator> scans = new ArrayList<>(splitPoints.size() + 1);
+            // The first part starts with any NULLs and the last has no upper
+            // bound: an exclusive NULL high bound on the last column means AFTER.
+            IndexBound lo = getNullIndexBound(index, 1);
+            for (int i = 0; i <= splitPoints.size(); i++) {
+                IndexBound hi;
+                if (i < splitPoints.size()) {
+                    TPreparedExpression[] pKeys = { new TPreparedLiteral(type, splitPoints.get(i)) };
+                    hi = getIndexBound(index, pKeys, 1);
+                }
+                else {
+                    hi = getNullIndexBound(index, 1);
+                }
+                scans.add(API.indexScan_Default(indexRowType,
+                                                IndexKeyRange.bounded(indexRowType, lo, true, hi, false),
+                                                ordering, selector, lookahead));
+                lo = hi;
+            }
+            API.Ordering merge = null;
+            if (indexScan.getOrderEffectiveness() != IndexScan.OrderEffectiveness.NONE)
+                merge = ordering;
+            parallelScanPartitions.put(indexScan, scans);
+            if (indexScan == partitionIndexScan)
+                return scans.get(0); // Aggregated in parts by the caller.
+            return API.exchange_Default(scans, indexRowType, merge);
+        }
+
         protected void explainSingleIndexScan(Operator operator, SingleIndexScan indexScan, Index index) {
             Attributes atts = new Attributes();
             atts.put(Label.ORDER_EFFECTIVENESS, PrimitiveExplainer.getInstance(indexScan.getOrderEffectiveness().name()));
@@ -858,6 +956,7 @@ public class OperatorAssembler extends BaseRule
         protected RowStream assembleAncestorLookup(AncestorLookup ancestorLookup) {
             RowStream stream;
             Group group = ancestorLookup.getDescendant().getGroup();
+            int lookahead = rulesContext.getPipelineConfiguration().getGroupLookupLookaheadQuantum();
             List<TableRowType> outputRowTypes =
                 new ArrayList<>(ancestorLookup.getAncestors().size());
             for (TableNode table : ancestorLookup.getAncestors()) {
@@ -871,7 +970,7 @@ public class OperatorAssembler extends BaseRule
                                                             boundRow.getRowType(),
                                                             outputRowTypes,
                                                             getBindingPosition(boundRow),
-                                                            rulesContext.getPipelineConfiguration().getGroupLookupLookaheadQuantum());
+                                                            lookahead, lookaheadSeed(lookahead, loopRowsEstimate));
             }
             else {
                 BranchLookup branchLookup = null;
@@ -903,7 +1002,7 @@ public class OperatorAssembler extends BaseRule
                                                           inputRowType,
                                                           outputRowTypes,
                                                           flag,
-                                                          rulesContext.getPipelineConfiguration().getGroupLookupLookaheadQuantum());
+                                                          lookahead, lookaheadSeed(lookahead, estimatedRowCount(input)));
             }
             stream.rowType = null;
             stream.fieldOffsets = null;
@@ -913,6 +1012,7 @@ public class OperatorAssembler extends BaseRule
         protected RowStream assembleBranchLookup(BranchLookup branchLookup) {
             RowStream stream;
             Group group = branchLookup.getSource().getGroup();
+            int lookahead = rulesContext.getPipelineConfiguration().getGroupLookupLookaheadQuantum();
             List<TableRowType> outputRowTypes =
                 new ArrayList<>(branchLookup.getTables().size());
             if (false)      // TODO: Any way to check that this matched?
@@ -932,7 +1032,7 @@ public class OperatorAssembler extends BaseRule
                                                           outputRowTypes, 
                                                           flag,
                                                           getBindingPosition(boundRow),
-                                                          rulesContext.getPipelineConfiguration().getGroupLookupLookaheadQuantum());
+                                                          lookahead, lookaheadSeed(lookahead, loopRowsEstimate));
                 
             }
             else if (branchLookup.getInput() instanceof GroupLoopScan) {
@@ -947,7 +1047,7 @@ public class OperatorAssembler extends BaseRule
                                                           outputRowTypes, 
                                                           flag,
                                                           getBindingPosition(boundRow),
-                                                          rulesContext.getPipelineConfiguration().getGroupLookupLookaheadQuantum());
+                                                          lookahead, lookaheadSeed(lookahead, loopRowsEstimate));
             }
             else {
                 // Ordinary inline version.
@@ -964,7 +1064,7 @@ public class OperatorAssembler extends BaseRule
                                                           inputRowType,
                                                           outputRowTypes, 
                                                           flag,
-                                                          rulesContext.getPipelineConfiguration().getGroupLookupLookaheadQuantum());
+                                                          lookahead, lookaheadSeed(lookahead, estimatedRowCount(branchLookup.getInput())));
             }
             stream.rowType = null;
             stream.unknownTypesPresent = true;
@@ -1145,9 +1245,20 @@ public class OperatorAssembler extends BaseRule
         protected RowStream assembleMapJoin(MapJoin mapJoin) {
             PlanNode outer = mapJoin.getOuter();
             RowStream ostream = assembleStream(outer);
+            HashTableLookup spilledLookup = spilledHashTableLookup(mapJoin.getInner());
+            if (spilledLookup != null) {
+                ostream.operator = API.partition_HashTable(ostream.operator,
+                                                           ostream.rowType,
+                                                           assembleExpressions(spilledLookup.getLookupExpressions(),
+                                                                               ostream.fieldOffsets),
+                                                           getBindingPosition(spilledLookup.getHashTable()));
+            }
             int pos = pushBoundRow(ostream.fieldOffsets);
             nestedBindingsDepth++;
+            long outerLoopRowsEstimate = loopRowsEstimate;
+            loopRowsEstimate = estimatedRowCount(outer);
             RowStream stream = assembleStream(mapJoin.getInner());
+            loopRowsEstimate = outerLoopRowsEstimate;
             stream.operator = API.map_NestedLoops(ostream.operator, 
                                                   stream.operator,
                                                   pos,
@@ -1158,6 +1269,19 @@ public class OperatorAssembler extends BaseRule
             return stream;
         }
 
+        /** A lookup, directly inside a loop, into a hash table that was
+         * planned to spill, so that the outer rows should be partitioned.
+         */
+        protected HashTableLookup spilledHashTableLookup(PlanNode inner) {
+            while ((inner instanceof Select) || (inner instanceof Project)) {
+                inner = ((BasePlanWithInput)inner).getInput();
+            }
+            if ((inner instanceof HashTableLookup) &&
+                ((HashTableLookup)inner).getHashTable().isSpill())
+                return (HashTableLookup)inner;
+            return null;
+        }
+
         protected RowStream assembleProduct(Product product) {
             TableRowType ancestorRowType = null;
             if (product.getAncestor() != null)
@@ -1244,10 +1368,28 @@ public class OperatorAssembler extends BaseRule
                 }                
             }
             assert aggregateSource.isProjectSplitOff();
-            stream = assembleStream(aggregateSource.getInput());
+            SingleIndexScan parallelScan = parallelAggregateScan(aggregateSource, impl, nkeys);
+            if (parallelScan == null) {
+                stream = assembleStream(aggregateSource.getInput());
+            }
+            else {
+                try {
+                    // If that scan gets split, this assembles the first part.
+                    partitionIndexScan = parallelScan;
+                    stream = assembleStream(aggregateSource.getInput());
+                }
+                finally {
+                    partitionIndexScan = null;
+                }
+                List<Operator> scans = parallelScanPartitions.get(parallelScan);
+                if (scans != null)
+                    return assembleParallelAggregate(aggregateSource, nkeys, stream,
+                                                     parallelScan, scans);
+            }
             switch (impl) {
             case PRESORTED:
             case UNGROUPED:
+            case HASH:
                 break;
             case FIRST_FROM_INDEX:
                 {
@@ -1273,6 +1415,128 @@ public class OperatorAssembler extends BaseRule
             return stream;
         }
 
+        public static final String PARALLEL_AGGREGATE_DEFAULT = "true";
+
+        /** If the aggregation's input is a simple pipeline over an index
+         * scan that might be split, return that scan, so that each part
+         * can be aggregated separately in the exchange's workers and
+         * their states merged above it. Only done where the output is
+         * unordered anyway: hashed or without GROUP BY.
+         */
+        protected SingleIndexScan parallelAggregateScan(AggregateSource aggregateSource,
+                                                        AggregateSource.Implementation impl,
+                                                        int nkeys) {
+            switch (impl) {
+            case HASH:
+                break;
+            case PRESORTED:
+            case UNGROUPED:
+            case SORT:
+                if (nkeys == 0)
+                    break;
+                /* else falls through */
+            default:
+                return null;
+            }
+            if (!Boolean.parseBoolean(rulesContext.getProperty("parallelAggregate", PARALLEL_AGGREGATE_DEFAULT)))
+                return null;
+            for (ResolvableExpression<TValidatedAggregator> aggr : aggregateSource.getResolved()) {
+                if (!aggr.getResolved().canMerge())
+                    return null;
+            }
+            return parallelPipelineScan(aggregateSource.getInput());
+        }
+
+        /** Aggregate each part of the split <code>indexScan</code>
+         * separately, given the input already assembled over the first.
+         */
+        protected RowStream assembleParallelAggregate(AggregateSource aggregateSource,
+                                                      int nkeys, RowStream first,
+                                                      SingleIndexScan indexScan,
+                                                      List<Operator> scans) {
+            List<Operator> partials = new ArrayList<>(scans.size());
+            AggregatedRowType partialRowType = null;
+            try {
+                partitionIndexScan = indexScan;
+                for (int i = 0; i < scans.size(); i++) {
+                    RowStream stream = first;
+                    if (i > 0) {
+                        partitionScan = scans.get(i);
+                        stream = assembleStream(aggregateSource.getInput());
+                    }
+                    Operator partial = expressionAssembler.assembleAggregates(stream.operator, stream.rowType, nkeys,
+                                                                              aggregateSource, partialRowType, false);
+                    partialRowType = (AggregatedRowType)partial.rowType();
+                    partials.add(partial);
+                }
+            }
+            finally {
+                partitionIndexScan = null;
+                partitionScan = null;
+            }
+            RowStream stream = new RowStream();
+            stream.operator = API.exchange_Default(partials, partialRowType, null);
+            stream.operator = expressionAssembler.assembleAggregates(stream.operator, partialRowType, nkeys,
+                                                                     aggregateSource, null, true);
+            stream.rowType = stream.operator.rowType();
+            stream.fieldOffsets = new ColumnSourceFieldOffsets(aggregateSource,
+                                                               stream.rowType);
+            return stream;
+        }
+
+        /** Find the index scan at the bottom of a chain of operators
+         * that can be repeated for each part of it, which means that
+         * they do not bind any rows nor call out of the query.
+         */
+        protected SingleIndexScan parallelPipelineScan(PlanNode node) {
+            ParallelUnsafeFinder finder = new ParallelUnsafeFinder();
+            while (true) {
+                if (node instanceof Project) {
+                    for (ExpressionNode field : ((Project)node).getFields())
+                        field.accept(finder);
+                }
+                else if (node instanceof Select) {
+                    for (ConditionExpression condition : ((Select)node).getConditions())
+                        condition.accept(finder);
+                }
+                else if ((node instanceof Flatten) ||
+                         ((node instanceof AncestorLookup) &&
+                          (((AncestorLookup)node).getInput() instanceof IndexScan))) {
+                }
+                else if (node instanceof SingleIndexScan) {
+                    return finder.found ? null : (SingleIndexScan)node;
+                }
+                else {
+                    return null;
+                }
+                if (finder.found)
+                    return null;
+                node = ((BasePlanWithInput)node).getInput();
+            }
+        }
+
+        static class ParallelUnsafeFinder implements ExpressionVisitor {
+            boolean found = false;
+
+            @Override
+            public boolean visitEnter(ExpressionNode n) {
+                return visit(n);
+            }
+            @Override
+            public boolean visitLeave(ExpressionNode n) {
+                return !found;
+            }
+            @Override
+            public boolean visit(ExpressionNode n) {
+                if ((n instanceof SubqueryExpression) ||
+                    (n instanceof RoutineExpression)) {
+                    found = true;
+                    return false;
+                }
+                return true;
+            }
+        }
+
         protected RowStream assembleDistinct(Distinct distinct) {
             Distinct.Implementation impl = distinct.getImplementation();
             if (impl == Distinct.Implementation.EXPLICIT_SORT) {
@@ -1368,7 +1632,7 @@ public class OperatorAssembler extends BaseRule
                 ExpressionsSource expressionsSource = (ExpressionsSource)input;
                 maxrows = expressionsSource.getExpressions().size();
             }
-            if ((maxrows >= 0) && (maxrows <= INSERTION_SORT_MAX_LIMIT))
+            if (maxrows >= 0)
                 stream.operator = API.sort_InsertionLimited(stream.operator, stream.rowType,
                                                             ordering, sortOption, maxrows);
             else
@@ -1394,6 +1658,8 @@ public class OperatorAssembler extends BaseRule
         }
 
         protected RowStream assembleLimit(Limit limit) {
+            if (!limit.isOffsetParameter() && !limit.isLimitParameter() && (limit.getLimit() >= 0))
+                rowLimit = (long)limit.getOffset() + limit.getLimit();
             RowStream stream = assembleStream(limit.getInput());
             int nlimit = limit.getLimit();
             if ((nlimit < 0) && !limit.isLimitParameter())
@@ -2066,6 +2332,9 @@ public class OperatorAssembler extends BaseRule
         /* Bindings-related state */
 
         protected int nestedBindingsDepth = 0;
+        // Estimated number of bindings an inner loop is run with,
+        // and most rows a LIMIT above needs, or -1 if not known.
+        protected long loopRowsEstimate = -1, rowLimit = -1;
         // boundRows is the dynamic list available.
         protected Deque<ColumnExpressionToIndex> boundRows = new ArrayDeque<>();
         // bindings is complete list of assignments; bindingPositions its inverse.
@@ -2073,6 +2342,28 @@ public class OperatorAssembler extends BaseRule
         protected Map<Object,Integer> bindingPositions = new HashMap<>();
         protected Map<HashTable,RowStream> hashTableLoaders = new HashMap<>();
 
+        // How far a lookahead operator should look at first: no further than
+        // the rows expected, nor than an enclosing LIMIT needs.
+        protected int lookaheadSeed(int quantum, long estimatedRows) {
+            long seed = (estimatedRows < 0) ? quantum / 4 : estimatedRows;
+            if (rowLimit >= 0)
+                seed = Math.min(seed, rowLimit);
+            return (int)Math.max(Math.min(seed, quantum), 1);
+        }
+
+        // Estimated rows coming out of the scan that a stream starts
+        // from, or -1 if that isn't known.
+        protected long estimatedRowCount(PlanNode node) {
+            while (node instanceof BasePlanWithInput)
+                node = ((BasePlanWithInput)node).getInput();
+            if (node instanceof BaseScan) {
+                CostEstimate costEstimate = ((BaseScan)node).getCostEstimate();
+                if (costEstimate != null)
+                    return costEstimate.getRowCount();
+            }
+            return -1;
+        }
+
         protected int assignBindingPosition(Object binding) {
             int position = bindings.size();
             bindings.add(binding);
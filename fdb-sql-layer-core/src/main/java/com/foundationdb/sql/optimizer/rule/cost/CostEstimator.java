@@ -17,11 +17,16 @@
 
 package com.foundationdb.sql.optimizer.rule.cost;
 
+import com.foundationdb.server.PersistitKeyValueSource;
 import com.foundationdb.server.PersistitKeyValueTarget;
+import com.foundationdb.server.store.statistics.ColumnGroupStatistics;
+import com.foundationdb.server.store.statistics.ColumnStatistics;
 import com.foundationdb.server.store.statistics.Histogram;
 import com.foundationdb.server.store.statistics.HistogramEntry;
+import com.foundationdb.server.types.value.Value;
 import com.foundationdb.server.types.value.ValueSource;
 import com.foundationdb.server.types.value.ValueSources;
+import com.foundationdb.server.types.value.ValueTargets;
 import com.foundationdb.sql.optimizer.rule.SchemaRulesContext;
 import com.foundationdb.sql.optimizer.plan.*;
 import com.foundationdb.sql.optimizer.plan.TableGroupJoinTree.TableGroupJoinNode;
@@ -33,6 +38,7 @@ import com.foundationdb.qp.rowtype.TableRowType;
 import com.foundationdb.server.service.tree.KeyCreator;
 import com.foundationdb.server.store.statistics.IndexStatistics;
 import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.texpressions.Comparison;
 import com.persistit.Key;
 
 import com.google.common.primitives.UnsignedBytes;
@@ -99,6 +105,30 @@ public abstract class CostEstimator implements TableRowCounts
 
     public abstract IndexStatistics getIndexStatistics(Index index);
 
+    /** Get statistics for a single column, indexed or not, which are
+     * kept with those of its table's primary key. */
+    public ColumnStatistics getColumnStatistics(Column column) {
+        PrimaryKey primaryKey = column.getTable().getPrimaryKeyIncludingInternal();
+        if (primaryKey == null)
+            return null;
+        IndexStatistics indexStatistics = getIndexStatistics(primaryKey.getIndex());
+        if (indexStatistics == null)
+            return null;
+        return indexStatistics.getColumnStatistics(column.getPosition());
+    }
+
+    /** Get joint statistics for declared sets of columns of a table,
+     * which are also kept with those of its primary key. */
+    public List<ColumnGroupStatistics> getColumnGroupStatistics(Table table) {
+        PrimaryKey primaryKey = table.getPrimaryKeyIncludingInternal();
+        if (primaryKey == null)
+            return Collections.emptyList();
+        IndexStatistics indexStatistics = getIndexStatistics(primaryKey.getIndex());
+        if (indexStatistics == null)
+            return Collections.emptyList();
+        return indexStatistics.getColumnGroupStatistics();
+    }
+
     public void getIndexColumnStatistics(Index index, Index[] indexColumnsIndexes, Histogram[] histograms) {
         List<IndexColumn> allIndexColumns = index.getAllColumns();
         IndexStatistics statsForRequestedIndex = getIndexStatistics(index);
@@ -287,8 +317,17 @@ public abstract class CostEstimator implements TableRowCounts
                                    Histogram[] histograms,
                                    List<ExpressionNode> eqExpressions) {
         double selectivity = 1.0;
+        boolean[] covered = new boolean[eqExpressions.size()];
+        if (!index.isSpatial()) {
+            List<Column> columns = new ArrayList<>(eqExpressions.size());
+            for (int column = 0; column < eqExpressions.size(); column++) {
+                columns.add(index.getAllColumns().get(column).getColumn());
+            }
+            selectivity = columnGroupsFractionEqual(columns, eqExpressions, covered);
+        }
         keyPTarget.attach(key);
         for (int column = 0; column < eqExpressions.size(); column++) {
+            if (covered[column]) continue;
             ExpressionNode node = eqExpressions.get(column);
             Histogram histogram = histograms[column];
             selectivity *= fractionEqual(index.getAllColumns().get(column).getColumn(),
@@ -305,6 +344,9 @@ public abstract class CostEstimator implements TableRowCounts
                                    ExpressionNode expr) {
         if (histogram == null) {
             missingStats(index, column);
+            ColumnStatistics columnStatistics = getColumnStatistics(column);
+            if (columnStatistics != null)
+                return fractionEqual(column, columnStatistics, expr);
             return missingStatsSelectivity();
         } else {
             long indexStatsSampledCount = histogram.getIndexStatistics().getSampledCount();
@@ -361,6 +403,146 @@ public abstract class CostEstimator implements TableRowCounts
         }
     }
 
+    /** Estimate from the column's distinct count and most common values,
+     * assuming that the remaining values are equally frequent.
+     */
+    protected double fractionEqual(Column column,
+                                   ColumnStatistics columnStatistics,
+                                   ExpressionNode expr) {
+        long rowCount = columnStatistics.getRowCount();
+        if (rowCount == 0) {
+            return missingStatsSelectivity();
+        }
+        if ((expr instanceof ColumnExpression) &&
+            (((ColumnExpression)expr).getTable() instanceof ExpressionsSource)) {
+            ColumnExpression toColumn = (ColumnExpression)expr;
+            ExpressionsSource values = (ExpressionsSource)toColumn.getTable();
+            int position = toColumn.getPosition();
+            double sum = 0.0;
+            int count = 0;
+            for (List<ExpressionNode> row : values.getExpressions()) {
+                sum += fractionEqual(column, columnStatistics, row.get(position));
+                count++;
+            }
+            if (count > 0) sum /= count;
+            return sum;
+        }
+        key.clear();
+        keyPTarget.attach(key);
+        byte[] columnValue = encodeKeyValue(expr, column) ? keyCopy() : null;
+        return fractionEqual(columnStatistics, columnValue);
+    }
+
+    /** Estimate equality conditions on all the columns of a group together.
+     * Returns a negative number if they cannot be.
+     */
+    protected double fractionEqual(ColumnGroupStatistics groupStatistics,
+                                   Column[] columns,
+                                   List<ExpressionNode> exprs) {
+        if (groupStatistics.getRowCount() == 0) {
+            return -1.0;
+        }
+        key.clear();
+        keyPTarget.attach(key);
+        boolean constant = true;
+        for (int i = 0; i < columns.length; i++) {
+            ExpressionNode expr = exprs.get(i);
+            if (isNullKeyValue(expr)) {
+                // Rows with any null are not in the joint counts.
+                return -1.0;
+            }
+            if (constant && !encodeKeyValue(expr, columns[i])) {
+                constant = false;
+            }
+        }
+        return fractionEqual(groupStatistics, constant ? keyCopy() : null);
+    }
+
+    /** The fraction of rows whose encoded value is <code>value</code>, or
+     * that of an average value if that is <code>null</code>. */
+    private double fractionEqual(ColumnStatistics columnStatistics, byte[] value) {
+        long rowCount = columnStatistics.getRowCount();
+        long nonNullCount = rowCount - columnStatistics.getNullCount();
+        long distinctCount = Math.max(columnStatistics.getDistinctCount(), 1);
+        if (value == null) {
+            // Variable expression, such as a join column. Average over the values.
+            return ((double) nonNullCount) / (distinctCount * rowCount);
+        }
+        List<HistogramEntry> mostCommon = columnStatistics.getMostCommonValues();
+        for (HistogramEntry entry : mostCommon) {
+            if (bytesComparator.compare(value, entry.getKeyBytes()) == 0) {
+                return ((double) entry.getEqualCount()) / rowCount;
+            }
+        }
+        long otherCount = Math.max(nonNullCount - columnStatistics.mostCommonCount(), 0);
+        long otherDistinct = Math.max(distinctCount - mostCommon.size(), 1);
+        return ((double) otherCount) / (otherDistinct * rowCount);
+    }
+
+    /** Estimate equality conditions that cover all the columns of a
+     * declared column group jointly, since their values may well be
+     * correlated, larger groups first. Marks the columns so estimated in
+     * <code>covered</code>; the caller multiplies in the rest one at a time.
+     */
+    protected double columnGroupsFractionEqual(List<Column> columns,
+                                               List<ExpressionNode> exprs,
+                                               boolean[] covered) {
+        double selectivity = 1.0;
+        if (columns.size() < 2) {
+            return selectivity;
+        }
+        Map<Table,Map<Column,Integer>> byTable = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            Map<Column,Integer> indexes = byTable.get(column.getTable());
+            if (indexes == null) {
+                indexes = new HashMap<>();
+                byTable.put(column.getTable(), indexes);
+            }
+            if (!indexes.containsKey(column)) {
+                indexes.put(column, i);
+            }
+        }
+        for (Map.Entry<Table,Map<Column,Integer>> entry : byTable.entrySet()) {
+            Map<Column,Integer> indexes = entry.getValue();
+            if (indexes.size() < 2) continue;
+            Table table = entry.getKey();
+            List<ColumnGroupStatistics> groups = getColumnGroupStatistics(table);
+            if (groups.isEmpty()) continue;
+            groups = new ArrayList<>(groups);
+            Collections.sort(groups, new Comparator<ColumnGroupStatistics>() {
+                    @Override
+                    public int compare(ColumnGroupStatistics g1, ColumnGroupStatistics g2) {
+                        return Integer.compare(g2.getColumnPositions().length, g1.getColumnPositions().length);
+                    }
+                });
+            List<Column> tableColumns = table.getColumnsIncludingInternal();
+            groups:
+            for (ColumnGroupStatistics group : groups) {
+                int[] positions = group.getColumnPositions();
+                Column[] groupColumns = new Column[positions.length];
+                List<ExpressionNode> groupExprs = new ArrayList<>(positions.length);
+                int[] groupIndexes = new int[positions.length];
+                for (int j = 0; j < positions.length; j++) {
+                    if (positions[j] >= tableColumns.size()) continue groups;
+                    Column column = tableColumns.get(positions[j]);
+                    Integer i = indexes.get(column);
+                    if ((i == null) || covered[i]) continue groups;
+                    groupColumns[j] = column;
+                    groupExprs.add(exprs.get(i));
+                    groupIndexes[j] = i;
+                }
+                double fraction = fractionEqual(group, groupColumns, groupExprs);
+                if (fraction < 0) continue;
+                selectivity *= fraction;
+                for (int i : groupIndexes) {
+                    covered[i] = true;
+                }
+            }
+        }
+        return selectivity;
+    }
+
     protected double fractionBetween(Column column,
                                      Index index,
                                      Histogram histogram,
@@ -511,28 +693,11 @@ public abstract class CostEstimator implements TableRowCounts
     }
 
     protected boolean encodeKeyValue(ExpressionNode node, Index index, int column) {
-        ValueSource value = null;
-        if (node instanceof ConstantExpression) {
-            if (node.getPreptimeValue() != null) {
-                if (node.getType() == null) { // Literal null
-                    keyPTarget.putNull();
-                    return true;
-                }
-                value = node.getPreptimeValue().value();
-            }
-        }
-        else if (node instanceof ParameterExpression && ((ParameterExpression)node).isSet()) {
-            if (((ParameterExpression)node).getValue() == null) {
-                keyPTarget.putNull();
-                return true;
-            }
-            value = ValueSources.fromObject(((ParameterExpression)node).getValue(),
-                    node.getPreptimeValue().type()).value();
-        }
-        else if (node instanceof IsNullIndexKey) {
+        if (isNullKeyValue(node)) {
             keyPTarget.putNull();
             return true;
         }
+        ValueSource value = constantKeyValue(node);
         if (value == null)
             return false;
         TInstance type;
@@ -554,6 +719,45 @@ public abstract class CostEstimator implements TableRowCounts
         return true;
     }
 
+    /** Encode a comparand of the given column the way a single-column index on it would. */
+    protected boolean encodeKeyValue(ExpressionNode node, Column column) {
+        if (isNullKeyValue(node)) {
+            keyPTarget.putNull();
+            return true;
+        }
+        ValueSource value = constantKeyValue(node);
+        if (value == null)
+            return false;
+        column.getType().writeCollating(value, keyPTarget);
+        return true;
+    }
+
+    private static boolean isNullKeyValue(ExpressionNode node) {
+        if (node instanceof ConstantExpression) {
+            return (node.getPreptimeValue() != null) && (node.getType() == null); // Literal null
+        }
+        else if (node instanceof ParameterExpression && ((ParameterExpression)node).isSet()) {
+            return (((ParameterExpression)node).getValue() == null);
+        }
+        else {
+            return (node instanceof IsNullIndexKey);
+        }
+    }
+
+    /** The value of a constant or bound parameter, else <code>null</code>. */
+    private static ValueSource constantKeyValue(ExpressionNode node) {
+        if (node instanceof ConstantExpression) {
+            if (node.getPreptimeValue() != null) {
+                return node.getPreptimeValue().value();
+            }
+        }
+        else if (node instanceof ParameterExpression && ((ParameterExpression)node).isSet()) {
+            return ValueSources.fromObject(((ParameterExpression)node).getValue(),
+                    node.getPreptimeValue().type()).value();
+        }
+        return null;
+    }
+
     private byte[] keyCopy()
     {
         byte[] keyBytes = new byte[key.getEncodedSize()];
@@ -561,6 +765,61 @@ public abstract class CostEstimator implements TableRowCounts
         return keyBytes;
     }
 
+    /** Choose up to <code>nparts - 1</code> values of the leading
+     * column of the given index that divide it into about equally
+     * sized ranges, according to its histogram. Returns
+     * <code>null</code> if there are no statistics or the values
+     * cannot be recovered from the index keys.
+     */
+    public List<ValueSource> indexSplitPoints(Index index, int nparts) {
+        IndexColumn indexColumn = index.getKeyColumns().get(0);
+        if (Boolean.FALSE.equals(indexColumn.isAscending()) ||
+            !indexColumn.isRecoverable())
+            return null;
+        Column column = indexColumn.getColumn();
+        IndexStatistics indexStatistics = getIndexStatistics(index);
+        if (indexStatistics == null)
+            return null;
+        Histogram histogram = indexStatistics.getHistogram(0, 1);
+        if (histogram == null)
+            return null;
+        List<HistogramEntry> entries = histogram.getEntries();
+        long total = 0;
+        for (HistogramEntry entry : entries) {
+            total += entry.getLessCount() + entry.getEqualCount();
+        }
+        TInstance type = column.getType();
+        PersistitKeyValueSource keySource = new PersistitKeyValueSource(type);
+        List<ValueSource> result = new ArrayList<>(nparts - 1);
+        long before = 0;
+        int part = 1;
+        for (HistogramEntry entry : entries) {
+            if (part >= nparts)
+                break;
+            long target = total * part / nparts;
+            if (before + entry.getLessCount() >= target) {
+                byte[] bytes = entry.getKeyBytes();
+                key.clear();
+                key.setEncodedSize(bytes.length);
+                System.arraycopy(bytes, 0, key.getEncodedBytes(), 0, bytes.length);
+                keySource.attach(key, 0, type);
+                if (!keySource.isNull()) {
+                    Value value = new Value(type);
+                    ValueTargets.copyFrom(keySource, value);
+                    result.add(value);
+                }
+                // Skip any other targets that fall within this entry.
+                before += entry.getLessCount() + entry.getEqualCount();
+                while ((part < nparts) && (total * part / nparts <= before))
+                    part++;
+            }
+            else {
+                before += entry.getLessCount() + entry.getEqualCount();
+            }
+        }
+        return result;
+    }
+
     /** Estimate the cost of intersecting a left-deep multi-index intersection. */
     public CostEstimate costIndexIntersection(MultiIndexIntersectScan intersection, IndexIntersectionCoster coster)
     {
@@ -895,8 +1154,29 @@ public abstract class CostEstimator implements TableRowCounts
     }
 
     public double conditionsSelectivity(SelectivityConditions conditions) {
-        double selectivity = 1.0;
+        // Equalities on columns analyzed together first.
+        List<ColumnExpression> eqEntries = new ArrayList<>();
+        List<Column> eqColumns = new ArrayList<>();
+        List<ExpressionNode> eqExprs = new ArrayList<>();
         for (ColumnExpression entry : conditions.getColumns()) {
+            for (ConditionExpression cond : conditions.getConditions(entry)) {
+                if ((cond instanceof ComparisonCondition) &&
+                    (((ComparisonCondition)cond).getOperation() == Comparison.EQ)) {
+                    eqEntries.add(entry);
+                    eqColumns.add(entry.getColumn());
+                    eqExprs.add(((ComparisonCondition)cond).getRight());
+                    break;
+                }
+            }
+        }
+        boolean[] eqCovered = new boolean[eqEntries.size()];
+        double selectivity = columnGroupsFractionEqual(eqColumns, eqExprs, eqCovered);
+        Set<ColumnExpression> covered = new HashSet<>();
+        for (int i = 0; i < eqCovered.length; i++) {
+            if (eqCovered[i]) covered.add(eqEntries.get(i));
+        }
+        for (ColumnExpression entry : conditions.getColumns()) {
+            if (covered.contains(entry)) continue;
             Index index = null;
             IndexStatistics indexStatistics = null;
             Column column = entry.getColumn();
@@ -924,7 +1204,12 @@ public abstract class CostEstimator implements TableRowCounts
                     }
                 }
             }
-            if (indexStatistics == null) continue;
+            ColumnStatistics columnStatistics = null;
+            if (indexStatistics == null) {
+                // No histogram, but maybe statistics from scanning the table.
+                columnStatistics = getColumnStatistics(column);
+                if (columnStatistics == null) continue;
+            }
             ExpressionNode eq = null, ne = null, lo = null, hi = null;
             boolean loInc = false, hiInc = false;
             List<ExpressionNode> in = null;
@@ -960,6 +1245,10 @@ public abstract class CostEstimator implements TableRowCounts
                     in = ((InListCondition)cond).getExpressions();
                 }
             }
+            if (columnStatistics != null) {
+                selectivity *= columnSelectivity(column, columnStatistics, eq, ne, in);
+                continue;
+            }
             Histogram histogram = indexStatistics.getHistogram(0, 1);
             if (eq != null) {
                 selectivity *= fractionEqual(column, index, histogram, eq);
@@ -980,6 +1269,27 @@ public abstract class CostEstimator implements TableRowCounts
         return selectivity;
     }
 
+    /** Selectivity of equality conditions from column statistics.
+     * Without a histogram, ranges are not estimated.
+     */
+    protected double columnSelectivity(Column column, ColumnStatistics columnStatistics,
+                                       ExpressionNode eq, ExpressionNode ne,
+                                       List<ExpressionNode> in) {
+        if (eq != null)
+            return fractionEqual(column, columnStatistics, eq);
+        else if (ne != null)
+            return 1.0 - fractionEqual(column, columnStatistics, ne);
+        else if (in != null) {
+            double fraction = 0.0;
+            for (ExpressionNode expr : in) {
+                fraction += fractionEqual(column, columnStatistics, expr);
+            }
+            return Math.min(fraction, 1.0);
+        }
+        else
+            return 1.0;
+    }
+
     /** Estimate the cost of a sort of the given size. */
     public CostEstimate costSort(long size) {
         return new CostEstimate(size, model.sort((int)size, false));
@@ -991,6 +1301,13 @@ public abstract class CostEstimator implements TableRowCounts
                                 model.sortWithLimit((int)size, nfields));
     }
 
+    /** Estimate the cost of aggregating the given number of rows by
+     * hashing their <code>nkeys</code> GROUP BY columns.
+     */
+    public CostEstimate costHashAggregate(long size, int nkeys, boolean spill) {
+        return new CostEstimate(size, model.hashAggregate((int)size, nkeys, spill));
+    }
+
     /** Estimate cost of scanning the whole group. */
     // TODO: Need to account for tables actually wanted?
     public CostEstimate costGroupScan(Group group) {
@@ -1110,13 +1427,34 @@ public abstract class CostEstimator implements TableRowCounts
                                      int joinColumns,
                                      int outerColumnCount,
                                      int innerColumnCount) {
+        return costHashJoin(loaderCost, outerCost, lookupCost, joinColumns,
+                            outerColumnCount, innerColumnCount, false);
+    }
+
+    /** Estimate the cost of a hash join, including writing the hash
+     * table and the probe rows to temporary files and reading them back
+     * if <code>spill</code>.
+     */
+    public CostEstimate costHashJoin(CostEstimate loaderCost,
+                                     CostEstimate outerCost,
+                                     CostEstimate lookupCost,
+                                     int joinColumns,
+                                     int outerColumnCount,
+                                     int innerColumnCount,
+                                     boolean spill) {
         CostEstimate estimate = outerCost.nest(lookupCost);
-        estimate = new CostEstimate(estimate.getRowCount(),
-                                    loaderCost.getCost() +
-                                    model.loadHashTable((int)loaderCost.getRowCount(),
-                                                        joinColumns,
-                                                        outerColumnCount) +
-                                    estimate.getCost());
+        double cost = loaderCost.getCost() +
+                      model.loadHashTable((int)loaderCost.getRowCount(),
+                                          joinColumns,
+                                          outerColumnCount) +
+                      estimate.getCost();
+        if (spill) {
+            cost += model.spillHashTable((int)loaderCost.getRowCount(),
+                                         (int)outerCost.getRowCount(),
+                                         innerColumnCount,
+                                         outerColumnCount);
+        }
+        estimate = new CostEstimate(estimate.getRowCount(), cost);
         return adjustCostEstimate(estimate);
     }
 
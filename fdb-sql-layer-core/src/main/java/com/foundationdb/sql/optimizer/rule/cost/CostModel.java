@@ -158,6 +158,21 @@ public abstract class CostModel
                          (nCols * HASH_TABLE_COLUMN_COUNT_OFFSET)));
     }
 
+    /** The probe side is partitioned like the table, so both are written
+     * out and read back once, rather than a partition per probe.
+     */
+    public double spillHashTable(int nLoaderRows, int nProbeRows, int nLoaderCols, int nProbeCols) {
+        return (nLoaderRows * (HASH_TABLE_SPILL_PER_ROW + nLoaderCols * HASH_TABLE_COLUMN_COUNT_OFFSET) +
+                nProbeRows * (HASH_TABLE_SPILL_PER_ROW + HASH_TABLE_SPILL_PROBE_PER_ROW +
+                              nProbeCols * HASH_TABLE_COLUMN_COUNT_OFFSET));
+    }
+
+    public double hashAggregate(int nRows, int nKeys, boolean spill) {
+        return (nRows * (HASH_TABLE_LOAD_PER_ROW +
+                         ((nKeys - 1) * HASH_TABLE_DIFF_PER_JOIN) +
+                         (spill ? HASH_TABLE_SPILL_PER_ROW : 0)));
+    }
+
     private double hKeyBoundGroupScanSingleRow(TableRowType rootTableRowType)
     {
         TreeStatistics treeStatistics = treeStatistics(rootTableRowType);
@@ -56,5 +56,9 @@ public interface CostModelMeasurements
     final double HASH_TABLE_SCAN_PER_ROW =  .18;
     final double HASH_TABLE_DIFF_PER_JOIN = .144;
     final double HASH_TABLE_COLUMN_COUNT_OFFSET = .0001;
+    // Estimated from SortCT temp file costs, not measured separately
+    final double HASH_TABLE_SPILL_PER_ROW = 2;
+    // Partition and filter check for each probe of a spilled table
+    final double HASH_TABLE_SPILL_PROBE_PER_ROW = .5;
 
 }
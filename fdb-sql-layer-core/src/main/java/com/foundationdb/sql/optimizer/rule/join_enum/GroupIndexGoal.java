@@ -1548,7 +1548,11 @@ public class GroupIndexGoal implements Comparator<BaseScan>
                 FullTextScan textScan = (FullTextScan)scan;
                 installConditions(textScan.getConditions(), conditionSources);
                 conditionsToRemove = textScan.getConditions();
-                if (conditions.isEmpty()) {
+                // Lucene only returns the top hits when nothing can
+                // reorder or drop them before the limit.
+                if (conditions.isEmpty() &&
+                    (tables.getRoot().getFirstChild() == null) &&
+                    queryGoal.isLimitDirectlyOver(tables)) {
                     textScan.setLimit((int)queryGoal.getLimit());
                 }
             }
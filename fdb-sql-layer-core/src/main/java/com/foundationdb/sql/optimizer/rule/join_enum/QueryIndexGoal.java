@@ -155,6 +155,28 @@ public class QueryIndexGoal
         }
     }
 
+    /** If GROUP BY is still going to need a sort, see whether hashing
+     * the <code>inputCost</code> rows would be cheaper than sorting
+     * them and aggregating the runs.
+     */
+    public void installHashAggregate(CostEstimate inputCost) {
+        if ((grouping == null) || (ordering != null) || (inputCost == null) ||
+            (grouping.getImplementation() != AggregateSource.Implementation.SORT) ||
+            !Boolean.parseBoolean(rulesContext.getProperty("hashAggregate", "false")))
+            return;
+        long nrows = inputCost.getRowCount();
+        int nkeys = grouping.getNGroupBy();
+        // Without an estimate of the number of groups, assume the
+        // worst and spill whenever a hash join of the input would.
+        int maxColumnCount = Integer.parseInt(rulesContext.getProperty("hashTableMaxRowCount", "5000"));
+        boolean spill = (nrows * nkeys > maxColumnCount);
+        CostEstimator costEstimator = getCostEstimator();
+        CostEstimate hashCost = costEstimator.costHashAggregate(nrows, nkeys, spill);
+        CostEstimate sortCost = costEstimator.costSort(nrows);
+        if (hashCost.compareTo(sortCost) < 0)
+            grouping.setImplementation(AggregateSource.Implementation.HASH);
+    }
+
     public long getLimit() {
         if ((limit == null) || limit.isOffsetParameter() || limit.isLimitParameter())
             return -1;
@@ -162,4 +184,19 @@ public class QueryIndexGoal
         return (limit.getOffset() + limit.getLimit());
     }
 
+    /** Whether the limit counts rows coming straight from
+     * <code>joinable</code>, with no sorting, grouping, duplicate
+     * removal or further joins in between, so that a scan need not
+     * return more than {@link #getLimit} rows. */
+    public boolean isLimitDirectlyOver(Joinable joinable) {
+        if (getLimit() < 0)
+            return false;
+        PlanNode input = limit.getInput();
+        if (input instanceof Project)
+            input = ((Project)input).getInput();
+        if (input instanceof Select)
+            input = ((Select)input).getInput();
+        return (input == joinable);
+    }
+
 }
@@ -0,0 +1,353 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.sql.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A statement with the literals that only supply values to be stored
+ * replaced by parameters <code>$1</code>, <code>$2</code>, ..., so that
+ * statements differing only in those values can share one compiled plan.
+ *
+ * Only bare literals are replaced: the items of the rows of
+ * <code>INSERT ... VALUES</code> and the right-hand sides of
+ * <code>UPDATE ... SET</code>. Literals anywhere else, such as in a
+ * <code>WHERE</code> clause, can choose index ranges or be folded with
+ * other constants, so they are kept, and are part of the cache key.
+ *
+ * This is lexical: statements are not parsed. Anything not understood
+ * leaves the statement as written.
+ */
+public class NormalizedStatement
+{
+    private final String sql;
+    private final List<String> values;
+
+    private NormalizedStatement(String sql, List<String> values) {
+        this.sql = sql;
+        this.values = values;
+    }
+
+    /** The statement with parameters in place of the replaced literals. */
+    public String getSQL() {
+        return sql;
+    }
+
+    /** The text of each replaced literal, in parameter order, as a client
+     * would send it to bind the parameter: strings without quotes. */
+    public List<String> getValues() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return sql + " " + values;
+    }
+
+    /** Normalize <code>sql</code>, or return <code>null</code> if there
+     * are no literals to replace. */
+    public static NormalizedStatement normalize(String sql) {
+        List<Token> tokens = tokenize(sql);
+        if ((tokens == null) || tokens.isEmpty())
+            return null;
+        for (int i = 0; i < tokens.size() - 1; i++) {
+            if (tokens.get(i).isPunct(';'))
+                return null;        // More than one statement.
+        }
+        List<Token> replace = new ArrayList<>();
+        if (tokens.get(0).isWord("INSERT"))
+            insertValues(tokens, replace);
+        else if (tokens.get(0).isWord("UPDATE"))
+            updateSet(tokens, replace);
+        if (replace.isEmpty())
+            return null;
+        StringBuilder str = new StringBuilder();
+        List<String> values = new ArrayList<>(replace.size());
+        int pos = 0;
+        for (Token token : replace) {
+            str.append(sql, pos, token.start);
+            values.add(token.value(sql));
+            str.append('$').append(values.size());
+            pos = token.end;
+        }
+        str.append(sql, pos, sql.length());
+        return new NormalizedStatement(str.toString(), Collections.unmodifiableList(values));
+    }
+
+    /** The literal items of each row after a top-level <code>VALUES</code>. */
+    private static void insertValues(List<Token> tokens, List<Token> replace) {
+        int i = 1;
+        while (true) {
+            if (i >= tokens.size())
+                return;
+            Token token = tokens.get(i++);
+            if (token.depth > 0)
+                continue;
+            if (token.isWord("VALUES"))
+                break;
+            if (token.isWord("SELECT"))
+                return;
+        }
+        while ((i < tokens.size()) && tokens.get(i).isPunct('(')) {
+            int rowDepth = tokens.get(i).depth;
+            i++;
+            while (true) {
+                int itemStart = i;
+                while ((i < tokens.size()) &&
+                       !((tokens.get(i).depth == rowDepth) &&
+                         (tokens.get(i).isPunct(',') || tokens.get(i).isPunct(')'))))
+                    i++;
+                if (i >= tokens.size())
+                    return;
+                Token literal = literalItem(tokens, itemStart, i);
+                if (literal != null)
+                    replace.add(literal);
+                if (tokens.get(i++).isPunct(')'))
+                    break;
+            }
+            if ((i < tokens.size()) && tokens.get(i).isPunct(',') && (tokens.get(i).depth == 0))
+                i++;
+            else
+                return;
+        }
+    }
+
+    /** The literal right-hand sides of the assignments after a top-level <code>SET</code>. */
+    private static void updateSet(List<Token> tokens, List<Token> replace) {
+        int i = 1;
+        while (true) {
+            if (i >= tokens.size())
+                return;
+            Token token = tokens.get(i++);
+            if ((token.depth == 0) && token.isWord("SET"))
+                break;
+        }
+        while (true) {
+            while ((i < tokens.size()) && !((tokens.get(i).depth == 0) && tokens.get(i).isPunct('=')))
+                i++;
+            if (i >= tokens.size())
+                return;
+            int itemStart = ++i;
+            while ((i < tokens.size()) &&
+                   !((tokens.get(i).depth == 0) &&
+                     (tokens.get(i).isPunct(',') || tokens.get(i).isPunct(';') ||
+                      tokens.get(i).isWord("WHERE") || tokens.get(i).isWord("RETURNING"))))
+                i++;
+            Token literal = literalItem(tokens, itemStart, i);
+            if (literal != null)
+                replace.add(literal);
+            if ((i >= tokens.size()) || !tokens.get(i).isPunct(','))
+                return;
+            i++;
+        }
+    }
+
+    /** The tokens from <code>start</code> to <code>end</code> as a single
+     * literal, including any sign, or <code>null</code>. */
+    private static Token literalItem(List<Token> tokens, int start, int end) {
+        if (end - start == 1) {
+            Token token = tokens.get(start);
+            if ((token.type == TokenType.NUMBER) || (token.type == TokenType.STRING))
+                return token;
+        }
+        else if (end - start == 2) {
+            Token sign = tokens.get(start);
+            Token number = tokens.get(start + 1);
+            if ((sign.isPunct('-') || sign.isPunct('+')) &&
+                (number.type == TokenType.NUMBER) && (number.start == sign.end))
+                return new Token(TokenType.NUMBER, sign.start, number.end, sign.depth);
+        }
+        return null;
+    }
+
+    enum TokenType { WORD, NUMBER, STRING, QUOTED, PUNCT }
+
+    static class Token {
+        final TokenType type;
+        final int start, end, depth;
+
+        Token(TokenType type, int start, int end, int depth) {
+            this.type = type;
+            this.start = start;
+            this.end = end;
+            this.depth = depth;
+        }
+
+        boolean isWord(String word) {
+            return false;
+        }
+
+        boolean isPunct(char ch) {
+            return false;
+        }
+
+        String value(String sql) {
+            if (type == TokenType.STRING)
+                return sql.substring(start + 1, end - 1).replace("''", "'");
+            if (sql.charAt(start) == '+')
+                return sql.substring(start + 1, end);
+            return sql.substring(start, end);
+        }
+    }
+
+    static class WordToken extends Token {
+        final String word;
+
+        WordToken(String sql, int start, int end, int depth) {
+            super(TokenType.WORD, start, end, depth);
+            this.word = sql.substring(start, end);
+        }
+
+        @Override
+        boolean isWord(String word) {
+            return this.word.equalsIgnoreCase(word);
+        }
+    }
+
+    static class PunctToken extends Token {
+        final char ch;
+
+        PunctToken(char ch, int start, int depth) {
+            super(TokenType.PUNCT, start, start + 1, depth);
+            this.ch = ch;
+        }
+
+        @Override
+        boolean isPunct(char ch) {
+            return this.ch == ch;
+        }
+    }
+
+    /** Split into tokens, skipping whitespace and comments, or return
+     * <code>null</code> for anything that should be left alone: parameters,
+     * prefixed strings such as <code>E'...'</code>, or unbalanced text. */
+    static List<Token> tokenize(String sql) {
+        List<Token> tokens = new ArrayList<>();
+        int depth = 0;
+        int len = sql.length();
+        int i = 0;
+        while (i < len) {
+            char ch = sql.charAt(i);
+            int start = i;
+            if (Character.isWhitespace(ch)) {
+                i++;
+            }
+            else if ((ch == '-') && (i + 1 < len) && (sql.charAt(i + 1) == '-')) {
+                while ((i < len) && (sql.charAt(i) != '\n'))
+                    i++;
+            }
+            else if ((ch == '/') && (i + 1 < len) && (sql.charAt(i + 1) == '*')) {
+                int nest = 1;
+                i += 2;
+                while (nest > 0) {
+                    if (i + 1 >= len)
+                        return null;
+                    if ((sql.charAt(i) == '/') && (sql.charAt(i + 1) == '*')) {
+                        nest++;
+                        i += 2;
+                    }
+                    else if ((sql.charAt(i) == '*') && (sql.charAt(i + 1) == '/')) {
+                        nest--;
+                        i += 2;
+                    }
+                    else {
+                        i++;
+                    }
+                }
+            }
+            else if (ch == '\'') {
+                if (!tokens.isEmpty() && (tokens.get(tokens.size() - 1).end == start) &&
+                    (tokens.get(tokens.size() - 1).type == TokenType.WORD))
+                    return null;    // E'...', X'...', N'...' and the like.
+                i++;
+                while (true) {
+                    if (i >= len)
+                        return null;
+                    if (sql.charAt(i) == '\'') {
+                        if ((i + 1 < len) && (sql.charAt(i + 1) == '\''))
+                            i += 2;
+                        else
+                            break;
+                    }
+                    else if (sql.charAt(i) == '\\') {
+                        return null; // Backslash escapes depend on settings.
+                    }
+                    else {
+                        i++;
+                    }
+                }
+                i++;
+                tokens.add(new Token(TokenType.STRING, start, i, depth));
+            }
+            else if ((ch == '"') || (ch == '`')) {
+                i = sql.indexOf(ch, i + 1);
+                if (i < 0)
+                    return null;
+                i++;
+                tokens.add(new Token(TokenType.QUOTED, start, i, depth));
+            }
+            else if (Character.isDigit(ch) ||
+                     ((ch == '.') && (i + 1 < len) && Character.isDigit(sql.charAt(i + 1)))) {
+                boolean point = false;
+                while ((i < len) && (Character.isDigit(sql.charAt(i)) || (sql.charAt(i) == '.'))) {
+                    if (sql.charAt(i) == '.') {
+                        if (point)
+                            return null;
+                        point = true;
+                    }
+                    i++;
+                }
+                if ((i < len) && ((sql.charAt(i) == 'e') || (sql.charAt(i) == 'E'))) {
+                    i++;
+                    if ((i < len) && ((sql.charAt(i) == '-') || (sql.charAt(i) == '+')))
+                        i++;
+                    while ((i < len) && Character.isDigit(sql.charAt(i)))
+                        i++;
+                }
+                if ((i < len) && (Character.isLetter(sql.charAt(i)) || (sql.charAt(i) == '_')))
+                    return null;    // 0x1F, 1abc, ...
+                tokens.add(new Token(TokenType.NUMBER, start, i, depth));
+            }
+            else if (Character.isLetter(ch) || (ch == '_')) {
+                while ((i < len) &&
+                       (Character.isLetterOrDigit(sql.charAt(i)) || (sql.charAt(i) == '_') || (sql.charAt(i) == '$')))
+                    i++;
+                tokens.add(new WordToken(sql, start, i, depth));
+            }
+            else if ((ch == '?') || (ch == '$')) {
+                return null;        // Already has parameters.
+            }
+            else {
+                // Parentheses are at the depth of what they enclose.
+                if (ch == '(')
+                    depth++;
+                else if ((ch == ')') && (depth == 0))
+                    return null;
+                tokens.add(new PunctToken(ch, start, depth));
+                if (ch == ')')
+                    depth--;
+                i++;
+            }
+        }
+        if (depth != 0)
+            return null;
+        return tokens;
+    }
+}
@@ -17,50 +17,208 @@
 
 package com.foundationdb.sql.server;
 
-import com.foundationdb.server.util.LRUCacheMap;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Cache of parsed statements.
+ *
+ * Lookups do not take a lock shared with other sessions. Least
+ * recently used entries are evicted over capacity.
+ *
+ * Statements are cached either under their text as given or, for a
+ * {@link NormalizedStatement}, under the text with parameters in place
+ * of its literals. The two are kept apart: a statement prepared by a
+ * client can have parameter types the client chose.
  */
 public class ServerStatementCache<T extends ServerStatement>
 {
     private final CacheCounters counters;
-    private final LRUCacheMap<String,T> cache;
+    private volatile int capacity;
+    private volatile Cache<Object,Entry<T>> cache;
 
     public ServerStatementCache(CacheCounters counters, int size) {
         this.counters = counters;
-        this.cache = new LRUCacheMap<>(size);
+        this.capacity = size;
+        this.cache = newCache(size);
+    }
+
+    private static <T extends ServerStatement> Cache<Object,Entry<T>> newCache(int size) {
+        return CacheBuilder.newBuilder().maximumSize(Math.max(size, 0)).build();
     }
 
     public int getCapacity() {
-        return cache.getCapacity();
+        return capacity;
     }
 
     public synchronized void setCapacity(int capacity) {
-        cache.setCapacity(capacity);
-        cache.clear();
+        Cache<Object,Entry<T>> old = cache;
+        this.capacity = capacity;
+        this.cache = newCache(capacity);
+        old.invalidateAll();
     }
 
-    public synchronized T get(String sql) {
-        T entry = cache.get(sql);
-        if (entry != null)
+    public T get(String sql) {
+        return lookup(sql);
+    }
+
+    /** Get the statement compiled for the normalized form of a statement. */
+    public T get(NormalizedStatement normalized) {
+        return lookup(new NormalizedKey(normalized.getSQL()));
+    }
+
+    private T lookup(Object key) {
+        Entry<T> entry = cache.getIfPresent(key);
+        if (entry != null) {
             counters.incrementHits();
-        else
+            entry.hits.incrementAndGet();
+            return entry.statement;
+        }
+        else {
             counters.incrementMisses();
-        return entry;
+            return null;
+        }
     }
 
-    public synchronized void put(String sql, T stmt) {
-        // TODO: Count number of times this is non-null, meaning that
+    public void put(String sql, T stmt) {
+        put(sql, stmt, 0, 1);
+    }
+
+    /** Cache a statement that took <code>compileNanos</code> to generate
+     * and has <code>planSize</code> operators. */
+    public void put(String sql, T stmt, long compileNanos, int planSize) {
+        // TODO: Count number of times this replaces an entry, meaning that
         // two threads computed the same statement?
-        cache.put(sql, stmt);
+        cache.put(sql, new Entry<>(stmt, compileNanos, planSize));
+    }
+
+    /** Cache the statement compiled for the normalized form of a statement. */
+    public void put(NormalizedStatement normalized, T stmt, long compileNanos, int planSize) {
+        cache.put(new NormalizedKey(normalized.getSQL()), new Entry<>(stmt, compileNanos, planSize));
+    }
+
+    public int size() {
+        return (int)cache.size();
+    }
+
+    /** Total size of the cached plans, in operators: a proxy for their memory. */
+    public long getPlanSize() {
+        long total = 0;
+        for (Entry<T> entry : cache.asMap().values()) {
+            total += entry.planSize;
+        }
+        return total;
+    }
+
+    /** Statistics for each statement currently cached. */
+    public List<EntryStatistics> getStatistics() {
+        List<EntryStatistics> result = new ArrayList<>();
+        for (Map.Entry<Object,Entry<T>> entry : cache.asMap().entrySet()) {
+            result.add(new EntryStatistics(entry.getKey().toString(),
+                                           entry.getKey() instanceof NormalizedKey,
+                                           entry.getValue().hits.get(),
+                                           entry.getValue().compileNanos,
+                                           entry.getValue().planSize));
+        }
+        return result;
     }
 
-    public synchronized void invalidate() {
-        cache.clear();
+    public void invalidate() {
+        cache.invalidateAll();
     }
 
-    public synchronized void reset() {
-        cache.clear();
+    public void reset() {
+        cache.invalidateAll();
+    }
+
+    static class Entry<T> {
+        final T statement;
+        final long compileNanos;
+        final int planSize;
+        final AtomicLong hits = new AtomicLong();
+
+        Entry(T statement, long compileNanos, int planSize) {
+            this.statement = statement;
+            this.compileNanos = compileNanos;
+            this.planSize = planSize;
+        }
+    }
+
+    static final class NormalizedKey {
+        final String sql;
+
+        NormalizedKey(String sql) {
+            this.sql = sql;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return (other instanceof NormalizedKey) && sql.equals(((NormalizedKey)other).sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return sql.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return sql;
+        }
+    }
+
+    public static class EntryStatistics {
+        private final String sql;
+        private final boolean normalized;
+        private final long hits;
+        private final long compileNanos;
+        private final int planSize;
+
+        public EntryStatistics(String sql, boolean normalized, long hits, long compileNanos, int planSize) {
+            this.sql = sql;
+            this.normalized = normalized;
+            this.hits = hits;
+            this.compileNanos = compileNanos;
+            this.planSize = planSize;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        /** Whether this is shared by statements differing in their literals. */
+        public boolean isNormalized() {
+            return normalized;
+        }
+
+        /** Number of times this statement was reused. */
+        public long getHits() {
+            return hits;
+        }
+
+        /** Time taken to generate this statement when it was cached. */
+        public long getCompileNanos() {
+            return compileNanos;
+        }
+
+        /** Number of operators in the statement's plan. */
+        public int getPlanSize() {
+            return planSize;
+        }
+
+        /** Generation time saved by its reuse so far. */
+        public long getSavedNanos() {
+            return hits * compileNanos;
+        }
+
+        @Override
+        public String toString() {
+            return sql + " [" + hits + " hits, " + compileNanos + " ns, " + planSize + " operators]";
+        }
     }
 }
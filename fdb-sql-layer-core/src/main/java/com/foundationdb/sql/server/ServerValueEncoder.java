@@ -75,7 +75,7 @@ public class ServerValueEncoder
     
     private final TypesTranslator typesTranslator;
     private final String encoding;
-    private ZeroDateTimeBehavior zeroDateTimeBehavior;
+    private final ZeroDateTimeBehavior zeroDateTimeBehavior;
     private FormatOptions options;
     private final ByteArrayOutputStream byteStream;
     private final PrintWriter printWriter;
@@ -88,15 +88,22 @@ public class ServerValueEncoder
 
     public ServerValueEncoder(TypesTranslator typesTranslator, String encoding, 
                               ZeroDateTimeBehavior zeroDateTimeBehavior, FormatOptions options) {
-        this(typesTranslator, encoding, options);
-        this.zeroDateTimeBehavior = zeroDateTimeBehavior;
+        this(typesTranslator, encoding, new ByteArrayOutputStream(), zeroDateTimeBehavior, options);
     }
 
     public ServerValueEncoder(TypesTranslator typesTranslator, String encoding, ByteArrayOutputStream byteStream, 
                               FormatOptions options) {
+        this(typesTranslator, encoding, byteStream, ZeroDateTimeBehavior.NONE, options);
+    }
+
+    /** Encode into <code>byteStream</code>, which can be a caller's
+     * own buffer for use with {@link #appendEncodedValue}. */
+    public ServerValueEncoder(TypesTranslator typesTranslator, String encoding, ByteArrayOutputStream byteStream, 
+                              ZeroDateTimeBehavior zeroDateTimeBehavior, FormatOptions options) {
         this.typesTranslator = typesTranslator;
         this.encoding = encoding;
         this.byteStream = byteStream;
+        this.zeroDateTimeBehavior = zeroDateTimeBehavior;
         this.options = options;
         try {
             printWriter = new PrintWriter(new OutputStreamWriter(byteStream, encoding));
@@ -140,8 +147,22 @@ public class ServerValueEncoder
      */
     public ByteArrayOutputStream encodeValue(ValueSource value, ServerType type,
                                              boolean binary) throws IOException {
-        if (value.isNull())
+        reset();
+        if (!appendEncodedValue(value, type, binary))
             return null;
+        return getByteStream();
+    }
+
+    /**
+     * Append the encoding of the given value to whatever is already
+     * in the buffer, with no intermediate copy.
+     * @return <code>false</code> if the value is encoded as null, in
+     * which case nothing was appended.
+     */
+    public boolean appendEncodedValue(ValueSource value, ServerType type,
+                                      boolean binary) throws IOException {
+        if (value.isNull())
+            return false;
         if ((zeroDateTimeBehavior != ZeroDateTimeBehavior.NONE) &&
             (((type.getType().typeClass() == MDateAndTime.DATE) &&
               (value.getInt32() == 0)) ||
@@ -156,12 +177,17 @@ public class ServerValueEncoder
                         : ROUND_ZERO_DATE_SOURCE;
                 break;
             case CONVERT_TO_NULL:
-                return null;
+                return false;
             }
         }
-        reset();
-        appendValue(value, type, binary);
-        return getByteStream();
+        try {
+            appendValue(value, type, binary);
+        }
+        finally {
+            // Even a partial value goes where the caller can discard it.
+            printWriter.flush();
+        }
+        return true;
     }
 
     /** Encode the given direct value. */
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveLookaheadTest
+{
+    private static final long SLOW = AdaptiveLookahead.WAIT_NANOS * 10;
+    private static final long FAST = 0;
+
+    @Test
+    public void startsAtInitial() {
+        assertEquals(5, new AdaptiveLookahead(5, 50).get());
+        assertEquals(50, new AdaptiveLookahead(500, 50).get());
+        assertEquals(1, new AdaptiveLookahead(0, 50).get());
+    }
+
+    @Test
+    public void defaultInitial() {
+        assertEquals(12, AdaptiveLookahead.defaultInitial(50));
+        assertEquals(1, AdaptiveLookahead.defaultInitial(3));
+        assertEquals(1, AdaptiveLookahead.defaultInitial(1));
+    }
+
+    @Test
+    public void growsWhenWaiting() {
+        AdaptiveLookahead lookahead = new AdaptiveLookahead(1, 50);
+        lookahead.firstRow(SLOW);
+        assertEquals(2, lookahead.get());
+        lookahead.firstRow(SLOW);
+        assertEquals(4, lookahead.get());
+        for (int i = 0; i < 10; i++) {
+            lookahead.firstRow(SLOW);
+        }
+        assertEquals(50, lookahead.get());
+    }
+
+    @Test
+    public void shrinksWhenReady() {
+        AdaptiveLookahead lookahead = new AdaptiveLookahead(40, 50);
+        for (int i = 0; i < 39; i++) {
+            lookahead.firstRow(FAST);
+        }
+        assertEquals(40, lookahead.get());
+        lookahead.firstRow(FAST);
+        assertEquals(30, lookahead.get());
+        for (int i = 0; i < 1000; i++) {
+            lookahead.firstRow(FAST);
+        }
+        assertEquals(1, lookahead.get());
+    }
+
+    @Test
+    public void waitingResetsReady() {
+        AdaptiveLookahead lookahead = new AdaptiveLookahead(4, 50);
+        for (int i = 0; i < 3; i++) {
+            lookahead.firstRow(FAST);
+        }
+        lookahead.firstRow(SLOW);
+        assertEquals(8, lookahead.get());
+        for (int i = 0; i < 7; i++) {
+            lookahead.firstRow(FAST);
+        }
+        assertEquals(8, lookahead.get());
+    }
+
+    @Test
+    public void cappedByRowsPerBinding() {
+        AdaptiveLookahead lookahead = new AdaptiveLookahead(50, 50);
+        for (int i = 0; i < 100; i++) {
+            lookahead.bindingRows(10);
+        }
+        int capped = lookahead.get();
+        assertTrue("capped " + capped, (capped >= 4) && (capped <= 6));
+        for (int i = 0; i < 100; i++) {
+            lookahead.bindingRows(1000);
+        }
+        assertEquals(1, lookahead.get());
+        for (int i = 0; i < 100; i++) {
+            lookahead.bindingRows(0);
+        }
+        assertEquals(50, lookahead.get());
+    }
+}
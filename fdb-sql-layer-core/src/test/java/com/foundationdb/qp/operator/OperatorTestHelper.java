@@ -35,14 +35,19 @@ import com.foundationdb.server.service.tree.KeyCreator;
 import com.foundationdb.server.store.Store;
 import com.foundationdb.server.types.TClass;
 import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
+import com.foundationdb.server.types.value.Value;
 import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.value.ValueTargets;
 import com.foundationdb.util.Strings;
 import com.foundationdb.util.tap.InOutTap;
 
 import org.junit.Assert;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
@@ -149,6 +154,101 @@ public final class OperatorTestHelper {
         void check(Row row);
     }
 
+    /** In-memory stable sort, since there is no store to supply the real one. */
+    private static class TestSorter implements Sorter
+    {
+        @Override
+        public RowCursor sort()
+        {
+            final List<Row> rows = new ArrayList<>();
+            final List<Value[]> keys = new ArrayList<>();
+            List<TEvaluatableExpression> evals = new ArrayList<>();
+            for (int i = 0; i < ordering.sortColumns(); i++) {
+                TEvaluatableExpression eval = ordering.expression(i).build();
+                eval.with(context);
+                eval.with(bindings);
+                evals.add(eval);
+            }
+            for (Row row = input.next(); row != null; row = input.next()) {
+                Value[] key = new Value[evals.size()];
+                for (int i = 0; i < key.length; i++) {
+                    TEvaluatableExpression eval = evals.get(i);
+                    eval.with(row);
+                    eval.evaluate();
+                    key[i] = new Value(ordering.type(i));
+                    ValueTargets.copyFrom(eval.resultValue(), key[i]);
+                }
+                rows.add(row);
+                keys.add(key);
+            }
+            Integer[] order = new Integer[rows.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer i1, Integer i2) {
+                    return compareKeys(keys.get(i1), keys.get(i2));
+                }
+            });
+            final List<Row> sorted = new ArrayList<>();
+            Value[] last = null;
+            for (Integer i : order) {
+                if ((limit >= 0) && (sorted.size() >= limit)) {
+                    break;
+                }
+                if ((sortOption == API.SortOption.SUPPRESS_DUPLICATES) &&
+                    (last != null) && (compareKeys(last, keys.get(i)) == 0)) {
+                    continue;
+                }
+                sorted.add(rows.get(i));
+                last = keys.get(i);
+            }
+            return new RowCursorImpl() {
+                @Override
+                public Row next() {
+                    return (position < sorted.size()) ? sorted.get(position++) : null;
+                }
+
+                private int position = 0;
+            };
+        }
+
+        @Override
+        public void close()
+        {
+        }
+
+        private int compareKeys(Value[] key1, Value[] key2)
+        {
+            for (int i = 0; i < key1.length; i++) {
+                int c = TClass.compare(key1[i], key2[i]);
+                if (c != 0) {
+                    return ordering.ascending(i) ? c : -c;
+                }
+            }
+            return 0;
+        }
+
+        TestSorter(QueryContext context, QueryBindings bindings, RowCursor input,
+                   API.Ordering ordering, API.SortOption sortOption, int limit)
+        {
+            this.context = context;
+            this.bindings = bindings;
+            this.input = input;
+            this.ordering = ordering;
+            this.sortOption = sortOption;
+            this.limit = limit;
+        }
+
+        private final QueryContext context;
+        private final QueryBindings bindings;
+        private final RowCursor input;
+        private final API.Ordering ordering;
+        private final API.SortOption sortOption;
+        private final int limit;
+    }
+
     private static class TestAdapter extends StoreAdapter
     {
         @Override
@@ -198,9 +298,10 @@ public final class OperatorTestHelper {
                            RowType rowType,
                            API.Ordering ordering,
                            API.SortOption sortOption,
-                           InOutTap loadTap)
+                           InOutTap loadTap,
+                           int limit)
         {
-            throw new UnsupportedOperationException();
+            return new TestSorter(context, bindings, input, ordering, sortOption, limit);
         }
 
         @Override
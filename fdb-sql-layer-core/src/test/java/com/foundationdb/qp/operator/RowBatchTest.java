@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.ProjectedRow;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.types.mcompat.mtypes.MNumeric;
+import com.foundationdb.server.types.texpressions.TPreparedField;
+import static com.foundationdb.qp.operator.API.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RowBatchTest {
+
+    @Test
+    public void fillFromRowCursor() {
+        Cursor cursor = OperatorTestHelper.open(input(10));
+        RowBatch batch = new RowBatch(4);
+        List<Integer> sizes = new ArrayList<>();
+        while (batch.fill(cursor)) {
+            sizes.add(batch.size());
+        }
+        assertEquals(Arrays.asList(4, 4, 2), sizes);
+        assertTrue(batch.isEmpty());
+        cursor.close();
+    }
+
+    @Test
+    public void batchLimit() {
+        RowBatch batch = new RowBatch(4);
+        batch.limit(2);
+        assertEquals(2, batch.limit());
+        batch.limit(10);
+        assertEquals(4, batch.limit());
+        batch.limit(0);
+        assertEquals(1, batch.limit());
+        batch.clear();
+        assertEquals(4, batch.limit());
+    }
+
+    @Test
+    public void scanAndLimit() {
+        Operator plan = limit_Default(input(20), 3, false, 5, false);
+        Cursor cursor = OperatorTestHelper.open(plan);
+        RowBatch batch = new RowBatch(2);
+        assertEquals(Arrays.asList(3, 4, 5, 6, 7), drain(cursor, batch));
+        assertEquals(2, batch.limit());
+        assertTrue(cursor.isIdle());
+        cursor.close();
+    }
+
+    @Test
+    public void skipPastEnd() {
+        Operator plan = limit_Default(input(3), 5, false, 5, false);
+        Cursor cursor = OperatorTestHelper.open(plan);
+        assertEquals(Collections.<Integer>emptyList(), drain(cursor, new RowBatch(2)));
+        cursor.close();
+    }
+
+    @Test
+    public void filter() {
+        Operator input = input(7);
+        Cursor cursor = OperatorTestHelper.open(filter_Default(input, Collections.singleton(input.rowType())));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6), drain(cursor, new RowBatch(3)));
+        cursor.close();
+        Operator other = input(1);
+        cursor = OperatorTestHelper.open(filter_Default(input, Collections.singleton(other.rowType())));
+        RowBatch batch = new RowBatch(3);
+        ((BatchCursor)cursor).nextBatch(batch);
+        assertTrue(batch.isEmpty());
+        assertTrue(cursor.isIdle());
+        cursor.close();
+    }
+
+    @Test
+    public void project() {
+        Operator input = input(5);
+        Operator plan = project_Default(input, input.rowType(),
+                                        Arrays.asList(new TPreparedField(MNumeric.INT.instance(true), 0)));
+        Cursor cursor = OperatorTestHelper.open(plan);
+        RowBatch batch = new RowBatch(5);
+        assertTrue(batch.fill(cursor));
+        for (int i = 0; i < batch.size(); i++) {
+            Row row = batch.get(i);
+            assertTrue(row instanceof ProjectedRow);
+            assertEquals(i, row.value(0).getInt32());
+        }
+        assertFalse(batch.fill(cursor));
+        cursor.close();
+    }
+
+    @Test
+    public void projectWholeBatchValid() {
+        Operator input = input(5);
+        Operator plan = project_Default(input, input.rowType(),
+                                        Arrays.asList(new TPreparedField(MNumeric.INT.instance(true), 0)));
+        Cursor cursor = OperatorTestHelper.open(plan);
+        RowBatch batch = new RowBatch(5);
+        assertTrue(batch.fill(cursor));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), values(batch));
+        // Again, after every row has been evaluated.
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), values(batch));
+        cursor.close();
+    }
+
+    @Test
+    public void fillCopiesSharedRows() {
+        Operator input = input(5);
+        Operator plan = project_Default(input, input.rowType(),
+                                        Arrays.asList(new TPreparedField(MNumeric.INT.instance(true), 0)));
+        Cursor cursor = OperatorTestHelper.open(plan);
+        // Only next(): projected rows from it share their evaluations.
+        Cursor rowAtATime = new ChainedCursor(new SimpleQueryContext(), cursor);
+        assertFalse(rowAtATime instanceof BatchCursor);
+        RowBatch batch = new RowBatch(5);
+        assertTrue(batch.fill(rowAtATime));
+        for (int i = 0; i < batch.size(); i++) {
+            assertFalse(batch.get(i) instanceof ProjectedRow);
+        }
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), values(batch));
+        cursor.close();
+    }
+
+    private static Operator input(int nrows) {
+        RowsBuilder rows = new RowsBuilder(MNumeric.INT.instance(true));
+        for (long i = 0; i < nrows; i++) {
+            rows.row(i);
+        }
+        return new TestOperator(rows);
+    }
+
+    private static List<Integer> values(RowBatch batch) {
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            values.add(batch.get(i).value(0).getInt32());
+        }
+        return values;
+    }
+
+    private static List<Integer> drain(Cursor cursor, RowBatch batch) {
+        assertTrue(cursor instanceof BatchCursor);
+        List<Integer> values = new ArrayList<>();
+        while (batch.fill(cursor)) {
+            assertTrue(batch.toString(), batch.size() <= batch.limit());
+            for (int i = 0; i < batch.size(); i++) {
+                values.add(batch.get(i).value(0).getInt32());
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.util;
+
+import com.foundationdb.qp.operator.RowsBuilder;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.mcompat.mtypes.MNumeric;
+import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
+import com.foundationdb.server.types.texpressions.TPreparedField;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HashTableTest {
+
+    @Test
+    public void collidingHashes() {
+        List<Row> rows = rows(3);
+        HashTable.LongRows longRows = new HashTable.LongRows(1);
+        // Same hash, so same home slot: only the key tells them apart.
+        longRows.add(7, key(1), rows.get(0));
+        longRows.add(7, key(2), rows.get(1));
+        longRows.add(7, key(3), rows.get(2));
+        assertEquals(3, longRows.rowCount());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Arrays.asList(rows.get(i)), chain(longRows, 7, key(i + 1)));
+        }
+        assertEquals(0, longRows.find(7, key(4)));
+        assertEquals(0, longRows.find(8, key(1)));
+    }
+
+    @Test
+    public void resize() {
+        List<Row> rows = rows(1000);
+        HashTable.LongRows longRows = new HashTable.LongRows(1);
+        int initialCapacity = longRows.capacity();
+        for (int i = 0; i < 1000; i++) {
+            // Few distinct hashes, so resizing also has to move collisions.
+            longRows.add(i % 10, key(i), rows.get(i));
+        }
+        assertTrue("grew", longRows.capacity() > initialCapacity);
+        assertEquals(1000, longRows.rowCount());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Arrays.asList(rows.get(i)), chain(longRows, i % 10, key(i)));
+        }
+    }
+
+    @Test
+    public void duplicateChains() {
+        List<Row> rows = rows(100);
+        HashTable.LongRows longRows = new HashTable.LongRows(1);
+        List<Row> evens = new ArrayList<>(), odds = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            // Interleaved, and across a resize.
+            longRows.add(i % 2, key(i % 2), rows.get(i));
+            ((i % 2 == 0) ? evens : odds).add(rows.get(i));
+        }
+        assertEquals(100, longRows.rowCount());
+        assertEquals(evens, chain(longRows, 0, key(0)));
+        assertEquals(odds, chain(longRows, 1, key(1)));
+    }
+
+    @Test
+    public void multiColumnKeys() {
+        RowsBuilder builder = new RowsBuilder(BIGINT, BIGINT, BIGINT);
+        for (long i = 0; i < 100; i++) {
+            builder.row(i / 10, i % 10, i);
+        }
+        List<Row> input = new ArrayList<>(builder.rows());
+        HashTable hashTable = hashTable(false);
+        List<TEvaluatableExpression> fields = fields(0, 1);
+        for (Row row : input) {
+            hashTable.put(row, fields, null);
+        }
+        assertTrue(hashTable.hasLongKeys());
+        for (Row row : input) {
+            assertEquals(Arrays.asList(row), matches(hashTable, row, fields));
+        }
+        // (a, b) and (b, a) are different keys.
+        RowsBuilder probe = new RowsBuilder(BIGINT, BIGINT, BIGINT).row(3L, 4L, null);
+        List<Row> found = matches(hashTable, probe.rows().getFirst(), fields);
+        assertEquals(1, found.size());
+        assertEquals(34L, found.get(0).value(2).getInt64());
+    }
+
+    @Test
+    public void nullKeysSkipped() {
+        RowsBuilder builder = new RowsBuilder(BIGINT, BIGINT)
+            .row(null, 0L)
+            .row(1L, 1L)
+            .row(null, 2L)
+            .row(1L, 3L);
+        List<Row> input = new ArrayList<>(builder.rows());
+        HashTable hashTable = hashTable(false);
+        List<TEvaluatableExpression> fields = fields(0);
+        for (Row row : input) {
+            hashTable.put(row, fields, null);
+        }
+        assertTrue(hashTable.hasLongKeys());
+        assertTrue(matches(hashTable, input.get(0), fields).isEmpty());
+        assertEquals(Arrays.asList(input.get(1), input.get(3)), matches(hashTable, input.get(1), fields));
+    }
+
+    @Test
+    public void nullKeysMatched() {
+        RowsBuilder builder = new RowsBuilder(BIGINT, BIGINT)
+            .row(null, 0L)
+            .row(1L, 1L)
+            .row(null, 2L)
+            .row(1L, 3L);
+        List<Row> input = new ArrayList<>(builder.rows());
+        HashTable hashTable = hashTable(true);
+        List<TEvaluatableExpression> fields = fields(0);
+        for (Row row : input) {
+            hashTable.put(row, fields, null);
+        }
+        assertFalse("generic keys", hashTable.hasLongKeys());
+        assertEquals(Arrays.asList(input.get(0), input.get(2)), matches(hashTable, input.get(0), fields));
+        assertEquals(Arrays.asList(input.get(1), input.get(3)), matches(hashTable, input.get(1), fields));
+    }
+
+    private static List<Row> rows(int n) {
+        RowsBuilder rows = new RowsBuilder(BIGINT);
+        for (long i = 0; i < n; i++) {
+            rows.row(i);
+        }
+        return new ArrayList<>(rows.rows());
+    }
+
+    private static long[] key(long... values) {
+        return values;
+    }
+
+    private static List<Row> chain(HashTable.LongRows longRows, int hash, long[] key) {
+        List<Row> result = new ArrayList<>();
+        for (int position = longRows.find(hash, key); position != 0; position = longRows.nextAt(position)) {
+            result.add(longRows.rowAt(position));
+        }
+        return result;
+    }
+
+    private static HashTable hashTable(boolean matchNulls) {
+        HashTable hashTable = new HashTable();
+        hashTable.setMatchNulls(matchNulls);
+        return hashTable;
+    }
+
+    private static List<TEvaluatableExpression> fields(int... positions) {
+        List<TEvaluatableExpression> result = new ArrayList<>();
+        for (int position : positions) {
+            result.add(new TPreparedField(BIGINT, position).build());
+        }
+        return result;
+    }
+
+    private static List<Row> matches(HashTable hashTable, Row probe, List<TEvaluatableExpression> fields) {
+        HashTable.Matches matches = new HashTable.Matches();
+        hashTable.findMatchingRows(matches, probe, fields, null);
+        List<Row> result = new ArrayList<>();
+        for (Row row = matches.next(); row != null; row = matches.next()) {
+            result.add(row);
+        }
+        return result;
+    }
+
+    private static final TInstance BIGINT = MNumeric.BIGINT.instance(true);
+}
@@ -60,6 +60,7 @@ public class SimpleTableStatusCache implements TableStatusCache {
     {
         private final int tableID;
         private long rowCount;
+        private long modificationCount;
 
         public SimpleTableStatus(int tableID) {
             this.tableID = tableID;
@@ -68,11 +69,18 @@ public class SimpleTableStatusCache implements TableStatusCache {
         @Override
         public synchronized void rowDeleted(Session session) {
             --rowCount;
+            ++modificationCount;
         }
 
         @Override
         public synchronized void rowsWritten(Session session, long count) {
             this.rowCount += count;
+            this.modificationCount += Math.abs(count);
+        }
+
+        @Override
+        public synchronized void rowUpdated(Session session) {
+            ++modificationCount;
         }
 
         @Override
@@ -90,6 +98,11 @@ public class SimpleTableStatusCache implements TableStatusCache {
             return rowCount;
         }
 
+        @Override
+        public synchronized long getModificationCount(Session session) {
+            return modificationCount;
+        }
+
         @Override
         public int getTableID() {
             return tableID;
@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.collation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.ibm.icu.text.Collator;
+
+public class AkCollatorICUTest {
+
+    private static final String[] VALUES = {
+        "abc", "ABC", "Abc", "abd", "a-b", "ab", "a b", "", "\u00e9t\u00e9", "ETE", "ete", "I", "i", "\u0131"
+    };
+
+    @Test
+    public void sortKeysMatchICU() {
+        for (String scheme : new String[] { "en_us_ci", "en_us_cs", "tr_tr_ci" }) {
+            AkCollatorICU collator = (AkCollatorICU)AkCollatorFactory.getAkCollator(scheme);
+            Collator icu = collator.collator.get();
+            for (int pass = 0; pass < 2; pass++) {
+                for (String value : VALUES) {
+                    byte[] expected = icu.getCollationKey(value).toByteArray();
+                    expected = Arrays.copyOf(expected, expected.length - 1);
+                    assertArrayEquals(scheme + " " + value, expected, collator.encodeSortKeyBytes(value));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sortKeysCached() {
+        AkCollator collator = AkCollatorFactory.getAkCollator("en_us_ci");
+        assertSame(collator.encodeSortKeyBytes("cached"), collator.encodeSortKeyBytes(new String("cached")));
+    }
+
+    @Test
+    public void compareMatchesICU() {
+        for (String scheme : new String[] { "en_us_ci", "en_us_cs", "tr_tr_ci", "sv_se_ci" }) {
+            AkCollatorICU collator = (AkCollatorICU)AkCollatorFactory.getAkCollator(scheme);
+            Collator icu = collator.collator.get();
+            for (String v1 : VALUES) {
+                for (String v2 : VALUES) {
+                    assertEquals(scheme + " " + v1 + " " + v2,
+                                 Integer.signum(icu.compare(v1, v2)),
+                                 Integer.signum(collator.compare(v1, v2)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void hashConsistentWithCompare() {
+        AkCollator collator = AkCollatorFactory.getAkCollator("en_us_ci");
+        assertEquals(0, collator.compare("Hello World", "hello world"));
+        assertEquals(collator.hashCode("Hello World"), collator.hashCode("hello world"));
+        assertEquals(collator.hashCode(collator.encodeSortKeyBytes("xyz")), collator.hashCode("XYZ"));
+    }
+
+    @Test
+    public void asciiEqualsIgnoreCase() {
+        assertTrue(AkCollatorICU.asciiEqualsIgnoreCase("Hello, World", "hELLO, wORLD"));
+        assertFalse(AkCollatorICU.asciiEqualsIgnoreCase("Hello", "Hello!"));
+        assertFalse(AkCollatorICU.asciiEqualsIgnoreCase("a[", "A{"));
+        assertFalse(AkCollatorICU.asciiEqualsIgnoreCase("\u00e9", "\u00c9"));
+    }
+}
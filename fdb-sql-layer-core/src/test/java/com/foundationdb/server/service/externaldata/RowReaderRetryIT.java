@@ -17,6 +17,7 @@
 package com.foundationdb.server.service.externaldata;
 
 import com.foundationdb.ais.model.Table;
+import com.foundationdb.server.error.QueryCanceledException;
 import com.foundationdb.server.error.QueryTimedOutException;
 import com.foundationdb.server.service.ServiceManager;
 import com.foundationdb.server.service.servicemanager.GuicedServiceManager;
@@ -90,6 +91,56 @@ public class RowReaderRetryIT extends ITBase
         txnService().commitTransaction(session());
     }
     
+    @Test
+    public void parallelLoadTest() throws Exception {
+        InputStream istr = csvRows(NROWS);
+        long count = external.loadTableFromCsv(session(), istr, format, 0,
+                                               table, table.getColumns(),
+                                               COMMIT_FREQUENCY, MAX_RETRIES,
+                                               NTHREADS,
+                                               null);
+        assertEquals(NROWS, count);
+        txnService().beginTransaction(session());
+        assertEquals(NROWS, getTable(tableId).tableStatus().getRowCount(session()));
+        txnService().commitTransaction(session());
+    }
+    
+    @Test
+    public void parallelLoadCanceled() throws Exception {
+        FlakeyExternalDataServiceImpl flakey = (FlakeyExternalDataServiceImpl)external;
+        // Canceled from a writer thread, after the first batch has been handed off.
+        flakey.cancelSession = session();
+        try {
+            external.loadTableFromCsv(session(), csvRows(NROWS), format, 0,
+                                      table, table.getColumns(),
+                                      COMMIT_FREQUENCY, MAX_RETRIES,
+                                      NTHREADS,
+                                      null);
+            fail("load should have been canceled");
+        }
+        catch (QueryCanceledException ex) {
+            // Expected
+        }
+        finally {
+            flakey.cancelSession = null;
+        }
+        assertFalse("cancel cleared", session().isCurrentQueryCanceled());
+        txnService().beginTransaction(session());
+        long rowCount = getTable(tableId).tableStatus().getRowCount(session());
+        txnService().commitTransaction(session());
+        assertTrue("canceled batch not committed: " + rowCount, rowCount < NROWS);
+    }
+
+    protected static InputStream csvRows(int nrows) throws IOException {
+        ByteArrayOutputStream ostr = new ByteArrayOutputStream();
+        PrintWriter pw = new PrintWriter(new OutputStreamWriter(ostr, "UTF-8"));
+        for (int i = 0; i < nrows; i++) {
+            pw.println(i);
+        }
+        pw.close();
+        return new ByteArrayInputStream(ostr.toByteArray());
+    }
+
     class LoadThread extends Thread {
         final InputStream istr;
         final Session session;
@@ -107,6 +158,7 @@ public class RowReaderRetryIT extends ITBase
                 count = external.loadTableFromCsv(session, istr, format, 0,
                                                   table, table.getColumns(),
                                                   COMMIT_FREQUENCY, MAX_RETRIES,
+                                                  ExternalDataService.WRITER_THREADS_DEFAULT,
                                                   null);
             }
             catch (Exception ex) {
@@ -117,6 +169,7 @@ public class RowReaderRetryIT extends ITBase
 
     static class FlakeyExternalDataServiceImpl extends ExternalDataServiceImpl {
         final AtomicInteger counter = new AtomicInteger();
+        volatile Session cancelSession;
 
         @Inject
         public FlakeyExternalDataServiceImpl(com.foundationdb.server.service.config.ConfigurationService configService,
@@ -130,6 +183,12 @@ public class RowReaderRetryIT extends ITBase
         @Override
         protected void retryHook(Session session, int i, int maxRetries,
                                  Exception retryException) {
+            Session toCancel = cancelSession;
+            if (toCancel != null) {
+                // Only the loading session, not the writer's own.
+                cancelSession = null;
+                toCancel.cancelCurrentQuery(true);
+            }
             if ((i < maxRetries) && ((counter.incrementAndGet() % FAILURE_RATE) == 0)) {
                 // An isRollbackClass exception not associated with any particular store.
                 throw new QueryTimedOutException(0);
@@ -200,6 +200,27 @@ public class FullTextIndexServiceIT extends FullTextIndexServiceITBase
         ftScanAndCompare(builder, "flintstone", 10, expected);
     }
 
+    @Test
+    public void unlimitedInKeyOrder() throws InterruptedException {
+        FullTextIndex index = createFullTextIndex(
+                                                  SCHEMA, "c", "idx_c",
+                                                  "name", "i.sku", "a.state");
+        writeRow(c, 12, "Pebbles Flintstone Flintstone");
+        writeRow(c, 11, "Ed Flintstone");
+        writeRow(c, 10, "Pearl Flintstone Flintstone Flintstone");
+        waitUpdate();
+        RowType rowType = rowType("c");
+        Row[] expected = new Row[] {
+            row(rowType, 1L),
+            row(rowType, 3L),
+            row(rowType, 10L),
+            row(rowType, 11L),
+            row(rowType, 12L)
+        };
+        FullTextQueryBuilder builder = new FullTextQueryBuilder(index, ais(), queryContext);
+        ftScanAndCompare(builder, "flintstone", 0, expected);
+    }
+
     @Test
     public void oUpDown() throws InterruptedException {
         FullTextIndex index = createFullTextIndex(
@@ -0,0 +1,262 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.store;
+
+import com.foundationdb.server.error.TransactionConflictException;
+import com.foundationdb.server.service.session.Session;
+import com.foundationdb.server.service.session.TestSessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class MemoryTransactionServiceTest
+{
+    private MemoryTransactionService txnService;
+    private Session s1, s2;
+
+    @Before
+    public void setUp() {
+        txnService = new MemoryTransactionService();
+        s1 = TestSessionFactory.get().createSession();
+        s2 = TestSessionFactory.get().createSession();
+        txnService.beginTransaction(s1);
+        txn(s1).set(b("a"), b("1"));
+        txn(s1).set(b("c"), b("3"));
+        txn(s1).set(b("e"), b("5"));
+        txnService.commitTransaction(s1);
+    }
+
+    @Test
+    public void ownWritesVisible() {
+        txnService.beginTransaction(s1);
+        txn(s1).set(b("b"), b("2"));
+        txn(s1).clear(b("c"));
+        txn(s1).set(b("e"), b("55"));
+        assertArrayEquals(b("2"), txn(s1).get(b("b")));
+        assertNull(txn(s1).get(b("c")));
+        assertEquals("[a=1, b=2, e=55]", range(s1, "a", "z", false));
+        assertEquals("[e=55, b=2, a=1]", range(s1, "a", "z", true));
+        txnService.beginTransaction(s2);
+        assertNull(txn(s2).get(b("b")));
+        assertEquals("[a=1, c=3, e=5]", range(s2, "a", "z", false));
+        txnService.commitTransaction(s2);
+        txnService.commitTransaction(s1);
+        txnService.beginTransaction(s2);
+        assertEquals("[a=1, b=2, e=55]", range(s2, "a", "z", false));
+        txnService.commitTransaction(s2);
+    }
+
+    @Test
+    public void snapshotReads() {
+        txnService.beginTransaction(s1);
+        assertArrayEquals(b("1"), txn(s1).get(b("a")));
+        txnService.beginTransaction(s2);
+        txn(s2).set(b("a"), b("11"));
+        txn(s2).clearRange(b("c"), b("z"));
+        txnService.commitTransaction(s2);
+        assertArrayEquals(b("1"), txn(s1).get(b("a")));
+        assertEquals("[a=1, c=3, e=5]", range(s1, "a", "z", false));
+        assertArrayEquals(b("11"), txn(s1).getUncommitted(b("a")));
+        txnService.commitTransaction(s1);
+        txnService.beginTransaction(s1);
+        assertEquals("[a=11]", range(s1, "a", "z", false));
+        txnService.commitTransaction(s1);
+    }
+
+    @Test
+    public void rollbackDiscards() {
+        txnService.beginTransaction(s1);
+        txn(s1).set(b("a"), b("11"));
+        txn(s1).clear(b("c"));
+        txnService.rollbackTransaction(s1);
+        txnService.beginTransaction(s1);
+        assertEquals("[a=1, c=3, e=5]", range(s1, "a", "z", false));
+        txnService.commitTransaction(s1);
+    }
+
+    @Test
+    public void iterateWhileWriting() {
+        txnService.beginTransaction(s1);
+        Iterator<Entry<byte[], byte[]>> it = txn(s1).getRange(b("a"), b("z"));
+        List<String> keys = new ArrayList<>();
+        while(it.hasNext()) {
+            String key = new String(it.next().getKey());
+            keys.add(key);
+            txn(s1).set(b(key + key), b("x"));
+        }
+        assertEquals("[a, c, e]", keys.toString());
+        txnService.commitTransaction(s1);
+    }
+
+    @Test
+    public void writeWriteConflict() {
+        txnService.beginTransaction(s1);
+        txn(s1).set(b("a"), b("11"));
+        txnService.beginTransaction(s2);
+        txn(s2).set(b("a"), b("111"));
+        txnService.commitTransaction(s2);
+        expectConflictOnCommit(s1);
+    }
+
+    @Test
+    public void writeAfterCommitConflict() {
+        txnService.beginTransaction(s1);
+        txn(s1).get(b("e"));
+        txnService.beginTransaction(s2);
+        txn(s2).set(b("a"), b("11"));
+        txnService.commitTransaction(s2);
+        try {
+            txn(s1).set(b("a"), b("111"));
+            fail("expected conflict");
+        } catch(TransactionConflictException e) {
+            // Expected
+        }
+        assertTrue(txnService.isRollbackPending(s1));
+        txnService.rollbackTransaction(s1);
+    }
+
+    @Test
+    public void readWriteConflict() {
+        txnService.beginTransaction(s1);
+        txn(s1).get(b("a"));
+        txn(s1).set(b("b"), b("2"));
+        txnService.beginTransaction(s2);
+        txn(s2).set(b("a"), b("11"));
+        txnService.commitTransaction(s2);
+        expectConflictOnCommit(s1);
+    }
+
+    @Test
+    public void rangeConflict() {
+        txnService.beginTransaction(s1);
+        range(s1, "a", "d", false);
+        txn(s1).set(b("x"), b("x"));
+        txnService.beginTransaction(s2);
+        txn(s2).set(b("b"), b("2"));
+        txnService.commitTransaction(s2);
+        expectConflictOnCommit(s1);
+    }
+
+    @Test
+    public void disjointCommits() {
+        txnService.beginTransaction(s1);
+        range(s1, "a", "d", false);
+        txn(s1).set(b("b"), b("2"));
+        txnService.beginTransaction(s2);
+        txn(s2).get(b("e"));
+        txn(s2).set(b("f"), b("6"));
+        txnService.commitTransaction(s2);
+        txnService.commitTransaction(s1);
+        txnService.beginTransaction(s1);
+        assertEquals("[a=1, b=2, c=3, e=5, f=6]", range(s1, "a", "z", false));
+        txnService.commitTransaction(s1);
+    }
+
+    @Test
+    public void retryAfterConflict() {
+        txnService.beginTransaction(s1);
+        txn(s1).set(b("a"), b("11"));
+        txnService.beginTransaction(s2);
+        txn(s2).set(b("a"), b("111"));
+        txnService.commitTransaction(s2);
+        assertTrue(txnService.commitOrRetryTransaction(s1));
+        // Same transaction, new snapshot.
+        assertArrayEquals(b("111"), txn(s1).get(b("a")));
+        txn(s1).set(b("a"), b("11"));
+        assertFalse(txnService.commitOrRetryTransaction(s1));
+        txnService.beginTransaction(s1);
+        assertArrayEquals(b("11"), txn(s1).get(b("a")));
+        txnService.commitTransaction(s1);
+    }
+
+    @Test
+    public void clearedVersionsPruned() {
+        for(int i = 0; i < 10; i++) {
+            txnService.beginTransaction(s1);
+            txn(s1).set(b("b"), b(Integer.toString(i)));
+            txnService.commitTransaction(s1);
+            txnService.beginTransaction(s1);
+            txn(s1).clear(b("b"));
+            txnService.commitTransaction(s1);
+        }
+        txnService.beginTransaction(s1);
+        assertNull(txn(s1).get(b("b")));
+        assertEquals("[a=1, c=3, e=5]", range(s1, "a", "z", false));
+        txnService.commitTransaction(s1);
+    }
+
+    @Test
+    public void concurrentAdditions() {
+        byte[] key = b("n");
+        txnService.beginTransaction(s1);
+        txn(s1).add(key, 5);
+        assertEquals(5, MemoryStore.unpackLong(txn(s1).getUncommitted(key)));
+        txnService.beginTransaction(s2);
+        txn(s2).add(key, 3);
+        txnService.commitTransaction(s2);
+        txn(s1).add(key, 2);
+        txnService.commitTransaction(s1);
+        txnService.beginTransaction(s1);
+        assertEquals(10, MemoryStore.unpackLong(txn(s1).get(key)));
+        txn(s1).set(key, MemoryStore.packLong(1));
+        txn(s1).add(key, 1);
+        txnService.commitTransaction(s1);
+        txnService.beginTransaction(s1);
+        assertEquals(2, MemoryStore.unpackLong(txn(s1).get(key)));
+        txnService.commitTransaction(s1);
+    }
+
+    private MemoryTransaction txn(Session session) {
+        return txnService.getTransaction(session);
+    }
+
+    private void expectConflictOnCommit(Session session) {
+        try {
+            txnService.commitTransaction(session);
+            fail("expected conflict");
+        } catch(TransactionConflictException e) {
+            // Expected
+        }
+        assertFalse(txnService.isTransactionActive(session));
+    }
+
+    private String range(Session session, String begin, String end, boolean reverse) {
+        Iterator<Entry<byte[], byte[]>> it = txn(session).getRange(b(begin), b(end), reverse);
+        List<String> entries = new ArrayList<>();
+        while(it.hasNext()) {
+            Entry<byte[], byte[]> entry = it.next();
+            entries.add(new String(entry.getKey()) + "=" + new String(entry.getValue()));
+        }
+        return entries.toString();
+    }
+
+    private static byte[] b(String s) {
+        return s.getBytes();
+    }
+}
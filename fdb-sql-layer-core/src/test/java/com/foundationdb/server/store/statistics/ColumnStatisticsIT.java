@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.store.statistics;
+
+import com.foundationdb.ais.model.Index;
+import com.foundationdb.ais.model.Table;
+import com.foundationdb.server.service.transaction.TransactionService.CloseableTransaction;
+import com.foundationdb.server.test.it.ITBase;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnStatisticsIT extends ITBase
+{
+    private static final String SCHEMA = "test";
+    private static final int ROW_COUNT = 1000;
+    private static final int DISTINCT = 100;
+    private static final String HOT = "hot";
+    private static final int ZIP_COUNT = 50;
+    private static final int ZIPS_PER_CITY = 5;
+
+    @Override
+    protected Map<String,String> startupConfigProperties() {
+        Map<String,String> config = new HashMap<>(super.startupConfigProperties());
+        config.put("fdbsql.index_statistics.background", "disabled");
+        config.put("fdbsql.index_statistics.column_statistics", "true");
+        config.put("fdbsql.index_statistics.column_groups", SCHEMA + ".a(city,zip)");
+        return config;
+    }
+
+    @Test
+    public void nonIndexedColumns() {
+        int tid = createTable(SCHEMA, "t", "id INT NOT NULL PRIMARY KEY, n INT, s VARCHAR(16)");
+        try(CloseableTransaction txn = txnService().beginCloseableTransaction(session())) {
+            for(int i = 0; i < ROW_COUNT; i++) {
+                // Half the strings are the same value, every tenth one is null.
+                String s = (i % 2 == 0) ? HOT : (i % 10 == 1) ? null : "s" + i;
+                writeRow(tid, i, i % DISTINCT, s);
+            }
+            txn.commit();
+        }
+        ddl().updateTableStatistics(session(), getTable(tid).getName(), null);
+
+        IndexStatistics stats = loadStats(tid);
+        checkColumns(stats);
+
+        // Stored along with the primary key's histograms.
+        indexStatsService().clearCache();
+        checkColumns(loadStats(tid));
+    }
+
+    @Test
+    public void hiddenPrimaryKey() {
+        int tid = createTable(SCHEMA, "h", "n INT");
+        try(CloseableTransaction txn = txnService().beginCloseableTransaction(session())) {
+            for(int i = 0; i < ROW_COUNT; i++) {
+                writeRow(tid, i % DISTINCT);
+            }
+            txn.commit();
+        }
+        ddl().updateTableStatistics(session(), getTable(tid).getName(), null);
+
+        IndexStatistics stats = loadStats(tid);
+        assertNotNull("hidden pk stats", stats);
+        ColumnStatistics n = stats.getColumnStatistics(0);
+        assertNotNull("n stats", n);
+        assertEquals("n rows", ROW_COUNT, n.getRowCount());
+        assertWithin("n distinct", DISTINCT, n.getDistinctCount());
+    }
+
+    @Test
+    public void groupedTables() {
+        int pid = createTable(SCHEMA, "p", "id INT NOT NULL PRIMARY KEY, n INT");
+        int cid = createTable(SCHEMA, "c", "id INT NOT NULL PRIMARY KEY, pid INT, n INT",
+                              akibanFK("pid", "p", "id"));
+        try(CloseableTransaction txn = txnService().beginCloseableTransaction(session())) {
+            for(int i = 0; i < ROW_COUNT; i++) {
+                writeRow(pid, i, i % DISTINCT);
+                // Three children each, interleaved with the parents in the group.
+                for(int j = 0; j < 3; j++) {
+                    writeRow(cid, i * 3 + j, i, (i * 3 + j) % DISTINCT);
+                }
+            }
+            txn.commit();
+        }
+        ddl().updateTableStatistics(session(), getTable(pid).getName(), null);
+        ddl().updateTableStatistics(session(), getTable(cid).getName(), null);
+
+        // Only each table's own rows.
+        ColumnStatistics pn = loadStats(pid).getColumnStatistics(1);
+        assertEquals("parent rows", ROW_COUNT, pn.getRowCount());
+        assertWithin("parent distinct", DISTINCT, pn.getDistinctCount());
+        ColumnStatistics cn = loadStats(cid).getColumnStatistics(2);
+        assertEquals("child rows", ROW_COUNT * 3, cn.getRowCount());
+        assertWithin("child distinct", DISTINCT, cn.getDistinctCount());
+    }
+
+    @Test
+    public void columnGroup() {
+        int tid = createTable(SCHEMA, "a", "id INT NOT NULL PRIMARY KEY, city VARCHAR(32), zip VARCHAR(10)");
+        try(CloseableTransaction txn = txnService().beginCloseableTransaction(session())) {
+            for(int i = 0; i < ROW_COUNT; i++) {
+                // Each city has several zip codes, each zip code one city.
+                int zip = i % ZIP_COUNT;
+                writeRow(tid, i, "city" + (zip / ZIPS_PER_CITY), String.format("%05d", zip));
+            }
+            txn.commit();
+        }
+        ddl().updateTableStatistics(session(), getTable(tid).getName(), null);
+
+        IndexStatistics stats = loadStats(tid);
+        checkGroup(stats);
+        indexStatsService().clearCache();
+        checkGroup(loadStats(tid));
+    }
+
+    private void checkGroup(IndexStatistics stats) {
+        assertNotNull("pk stats", stats);
+        assertWithin("city distinct", ZIP_COUNT / ZIPS_PER_CITY, stats.getColumnStatistics(1).getDistinctCount());
+        assertWithin("zip distinct", ZIP_COUNT, stats.getColumnStatistics(2).getDistinctCount());
+        assertEquals("groups", 1, stats.getColumnGroupStatistics().size());
+        ColumnGroupStatistics group = stats.getColumnGroupStatistics().get(0);
+        assertArrayEquals("group columns", new int[] { 1, 2 }, group.getColumnPositions());
+        assertEquals("group rows", ROW_COUNT, group.getRowCount());
+        assertEquals("group nulls", 0, group.getNullCount());
+        // Not the product of the two.
+        assertWithin("group distinct", ZIP_COUNT, group.getDistinctCount());
+    }
+
+    private void checkColumns(IndexStatistics stats) {
+        assertNotNull("pk stats", stats);
+
+        ColumnStatistics n = stats.getColumnStatistics(1);
+        assertNotNull("n stats", n);
+        assertEquals("n rows", ROW_COUNT, n.getRowCount());
+        assertEquals("n nulls", 0, n.getNullCount());
+        assertWithin("n distinct", DISTINCT, n.getDistinctCount());
+        // Uniform, so nothing stands out.
+        assertTrue("n common values", n.getMostCommonValues().isEmpty());
+
+        ColumnStatistics s = stats.getColumnStatistics(2);
+        assertNotNull("s stats", s);
+        assertEquals("s nulls", ROW_COUNT / 10, s.getNullCount());
+        assertWithin("s distinct", ROW_COUNT / 2 - ROW_COUNT / 10 + 1, s.getDistinctCount());
+        assertEquals("s common values", 1, s.getMostCommonValues().size());
+        HistogramEntry hot = s.getMostCommonValues().get(0);
+        assertTrue("hot key " + hot.getKeyString(), hot.getKeyString().contains(HOT));
+        assertEquals("hot count", ROW_COUNT / 2, hot.getEqualCount());
+        assertNotNull("sketch", s.getSketch());
+        assertTrue("no groups", stats.getColumnGroupStatistics().isEmpty());
+    }
+
+    private IndexStatistics loadStats(final int tid) {
+        return txnService().run(session(), new Callable<IndexStatistics>() {
+            @Override
+            public IndexStatistics call() {
+                Table table = getTable(tid);
+                Index pk = table.getPrimaryKeyIncludingInternal().getIndex();
+                return indexStatsService().getIndexStatistics(session(), pk);
+            }
+        });
+    }
+
+    private static void assertWithin(String message, long expected, long actual) {
+        assertTrue(message + " " + actual + " of " + expected,
+                   Math.abs(actual - expected) <= expected * 0.05);
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.store.statistics;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HyperLogLogTest
+{
+    @Test
+    public void empty() {
+        assertEquals(0, new HyperLogLog().estimate());
+    }
+
+    @Test
+    public void duplicatesIgnored() {
+        HyperLogLog hll = new HyperLogLog();
+        for (int i = 0; i < 10000; i++) {
+            add(hll, "value" + (i % 10));
+        }
+        assertEquals(10, hll.estimate());
+    }
+
+    @Test
+    public void smallRange() {
+        HyperLogLog hll = new HyperLogLog();
+        for (int i = 0; i < 1000; i++) {
+            add(hll, "value" + i);
+        }
+        assertWithin(1000, hll.estimate(), 0.05);
+    }
+
+    @Test
+    public void largeRange() {
+        HyperLogLog hll = new HyperLogLog();
+        for (int i = 0; i < 1000000; i++) {
+            add(hll, "value" + i);
+        }
+        // Several standard errors.
+        assertWithin(1000000, hll.estimate(), 0.1);
+    }
+
+    @Test
+    public void lowPrecision() {
+        HyperLogLog hll = new HyperLogLog(HyperLogLog.MIN_PRECISION);
+        for (int i = 0; i < 100000; i++) {
+            add(hll, "value" + i);
+        }
+        assertWithin(100000, hll.estimate(), 0.5);
+    }
+
+    @Test
+    public void roundTrip() {
+        HyperLogLog hll = new HyperLogLog();
+        for (int i = 0; i < 5000; i++) {
+            add(hll, "value" + i);
+        }
+        HyperLogLog copy = new HyperLogLog(hll.getRegisters().clone());
+        assertEquals(hll.getPrecision(), copy.getPrecision());
+        assertArrayEquals(hll.getRegisters(), copy.getRegisters());
+        assertEquals(hll.estimate(), copy.estimate());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void notPowerOfTwo() {
+        new HyperLogLog(new byte[1000]);
+    }
+
+    private static void add(HyperLogLog hll, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        hll.add(bytes, 0, bytes.length);
+    }
+
+    private static void assertWithin(long expected, long actual, double error) {
+        assertTrue("estimate " + actual + " of " + expected,
+                   Math.abs(actual - expected) <= expected * error);
+    }
+}
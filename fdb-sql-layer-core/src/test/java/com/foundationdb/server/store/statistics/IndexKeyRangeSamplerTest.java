@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.store.statistics;
+
+import com.foundationdb.ais.model.AkibanInformationSchema;
+import com.foundationdb.ais.model.Index;
+import com.foundationdb.ais.model.aisb2.AISBBasedBuilder;
+import com.foundationdb.server.types.mcompat.mtypes.MTypesTranslator;
+import com.google.common.primitives.UnsignedBytes;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IndexKeyRangeSamplerTest
+{
+    private static final byte[] PREFIX = { 0x15, 0x2A };
+
+    @Test
+    public void shouldSample() {
+        assertTrue(IndexKeyRangeSampler.shouldSample(1000000, 0.01, 100, 32));
+        assertTrue(!IndexKeyRangeSampler.shouldSample(1000000, 1.0, 100, 32));
+        assertTrue(!IndexKeyRangeSampler.shouldSample(1000000, 0.0, 100, 32));
+        // Fewer than one run per bucket.
+        assertTrue(!IndexKeyRangeSampler.shouldSample(100000, 0.01, 100, 32));
+    }
+
+    @Test
+    public void errorBound() {
+        assertEquals(0.0, IndexKeyRangeSampler.errorBound(1000, 1000, 10), 0.0);
+        assertEquals(0.0, IndexKeyRangeSampler.errorBound(1000, 100, 0), 0.0);
+        double fewer = IndexKeyRangeSampler.errorBound(1000000, 10000, 100);
+        double more = IndexKeyRangeSampler.errorBound(1000000, 10000, 1000);
+        assertTrue(fewer > more);
+        assertEquals(1.96 * Math.sqrt(0.25 * 0.99 / 100), fewer, 1.0e-9);
+    }
+
+    @Test
+    public void positions() {
+        byte[] key = { 0x15, 0x2A, 0x01, 0x02, 0x03 };
+        long pos = IndexKeyRangeSampler.position(key, 2);
+        byte[] probe = IndexKeyRangeSampler.key(key, 2, pos);
+        assertEquals(2 + 7, probe.length);
+        assertTrue(IndexKeyRangeSampler.compareUnsigned(probe, key) >= 0);
+        assertEquals(0, IndexKeyRangeSampler.compareUnsigned(probe, new byte[] { 0x15, 0x2A, 0x01, 0x02, 0x03, 0, 0, 0, 0 }));
+        assertEquals(2, IndexKeyRangeSampler.commonPrefixLength(key, new byte[] { 0x15, 0x2A, 0x07 }));
+    }
+
+    @Test
+    public void visitsInOrder() {
+        NavigableSet<byte[]> keys = new TreeSet<>(UnsignedBytes.lexicographicalComparator());
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            byte[] key = new byte[PREFIX.length + 1 + random.nextInt(6)];
+            random.nextBytes(key);
+            System.arraycopy(PREFIX, 0, key, 0, PREFIX.length);
+            keys.add(key);
+        }
+        int probes = (int)Math.ceil(keys.size() * 0.1 / 20);
+        TestSampler sampler = new TestSampler(keys, 0.1, 20);
+        sampler.run(random);
+        List<byte[]> visited = sampler.visited;
+        assertTrue("visited " + visited.size(), visited.size() > 0);
+        assertTrue("visited " + visited.size(), visited.size() <= probes * 20);
+        for (int i = 1; i < visited.size(); i++) {
+            assertTrue("ascending at " + i,
+                       IndexKeyRangeSampler.compareUnsigned(visited.get(i-1), visited.get(i)) < 0);
+        }
+        AkibanInformationSchema ais = AISBBasedBuilder.create("s", MTypesTranslator.INSTANCE)
+            .table("t").colInt("id", false).pk("id")
+            .ais();
+        Index index = ais.getTable("s", "t").getPrimaryKey().getIndex();
+        IndexStatistics stats = new IndexStatistics(index, 0, keys.size(), visited.size());
+        sampler.recordSampling(stats);
+        assertTrue("probes " + stats.getProbeCount(),
+                   (stats.getProbeCount() > 0) && (stats.getProbeCount() <= probes));
+        assertTrue(stats.getErrorBound() > 0.0);
+    }
+
+    static class TestSampler extends IndexKeyRangeSampler {
+        final NavigableSet<byte[]> keys;
+        final List<byte[]> visited = new ArrayList<>();
+
+        TestSampler(NavigableSet<byte[]> keys, double sampleRate, int blockSize) {
+            super(keys.size(), sampleRate, blockSize);
+            this.keys = keys;
+        }
+
+        @Override
+        protected byte[] edgeKey(boolean last) {
+            return keys.isEmpty() ? null : last ? keys.last() : keys.first();
+        }
+
+        @Override
+        protected byte[] visitRange(byte[] start, boolean after, int limit) {
+            byte[] lastKey = null;
+            for (byte[] key : keys.tailSet(start, !after)) {
+                if (limit-- <= 0) break;
+                visited.add(key);
+                lastKey = key;
+            }
+            return lastKey;
+        }
+    }
+}
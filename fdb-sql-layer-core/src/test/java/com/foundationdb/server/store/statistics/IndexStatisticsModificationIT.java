@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.server.store.statistics;
+
+import com.foundationdb.ais.model.Index;
+import com.foundationdb.ais.model.Table;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.virtualadapter.VirtualAdapter;
+import com.foundationdb.qp.virtualadapter.VirtualGroupCursor.GroupScan;
+import com.foundationdb.server.service.transaction.TransactionService.CloseableTransaction;
+import com.foundationdb.server.test.it.ITBase;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static com.foundationdb.server.store.statistics.IndexStatisticsService.INDEX_STATISTICS_STALENESS_TABLE_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class IndexStatisticsModificationIT extends ITBase
+{
+    private static final String SCHEMA = "test";
+    private static final String TABLE = "t";
+    private static final int ROW_COUNT = 100;
+    private static final String CHANGE_THRESHOLD = "0.2";
+
+    private int tid;
+
+    @Override
+    protected Map<String,String> startupConfigProperties() {
+        Map<String,String> config = new HashMap<>(super.startupConfigProperties());
+        config.put("fdbsql.index_statistics.change_threshold", CHANGE_THRESHOLD);
+        // Nothing should be analyzed behind the test's back.
+        config.put("fdbsql.index_statistics.background", "disabled");
+        return config;
+    }
+
+    @Before
+    public void createData() {
+        tid = createTable(SCHEMA, TABLE, "id INT NOT NULL PRIMARY KEY, v INT");
+        createIndex(SCHEMA, TABLE, "v", "v");
+        try(CloseableTransaction txn = txnService().beginCloseableTransaction(session())) {
+            for(int i = 0; i < ROW_COUNT; i++) {
+                writeRow(tid, i, i);
+            }
+            txn.commit();
+        }
+        Index index = index();
+        ddl().updateTableStatistics(session(), index.leafMostTable().getName(),
+                                    Collections.singleton(index.getIndexName().getName()));
+    }
+
+    @Test
+    public void changesCounted() {
+        IndexStatistics stats = loadStats();
+        assertTrue("analyzed count " + stats.getModificationCount(), stats.getModificationCount() >= ROW_COUNT);
+        assertEquals("fresh", 0.0, modifiedFraction(stats), 0.0);
+
+        change(5, 3, 2);
+        assertEquals("changed", 10.0 / ROW_COUNT, modifiedFraction(stats), 0.0);
+
+        // The count at analysis is stored along with the histograms.
+        indexStatsService().clearCache();
+        IndexStatistics reloaded = loadStats();
+        assertEquals("stored count", stats.getModificationCount(), reloaded.getModificationCount());
+        assertEquals("reloaded changed", 10.0 / ROW_COUNT, modifiedFraction(reloaded), 0.0);
+    }
+
+    @Test
+    public void changesInSameTransaction() {
+        IndexStatistics stats = loadStats();
+        try(CloseableTransaction txn = txnService().beginCloseableTransaction(session())) {
+            Table table = getTable(SCHEMA, TABLE);
+            assertEquals("fresh", 0.0, indexStatsService().modifiedFraction(session(), table, stats), 0.0);
+            // Not hidden by the count already read.
+            updateRow(row(tid, 1, 1), row(tid, 1, -1));
+            writeRow(tid, ROW_COUNT, 0);
+            assertEquals("changed", 2.0 / ROW_COUNT, indexStatsService().modifiedFraction(session(), table, stats), 0.0);
+            txn.commit();
+        }
+    }
+
+    @Test
+    public void outdatedPastThreshold() {
+        IndexStatistics stats = loadStats();
+        change(10, 5, 0);
+        checkRowCountChanged(stats);
+        assertTrue("still valid", stats.isValid());
+
+        change(5, 0, 5);
+        checkRowCountChanged(stats);
+        assertEquals("outdated", IndexStatistics.Validity.OUTDATED, stats.getValidity());
+    }
+
+    @Test
+    public void stalenessTable() {
+        change(20, 0, 0);
+        Row row = stalenessRow();
+        assertNotNull("staleness row", row);
+        assertEquals("row_count", ROW_COUNT, row.value(4).getInt64());
+        assertEquals("current_row_count", ROW_COUNT, row.value(5).getInt64());
+        assertEquals("modified_count", 20, row.value(6).getInt64());
+        assertEquals("modified_fraction", 0.2, row.value(7).getDouble(), 0.0);
+        assertEquals("is_outdated", "YES", row.value(8).getString());
+    }
+
+    /** Update, delete and insert some rows, each in turn. */
+    private void change(int updates, int deletes, int inserts) {
+        try(CloseableTransaction txn = txnService().beginCloseableTransaction(session())) {
+            int n = nextChange;
+            for(int i = 0; i < updates; i++, n++) {
+                updateRow(row(tid, n, n), row(tid, n, -n));
+            }
+            for(int i = 0; i < deletes; i++, n++) {
+                deleteRow(tid, n, n);
+            }
+            for(int i = 0; i < inserts; i++) {
+                writeRow(tid, ROW_COUNT + nextInsert, 0);
+                nextInsert++;
+            }
+            nextChange = n;
+            txn.commit();
+        }
+    }
+
+    private int nextChange = 0, nextInsert = 0;
+
+    private Index index() {
+        return getTable(SCHEMA, TABLE).getIndex("v");
+    }
+
+    private IndexStatistics loadStats() {
+        return txnService().run(session(), new Callable<IndexStatistics>() {
+            @Override
+            public IndexStatistics call() {
+                return indexStatsService().getIndexStatistics(session(), index());
+            }
+        });
+    }
+
+    private double modifiedFraction(final IndexStatistics stats) {
+        return txnService().run(session(), new Callable<Double>() {
+            @Override
+            public Double call() {
+                return indexStatsService().modifiedFraction(session(), getTable(SCHEMA, TABLE), stats);
+            }
+        });
+    }
+
+    private void checkRowCountChanged(final IndexStatistics stats) {
+        txnService().run(session(), new Runnable() {
+            @Override
+            public void run() {
+                Table table = getTable(SCHEMA, TABLE);
+                indexStatsService().checkRowCountChanged(session(), table, stats,
+                                                         table.tableStatus().getApproximateRowCount(session()));
+            }
+        });
+    }
+
+    private Row stalenessRow() {
+        return txnService().run(session(), new Callable<Row>() {
+            @Override
+            public Row call() {
+                Table table = ais().getTable(INDEX_STATISTICS_STALENESS_TABLE_NAME);
+                VirtualAdapter adapter = new VirtualAdapter(session(), configService());
+                GroupScan scan = VirtualAdapter.getFactory(table).getGroupScan(adapter, table.getGroup());
+                try {
+                    Row row;
+                    while((row = scan.next()) != null) {
+                        if(TABLE.equals(row.value(1).getString()) && "v".equals(row.value(2).getString())) {
+                            return row;
+                        }
+                    }
+                    return null;
+                } finally {
+                    scan.close();
+                }
+            }
+        });
+    }
+}
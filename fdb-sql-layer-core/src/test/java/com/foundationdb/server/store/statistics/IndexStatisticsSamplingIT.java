@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.store.statistics;
+
+import com.foundationdb.ais.model.Index;
+import com.foundationdb.server.service.config.TestConfigService;
+import com.foundationdb.server.service.transaction.TransactionService.CloseableTransaction;
+import com.foundationdb.server.test.it.ITBase;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class IndexStatisticsSamplingIT extends ITBase
+{
+    private static final String SCHEMA = "test";
+    private static final String TABLE = "t";
+    private static final int ROW_COUNT = 4000;
+    private static final int DISTINCT_VALUES = 50;
+    private static final String BUCKET_COUNT = "8";
+    private static final String SAMPLE_RATE = "0.25";
+    private static final int SAMPLE_BLOCK = 10;
+
+    @Override
+    protected Map<String,String> startupConfigProperties() {
+        Map<String,String> config = new HashMap<>(super.startupConfigProperties());
+        config.put(TestConfigService.BUCKET_COUNT_KEY, BUCKET_COUNT);
+        config.put("fdbsql.index_statistics.sample_rate", SAMPLE_RATE);
+        config.put("fdbsql.index_statistics.sample_block", Integer.toString(SAMPLE_BLOCK));
+        return config;
+    }
+
+    @Before
+    public void createData() {
+        int tid = createTable(SCHEMA, TABLE, "id INT NOT NULL PRIMARY KEY, v INT");
+        createIndex(SCHEMA, TABLE, "v", "v");
+        try(CloseableTransaction txn = txnService().beginCloseableTransaction(session())) {
+            for(int i = 0; i < ROW_COUNT; i++) {
+                writeRow(tid, i, i % DISTINCT_VALUES);
+            }
+            txn.commit();
+        }
+    }
+
+    @Test
+    public void sampledByKeyRange() {
+        final Index index = getTable(SCHEMA, TABLE).getIndex("v");
+        ddl().updateTableStatistics(session(), index.leafMostTable().getName(),
+                                    Collections.singleton(index.getIndexName().getName()));
+        IndexStatistics stats = loadStats(index);
+        long maxProbes = (long)Math.ceil(ROW_COUNT * Double.parseDouble(SAMPLE_RATE) / SAMPLE_BLOCK);
+        assertEquals("row count", ROW_COUNT, stats.getRowCount());
+        assertTrue("probes " + stats.getProbeCount(),
+                   (stats.getProbeCount() > 0) && (stats.getProbeCount() <= maxProbes));
+        assertTrue("sampled " + stats.getSampledCount(),
+                   (stats.getSampledCount() > 0) && (stats.getSampledCount() <= maxProbes * SAMPLE_BLOCK));
+        assertTrue("error bound " + stats.getErrorBound(),
+                   (stats.getErrorBound() > 0.0) && (stats.getErrorBound() < 0.5));
+        Histogram histogram = stats.getHistogram(0, 1);
+        assertNotNull("histogram", histogram);
+        assertEquals("histogram error bound", stats.getErrorBound(), histogram.getErrorBound(), 0.0);
+        assertTrue("histogram entries", !histogram.getEntries().isEmpty());
+
+        // Sampling details are stored along with the histograms.
+        indexStatsService().clearCache();
+        IndexStatistics reloaded = loadStats(index);
+        assertEquals("stored probes", stats.getProbeCount(), reloaded.getProbeCount());
+        assertEquals("stored error bound", stats.getErrorBound(), reloaded.getErrorBound(), 0.0);
+    }
+
+    private IndexStatistics loadStats(final Index index) {
+        return txnService().run(session(), new Callable<IndexStatistics>() {
+            @Override
+            public IndexStatistics call() {
+                return indexStatsService().getIndexStatistics(session(), index);
+            }
+        });
+    }
+}
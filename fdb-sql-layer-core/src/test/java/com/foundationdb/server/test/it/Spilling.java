@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.it;
+
+import com.foundationdb.util.tap.Tap;
+import com.foundationdb.util.tap.TapReport;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Forcing operators over their memory limit in integration tests, and
+ * checking that they really did write to temporary files.
+ */
+public final class Spilling
+{
+    /**
+     * Startup properties that set <code>memoryProperty</code> to
+     * <code>limit</code> and turn on the count taps named <code>tapNames</code>.
+     */
+    public static Map<String,String> properties(Map<String,String> properties,
+                                                String memoryProperty, String limit,
+                                                String... tapNames) {
+        Map<String,String> result = new HashMap<>(properties);
+        result.put(memoryProperty, limit);
+        StringBuilder taps = new StringBuilder();
+        for (String tapName : tapNames) {
+            if (taps.length() > 0) {
+                taps.append('|');
+            }
+            taps.append(pattern(tapName));
+        }
+        result.put("taps.initiallyenabled", taps.toString());
+        return result;
+    }
+
+    public static void resetCount(String tapName) {
+        Tap.reset(pattern(tapName));
+    }
+
+    /** Hits on the count tap named <code>tapName</code> since {@link #resetCount}, in all threads. */
+    public static long count(String tapName) {
+        long count = 0;
+        for (TapReport report : Tap.getReport(pattern(tapName))) {
+            count += report.getInCount();
+        }
+        return count;
+    }
+
+    private static String pattern(String tapName) {
+        return "^" + Pattern.quote(tapName) + "$";
+    }
+
+    private Spilling() {
+    }
+}
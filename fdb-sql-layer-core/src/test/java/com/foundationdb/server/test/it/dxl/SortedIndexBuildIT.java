@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.it.dxl;
+
+import com.foundationdb.ais.model.TableIndex;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.error.DuplicateKeyException;
+import com.foundationdb.server.store.OnlineHelper;
+import com.foundationdb.server.test.it.ITBase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/** Online table index builds holding several sorted batches per group scan. */
+public final class SortedIndexBuildIT extends ITBase {
+    private static final String SCHEMA = "test";
+    private static final String TABLE = "t";
+    private static final int ROWS = 100;
+    // Prime modulus, so that x is distinct and out of id order
+    private static final int MODULUS = 101;
+
+    @Override
+    protected Map<String, String> startupConfigProperties() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put(OnlineHelper.INDEX_BUILD_SORT_ROWS_PROP, "7");
+        properties.put(OnlineHelper.INDEX_BUILD_THREADS_PROP, "3");
+        return properties;
+    }
+
+    private int createAndLoad(int multiplier, int modulus) {
+        int tid = createTable(SCHEMA, TABLE, "id int not null primary key, x int, y int");
+        List<Row> rows = new ArrayList<>();
+        for(int id = 1; id <= ROWS; ++id) {
+            rows.add(row(tid, id, (id * multiplier) % modulus, id % 3));
+        }
+        writeRows(rows);
+        return tid;
+    }
+
+    @Test
+    public void singleIndex() {
+        createAndLoad(37, MODULUS);
+        TableIndex index = createIndex(SCHEMA, TABLE, "x", "x");
+        Object[][] expected = new Object[ROWS][];
+        int i = 0;
+        for(int x = 0; x < MODULUS; ++x) {
+            for(int id = 1; id <= ROWS; ++id) {
+                if((id * 37) % MODULUS == x) {
+                    expected[i++] = new Object[] { x, id };
+                }
+            }
+        }
+        compareRows(expected, index);
+    }
+
+    @Test
+    public void nonUniqueIndex() {
+        createAndLoad(1, 10);
+        TableIndex index = createIndex(SCHEMA, TABLE, "y_x", "y", "x");
+        List<Object[]> expected = new ArrayList<>();
+        for(int y = 0; y < 3; ++y) {
+            for(int x = 0; x < 10; ++x) {
+                for(int id = 1; id <= ROWS; ++id) {
+                    if((id % 3 == y) && (id % 10 == x)) {
+                        expected.add(new Object[] { y, x, id });
+                    }
+                }
+            }
+        }
+        compareRows(expected.toArray(new Object[expected.size()][]), index);
+    }
+
+    @Test
+    public void uniqueViolation() {
+        createAndLoad(1, 10);
+        try {
+            createUniqueIndex(SCHEMA, TABLE, "x", "x");
+            fail("DuplicateKeyException expected");
+        } catch(DuplicateKeyException e) {
+            // Expected
+        }
+        assertNull("x index exists", getTable(SCHEMA, TABLE).getIndex("x"));
+    }
+}
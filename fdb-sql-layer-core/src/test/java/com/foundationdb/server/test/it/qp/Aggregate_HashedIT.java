@@ -0,0 +1,211 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.ais.model.Group;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.rowtype.TableRowType;
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.types.TAggregator;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.mcompat.aggr.MCount;
+import com.foundationdb.server.types.mcompat.aggr.MMinMaxAggregation;
+import com.foundationdb.server.types.mcompat.mtypes.MNumeric;
+import com.foundationdb.server.types.texpressions.Comparison;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.foundationdb.qp.operator.API.*;
+import static com.foundationdb.server.test.ExpressionGenerators.*;
+
+public class Aggregate_HashedIT extends OperatorITBase
+{
+    @Override
+    protected void setupCreateSchema()
+    {
+        t = createTable(
+            "s", "t",
+            "id int not null primary key",
+            "ci varchar(10) collate en_us_ci", // case insensitive
+            "n int");
+        e = createTable(
+            "s", "e",
+            "id int not null primary key",
+            "n int");
+    }
+
+    @Override
+    protected void setupPostCreateSchema()
+    {
+        tRowType = schema.tableRowType(table(t));
+        eRowType = schema.tableRowType(table(e));
+        queryContext = queryContext(adapter);
+        queryBindings = queryContext.createBindings();
+        tGroup = group(t);
+        eGroup = group(e);
+        caseInsensitiveCollator = tRowType.table().getColumn("ci").getCollator();
+        List<Row> rows = new ArrayList<>();
+        rows.add(row(t, 1L, "a", null));
+        rows.add(row(t, 2L, "b", null));
+        rows.add(row(t, 3L, "A", null));
+        rows.add(row(t, 4L, null, null));
+        rows.add(row(t, 5L, "B", null));
+        rows.add(row(t, 6L, "b", null));
+        rows.add(row(t, 7L, null, null));
+        for (long id = 100; id < 100 + MANY; id++) {
+            rows.add(row(t, id, null, id % GROUPS));
+        }
+        use(rows.toArray(new Row[rows.size()]));
+    }
+
+    @Test
+    public void testCaseInsensitiveGroups()
+    {
+        Operator project = project_DefaultTest(
+            select_HKeyOrdered(groupScan_Default(tGroup), tRowType,
+                               compare(field(tRowType, 0), Comparison.LT, literal(100), castResolver())),
+            tRowType,
+            Arrays.asList(field(tRowType, 1),
+                          field(tRowType, 0),
+                          field(tRowType, 0),
+                          field(tRowType, 0)));
+        RowType projectRowType = project.rowType();
+        Operator aggregate = aggregate_Hashed(
+            project, projectRowType, 1,
+            Arrays.asList(COUNT, MIN, MAX),
+            Arrays.asList(BIGINT, projectRowType.typeAt(2), projectRowType.typeAt(3)),
+            options(3));
+        RowType aggregateRowType = aggregate.rowType();
+        Ordering ordering = new Ordering();
+        ordering.append(field(aggregateRowType, 0), true, caseInsensitiveCollator);
+        Operator plan = sort_General(aggregate, aggregateRowType, ordering, SortOption.PRESERVE_DUPLICATES);
+        Row[] expected = new Row[] {
+            row(aggregateRowType, null, 2L, 4, 7),
+            row(aggregateRowType, "a", 2L, 1, 3),
+            row(aggregateRowType, "b", 3L, 2, 6),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testManyGroups()
+    {
+        Operator project = project_DefaultTest(
+            select_HKeyOrdered(groupScan_Default(tGroup), tRowType,
+                               compare(field(tRowType, 0), Comparison.GE, literal(100), castResolver())),
+            tRowType,
+            Arrays.asList(field(tRowType, 2),
+                          field(tRowType, 0),
+                          field(tRowType, 0)));
+        RowType projectRowType = project.rowType();
+        Operator aggregate = aggregate_Hashed(
+            project, projectRowType, 1,
+            Arrays.asList(COUNT, MAX),
+            Arrays.asList(BIGINT, projectRowType.typeAt(2)),
+            options(2));
+        RowType aggregateRowType = aggregate.rowType();
+        Ordering ordering = new Ordering();
+        ordering.append(field(aggregateRowType, 0), true);
+        Operator plan = sort_General(aggregate, aggregateRowType, ordering, SortOption.PRESERVE_DUPLICATES);
+        Row[] expected = new Row[GROUPS];
+        for (int i = 0; i < GROUPS; i++) {
+            expected[i] = row(aggregateRowType, (long)i, (long)(MANY / GROUPS), 100 + MANY - GROUPS + i);
+        }
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testNoGroupBy()
+    {
+        Operator project = project_DefaultTest(
+            groupScan_Default(tGroup),
+            tRowType,
+            Arrays.asList(field(tRowType, 0),
+                          field(tRowType, 1)));
+        RowType projectRowType = project.rowType();
+        Operator plan = aggregate_Hashed(
+            project, projectRowType, 0,
+            Arrays.asList(MAX, COUNT),
+            Arrays.asList(projectRowType.typeAt(0), BIGINT),
+            options(2));
+        Row[] expected = new Row[] {
+            row(plan.rowType(), 100 + MANY - 1, 5L),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testEmptyNoGroupBy()
+    {
+        Operator project = project_DefaultTest(
+            groupScan_Default(eGroup),
+            eRowType,
+            Arrays.asList(field(eRowType, 1),
+                          field(eRowType, 1)));
+        RowType projectRowType = project.rowType();
+        Operator plan = aggregate_Hashed(
+            project, projectRowType, 0,
+            Arrays.asList(MAX, COUNT),
+            Arrays.asList(projectRowType.typeAt(0), BIGINT),
+            options(2));
+        Row[] expected = new Row[] {
+            row(plan.rowType(), null, 0L),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testEmptyGroupBy()
+    {
+        Operator project = project_DefaultTest(
+            groupScan_Default(eGroup),
+            eRowType,
+            Arrays.asList(field(eRowType, 1),
+                          field(eRowType, 0)));
+        RowType projectRowType = project.rowType();
+        Operator plan = aggregate_Hashed(
+            project, projectRowType, 1,
+            Arrays.asList(COUNT),
+            Arrays.asList(BIGINT),
+            options(1));
+        compareRows(new Row[0], cursor(plan, queryContext, queryBindings));
+    }
+
+    private static List<Object> options(int n) {
+        return Collections.nCopies(n, null);
+    }
+
+    private static final TAggregator COUNT = MCount.INSTANCES[2];
+    private static final TAggregator MIN = MMinMaxAggregation.MIN;
+    private static final TAggregator MAX = MMinMaxAggregation.MAX;
+    private static final TInstance BIGINT = MNumeric.BIGINT.instance(false);
+    private static final int MANY = 1000;
+    private static final int GROUPS = 50;
+
+    private int t, e;
+    private TableRowType tRowType, eRowType;
+    private Group tGroup, eGroup;
+    private AkCollator caseInsensitiveCollator;
+}
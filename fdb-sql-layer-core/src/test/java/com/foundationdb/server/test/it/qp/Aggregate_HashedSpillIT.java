@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.server.test.it.Spilling;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+/** Run all the hash aggregation tests with every group after the first spilled to disk. */
+public class Aggregate_HashedSpillIT extends Aggregate_HashedIT
+{
+    private static final String SPILL_TAP = "operator: Aggregate_Hashed spill";
+
+    @Override
+    protected Map<String, String> startupConfigProperties() {
+        return Spilling.properties(super.startupConfigProperties(),
+                                   "fdbsql.hash_aggregate.memory", "1",
+                                   SPILL_TAP);
+    }
+
+    @Test
+    public void testSpilled() {
+        Spilling.resetCount(SPILL_TAP);
+        testManyGroups();
+        assertTrue("spilled", Spilling.count(SPILL_TAP) > 0);
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.storeadapter.FDBAdapter;
+import com.foundationdb.server.service.servicemanager.GuicedServiceManager.BindingsConfigurationProvider;
+import com.foundationdb.server.store.FDBScanTransactionOptions;
+import com.foundationdb.server.store.FDBTransactionService;
+import com.foundationdb.server.test.it.FDBITBase;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Run all the exchange tests with index scans that commit every few rows. */
+public class Exchange_DefaultCommittingIT extends Exchange_DefaultIT
+{
+    @Override
+    protected BindingsConfigurationProvider serviceBindingsProvider() {
+        return FDBITBase.doBind(super.serviceBindingsProvider());
+    }
+
+    @Override
+    protected void setupPostCreateSchema() {
+        super.setupPostCreateSchema();
+        transaction().setScanOptions(new FDBScanTransactionOptions(2, -1));
+    }
+
+    @Test
+    public void testSplitScanCommits() {
+        assertFalse("parallel", adapter.supportsParallelScan(queryContext));
+        int resetCount = transaction().getResetCount();
+        testOrdered();
+        assertTrue("committed", transaction().getResetCount() > resetCount);
+    }
+
+    private FDBTransactionService.TransactionState transaction() {
+        return ((FDBAdapter)adapter).getTransaction();
+    }
+}
@@ -0,0 +1,322 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.expression.IndexBound;
+import com.foundationdb.qp.expression.IndexKeyRange;
+import com.foundationdb.qp.expression.RowBasedUnboundExpressions;
+import com.foundationdb.qp.operator.API;
+import com.foundationdb.qp.operator.Cursor;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.AggregatedRowType;
+import com.foundationdb.qp.rowtype.IndexRowType;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.api.dml.SetColumnSelector;
+import com.foundationdb.server.types.TAggregator;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.mcompat.aggr.MCount;
+import com.foundationdb.server.types.mcompat.aggr.MMinMaxAggregation;
+import com.foundationdb.server.types.mcompat.mtypes.MNumeric;
+import com.foundationdb.server.types.texpressions.TNullExpression;
+import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import com.foundationdb.server.types.texpressions.TPreparedLiteral;
+import com.foundationdb.server.types.value.Value;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.foundationdb.qp.operator.API.*;
+import static com.foundationdb.server.test.ExpressionGenerators.field;
+import static org.junit.Assert.assertEquals;
+
+public class Exchange_DefaultIT extends OperatorITBase
+{
+    @Override
+    protected void setupCreateSchema()
+    {
+        t = createTable(
+            "s", "t",
+            "id int not null primary key",
+            "a int");
+        createIndex("s", "t", "a", "a");
+    }
+
+    @Override
+    protected void setupPostCreateSchema()
+    {
+        idxRowType = indexType(t, "a");
+        queryContext = queryContext(adapter);
+        queryBindings = queryContext.createBindings();
+        List<Row> rows = new ArrayList<>();
+        for (long id = 0; id < N; id++) {
+            rows.add(row(t, id, (id % 13 == 0) ? null : (id * 7) % 100));
+        }
+        use(rows.toArray(new Row[rows.size()]));
+    }
+
+    @Test
+    public void testUnordered()
+    {
+        Operator plan = exchange_Default(partitions(ordering(true), 25, 50, 75), idxRowType, null);
+        List<Row> actual = execute(plan);
+        Collections.sort(actual, BY_ID);
+        compareRows(expected(false), actual);
+    }
+
+    @Test
+    public void testOrdered()
+    {
+        Ordering ordering = ordering(true);
+        Operator plan = exchange_Default(partitions(ordering, 25, 50, 75), idxRowType, ordering);
+        compareRows(sorted(true), execute(plan));
+    }
+
+    @Test
+    public void testOrderedDescending()
+    {
+        Ordering ordering = ordering(false);
+        Operator plan = exchange_Default(partitions(ordering, 10, 90), idxRowType, ordering);
+        compareRows(sorted(false), execute(plan));
+    }
+
+    @Test
+    public void testEmptyPartitions()
+    {
+        Ordering ordering = ordering(true);
+        Operator plan = exchange_Default(partitions(ordering, 200, 300), idxRowType, ordering);
+        compareRows(sorted(true), execute(plan));
+    }
+
+    @Test
+    public void testSinglePartition()
+    {
+        Ordering ordering = ordering(true);
+        Operator plan = exchange_Default(partitions(ordering), idxRowType, ordering);
+        compareRows(sorted(true), execute(plan));
+    }
+
+    @Test
+    public void testCloseEarly()
+    {
+        Ordering ordering = ordering(true);
+        Operator plan = exchange_Default(partitions(ordering, 25, 50, 75), idxRowType, ordering);
+        Cursor cursor = cursor(plan, queryContext, queryBindings);
+        cursor.openTopLevel();
+        for (int i = 0; i < 10; i++) {
+            cursor.next();
+        }
+        cursor.closeTopLevel();
+        List<Row> actual = new ArrayList<>();
+        cursor.openTopLevel();
+        Row row;
+        while ((row = cursor.next()) != null) {
+            actual.add(row);
+        }
+        cursor.closeTopLevel();
+        compareRows(sorted(true), actual);
+    }
+
+    @Test
+    public void testMergePartialAggregates()
+    {
+        List<Operator> partials = new ArrayList<>();
+        AggregatedRowType partialRowType = null;
+        for (Operator scan : partitions(ordering(true), 25, 50, 75)) {
+            Operator partial = aggregate_Partial(scan, idxRowType, 0,
+                                                 Arrays.asList(COUNT, MAX),
+                                                 Arrays.asList(BIGINT, idxRowType.typeAt(1)),
+                                                 options(2), partialRowType, false);
+            partialRowType = (AggregatedRowType)partial.rowType();
+            partials.add(partial);
+        }
+        Operator plan = aggregate_Partial(exchange_Default(partials, partialRowType, null),
+                                          partialRowType, 0,
+                                          Arrays.asList(COUNT, MAX),
+                                          Arrays.asList(BIGINT, idxRowType.typeAt(1)),
+                                          options(2), null, true);
+        long count = 0;
+        for (long id = 0; id < N; id++) {
+            if (id % 13 != 0) count++;
+        }
+        Row[] expected = new Row[] {
+            row(plan.rowType(), count, N - 1)
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testMergeHashedAggregates()
+    {
+        // The same rows from two partitions, so that every group has to be merged.
+        List<Operator> scans = partitions(ordering(true));
+        scans.addAll(partitions(ordering(true)));
+        List<Operator> partials = new ArrayList<>();
+        AggregatedRowType partialRowType = null;
+        for (Operator scan : scans) {
+            Operator partial = aggregate_Hashed(scan, idxRowType, 1,
+                                                Arrays.asList(COUNT),
+                                                Arrays.asList(BIGINT),
+                                                options(1), partialRowType, false);
+            partialRowType = (AggregatedRowType)partial.rowType();
+            partials.add(partial);
+        }
+        Operator aggregate = aggregate_Hashed(exchange_Default(partials, partialRowType, null),
+                                              partialRowType, 1,
+                                              Arrays.asList(COUNT),
+                                              Arrays.asList(BIGINT),
+                                              options(1), null, true);
+        RowType aggregateRowType = aggregate.rowType();
+        Ordering ordering = API.ordering();
+        ordering.append(field(aggregateRowType, 0), true);
+        Operator plan = sort_General(aggregate, aggregateRowType, ordering, SortOption.PRESERVE_DUPLICATES);
+        Map<Integer,Long> counts = new TreeMap<>();
+        for (long id = 0; id < N; id++) {
+            if (id % 13 != 0) {
+                int a = (int)((id * 7) % 100);
+                Long count = counts.get(a);
+                counts.put(a, (count == null) ? 2L : count + 2);
+            }
+        }
+        List<Row> expected = new ArrayList<>();
+        expected.add(row(aggregateRowType, null, 2L * ((N + 12) / 13)));
+        for (Map.Entry<Integer,Long> entry : counts.entrySet()) {
+            expected.add(row(aggregateRowType, entry.getKey(), entry.getValue()));
+        }
+        compareRows(expected.toArray(new Row[expected.size()]), cursor(plan, queryContext, queryBindings));
+    }
+
+    // For use by this class
+
+    private List<Row> execute(Operator plan)
+    {
+        List<Row> rows = new ArrayList<>();
+        Cursor cursor = cursor(plan, queryContext, queryBindings);
+        cursor.openTopLevel();
+        try {
+            Row row;
+            while ((row = cursor.next()) != null) {
+                rows.add(row);
+            }
+        }
+        finally {
+            cursor.closeTopLevel();
+        }
+        assertEquals("rows", N, rows.size());
+        return rows;
+    }
+
+    private List<Row> expected(boolean sorted)
+    {
+        List<Row> rows = new ArrayList<>();
+        for (long id = 0; id < N; id++) {
+            rows.add(row(idxRowType, (id % 13 == 0) ? null : (id * 7) % 100, id));
+        }
+        if (sorted) {
+            Collections.sort(rows, BY_A_AND_ID);
+        }
+        return rows;
+    }
+
+    private List<Row> sorted(boolean ascending)
+    {
+        List<Row> rows = expected(true);
+        if (!ascending) {
+            Collections.reverse(rows);
+        }
+        return rows;
+    }
+
+    private List<Operator> partitions(Ordering ordering, int... splits)
+    {
+        List<Operator> scans = new ArrayList<>();
+        IndexBound lo = bound(null);
+        for (int i = 0; i <= splits.length; i++) {
+            IndexBound hi = (i < splits.length) ? bound(splits[i]) : bound(null);
+            scans.add(indexScan_Default(idxRowType, IndexKeyRange.bounded(idxRowType, lo, true, hi, false), ordering));
+            lo = hi;
+        }
+        return scans;
+    }
+
+    private IndexBound bound(Integer a)
+    {
+        TPreparedExpression expr;
+        if (a == null) {
+            expr = new TNullExpression(idxRowType.typeAt(0));
+        }
+        else {
+            expr = new TPreparedLiteral(new Value(idxRowType.typeAt(0), a));
+        }
+        List<TPreparedExpression> pExprs = new ArrayList<>(1);
+        pExprs.add(expr);
+        return new IndexBound(new RowBasedUnboundExpressions(idxRowType, pExprs), new SetColumnSelector(0));
+    }
+
+    private Ordering ordering(boolean ascending)
+    {
+        Ordering ordering = API.ordering();
+        ordering.append(field(idxRowType, 0), ascending);
+        ordering.append(field(idxRowType, 1), ascending);
+        return ordering;
+    }
+
+    private static List<Object> options(int n)
+    {
+        return Collections.nCopies(n, null);
+    }
+
+    private static final int N = 1000;
+    private static final TAggregator COUNT = MCount.INSTANCES[2];
+    private static final TAggregator MAX = MMinMaxAggregation.MAX;
+    private static final TInstance BIGINT = MNumeric.BIGINT.instance(false);
+
+    private static final Comparator<Row> BY_ID = new Comparator<Row>() {
+        @Override
+        public int compare(Row r1, Row r2) {
+            return Integer.compare(r1.value(1).getInt32(), r2.value(1).getInt32());
+        }
+    };
+
+    private static final Comparator<Row> BY_A_AND_ID = new Comparator<Row>() {
+        @Override
+        public int compare(Row r1, Row r2) {
+            boolean null1 = r1.value(0).isNull(), null2 = r2.value(0).isNull();
+            if (null1 != null2) {
+                return null1 ? -1 : +1;
+            }
+            if (!null1) {
+                int c = Integer.compare(r1.value(0).getInt32(), r2.value(0).getInt32());
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return BY_ID.compare(r1, r2);
+        }
+    };
+
+    private int t;
+    private IndexRowType idxRowType;
+}
@@ -37,7 +37,7 @@ public class HashTableLookup_DefaultIT extends OperatorITBase {
     static int TABLE_BINDING_POSITION = 200;
     private int fullAddress;
     TableRowType fullAddressRowType;
-    private RowType projectRowType;
+    protected RowType projectRowType;
     List<TPreparedExpression> genericExpressionList;
     List<TPreparedExpression> emptyExpressionList;
     List<TPreparedBoundField> emptyBoundExpressionList;
@@ -315,13 +315,13 @@ public class HashTableLookup_DefaultIT extends OperatorITBase {
         );
     }
 
-    private Operator hashJoinPlan( RowType outerRowType,
-                                   RowType innerRowType,
-                                   Operator outerStream,
-                                   Operator innerStream,
-                                   int outerJoinFields[],
-                                   int innerJoinFields[],
-                                   List<AkCollator> collators) {
+    protected Operator hashJoinPlan( RowType outerRowType,
+                                     RowType innerRowType,
+                                     Operator outerStream,
+                                     Operator innerStream,
+                                     int outerJoinFields[],
+                                     int innerJoinFields[],
+                                     List<AkCollator> collators) {
 
         List<TPreparedExpression> expressions = new ArrayList<>();
         for( int i = 0; i < outerRowType.nFields(); i++){
@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.util.HashTable;
+import com.foundationdb.server.test.it.Spilling;
+import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
+import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import com.foundationdb.server.types.texpressions.TPreparedField;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static com.foundationdb.qp.operator.API.*;
+import static com.foundationdb.server.test.ExpressionGenerators.field;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Run all the hash join tests with every partition spilled to disk. */
+public class HashTableLookup_DefaultSpillIT extends HashTableLookup_DefaultIT
+{
+    private static final String SPILL_TAP = "hash table: spill partition";
+    private static final String LOAD_TAP = "hash table: load partition";
+    private static final int KEYS = 10;
+    private static final int PROBES = 200;
+
+    private int keys, probes;
+    private RowType keysRowType, probesRowType;
+
+    @Override
+    protected Map<String, String> startupConfigProperties() {
+        return Spilling.properties(super.startupConfigProperties(),
+                                   "fdbsql.hash_table.memory", "1",
+                                   SPILL_TAP, LOAD_TAP);
+    }
+
+    @Override
+    protected void setupCreateSchema() {
+        super.setupCreateSchema();
+        keys = createTable(
+                "schema", "keys",
+                "id int not null primary key",
+                "name varchar(20)");
+        probes = createTable(
+                "schema", "probes",
+                "id int not null primary key",
+                "k int");
+    }
+
+    @Override
+    protected void setupPostCreateSchema() {
+        super.setupPostCreateSchema();
+        keysRowType = schema.tableRowType(table(keys));
+        probesRowType = schema.tableRowType(table(probes));
+        List<Row> rows = new ArrayList<>();
+        for (long id = 0; id < KEYS; id++) {
+            rows.add(row(keys, id, "key " + id));
+        }
+        // Consecutive probes go to different partitions.
+        for (long id = 0; id < PROBES; id++) {
+            rows.add(row(probes, id, id % KEYS));
+        }
+        use(rows.toArray(new Row[rows.size()]));
+    }
+
+    @Test
+    public void testSpilled() {
+        Spilling.resetCount(SPILL_TAP);
+        testSingleColumnJoin();
+        assertTrue("spilled", Spilling.count(SPILL_TAP) > 0);
+    }
+
+    @Test
+    public void testPartitionedProbes() {
+        List<TPreparedExpression> probeFields = Collections.<TPreparedExpression>singletonList(
+                new TPreparedField(probesRowType.typeAt(1), 1));
+        Operator join = hashJoinPlan(probesRowType,
+                                     keysRowType,
+                                     partition_HashTable(
+                                             filter_Default(
+                                                     groupScan_Default(group(probes)),
+                                                     Collections.singleton(probesRowType)),
+                                             probesRowType,
+                                             probeFields,
+                                             TABLE_BINDING_POSITION),
+                                     filter_Default(
+                                             groupScan_Default(group(keys)),
+                                             Collections.singleton(keysRowType)),
+                                     new int[] { 1 },
+                                     new int[] { 0 },
+                                     null);
+        Ordering ordering = ordering();
+        ordering.append(field(projectRowType, 0), true);
+        Operator plan = sort_General(join, projectRowType, ordering, SortOption.PRESERVE_DUPLICATES);
+        Row[] expected = new Row[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            expected[i] = row(projectRowType, (long)i, (long)(i % KEYS), "key " + (i % KEYS));
+        }
+        Spilling.resetCount(SPILL_TAP);
+        Spilling.resetCount(LOAD_TAP);
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+        assertTrue("spilled", Spilling.count(SPILL_TAP) > 0);
+        // Without partitioning the probes, nearly every one reloads.
+        assertTrue("each partition loaded once", Spilling.count(LOAD_TAP) <= KEYS);
+    }
+
+    @Test
+    public void testLongKeysRoundTrip() {
+        HashTable hashTable = new HashTable();
+        hashTable.setRowType(probesRowType);
+        hashTable.setSpill(queryContext, 1);
+        List<TEvaluatableExpression> keyFields = Collections.singletonList(
+                new TPreparedField(probesRowType.typeAt(1), 1).build());
+        Spilling.resetCount(LOAD_TAP);
+        for (long id = 0; id < PROBES; id++) {
+            hashTable.put(row(probesRowType, id, id % KEYS), keyFields, queryBindings);
+        }
+        assertTrue("spilled", hashTable.spilledPartitionCount() > 0);
+        HashTable.Matches matches = new HashTable.Matches();
+        try {
+            for (long k = 0; k < KEYS; k++) {
+                hashTable.findMatchingRows(matches, row(probesRowType, -1L, k), keyFields, queryBindings);
+                // Every row with the key, still in the order put.
+                long id = k;
+                for (Row match = matches.next(); match != null; match = matches.next()) {
+                    assertEquals("id", id, match.value(0).getInt32());
+                    assertEquals("k", k, match.value(1).getInt32());
+                    id += KEYS;
+                }
+                assertEquals("rows for " + k, k + PROBES, id);
+            }
+        }
+        finally {
+            hashTable.close();
+        }
+        assertTrue("loaded", Spilling.count(LOAD_TAP) > 0);
+    }
+}
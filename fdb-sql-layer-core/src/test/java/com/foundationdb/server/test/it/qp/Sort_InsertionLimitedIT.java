@@ -596,6 +596,32 @@ public class Sort_InsertionLimitedIT extends OperatorITBase
         testCursorLifecycle(plan, testCase);
     }
 
+    @Test
+    public void testLargeLimit()
+    {
+        int nrows = 1000;
+        int limit = 600;
+        Row[] rows = new Row[nrows];
+        for (int i = 0; i < nrows; i++) {
+            // 7919 is prime, so this visits each id once, out of order.
+            long cid = (i * 7919L) % nrows;
+            rows[i] = row(customerRowType, cid, String.format("c%03d", cid / 2));
+        }
+        Operator plan =
+            sort_InsertionLimited(
+                rowsToValueScan(rows),
+                customerRowType,
+                ordering(field(customerRowType, 1), false, field(customerRowType, 0), true),
+                SortOption.PRESERVE_DUPLICATES,
+                limit);
+        Row[] expected = new Row[limit];
+        for (int i = 0; i < limit; i++) {
+            long cid = (nrows - 2 - (i / 2) * 2) + (i % 2);
+            expected[i] = row(customerRowType, cid, String.format("c%03d", cid / 2));
+        }
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
     private Ordering ordering(Object... objects)
     {
         Ordering ordering = API.ordering();
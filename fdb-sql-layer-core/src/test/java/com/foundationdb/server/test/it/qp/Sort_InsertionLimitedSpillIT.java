@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.operator.API;
+import com.foundationdb.qp.operator.ExpressionGenerator;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.test.it.Spilling;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.foundationdb.qp.operator.API.*;
+import static com.foundationdb.server.test.ExpressionGenerators.field;
+import static org.junit.Assert.assertTrue;
+
+/** Run all the limited sort tests with the kept rows outgrowing the sort memory. */
+public class Sort_InsertionLimitedSpillIT extends Sort_InsertionLimitedIT
+{
+    private static final String SPILL_TAP = "sort: spill";
+
+    @Override
+    protected Map<String, String> startupConfigProperties() {
+        return Spilling.properties(super.startupConfigProperties(),
+                                   "fdbsql.sort.memory", "1024",
+                                   SPILL_TAP);
+    }
+
+    @Test
+    public void testSpilled() {
+        Spilling.resetCount(SPILL_TAP);
+        testLargeLimit();
+        assertTrue("spilled", Spilling.count(SPILL_TAP) > 0);
+    }
+
+    @Test
+    public void testSpilledDuplicatesInArrivalOrder() {
+        int nrows = 1000;
+        int nnames = 5;
+        int limit = 500;
+        Row[] rows = new Row[nrows];
+        for (int i = 0; i < nrows; i++) {
+            // Arrival order is not that of cid, and there are only a few names.
+            long cid = (i * 7919L) % nrows;
+            rows[i] = row(customerRowType, cid, "c" + (cid % nnames));
+        }
+        Operator plan =
+            sort_InsertionLimited(
+                rowsToValueScan(rows),
+                customerRowType,
+                ordering(field(customerRowType, 1), true),
+                SortOption.PRESERVE_DUPLICATES,
+                limit);
+        List<Row> expected = new ArrayList<>(limit);
+        for (int n = 0; n < nnames; n++) {
+            for (int i = 0; (i < nrows) && (expected.size() < limit); i++) {
+                if (rows[i].value(1).getString().equals("c" + n)) {
+                    expected.add(rows[i]);
+                }
+            }
+        }
+        Spilling.resetCount(SPILL_TAP);
+        compareRows(expected.toArray(new Row[limit]), cursor(plan, queryContext, queryBindings));
+        assertTrue("spilled", Spilling.count(SPILL_TAP) > 0);
+    }
+
+    private static Ordering ordering(ExpressionGenerator expression, boolean ascending) {
+        Ordering ordering = API.ordering();
+        ordering.append(expression, ascending);
+        return ordering;
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.it.sort;
+
+import com.foundationdb.qp.operator.API;
+import com.foundationdb.server.test.it.Spilling;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+/** Run all the sorter tests with the rows outgrowing the in-memory buffer. */
+public class MergeJoinSorterSpillIT extends MergeJoinSorterIT {
+    private static final String SPILL_TAP = "sort: spill";
+    private static final int NROWS = 1000;
+    private static final int NKEYS = 5;
+
+    @Override
+    public Map<String,String> startupConfigProperties() {
+        return Spilling.properties(super.startupConfigProperties(),
+                                   "fdbsql.sort.memory", "1024",
+                                   SPILL_TAP);
+    }
+
+    @Test
+    public void spilled() {
+        List<String[]> input = new ArrayList<>(NROWS);
+        List<String[]> expected = new ArrayList<>(NROWS);
+        for (int i = 0; i < NROWS; i++) {
+            // 7919 is prime, so this visits each value once, out of order.
+            input.add(new String[] { String.format("r%04d", (i * 7919L) % NROWS) });
+            expected.add(new String[] { String.format("r%04d", i) });
+        }
+        Spilling.resetCount(SPILL_TAP);
+        runTest(API.SortOption.PRESERVE_DUPLICATES, input, expected, true);
+        assertTrue("spilled", Spilling.count(SPILL_TAP) > 0);
+    }
+
+    @Test
+    public void spilledDuplicatesInArrivalOrder() {
+        List<String[]> input = new ArrayList<>(NROWS);
+        for (int i = 0; i < NROWS; i++) {
+            long n = (i * 7919L) % NROWS;
+            // Sorted on the first field only, of which there are a few values.
+            input.add(new String[] { "k" + (n % NKEYS), String.format("r%04d", n) });
+        }
+        List<String[]> expected = new ArrayList<>(NROWS);
+        for (int k = 0; k < NKEYS; k++) {
+            for (String[] row : input) {
+                if (row[0].equals("k" + k)) {
+                    expected.add(row);
+                }
+            }
+        }
+        Spilling.resetCount(SPILL_TAP);
+        runTest(API.SortOption.PRESERVE_DUPLICATES, input, expected, true);
+        assertTrue("spilled", Spilling.count(SPILL_TAP) > 0);
+    }
+}
@@ -346,6 +346,12 @@ public final class SchemaManagerIT extends ITBase {
         final String SCHEMA = "information_schema";
         final String STATS_TABLE = "index_statistics";
         final String ENTRY_TABLE = "index_statistics_entry";
+        final String SAMPLE_TABLE = "index_statistics_sample";
+        final String MODIFICATION_TABLE = "index_statistics_modification";
+        final String COLUMN_TABLE = "index_statistics_column";
+        final String COLUMN_VALUE_TABLE = "index_statistics_column_value";
+        final String COLUMN_GROUP_TABLE = "index_statistics_column_group";
+        final String COLUMN_GROUP_VALUE_TABLE = "index_statistics_column_group_value";
         final String STATS_DDL = "create table `information_schema`.`index_statistics`("+
             "`table_id` bigint NOT NULL, `index_id` bigint NOT NULL, `analysis_timestamp` timestamp NULL, "+
             "`row_count` bigint NULL, `sampled_count` bigint NULL, "+
@@ -378,6 +384,54 @@ public final class SchemaManagerIT extends ITBase {
         assertEquals("eq_count", "eq_count", entryTable.getColumn(6).getName());
         assertEquals("lt_count", "lt_count", entryTable.getColumn(7).getName());
         assertEquals("distinct_count", "distinct_count", entryTable.getColumn(8).getName());
+
+        Table sampleTable = ais().getTable(SCHEMA, SAMPLE_TABLE);
+        assertNotNull("Sample table present", sampleTable);
+        assertEquals("table_id", "table_id", sampleTable.getColumn(0).getName());
+        assertEquals("index_id", "index_id", sampleTable.getColumn(1).getName());
+        assertEquals("probe_count", "probe_count", sampleTable.getColumn(2).getName());
+        assertEquals("error_bound", "error_bound", sampleTable.getColumn(3).getName());
+        assertEquals("sample parent", statsTable, sampleTable.getParentTable());
+
+        Table modificationTable = ais().getTable(SCHEMA, MODIFICATION_TABLE);
+        assertNotNull("Modification table present", modificationTable);
+        assertEquals("table_id", "table_id", modificationTable.getColumn(0).getName());
+        assertEquals("index_id", "index_id", modificationTable.getColumn(1).getName());
+        assertEquals("modification_count", "modification_count", modificationTable.getColumn(2).getName());
+        assertEquals("modification parent", statsTable, modificationTable.getParentTable());
+
+        Table columnTable = ais().getTable(SCHEMA, COLUMN_TABLE);
+        assertNotNull("Column table present", columnTable);
+        assertEquals("table_id", "table_id", columnTable.getColumn(0).getName());
+        assertEquals("index_id", "index_id", columnTable.getColumn(1).getName());
+        assertEquals("column_position", "column_position", columnTable.getColumn(2).getName());
+        assertEquals("row_count", "row_count", columnTable.getColumn(3).getName());
+        assertEquals("null_count", "null_count", columnTable.getColumn(4).getName());
+        assertEquals("distinct_count", "distinct_count", columnTable.getColumn(5).getName());
+        assertEquals("sketch", "sketch", columnTable.getColumn(6).getName());
+        assertEquals("column parent", statsTable, columnTable.getParentTable());
+
+        Table columnValueTable = ais().getTable(SCHEMA, COLUMN_VALUE_TABLE);
+        assertNotNull("Column value table present", columnValueTable);
+        assertEquals("column_position", "column_position", columnValueTable.getColumn(2).getName());
+        assertEquals("item_number", "item_number", columnValueTable.getColumn(3).getName());
+        assertEquals("key_string", "key_string", columnValueTable.getColumn(4).getName());
+        assertEquals("key_bytes", "key_bytes", columnValueTable.getColumn(5).getName());
+        assertEquals("eq_count", "eq_count", columnValueTable.getColumn(6).getName());
+        assertEquals("column value parent", columnTable, columnValueTable.getParentTable());
+
+        Table columnGroupTable = ais().getTable(SCHEMA, COLUMN_GROUP_TABLE);
+        assertNotNull("Column group table present", columnGroupTable);
+        assertEquals("group_number", "group_number", columnGroupTable.getColumn(2).getName());
+        assertEquals("column_positions", "column_positions", columnGroupTable.getColumn(3).getName());
+        assertEquals("sketch", "sketch", columnGroupTable.getColumn(7).getName());
+        assertEquals("column group parent", statsTable, columnGroupTable.getParentTable());
+
+        Table columnGroupValueTable = ais().getTable(SCHEMA, COLUMN_GROUP_VALUE_TABLE);
+        assertNotNull("Column group value table present", columnGroupValueTable);
+        assertEquals("group_number", "group_number", columnGroupValueTable.getColumn(2).getName());
+        assertEquals("eq_count", "eq_count", columnGroupValueTable.getColumn(6).getName());
+        assertEquals("column group value parent", columnGroupTable, columnGroupValueTable.getParentTable());
     }
 
     @Test
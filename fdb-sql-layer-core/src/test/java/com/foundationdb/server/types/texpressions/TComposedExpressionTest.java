@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.types.texpressions;
+
+import com.foundationdb.qp.operator.QueryBindings;
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.operator.RowsBuilder;
+import com.foundationdb.qp.operator.SimpleQueryContext;
+import com.foundationdb.qp.operator.SparseArrayQueryBindings;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.TPreptimeValue;
+import com.foundationdb.server.types.mcompat.mtypes.MNumeric;
+import com.foundationdb.server.types.service.TypesRegistryService;
+import com.foundationdb.server.types.service.TypesRegistryServiceImpl;
+import com.foundationdb.server.types.value.Value;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.value.ValueSources;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** A composed evaluation must give the same results as the interpreted one. */
+public class TComposedExpressionTest {
+
+    private static final TInstance BIGINT = MNumeric.BIGINT.instance(true);
+
+    private static TypesRegistryService registry;
+
+    @BeforeClass
+    public static void createRegistry() {
+        registry = TypesRegistryServiceImpl.createRegistryService();
+    }
+
+    private final RowsBuilder rows = new RowsBuilder(BIGINT, BIGINT, BIGINT)
+        .row(1L, 2L, 3L)
+        .row(500L, 400L, 300L)
+        .row(null, 2L, 3L)
+        .row(1L, null, 3L)
+        .row(7L, 8L, null)
+        .row(-5L, 5L, 0L);
+
+    private final TPreparedExpression a = new TPreparedField(BIGINT, 0);
+    private final TPreparedExpression b = new TPreparedField(BIGINT, 1);
+    private final TPreparedExpression c = new TPreparedField(BIGINT, 2);
+
+    @Test
+    public void functions() {
+        TPreparedExpression plus = function("plus", a, b);
+        assertComposed(plus);
+        assertComposed(function("times", plus, c));
+        assertComposed(function("minus", literal(100L), function("times", a, a)));
+    }
+
+    @Test
+    public void comparisons() {
+        for (Comparison comparison : Comparison.values()) {
+            assertComposed(new TComparisonExpression(a, comparison, b));
+            assertComposed(new TComparisonExpression(function("times", function("plus", a, b), c),
+                                                     comparison,
+                                                     literal(250000L)));
+        }
+    }
+
+    @Test
+    public void interpretedInputs() {
+        QueryBindings bindings = new SparseArrayQueryBindings();
+        bindings.setValue(0, new Value(BIGINT, 1000L));
+        TPreparedExpression parameter = new TPreparedParameter(0, BIGINT);
+        assertComposed(new TComparisonExpression(function("plus", a, parameter),
+                                                 Comparison.GE,
+                                                 literal(1002L)),
+                       bindings);
+        assertComposed(function("times", parameter, new TNullExpression(BIGINT)), bindings);
+    }
+
+    @Test
+    public void onlyTreesComposed() {
+        assertFalse(TComposedExpression.compose(a) instanceof TComposedExpression);
+        assertFalse(TComposedExpression.compose(literal(1L)) instanceof TComposedExpression);
+        assertFalse(TComposedExpression.compose(new TNullExpression(BIGINT)) instanceof TComposedExpression);
+        assertTrue(TComposedExpression.compose(function("plus", a, b)) instanceof TComposedExpression);
+        assertTrue(TComposedExpression.compose(new TComparisonExpression(a, Comparison.EQ, b)) instanceof TComposedExpression);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void notEvaluatedAfterWith() {
+        Row row = rows.rows().getFirst();
+        TEvaluatableExpression composed = TComposedExpression.compose(function("plus", a, b));
+        composed.with(new SimpleQueryContext());
+        evaluate(composed, row);
+        composed.with(row);
+        composed.resultValue();
+    }
+
+    private void assertComposed(TPreparedExpression expression) {
+        assertComposed(expression, new SparseArrayQueryBindings());
+    }
+
+    private void assertComposed(TPreparedExpression expression, QueryBindings bindings) {
+        QueryContext context = new SimpleQueryContext();
+        TEvaluatableExpression interpreted = expression.build();
+        interpreted.with(context);
+        interpreted.with(bindings);
+        TEvaluatableExpression composed = TComposedExpression.compose(expression);
+        composed.with(context);
+        composed.with(bindings);
+        for (Row row : rows.rows()) {
+            String message = expression + " " + row;
+            ValueSource expected = evaluate(interpreted, row);
+            ValueSource actual = evaluate(composed, row);
+            assertEquals(message, expected.getType(), actual.getType());
+            assertEquals(message, expected.isNull(), actual.isNull());
+            if (!expected.isNull()) {
+                assertEquals(message, ValueSources.toObject(expected), ValueSources.toObject(actual));
+            }
+        }
+    }
+
+    private static ValueSource evaluate(TEvaluatableExpression eval, Row row) {
+        eval.with(row);
+        eval.evaluate();
+        return eval.resultValue();
+    }
+
+    private static TPreparedExpression function(String name, TPreparedExpression left, TPreparedExpression right) {
+        TValidatedScalar overload = registry.getScalarsResolver().get(
+            name, Arrays.asList(new TPreptimeValue(left.resultType()), new TPreptimeValue(right.resultType()))
+        ).getOverload();
+        return new TPreparedFunction(overload, overload.resultType().fixed(true), Arrays.asList(left, right));
+    }
+
+    private static TPreparedExpression literal(long value) {
+        return new TPreparedLiteral(new Value(BIGINT, value));
+    }
+}
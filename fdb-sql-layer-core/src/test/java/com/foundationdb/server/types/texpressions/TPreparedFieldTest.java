@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.types.texpressions;
+
+import com.foundationdb.qp.operator.RowsBuilder;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.mcompat.mtypes.MNumeric;
+import com.foundationdb.server.types.mcompat.mtypes.MString;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.value.ValueSources;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/** A read-only field evaluation must give the same results as a copying one. */
+public class TPreparedFieldTest {
+
+    private static final TInstance INT = MNumeric.INT.instance(true);
+    private static final TInstance VARCHAR = MString.VARCHAR.instance(32, true);
+
+    @Test
+    public void nullFields() {
+        RowsBuilder rows = new RowsBuilder(INT, VARCHAR)
+            .row(null, null)
+            .row(1, null)
+            .row(null, "a");
+        for (Row row : rows.rows()) {
+            for (int i = 0; i < 2; i++) {
+                TPreparedField field = new TPreparedField(row.rowType().typeAt(i), i);
+                ValueSource regular = evaluate(field.build(), row);
+                ValueSource readOnly = evaluate(field.buildReadOnly(), row);
+                assertSameValue(row + "[" + i + "]", regular, readOnly);
+            }
+        }
+    }
+
+    @Test
+    public void typeDiffersFromColumn() {
+        Row row = new RowsBuilder(INT, VARCHAR).row(42, "hello world").rows().getFirst();
+        // Same underlying types, but not nullable and a shorter string.
+        TPreparedField intField = new TPreparedField(MNumeric.INT.instance(false), 0);
+        TPreparedField stringField = new TPreparedField(MString.VARCHAR.instance(8, false), 1);
+        for (TPreparedField field : new TPreparedField[] { intField, stringField }) {
+            ValueSource regular = evaluate(field.build(), row);
+            ValueSource readOnly = evaluate(field.buildReadOnly(), row);
+            assertSameValue(field.toString(), regular, readOnly);
+            // Only the type carried by the value itself differs: the row's own, not the field's.
+            assertEquals(field.resultType(), regular.getType());
+        }
+        assertEquals(INT, evaluate(intField.buildReadOnly(), row).getType());
+        assertEquals(VARCHAR, evaluate(stringField.buildReadOnly(), row).getType());
+    }
+
+    @Test
+    public void rowReused() {
+        RowType rowType = new RowsBuilder(INT, VARCHAR).rowType();
+        ValuesHolderRow row = new ValuesHolderRow(rowType);
+        TPreparedField field = new TPreparedField(INT, 0);
+        TEvaluatableExpression regular = field.build();
+        TEvaluatableExpression readOnly = field.buildReadOnly();
+        Integer[] values = { 1, null, 2, 2, null, null, 3 };
+        for (Integer value : values) {
+            // The same row object, changed in place, as a buffering cursor does.
+            if (value == null) {
+                row.valueAt(0).putNull();
+            }
+            else {
+                row.valueAt(0).putInt32(value);
+            }
+            row.valueAt(1).putString("row " + value, null);
+            assertSameValue("row " + value, evaluate(regular, row), evaluate(readOnly, row));
+        }
+        // The copy stays put; the read-only result follows the row, which is why it
+        // is only for callers that do not hold onto it.
+        row.valueAt(0).putInt32(4);
+        assertEquals(3, regular.resultValue().getInt32());
+        assertEquals(4, readOnly.resultValue().getInt32());
+        assertSame(row.value(0), readOnly.resultValue());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void readOnlyNotEvaluatedAfterWith() {
+        Row row = new RowsBuilder(INT).row(1).rows().getFirst();
+        TEvaluatableExpression readOnly = new TPreparedField(INT, 0).buildReadOnly();
+        evaluate(readOnly, row);
+        readOnly.with(row);
+        readOnly.resultValue();
+    }
+
+    private static ValueSource evaluate(TEvaluatableExpression eval, Row row) {
+        eval.with(row);
+        eval.evaluate();
+        return eval.resultValue();
+    }
+
+    private static void assertSameValue(String message, ValueSource expected, ValueSource actual) {
+        assertEquals(message, expected.isNull(), actual.isNull());
+        if (!expected.isNull()) {
+            assertEquals(message, ValueSources.toObject(expected), ValueSources.toObject(actual));
+        }
+    }
+}
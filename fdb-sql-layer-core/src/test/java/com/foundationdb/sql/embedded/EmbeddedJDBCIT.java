@@ -30,6 +30,7 @@ import static org.junit.Assert.assertTrue;
 import java.sql.*;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 
 public class EmbeddedJDBCIT extends EmbeddedJDBCITBase
 {
@@ -163,6 +164,77 @@ public class EmbeddedJDBCIT extends EmbeddedJDBCITBase
             }
         }
     }
+
+    @Test
+    public void testBatch() throws Exception {
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.addBatch("INSERT INTO c VALUES(3, 'Brown')");
+            stmt.addBatch("UPDATE c SET name = 'Green' WHERE cid > 1");
+            int[] counts = stmt.executeBatch();
+            assertEquals("batch size", 2, counts.length);
+            assertEquals("insert count", 1, counts[0]);
+            assertEquals("update count", 2, counts[1]);
+            assertEquals("emptied batch", 0, stmt.executeBatch().length);
+        }
+    }
+
+    @Test
+    public void testPreparedBatch() throws Exception {
+        try (Connection conn = getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO o VALUES(?, ?, '2012-06-01')")) {
+                pstmt.setInt(2, 1);
+                for (int oid = 103; oid <= 105; oid++) {
+                    pstmt.setInt(1, oid);
+                    pstmt.addBatch();
+                }
+                pstmt.setInt(1, 202);
+                pstmt.setInt(2, 2);
+                pstmt.addBatch();
+                int[] counts = pstmt.executeBatch();
+                assertEquals("batch size", 4, counts.length);
+                for (int count : counts) {
+                    assertEquals("insert count", 1, count);
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM o WHERE cid = ?")) {
+                pstmt.setInt(1, 2);
+                pstmt.addBatch();
+                pstmt.setInt(1, 1);
+                pstmt.addBatch();
+                pstmt.setInt(1, 3);
+                pstmt.addBatch();
+                int[] counts = pstmt.executeBatch();
+                assertEquals("delete counts", "[2, 5, 0]", Arrays.toString(counts));
+            }
+        }
+    }
+
+    @Test
+    public void testPreparedBatchFailure() throws Exception {
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("INSERT INTO c VALUES(?, 'Doe')")) {
+            pstmt.setInt(1, 4);
+            pstmt.addBatch();
+            pstmt.setInt(1, 1);
+            pstmt.addBatch();
+            BatchUpdateException batchEx = null;
+            try {
+                pstmt.executeBatch();
+            }
+            catch (BatchUpdateException ex) {
+                batchEx = ex;
+            }
+            assertNotNull("exception thrown", batchEx);
+            assertEquals("error code", ErrorCode.DUPLICATE_KEY.getFormattedValue(), batchEx.getSQLState());
+        }
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM c")) {
+            assertTrue("has count", rs.next());
+            assertEquals("whole batch rolled back", 2, rs.getInt(1));
+        }
+    }
     @Test 
     public void testJavaProcedure() throws Exception {
         try (Connection conn = getConnection()) {
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.sql.server;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class NormalizedStatementTest {
+
+    @Test
+    public void insertValues() {
+        check("INSERT INTO t VALUES (1, 'a', -2.5, +3)",
+              "INSERT INTO t VALUES ($1, $2, $3, $4)",
+              "1", "a", "-2.5", "3");
+        check("insert into t(id, s) values(1,'it''s')",
+              "insert into t(id, s) values($1,$2)",
+              "1", "it's");
+    }
+
+    @Test
+    public void insertRows() {
+        check("INSERT INTO t VALUES (1, 'a'), (2, 'b')",
+              "INSERT INTO t VALUES ($1, $2), ($3, $4)",
+              "1", "a", "2", "b");
+    }
+
+    @Test
+    public void onlyBareLiterals() {
+        // Expressions, NULL and functions are left for the optimizer.
+        check("INSERT INTO t VALUES (1 + 2, NULL, CURRENT_DATE, 'x' || 'y', 4, (5))",
+              "INSERT INTO t VALUES (1 + 2, NULL, CURRENT_DATE, 'x' || 'y', $1, (5))",
+              "4");
+        check("INSERT INTO t VALUES (- 1, 1e3)",
+              "INSERT INTO t VALUES (- 1, $1)",
+              "1e3");
+    }
+
+    @Test
+    public void updateSet() {
+        check("UPDATE t SET a = 1, b = 'x', c = c + 1 WHERE id = 10",
+              "UPDATE t SET a = $1, b = $2, c = c + 1 WHERE id = 10",
+              "1", "x");
+        check("UPDATE t SET a=-1;",
+              "UPDATE t SET a=$1;",
+              "-1");
+    }
+
+    @Test
+    public void commentsAndQuotes() {
+        check("/* load */ INSERT INTO \"values\" -- VALUES (9)\n VALUES ('-- not a comment')",
+              "/* load */ INSERT INTO \"values\" -- VALUES (9)\n VALUES ($1)",
+              "-- not a comment");
+    }
+
+    @Test
+    public void leftAsWritten() {
+        // Literals that can pick index ranges or be folded.
+        assertNull(NormalizedStatement.normalize("SELECT id FROM t WHERE id = 1"));
+        assertNull(NormalizedStatement.normalize("DELETE FROM t WHERE id = 1"));
+        assertNull(NormalizedStatement.normalize("INSERT INTO t SELECT 1, 'a' FROM u"));
+        assertNull(NormalizedStatement.normalize("INSERT INTO t SELECT * FROM (VALUES (1)) AS v"));
+        assertNull(NormalizedStatement.normalize("UPDATE t SET a = b WHERE id = 1"));
+        // Already has parameters.
+        assertNull(NormalizedStatement.normalize("INSERT INTO t VALUES ($1, 2)"));
+        assertNull(NormalizedStatement.normalize("INSERT INTO t VALUES (?, 2)"));
+        // Strings whose value depends on more than the quotes.
+        assertNull(NormalizedStatement.normalize("INSERT INTO t VALUES (E'a\\n')"));
+        assertNull(NormalizedStatement.normalize("INSERT INTO t VALUES (X'0F')"));
+        assertNull(NormalizedStatement.normalize("INSERT INTO t VALUES ('a\\'b')"));
+        // More than one statement, or not understood.
+        assertNull(NormalizedStatement.normalize("INSERT INTO t VALUES (1); INSERT INTO t VALUES (2)"));
+        assertNull(NormalizedStatement.normalize("INSERT INTO t VALUES (1"));
+        assertNull(NormalizedStatement.normalize("INSERT INTO t VALUES ('a"));
+        assertNull(NormalizedStatement.normalize("INSERT INTO t VALUES (1.2.3)"));
+        assertNull(NormalizedStatement.normalize("INSERT INTO t VALUES (0x1F)"));
+        assertNull(NormalizedStatement.normalize(""));
+    }
+
+    private static void check(String sql, String expectedSQL, String... expectedValues) {
+        NormalizedStatement normalized = NormalizedStatement.normalize(sql);
+        assertEquals(sql, expectedSQL, (normalized == null) ? null : normalized.getSQL());
+        assertEquals(sql, Arrays.asList(expectedValues), normalized.getValues());
+    }
+}
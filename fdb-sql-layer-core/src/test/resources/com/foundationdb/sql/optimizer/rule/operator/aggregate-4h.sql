@@ -0,0 +1,3 @@
+SELECT city, SUM(aid)
+  FROM addresses
+GROUP BY city
\ No newline at end of file
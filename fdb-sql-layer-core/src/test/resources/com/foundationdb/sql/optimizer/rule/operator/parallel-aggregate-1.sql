@@ -0,0 +1 @@
+SELECT COUNT(name), MAX(name) FROM customers WHERE name LIKE '%a%'
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT SUBSTR(name, 1, 1), COUNT(*) FROM customers WHERE name LIKE '%a%' GROUP BY SUBSTR(name, 1, 1)
\ No newline at end of file
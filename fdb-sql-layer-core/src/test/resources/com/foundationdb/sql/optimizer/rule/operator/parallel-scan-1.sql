@@ -0,0 +1 @@
+SELECT name FROM customers ORDER BY name
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT name FROM customers WHERE name LIKE '%a%'
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT * FROM customers WHERE FULL_TEXT_SEARCH(name, 'john') ORDER BY cid LIMIT 5
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT addresses.aid, items.iid FROM addresses LEFT JOIN items ON addresses.aid = items.quan AND addresses.cid = items.quan
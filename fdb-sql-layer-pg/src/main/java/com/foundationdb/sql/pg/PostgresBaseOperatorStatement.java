@@ -17,6 +17,7 @@
 
 package com.foundationdb.sql.pg;
 
+import com.foundationdb.qp.operator.Operator;
 import com.foundationdb.server.error.UnknownDataTypeException;
 import com.foundationdb.server.types.TInstance;
 import com.foundationdb.server.types.common.types.TypesTranslator;
@@ -81,6 +82,23 @@ public abstract class PostgresBaseOperatorStatement extends PostgresDMLStatement
         return pbos;
     }
 
+    /** The operator that produces this statement's results. */
+    public abstract Operator getResultOperator();
+
+    /** The number of operators in the plan, as a proxy for its memory use. */
+    public int getPlanSize() {
+        Operator resultOperator = getResultOperator();
+        return (resultOperator == null) ? 1 : countOperators(resultOperator);
+    }
+
+    protected static int countOperators(Operator operator) {
+        int count = 1;
+        for (Operator input : operator.getInputOperators()) {
+            count += countOperators(input);
+        }
+        return count;
+    }
+
     protected PostgresType[] getParameterTypes(BasePlannable.ParameterType[] planTypes,
                                                int[] paramTypes,
                                                TypesTranslator typesTranslator) {
@@ -0,0 +1,427 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.sql.pg;
+
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Input and output for a client connection on a non-blocking {@link SocketChannel}.
+ * The {@link PostgresEventLoop} fills the input buffer as data arrives and the
+ * thread running the connection consumes it through ordinary blocking streams,
+ * so that {@link PostgresMessenger} works the same either way. A pooled worker
+ * is only given whole buffered messages, so it never actually waits; anything
+ * that might is run on a thread of its own.
+ */
+class PostgresChannelStream
+{
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+    // Past this, a larger message is streamed to a dedicated thread as it arrives.
+    private static final int MAX_BUFFER_SIZE = 1024 * 1024;
+    private static final int WRITE_WAIT_MILLIS = 1000;
+
+    private final PostgresEventLoop eventLoop;
+    private final SocketChannel channel;
+    private final InputStream inputStream = new ChannelInputStream();
+    private final OutputStream outputStream = new ChannelOutputStream();
+    // Guarded by this.
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private int start, end;
+    private boolean eof, readPaused;
+    private int readTimeout;
+    private SelectionKey key;
+    // Only used by the thread writing.
+    private Selector writeSelector;
+    private final Object writeLock = new Object();
+    // Guarded by writeLock.
+    private boolean writing, interruptPending;
+
+    PostgresChannelStream(PostgresEventLoop eventLoop, SocketChannel channel) {
+        this.eventLoop = eventLoop;
+        this.channel = channel;
+    }
+
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    public PostgresEventLoop getEventLoop() {
+        return eventLoop;
+    }
+
+    synchronized SelectionKey getKey() {
+        return key;
+    }
+
+    synchronized void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /** Like <code>Socket.setSoTimeout</code>, for blocking reads by the worker. */
+    public synchronized void setReadTimeout(int millis) {
+        this.readTimeout = millis;
+    }
+
+    /** Read whatever the channel has. Called from the event loop.
+     * @return <code>false</code> if nothing more should be read until some is consumed.
+     */
+    synchronized boolean fill() {
+        if (start == end) {
+            start = end = 0;
+        }
+        if (end == buffer.length) {
+            if (start > 0) {
+                System.arraycopy(buffer, start, buffer, 0, end - start);
+                end -= start;
+                start = 0;
+            }
+            else if (buffer.length < MAX_BUFFER_SIZE) {
+                byte[] newBuffer = new byte[Math.min(buffer.length * 2, MAX_BUFFER_SIZE)];
+                System.arraycopy(buffer, 0, newBuffer, 0, end);
+                buffer = newBuffer;
+            }
+            else {
+                readPaused = true;
+                return false;
+            }
+        }
+        int nb;
+        try {
+            nb = channel.read(ByteBuffer.wrap(buffer, end, buffer.length - end));
+        }
+        catch (IOException ex) {
+            nb = -1;            // Reset, etc.: to the reader, just the end.
+        }
+        if (nb < 0) {
+            eof = true;
+            notifyAll();
+            return false;
+        }
+        if (nb > 0) {
+            end += nb;
+            notifyAll();
+        }
+        return true;
+    }
+
+    /** Is there a whole message buffered, or the end of input, so
+     * that the worker will not have to wait once it starts reading?
+     */
+    public synchronized boolean hasMessage(boolean hasType) {
+        if (eof) {
+            return true;
+        }
+        int len = messageLength(hasType);
+        if (len < 0) {
+            return false;
+        }
+        // Let the messenger complain about a bad length.
+        return (len < 4) || (end - start >= messageSize(hasType, len));
+    }
+
+    /** Is the next message too large ever to be buffered whole? */
+    public synchronized boolean isOversized(boolean hasType) {
+        int len = messageLength(hasType);
+        return (len >= 4) && (messageSize(hasType, len) > MAX_BUFFER_SIZE);
+    }
+
+    /** The type code of the next message, or -1 if none has arrived. */
+    public synchronized int peekType() {
+        return (start < end) ? (buffer[start] & 0xFF) : -1;
+    }
+
+    /** Does the body of the whole buffered message begin with the SQL
+     * keyword <code>keyword</code>, ignoring ASCII case and any leading
+     * whitespace and comments?
+     */
+    public synchronized boolean messageStartsWith(boolean hasType, String keyword) {
+        if (!hasMessage(hasType) || eof) {
+            return false;
+        }
+        int len = messageLength(hasType);
+        int from = start + (hasType ? 5 : 4);
+        int to = start + (int)messageSize(hasType, len);
+        return startsWithKeyword(buffer, from, to, keyword);
+    }
+
+    /** Does the (null-terminated) SQL text in <code>bytes</code> from
+     * <code>from</code> to <code>to</code> begin with <code>keyword</code>
+     * as a whole word, after whitespace and <code>--</code> and
+     * <code>/* *&#47;</code> comments? */
+    static boolean startsWithKeyword(byte[] bytes, int from, int to, String keyword) {
+        int pos = from;
+        while (pos < to) {
+            int b = bytes[pos] & 0xFF;
+            if (Character.isWhitespace(b)) {
+                pos++;
+            }
+            else if ((b == '-') && (pos + 1 < to) && (bytes[pos + 1] == '-')) {
+                pos += 2;
+                while ((pos < to) && (bytes[pos] != '\n') && (bytes[pos] != 0)) {
+                    pos++;
+                }
+            }
+            else if ((b == '/') && (pos + 1 < to) && (bytes[pos + 1] == '*')) {
+                // Block comments nest.
+                int depth = 1;
+                pos += 2;
+                while ((depth > 0) && (pos < to) && (bytes[pos] != 0)) {
+                    if ((bytes[pos] == '/') && (pos + 1 < to) && (bytes[pos + 1] == '*')) {
+                        depth++;
+                        pos += 2;
+                    }
+                    else if ((bytes[pos] == '*') && (pos + 1 < to) && (bytes[pos + 1] == '/')) {
+                        depth--;
+                        pos += 2;
+                    }
+                    else {
+                        pos++;
+                    }
+                }
+            }
+            else {
+                break;
+            }
+        }
+        if (to - pos < keyword.length()) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length(); i++) {
+            if (Character.toLowerCase((char)(bytes[pos + i] & 0xFF)) != Character.toLowerCase(keyword.charAt(i))) {
+                return false;
+            }
+        }
+        pos += keyword.length();
+        if (pos == to) {
+            return true;
+        }
+        char next = (char)(bytes[pos] & 0xFF);
+        return !(Character.isLetterOrDigit(next) || (next == '_') || (next == '$') || (next >= 0x80));
+    }
+
+    /** The null-terminated string that begins the body of the whole
+     * buffered message, or <code>null</code>.
+     */
+    public synchronized String peekString(boolean hasType, String encoding) throws IOException {
+        if (!hasMessage(hasType) || eof) {
+            return null;
+        }
+        int len = messageLength(hasType);
+        int from = start + (hasType ? 5 : 4);
+        int to = start + (int)messageSize(hasType, len);
+        for (int pos = from; pos < to; pos++) {
+            if (buffer[pos] == 0) {
+                return new String(buffer, from, pos - from, encoding);
+            }
+        }
+        return null;
+    }
+
+    /** Interrupt the thread that writes to this channel, as for a
+     * query cancel, but not while it is writing, since unlike a socket
+     * stream, that would close the channel.
+     */
+    public void interrupt(Thread writer) {
+        synchronized (writeLock) {
+            if (writing) {
+                interruptPending = true;
+            }
+            else {
+                writer.interrupt();
+            }
+        }
+    }
+
+    /** Clear any interrupt of the current thread from {@link #interrupt}. */
+    public void clearInterrupt() {
+        synchronized (writeLock) {
+            interruptPending = false;
+            Thread.interrupted();
+        }
+    }
+
+    /** Close the channel and wake up anyone waiting to read from it. */
+    public void close() throws IOException {
+        synchronized (this) {
+            eof = true;
+            notifyAll();
+        }
+        try {
+            channel.close();
+        }
+        finally {
+            Selector selector = writeSelector;
+            if (selector != null) {
+                selector.close();
+            }
+        }
+    }
+
+    /** The length field of the next message, which counts itself but
+     * not the type, or -1 if that has not all arrived. Called holding
+     * this's lock. */
+    private int messageLength(boolean hasType) {
+        int header = hasType ? 5 : 4;
+        if (end - start < header) {
+            return -1;
+        }
+        int pos = start + header - 4;
+        return ((buffer[pos] & 0xFF) << 24) |
+               ((buffer[pos+1] & 0xFF) << 16) |
+               ((buffer[pos+2] & 0xFF) << 8) |
+               (buffer[pos+3] & 0xFF);
+    }
+
+    private static long messageSize(boolean hasType, int len) {
+        return (hasType ? 1 : 0) + (long)len;
+    }
+
+    private synchronized int read() throws IOException {
+        if (!awaitInput()) {
+            return -1;
+        }
+        int b = buffer[start++] & 0xFF;
+        consumed();
+        return b;
+    }
+
+    private synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!awaitInput()) {
+            return -1;
+        }
+        int nb = Math.min(len, end - start);
+        System.arraycopy(buffer, start, b, off, nb);
+        start += nb;
+        consumed();
+        return nb;
+    }
+
+    /** Wait for there to be something to read. Called holding this's lock.
+     * @return <code>false</code> at EOF.
+     */
+    private boolean awaitInput() throws IOException {
+        boolean interrupted = false;
+        try {
+            long deadline = (readTimeout > 0) ? System.currentTimeMillis() + readTimeout : 0;
+            while ((start == end) && !eof) {
+                // As with a socket stream, interrupts do not stop the read.
+                long wait = 0;
+                if (deadline > 0) {
+                    wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        throw new SocketTimeoutException("Read timed out");
+                    }
+                }
+                try {
+                    wait(wait);
+                }
+                catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        }
+        finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return (start < end);
+    }
+
+    private void consumed() {
+        if (readPaused) {
+            // Now there is room again.
+            readPaused = false;
+            eventLoop.resumeReading(this);
+        }
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(b, off, len);
+        boolean interrupted;
+        synchronized (writeLock) {
+            writing = true;
+            // Already interrupted would close the channel, too.
+            interrupted = Thread.interrupted();
+        }
+        try {
+            while (bb.hasRemaining()) {
+                if (channel.write(bb) == 0) {
+                    if (writeSelector == null) {
+                        writeSelector = Selector.open();
+                        channel.register(writeSelector, SelectionKey.OP_WRITE);
+                    }
+                    writeSelector.select(WRITE_WAIT_MILLIS);
+                    writeSelector.selectedKeys().clear();
+                }
+            }
+        }
+        finally {
+            synchronized (writeLock) {
+                writing = false;
+                if (interrupted || interruptPending) {
+                    interruptPending = false;
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private class ChannelInputStream extends InputStream
+    {
+        @Override
+        public int read() throws IOException {
+            return PostgresChannelStream.this.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return PostgresChannelStream.this.read(b, off, len);
+        }
+    }
+
+    private class ChannelOutputStream extends OutputStream
+    {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte)b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            PostgresChannelStream.this.write(b, off, len);
+        }
+    }
+}
@@ -25,6 +25,7 @@ import com.foundationdb.sql.parser.StatementNode;
 import com.foundationdb.ais.model.Column;
 import com.foundationdb.ais.model.Table;
 import com.foundationdb.qp.operator.QueryBindings;
+import com.foundationdb.server.error.InvalidParameterValueException;
 import com.foundationdb.server.error.NoSuchColumnException;
 import com.foundationdb.server.error.NoSuchTableException;
 import com.foundationdb.server.error.UnsupportedSQLException;
@@ -56,6 +57,7 @@ public class PostgresCopyInStatement extends PostgresBaseStatement
     private long skipRows;
     private long commitFrequency;
     private int maxRetries;
+    private int writerThreads;
 
     private static final Logger logger = LoggerFactory.getLogger(PostgresCopyInStatement.class);
     private static final InOutTap EXECUTE_TAP = Tap.createTimer("PostgresCopyInStatement: execute shared");
@@ -133,6 +135,16 @@ public class PostgresCopyInStatement extends PostgresBaseStatement
                     ExternalDataService.COMMIT_FREQUENCY_PERIODICALLY;
         }
         maxRetries = copyStmt.getMaxRetries();
+        writerThreads = ExternalDataService.WRITER_THREADS_DEFAULT;
+        String threads = server.getProperty("loadWriterThreads");
+        if (threads != null) {
+            try {
+                writerThreads = Integer.parseInt(threads);
+            }
+            catch (NumberFormatException ex) {
+                throw new InvalidParameterValueException("'" + threads + "' for loadWriterThreads");
+            }
+        }
         return this;
     }
 
@@ -157,13 +169,13 @@ public class PostgresCopyInStatement extends PostgresBaseStatement
             case CSV:
                 nrows = externalData.loadTableFromCsv(session, istr, csvFormat, skipRows,
                                                       toTable, toColumns,
-                                                      commitFrequency, maxRetries,
+                                                      commitFrequency, maxRetries, writerThreads,
                                                       context);
                 break;
             case MYSQL_DUMP:
                 nrows = externalData.loadTableFromMysqlDump(session, istr, encoding,
                                                             toTable, toColumns,
-                                                            commitFrequency, maxRetries,
+                                                            commitFrequency, maxRetries, writerThreads,
                                                             context);
                 break;
             }
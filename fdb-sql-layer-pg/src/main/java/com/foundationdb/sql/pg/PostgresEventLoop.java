@@ -0,0 +1,213 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.sql.pg;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Multiplexes client connections for a {@link PostgresServer} on one {@link Selector}.
+ * Accepts new connections and reads whatever arrives into each one's
+ * {@link PostgresChannelStream}. Once a connection has a whole message, it is
+ * run on a bounded pool of worker threads until it has processed everything
+ * buffered, and then goes back to waiting. So an idle connection holds a
+ * buffer and a selection key, but not a thread.
+ */
+class PostgresEventLoop
+{
+    private static final String WORKER_THREAD_NAME_PREFIX = "PostgresServer_Worker-"; // Port and number appended
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 60;
+    private static final long THROTTLE_MILLIS = 10;
+
+    private static final Logger logger = LoggerFactory.getLogger(PostgresEventLoop.class);
+
+    private final PostgresServer server;
+    private final int slowLimit, hardLimit;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final SelectionKey acceptKey;
+    private final ExecutorService workers;
+    private final Queue<PostgresChannelStream> resumeReading = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+    private long lastAcceptMillis;
+    private boolean overHardLimit;
+
+    public PostgresEventLoop(PostgresServer server, 
+                             InetAddress host, int port, int backlog, 
+                             int nworkers, int slowLimit, int hardLimit) 
+            throws IOException {
+        this.server = server;
+        this.slowLimit = slowLimit;
+        this.hardLimit = hardLimit;
+        selector = Selector.open();
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(host, port), backlog);
+            serverChannel.configureBlocking(false);
+            acceptKey = serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        }
+        catch (IOException ex) {
+            selector.close();
+            throw ex;
+        }
+        final String threadPrefix = WORKER_THREAD_NAME_PREFIX + port + "-";
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(nworkers, nworkers, 
+                                                         WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                                         new LinkedBlockingQueue<Runnable>(),
+                                                         new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, threadPrefix + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        // Only keep as many threads as are busy lately.
+        pool.allowCoreThreadTimeOut(true);
+        workers = pool;
+    }
+
+    /** Run until {@link #close}d, from the server's thread. */
+    public void run() throws IOException {
+        try {
+            while (!closed) {
+                long throttle = acceptThrottle();
+                acceptKey.interestOps((throttle > 0) ? 0 : SelectionKey.OP_ACCEPT);
+                selector.select(throttle);
+                PostgresChannelStream stream;
+                while ((stream = resumeReading.poll()) != null) {
+                    SelectionKey key = stream.getKey();
+                    if ((key != null) && key.isValid()) {
+                        key.interestOps(SelectionKey.OP_READ);
+                    }
+                }
+                Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+                while (iter.hasNext()) {
+                    SelectionKey key = iter.next();
+                    iter.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    }
+                    else if (key.isReadable()) {
+                        read(key);
+                    }
+                }
+            }
+        }
+        finally {
+            workers.shutdown(); // Lets any connections still queued finish closing.
+            try {
+                serverChannel.close();
+            }
+            finally {
+                selector.close();
+            }
+        }
+    }
+
+    /** Stop accepting and reading. Connections must be stopped separately. */
+    public void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    /** Run a connection on a worker thread. */
+    public void execute(Runnable runnable) {
+        workers.execute(runnable);
+    }
+
+    /** Reading for this stream was paused with its buffer full; it now has room. */
+    public void resumeReading(PostgresChannelStream stream) {
+        resumeReading.add(stream);
+        selector.wakeup();
+    }
+
+    /** How long to wait before accepting another connection. */
+    protected long acceptThrottle() {
+        int nconns = server.getConnectionCount();
+        if (nconns > hardLimit) {
+            if (!overHardLimit) {
+                logger.warn("Connection hard limit exceeded, wait for connections to close...");
+                overHardLimit = true;
+            }
+            return THROTTLE_MILLIS;
+        }
+        overHardLimit = false;
+        if (nconns > slowLimit) {
+            long wait = lastAcceptMillis + THROTTLE_MILLIS - System.currentTimeMillis();
+            if (wait > 0) {
+                return wait;
+            }
+        }
+        return 0;
+    }
+
+    protected void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        lastAcceptMillis = System.currentTimeMillis();
+        if (server.getConnectionCount() > slowLimit) {
+            logger.warn("Connection slowdown limit exceeded, delaying connection start...");
+        }
+        PostgresServerConnection connection;
+        try {
+            channel.configureBlocking(false);
+            PostgresChannelStream stream = new PostgresChannelStream(this, channel);
+            connection = server.createConnection(channel.socket(), stream);
+            stream.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+        }
+        catch (IOException ex) {
+            logger.warn("Error accepting connection", ex);
+            channel.close();
+            return;
+        }
+        connection.start();
+    }
+
+    protected void read(SelectionKey key) {
+        PostgresServerConnection connection = (PostgresServerConnection)key.attachment();
+        if (!connection.getChannelStream().fill()) {
+            key.interestOps(0);
+        }
+        connection.inputReady();
+    }
+}
@@ -17,7 +17,10 @@
 
 package com.foundationdb.sql.pg;
 
+import com.foundationdb.sql.server.ServerStatementCache;
+
 import java.util.Date;
+import java.util.List;
 import java.util.Set;
 
 public interface PostgresMXBean {
@@ -38,6 +41,12 @@ public interface PostgresMXBean {
     void setStatementCacheCapacity(int capacity);
     int getStatementCacheHits();
     int getStatementCacheMisses();
+    /** @return number of statements cached for all current schema generations */
+    int getStatementCacheSize();
+    /** @return number of operators in the plans of all statements cached */
+    long getStatementCachePlanSize();
+    /** @return reuse and generation time of each statement cached */
+    List<ServerStatementCache.EntryStatistics> getStatementCacheStatistics();
     void resetStatementCache();
     
     Set<Integer> getCurrentSessions();
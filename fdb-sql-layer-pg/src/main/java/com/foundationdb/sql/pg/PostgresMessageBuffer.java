@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.sql.pg;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Outgoing messages for a connection, reused from one message to the
+ * next. Completed messages accumulate until written out together.
+ *
+ * This is a <code>ByteArrayOutputStream</code> so that a value
+ * encoder can append to it directly. It is only used by the one
+ * thread serving the connection, so none of it is synchronized.
+ */
+class PostgresMessageBuffer extends ByteArrayOutputStream implements DataOutput
+{
+    public static final int INITIAL_SIZE = 8192;
+    // Do not hold onto more than this after some huge message.
+    public static final int MAX_RETAINED_SIZE = 1024 * 1024;
+
+    private DataOutputStream dataOutput;
+
+    public PostgresMessageBuffer() {
+        super(INITIAL_SIZE);
+    }
+
+    private void ensureCapacity(int n) {
+        int needed = count + n;
+        if (needed > buf.length) {
+            if (needed < 0) throw new OutOfMemoryError();
+            buf = Arrays.copyOf(buf, Math.max(needed, buf.length * 2));
+        }
+    }
+
+    /** Overwrite an <code>int</code> already written at <code>pos</code>. */
+    public void putInt(int pos, int v) {
+        assert (pos >= 0) && (pos + 4 <= count) : pos;
+        buf[pos] = (byte)(v >>> 24);
+        buf[pos+1] = (byte)(v >>> 16);
+        buf[pos+2] = (byte)(v >>> 8);
+        buf[pos+3] = (byte)v;
+    }
+
+    public byte byteAt(int pos) {
+        return buf[pos];
+    }
+
+    /** Copy out everything from <code>pos</code> on. */
+    public byte[] copyFrom(int pos) {
+        return Arrays.copyOfRange(buf, pos, count);
+    }
+
+    /** Discard everything from <code>pos</code> on. */
+    public void truncate(int pos) {
+        assert (pos >= 0) && (pos <= count) : pos;
+        count = pos;
+    }
+
+    /*** ByteArrayOutputStream ***/
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(1);
+        buf[count++] = (byte)b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, count);
+    }
+
+    @Override
+    public void reset() {
+        count = 0;
+        if (buf.length > MAX_RETAINED_SIZE)
+            buf = new byte[INITIAL_SIZE];
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /*** DataOutput ***/
+
+    @Override
+    public void writeBoolean(boolean v) {
+        write(v ? 1 : 0);
+    }
+
+    @Override
+    public void writeByte(int v) {
+        write(v);
+    }
+
+    @Override
+    public void writeShort(int v) {
+        ensureCapacity(2);
+        buf[count++] = (byte)(v >>> 8);
+        buf[count++] = (byte)v;
+    }
+
+    @Override
+    public void writeChar(int v) {
+        writeShort(v);
+    }
+
+    @Override
+    public void writeInt(int v) {
+        ensureCapacity(4);
+        count += 4;
+        putInt(count - 4, v);
+    }
+
+    @Override
+    public void writeLong(long v) {
+        writeInt((int)(v >>> 32));
+        writeInt((int)v);
+    }
+
+    @Override
+    public void writeFloat(float v) {
+        writeInt(Float.floatToIntBits(v));
+    }
+
+    @Override
+    public void writeDouble(double v) {
+        writeLong(Double.doubleToLongBits(v));
+    }
+
+    @Override
+    public void writeBytes(String s) throws IOException {
+        getDataOutput().writeBytes(s);
+    }
+
+    @Override
+    public void writeChars(String s) throws IOException {
+        getDataOutput().writeChars(s);
+    }
+
+    @Override
+    public void writeUTF(String s) throws IOException {
+        getDataOutput().writeUTF(s);
+    }
+
+    private DataOutputStream getDataOutput() {
+        if (dataOutput == null)
+            dataOutput = new DataOutputStream(this);
+        return dataOutput;
+    }
+}
@@ -51,36 +51,62 @@ public class PostgresMessenger implements DataInput, DataOutput
     private final static InOutTap xmitTap = Tap.createTimer("sql: msg: xmit");
 
     private static final int IDLE_INTERVAL = 100;
+    // Write out accumulated messages once there are this many bytes,
+    // even without a flush().
+    private static final int WRITE_SIZE = 8192;
 
     private final Socket socket;
+    private final PostgresChannelStream channelStream;
     private final InputStream inputStream;
     private final OutputStream outputStream;
     private final DataInputStream dataInput;
     private byte[] rawMessageInput;
     private DataInputStream messageInput;
-    private ByteArrayOutputStream byteOutput;
-    private DataOutputStream messageOutput;
+    private final PostgresMessageBuffer messageOutput;
+    private int messageStart = -1;
     private String encoding = "UTF-8";
 
     public PostgresMessenger(Socket socket) throws SocketException, IOException {
+        this(socket, null);
+    }
+
+    /** Read and write through <code>channelStream</code> instead, if
+     * the socket is for a non-blocking channel. */
+    PostgresMessenger(Socket socket, PostgresChannelStream channelStream) throws SocketException, IOException {
         this.socket = socket;
+        this.channelStream = channelStream;
         // We flush() when we mean it. 
-        // So, turn off kernel delay, but wrap a buffer so every
+        // So, turn off kernel delay, but accumulate messages so every
         // message isn't its own packet.
         socket.setTcpNoDelay(true);
-        inputStream = socket.getInputStream();
+        if (channelStream != null) {
+            inputStream = channelStream.getInputStream();
+            outputStream = channelStream.getOutputStream();
+        }
+        else {
+            inputStream = socket.getInputStream();
+            outputStream = socket.getOutputStream();
+        }
         dataInput = new DataInputStream(inputStream);
-        outputStream = new BufferedOutputStream(socket.getOutputStream());
+        messageOutput = new PostgresMessageBuffer();
     }
 
     InputStream getInputStream() {
         return inputStream;
     }
 
-    OutputStream getOutputStream() {
+    /** Get the unbuffered stream, after writing out any complete messages. */
+    OutputStream getOutputStream() throws IOException {
+        writeMessages();
         return outputStream;
     }
 
+    /** Get the buffer into which messages are built, for encoding
+     * directly into the current message. */
+    ByteArrayOutputStream getMessageBuffer() {
+        return messageOutput;
+    }
+
     /** The encoding used for strings. */
     public String getEncoding() {
         return encoding;
@@ -167,27 +193,27 @@ public class PostgresMessenger implements DataInput, DataOutput
 
     /** Begin outgoing message of given type. */
     protected void beginMessage(int type) throws IOException {
-        byteOutput = new ByteArrayOutputStream();
-        messageOutput = new DataOutputStream(byteOutput);
+        if (messageStart >= 0)
+            // Abandon one that was never sent, as after an error.
+            messageOutput.truncate(messageStart);
+        messageStart = messageOutput.size();
         messageOutput.write(type);
         messageOutput.writeInt(0);
     }
 
     /** Send outgoing message. */
     protected void sendMessage() throws IOException {
-        messageOutput.flush();
-        byte[] msg = byteOutput.toByteArray();
+        byte code = messageOutput.byteAt(messageStart);
         
         // check we're writing an allowed message. 
-        assert PostgresMessages.writeTypeCorrect((int)msg[0]) : "Invalid write message: " + (char)msg[0];
+        assert PostgresMessages.writeTypeCorrect((int)code) : "Invalid write message: " + (char)code;
         
-        int len = msg.length - 1;
-        msg[1] = (byte)(len >> 24);
-        msg[2] = (byte)(len >> 16);
-        msg[3] = (byte)(len >> 8);
-        msg[4] = (byte)len;
-        outputStream.write(msg);
+        int len = messageOutput.size() - messageStart - 1;
+        messageOutput.putInt(messageStart + 1, len);
+        messageStart = -1;
         bytesWritten(len + 1);
+        if (messageOutput.size() >= WRITE_SIZE)
+            writeMessages();
     }
 
     /** Send outgoing message and optionally flush stream. */
@@ -200,6 +226,7 @@ public class PostgresMessenger implements DataInput, DataOutput
     protected void flush() throws IOException {
         try {
             xmitTap.in();
+            writeMessages();
             outputStream.flush();
         }
         finally {
@@ -207,17 +234,63 @@ public class PostgresMessenger implements DataInput, DataOutput
         }
     }
 
+    /** Write out complete messages, leaving any current one. */
+    protected void writeMessages() throws IOException {
+        int end = (messageStart < 0) ? messageOutput.size() : messageStart;
+        if (end == 0) return;
+        byte[] partial = null;
+        if (messageStart >= 0) {
+            partial = messageOutput.copyFrom(messageStart);
+            messageOutput.truncate(messageStart);
+        }
+        messageOutput.writeTo(outputStream);
+        messageOutput.reset();
+        if (partial != null) {
+            messageStart = 0;
+            messageOutput.write(partial);
+        }
+    }
+
     /** Save whatever portion of the current message there is so that
      * something asynchronous can be sent. */
     protected Object suspendMessage() throws IOException {
-        messageOutput.flush();
-        return byteOutput;
+        if (messageStart < 0) return null;
+        byte[] partial = messageOutput.copyFrom(messageStart);
+        messageOutput.truncate(messageStart);
+        messageStart = -1;
+        return partial;
     }
 
     /** Restore the state from {@link #suspendMessage}. */
     protected void resumeMessage(Object state) throws IOException {
-        byteOutput = (ByteArrayOutputStream)state;
-        messageOutput = new DataOutputStream(byteOutput);
+        if (state == null) return;
+        messageStart = messageOutput.size();
+        messageOutput.write((byte[])state);
+    }
+
+    /** Write a placeholder for a length, returning where it is in
+     * the current message for {@link #endLength}. That stays the same
+     * even if the message is suspended or moved. */
+    public int beginLength() throws IOException {
+        int offset = messageOutput.size() - messageStart;
+        messageOutput.writeInt(0);
+        return offset;
+    }
+
+    /** Fill in the placeholder at <code>offset</code> with the length of
+     * everything written since, which is returned. */
+    public int endLength(int offset) {
+        int pos = messageStart + offset;
+        int len = messageOutput.size() - pos - 4;
+        messageOutput.putInt(pos, len);
+        return len;
+    }
+
+    /** Fill in the placeholder at <code>offset</code> as a null value. */
+    public void endNullLength(int offset) {
+        int pos = messageStart + offset;
+        messageOutput.truncate(pos + 4);
+        messageOutput.putInt(pos, -1);
     }
 
     /** Read null-terminated string. */
@@ -348,14 +421,21 @@ public class PostgresMessenger implements DataInput, DataOutput
 
     public void beforeIdle() throws IOException {
         waitTap.in();
-        socket.setSoTimeout(IDLE_INTERVAL);
+        setReadTimeout(IDLE_INTERVAL);
     }
 
     public void afterIdle() throws IOException {
-        socket.setSoTimeout(0);
+        setReadTimeout(0);
         waitTap.out();
     }
 
+    protected void setReadTimeout(int millis) throws IOException {
+        if (channelStream != null)
+            channelStream.setReadTimeout(millis);
+        else
+            socket.setSoTimeout(millis);
+    }
+
     /** Called every <code>IDLE_INTERVAL</code> ms. while waiting for a message.
      * Overridden to allow insertion of asynch notifications.
      */
@@ -18,6 +18,7 @@
 package com.foundationdb.sql.pg;
 
 import com.foundationdb.sql.optimizer.plan.CostEstimate;
+import com.foundationdb.sql.server.NormalizedStatement;
 import com.foundationdb.server.service.monitor.PreparedStatementMonitor;
 
 public class PostgresPreparedStatement implements PreparedStatementMonitor
@@ -27,15 +28,23 @@ public class PostgresPreparedStatement implements PreparedStatementMonitor
     private String sql;
     private PostgresStatement statement;
     private long prepareTime;
+    private NormalizedStatement normalized;
 
     public PostgresPreparedStatement(PostgresServerSession session, String name,
                                      String sql, PostgresStatement statement,
                                      long prepareTime) {
+        this(session, name, sql, statement, prepareTime, null);
+    }
+
+    public PostgresPreparedStatement(PostgresServerSession session, String name,
+                                     String sql, PostgresStatement statement,
+                                     long prepareTime, NormalizedStatement normalized) {
         this.session = session;
         this.name = name;
         this.sql = sql;
         this.statement = statement;
         this.prepareTime = prepareTime;
+        this.normalized = normalized;
     }
 
     @Override
@@ -71,4 +80,10 @@ public class PostgresPreparedStatement implements PreparedStatementMonitor
         return statement;
     }
 
+    /** If <code>statement</code> was compiled from the normalized form
+     * of <code>sql</code>, the literals to bind to its parameters. */
+    public NormalizedStatement getNormalized() {
+        return normalized;
+    }
+
 }
@@ -19,7 +19,6 @@ package com.foundationdb.sql.pg;
 
 import com.foundationdb.qp.row.Row;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
 import org.slf4j.Logger;
@@ -32,6 +31,8 @@ public class PostgresRowOutputter extends PostgresOutputter<Row>
     public PostgresRowOutputter(PostgresQueryContext context,
                                 PostgresDMLStatement statement) {
         super(context, statement);
+        // Values go straight into the message, with lengths filled in after.
+        encoder = context.getServer().getMessageEncoder();
     }
 
     @Override
@@ -41,14 +42,13 @@ public class PostgresRowOutputter extends PostgresOutputter<Row>
         for (int i = 0; i < ncols; i++) {
             PostgresType type = columnTypes.get(i);
             boolean binary = context.isColumnBinary(i);
-            ByteArrayOutputStream bytes = encoder.encodeValue(row.value(i), type, binary);
-            if (bytes == null) {
-                messenger.writeInt(-1);
+            int lengthOffset = messenger.beginLength();
+            if (encoder.appendEncodedValue(row.value(i), type, binary)) {
+                int len = messenger.endLength(lengthOffset);
+                logger.trace("BE Row Data -> {}:{}", i, len);
             }
             else {
-                messenger.writeInt(bytes.size());
-                messenger.writeByteStream(bytes);
-                logger.trace("BE Row Data -> {}:{}", i, bytes.size() );
+                messenger.endNullLength(lengthOffset);
             }
         }
         messenger.sendMessage();
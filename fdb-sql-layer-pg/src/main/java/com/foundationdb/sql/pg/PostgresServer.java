@@ -40,10 +40,12 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.security.Principal;
 import javax.security.auth.Subject;
@@ -52,7 +54,9 @@ import javax.security.auth.login.LoginException;
 
 /** The PostgreSQL server.
  * Listens of a given port and spawns <code>PostgresServerConnection</code> threads
- * to process requests.
+ * to process requests. Or, with the <code>nio</code> property, multiplexes
+ * connections with a <code>PostgresEventLoop</code> and runs them on a pool of
+ * worker threads only while they have messages to process.
  * Also keeps global state for shutdown and inter-connection communication like cancel.
 */
 public class PostgresServer implements Runnable, PostgresMXBean, ServerMonitor {
@@ -82,7 +86,7 @@ public class PostgresServer implements Runnable, PostgresMXBean, ServerMonitor {
     // AIS-dependent state
     private volatile int statementCacheCapacity;
     private final Map<ObjectLongPair,ServerStatementCache<PostgresStatement>> statementCaches =
-        new HashMap<>(); // key and aisGeneration
+        new ConcurrentHashMap<>(); // key and aisGeneration
     // end AIS-dependent state
     private volatile Date overrideCurrentTime;
     private final CacheCounters cacheCounters = new CacheCounters();
@@ -93,6 +97,11 @@ public class PostgresServer implements Runnable, PostgresMXBean, ServerMonitor {
     private Collection<Class<? extends Principal>> jaasRoleClasses;
     private final int slowLimit;
     private final int hardLimit;
+    private final boolean nio;
+    private final int workerThreads;
+    private PostgresEventLoop eventLoop;
+    private final Random rand = new Random();
+    private LongMetric bytesInMetric, bytesOutMetric;
 
     private static final Logger logger = LoggerFactory.getLogger(PostgresServer.class);
 
@@ -112,6 +121,15 @@ public class PostgresServer implements Runnable, PostgresMXBean, ServerMonitor {
         
         slowLimit = Integer.parseInt(properties.getProperty("connection_slow_limit", "250"));
         hardLimit = Integer.parseInt(properties.getProperty("connection_hard_limit", "500"));
+
+        workerThreads = Integer.parseInt(properties.getProperty("worker_threads", "64"));
+        if (System.getProperty("javax.net.ssl.keyStore") != null) {
+            // SSL needs a blocking socket to wrap.
+            nio = false;
+        }
+        else {
+            nio = Boolean.parseBoolean(properties.getProperty("nio", "false"));
+        }
     }
 
     public Properties getProperties() {
@@ -139,10 +157,12 @@ public class PostgresServer implements Runnable, PostgresMXBean, ServerMonitor {
     /** Called from the main thread to shutdown a server. */
     public void stop() {
         ServerSocket socket;
+        PostgresEventLoop eventLoop;
         synchronized(this) {
             // Service might shutdown before we've even got server socket created.
             running = listening = false;
             socket = this.socket;
+            eventLoop = this.eventLoop;
         }
         if (socket != null) {
             // Can only wake up by closing socket inside whose accept() we are blocked.
@@ -161,6 +181,9 @@ public class PostgresServer implements Runnable, PostgresMXBean, ServerMonitor {
         for (PostgresServerConnection connection : conns) {
             connection.stop();
         }
+        if (eventLoop != null) {
+            eventLoop.close();
+        }
 
         if (thread != null) {
             try {
@@ -180,12 +203,20 @@ public class PostgresServer implements Runnable, PostgresMXBean, ServerMonitor {
     public void run() {
         computeAuthenticationType();
         logger.info("Starting Postgres server listening on {}:{} with authentication {}", host, port, authenticationType);
-        Random rand = new Random();
-        LongMetric bytesInMetric = null, bytesOutMetric = null;
         try {
             bytesInMetric = reqs.metricsService().addLongMetric(BYTES_IN_METRIC_NAME);
             bytesOutMetric = reqs.metricsService().addLongMetric(BYTES_OUT_METRIC_NAME);
             reqs.monitor().registerServerMonitor(this);
+            if (nio) {
+                synchronized(this) {
+                    if (!running) return;
+                    eventLoop = new PostgresEventLoop(this, InetAddress.getByName(host), port, 50,
+                                                      workerThreads, slowLimit, hardLimit);
+                    listening = true;
+                }
+                eventLoop.run();
+                return;
+            }
             synchronized(this) {
                 if (!running) return;
                 // 50 here was taken from the shorter new ServerSocket(port)
@@ -212,15 +243,7 @@ public class PostgresServer implements Runnable, PostgresMXBean, ServerMonitor {
                     }
                 }
                 
-                int sessionId = reqs.monitor().allocateSessionId();
-                int secret = rand.nextInt();
-                PostgresServerConnection connection = 
-                    new PostgresServerConnection(this, 
-                                                 sock, sessionId, secret, 
-                                                 bytesInMetric, bytesOutMetric,
-                                                 reqs);
-                nconnections++;
-                connections.put(sessionId, connection);
+                PostgresServerConnection connection = createConnection(sock, null);
                 connection.start();
             }
         }
@@ -243,6 +266,27 @@ public class PostgresServer implements Runnable, PostgresMXBean, ServerMonitor {
         }
     }
 
+    /** Create a connection for a newly accepted client socket or, for
+     * the event loop, channel. */
+    protected PostgresServerConnection createConnection(Socket sock, PostgresChannelStream channelStream) {
+        int sessionId = reqs.monitor().allocateSessionId();
+        int secret = rand.nextInt();
+        PostgresServerConnection connection = 
+            new PostgresServerConnection(this, 
+                                         sock, channelStream, sessionId, secret, 
+                                         bytesInMetric, bytesOutMetric,
+                                         reqs);
+        synchronized(this) {
+            nconnections++;
+            connections.put(sessionId, connection);
+        }
+        return connection;
+    }
+
+    public synchronized int getConnectionCount() {
+        return connections.size();
+    }
+
     public synchronized boolean isListening() {
         return listening;
     }
@@ -303,7 +347,9 @@ public class PostgresServer implements Runnable, PostgresMXBean, ServerMonitor {
             return null;
 
         ObjectLongPair fullKey = new ObjectLongPair(key, aisGeneration);
-        ServerStatementCache<PostgresStatement> statementCache;
+        ServerStatementCache<PostgresStatement> statementCache = statementCaches.get(fullKey);
+        if (statementCache != null)
+            return statementCache;
         synchronized (statementCaches) {
             statementCache = statementCaches.get(fullKey);
             if (statementCache == null) {
@@ -344,6 +390,33 @@ public class PostgresServer implements Runnable, PostgresMXBean, ServerMonitor {
         return cacheCounters.getMisses();
     }
     
+    @Override
+    public int getStatementCacheSize() {
+        int size = 0;
+        for (ServerStatementCache<PostgresStatement> statementCache : statementCaches.values()) {
+            size += statementCache.size();
+        }
+        return size;
+    }
+
+    @Override
+    public long getStatementCachePlanSize() {
+        long size = 0;
+        for (ServerStatementCache<PostgresStatement> statementCache : statementCaches.values()) {
+            size += statementCache.getPlanSize();
+        }
+        return size;
+    }
+
+    @Override
+    public List<ServerStatementCache.EntryStatistics> getStatementCacheStatistics() {
+        List<ServerStatementCache.EntryStatistics> result = new ArrayList<>();
+        for (ServerStatementCache<PostgresStatement> statementCache : statementCaches.values()) {
+            result.addAll(statementCache.getStatistics());
+        }
+        return result;
+    }
+
     @Override
     public void resetStatementCache() {
         synchronized (statementCaches) {
@@ -18,6 +18,7 @@
 package com.foundationdb.sql.pg;
 
 import com.foundationdb.ais.model.AkibanInformationSchema;
+import com.foundationdb.sql.server.NormalizedStatement;
 import com.foundationdb.sql.server.ServerServiceRequirements;
 import com.foundationdb.sql.server.ServerSessionBase;
 import com.foundationdb.sql.server.ServerSessionMonitor;
@@ -60,12 +61,16 @@ import javax.net.ssl.SSLSocketFactory;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.foundationdb.sql.pg.PostgresStatement.PostgresStatementResult;
 
 /**
  * Connection to a Postgres server client.
- * Runs in its own thread; has its own Main Session.
+ * Runs in its own thread, or on an event loop worker while it has
+ * input to process, with a thread of its own again for any message
+ * that might wait for the client; has its own Main Session.
  *
  */
 public class PostgresServerConnection extends ServerSessionBase
@@ -78,10 +83,14 @@ public class PostgresServerConnection extends ServerSessionBase
     private static final String MD5_SALT = "MD5_SALT";
 
     private final PostgresServer server;
-    private boolean running = false, ignoreUntilSync = false;
+    private volatile boolean running = false;
+    private boolean ignoreUntilSync = false;
+    private volatile boolean startupComplete = false;
     private Socket socket;
+    private final PostgresChannelStream channelStream;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
     private PostgresMessenger messenger;
-    private ServerValueEncoder valueEncoder;
+    private ServerValueEncoder valueEncoder, messageEncoder;
     private ServerValueDecoder valueDecoder;
     private OutputFormat outputFormat = OutputFormat.TABLE;
     private final int sessionId, secret;
@@ -94,12 +103,13 @@ public class PostgresServerConnection extends ServerSessionBase
     private ServerStatementCache<PostgresStatement> statementCache;
     private PostgresStatementParser[] unparsedGenerators;
     private PostgresStatementGenerator[] parsedGenerators;
-    private Thread thread;
+    private volatile Thread thread;
     private final LongMetric bytesInMetric, bytesOutMetric;
 
     private volatile String cancelForKillReason, cancelByUser;
 
     public PostgresServerConnection(PostgresServer server, Socket socket, 
+                                    PostgresChannelStream channelStream,
                                     int sessionId, int secret,
                                     LongMetric bytesInMetric, LongMetric bytesOutMetric,
                                     ServerServiceRequirements reqs) {
@@ -107,6 +117,7 @@ public class PostgresServerConnection extends ServerSessionBase
         this.server = server;
 
         this.socket = socket;
+        this.channelStream = channelStream;
         this.sessionId = sessionId;
         this.secret = secret;
         this.bytesInMetric = bytesInMetric;
@@ -140,6 +151,11 @@ public class PostgresServerConnection extends ServerSessionBase
 
     public void start() {
         running = true;
+        if (channelStream != null) {
+            // Runs when the event loop has input for it.
+            thread = null;
+            return;
+        }
         thread = new Thread(this, THREAD_NAME_PREFIX + sessionId);
         thread.start();
     }
@@ -148,10 +164,18 @@ public class PostgresServerConnection extends ServerSessionBase
         running = false;
         // Can only wake up stream read by closing down socket.
         try {
-            socket.close();
+            if (channelStream != null)
+                channelStream.close();
+            else
+                socket.close();
         }
         catch (IOException ex) {
         }
+        if (channelStream != null) {
+            // Wake up if waiting for input, to finish disconnecting.
+            schedule();
+            return;
+        }
         if ((thread != null) && (thread != Thread.currentThread())) {
             try {
                 // Wait a bit, but don't hang up shutdown if thread is wedged.
@@ -187,8 +211,162 @@ public class PostgresServerConnection extends ServerSessionBase
         }
     }
 
+    PostgresChannelStream getChannelStream() {
+        return channelStream;
+    }
+
+    /** Called from the event loop when more input has arrived. */
+    void inputReady() {
+        if (hasInput()) {
+            schedule();
+        }
+    }
+
+    /** Run on an event loop worker, unless already running or due to. */
+    protected void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                channelStream.getEventLoop().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            resume(false);
+                        }
+                    });
+            }
+            catch (RejectedExecutionException ex) {
+                // Server shutting down.
+                running = false;
+                disconnected();
+            }
+        }
+    }
+
+    /** Is there something to do: a whole message, one too large to
+     * buffer whole, or a kill?
+     */
+    protected boolean hasInput() {
+        return channelStream.hasMessage(startupComplete) ||
+               channelStream.isOversized(startupComplete) ||
+               (cancelForKillReason != null);
+    }
+
+    /** Might processing the next message wait for the client beyond
+     * what is already buffered? Such a message gets a thread of its
+     * own, so that slow clients cannot use up the pool of workers.
+     */
+    protected boolean needsOwnThread() throws IOException {
+        if (channelStream.isOversized(startupComplete))
+            return true;
+        if (!startupComplete)
+            // GSS negotiation reads more messages.
+            return (server.getAuthenticationType() == PostgresServer.AuthenticationType.GSS);
+        int type = channelStream.peekType();
+        if (type == PostgresMessages.PASSWORD_MESSAGE_TYPE.code()) {
+            // Also GSS, or an external login service.
+            return true;
+        }
+        if (type == PostgresMessages.QUERY_TYPE.code()) {
+            // COPY FROM STDIN reads the data as more messages.
+            return channelStream.messageStartsWith(true, "copy");
+        }
+        if (type == PostgresMessages.EXECUTE_TYPE.code()) {
+            String portalName = channelStream.peekString(true, messenger.getEncoding());
+            PostgresBoundQueryContext context = (portalName == null) ? null : boundPortals.get(portalName);
+            return (context != null) &&
+                   (context.getStatement().getStatement() instanceof PostgresCopyInStatement);
+        }
+        return false;
+    }
+
+    /** Process whatever complete messages have been buffered, from an
+     * event loop worker, or, with <code>ownThread</code>, also those
+     * that may need to wait for more input.
+     */
+    protected void resume(boolean ownThread) {
+        while (true) {
+            boolean handOff = false;
+            synchronized (this) {
+                thread = Thread.currentThread();
+            }
+            try {
+                if (messenger == null)
+                    createMessenger();
+                while (running && hasInput()) {
+                    if (!channelStream.hasMessage(startupComplete) &&
+                        !channelStream.isOversized(startupComplete)) {
+                        // Killed while idle: there is nothing to read.
+                        terminateIdle();
+                    }
+                    else if (!ownThread && needsOwnThread()) {
+                        handOff = true;
+                        break;
+                    }
+                    else {
+                        processNextMessage();
+                    }
+                }
+            }
+            catch (Exception ex) {
+                if (running)
+                    logger.warn("Error in server", ex);
+                running = false;
+            }
+            catch (Throwable ex) {
+                logger.error("Error in server {}", ex);
+                running = false;
+            }
+            finally {
+                synchronized (this) {
+                    thread = null;
+                }
+                // Do not carry an interrupt meant for this connection to some other.
+                channelStream.clearInterrupt();
+            }
+            if (handOff) {
+                // Still scheduled, so the event loop leaves it alone.
+                new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            resume(true);
+                        }
+                    }, THREAD_NAME_PREFIX + sessionId).start();
+                return;
+            }
+            if (!running) {
+                try {
+                    channelStream.close();
+                }
+                catch (IOException ex) {
+                }
+                disconnected();
+                return;
+            }
+            sessionMonitor.enterStage(MonitorStage.IDLE);
+            scheduled.set(false);
+            // Input may have arrived after the last check but before the
+            // event loop could see that this was no longer running.
+            if (!(hasInput() || !running) ||
+                !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    /** Disconnect for a kill that came with no message to interrupt. */
+    protected void terminateIdle() throws IOException {
+        try {
+            messenger.idle();
+        }
+        catch (ConnectionTerminatedException ex) {
+            logger.debug("About to terminate", ex);
+            notifyClient(QueryContext.NotificationLevel.WARNING,
+                         ex.getCode(), ex.getShortMessage());
+            stop();
+        }
+    }
+
     protected void createMessenger() throws IOException {
-        messenger = new PostgresMessenger(socket) {
+        messenger = new PostgresMessenger(socket, channelStream) {
                 @Override
                 public void beforeIdle() throws IOException {
                     super.beforeIdle();
@@ -223,158 +401,167 @@ public class PostgresServerConnection extends ServerSessionBase
                     bytesOutMetric.increment(count);
                 }
             };
+        messageEncoder = null; // Bound to the old messenger's buffer.
     }
 
     protected void topLevel() throws IOException, Exception {
         logger.debug("Connect from {}" + socket.getRemoteSocketAddress());
-        boolean startupComplete = false;
         try {
             while (running) {
-                READ_MESSAGE.in();
-                PostgresMessages type;
-                try {
-                    type = messenger.readMessage(startupComplete);
-                } catch (ConnectionTerminatedException ex) {
-                    logger.debug("About to terminate", ex);
-                    notifyClient(QueryContext.NotificationLevel.WARNING,
-                                 ex.getCode(), ex.getShortMessage());
-                    stop();
-                    continue;
-                } finally {
-                    READ_MESSAGE.out();
-                }
-                PROCESS_MESSAGE.in();
-                if (ignoreUntilSync) {
-                    if ((type != PostgresMessages.EOF_TYPE) && (type != PostgresMessages.SYNC_TYPE))
-                        continue;
-                    ignoreUntilSync = false;
-                }
-                long startNsec = System.nanoTime();
-                try {
-                    switch (type) {
-                    case EOF_TYPE: // EOF
-                        stop();
-                        break;
-                    case SYNC_TYPE:
-                        readyForQuery();
-                        break;
-                    case STARTUP_MESSAGE_TYPE:
-                        startupComplete = processStartupMessage();
-                        break;
-                    case PASSWORD_MESSAGE_TYPE:
-                        processPasswordMessage();
-                        break;
-                    case QUERY_TYPE:
-                        processQuery();
-                        break;
-                    case PARSE_TYPE:
-                        processParse();
-                        break;
-                    case BIND_TYPE:
-                        processBind();
-                        break;
-                    case DESCRIBE_TYPE:
-                        processDescribe();
-                        break;
-                    case EXECUTE_TYPE:
-                        processExecute();
-                        break;
-                    case FLUSH_TYPE:
-                        processFlush();
-                        break;
-                    case CLOSE_TYPE:
-                        processClose();
-                        break;
-                    case TERMINATE_TYPE:
-                        processTerminate();
-                        break;
-                    }
-                } catch (QueryCanceledException ex) {
-                    InvalidOperationException nex = ex;
-                    boolean forKill = false;
-                    if (cancelForKillReason != null) {
-                        nex = new ConnectionTerminatedException(cancelForKillReason);
-                        nex.initCause(ex);
-                        cancelForKillReason = null;
-                        forKill = true;
-                    }
-                    logError(ErrorLogLevel.INFO, "Query {} canceled", nex);
-                    String msg = nex.getShortMessage();
-                    if (cancelByUser != null) {
-                        if (!forKill) msg = "Query canceled";
-                        msg += " by " + cancelByUser;
-                        cancelByUser = null;
-                    }
-                    sendErrorResponse(type, nex, nex.getCode(), msg);
-                    if (forKill) stop();
-                } catch (ConnectionTerminatedException ex) {
-                    logError(ErrorLogLevel.DEBUG, "Query {} terminated self", ex);
-                    sendErrorResponse(type, ex, ex.getCode(), ex.getShortMessage());
-                    stop();
-                } catch (InvalidOperationException ex) {
-                    // Most likely a user error, not a system error.
-                    String fmt = logger.isDebugEnabled() ?
-                        "Error in query {}" : // Include stack trace
-                        "Error in query {} => {}"; // Just summarize error
-                    logError(ErrorLogLevel.WARN, fmt, ex);
-                    sendErrorResponse(type, ex, ex.getCode(), ex.getShortMessage());
-                } catch (MultipleCauseException ex) {
-                    int count = 1;
-                    int length = ex.getCauses().size();
-                    for(Throwable throwable : ex.getCauses()) {
-                        if (throwable instanceof InvalidOperationException){
-                            if(count == length){
-                                logError(ErrorLogLevel.WARN, "Error in query {}", ex);
-                                sendErrorResponse(type,
-                                                  ((InvalidOperationException) throwable),
-                                                  ((InvalidOperationException) throwable).getCode(),
-                                                  ((InvalidOperationException) throwable).getShortMessage());
-                            } else {
-                                notifyClient(QueryContext.NotificationLevel.WARNING,
-                                        ((InvalidOperationException) throwable).getCode(),
-                                        ((InvalidOperationException) throwable).getShortMessage());
-                            }
-                        } else {
-                            if(count == length){
-                                logError(ErrorLogLevel.WARN, "Unexpected runtime exception in query {}", ex);
-                                sendErrorResponse(type,
-                                                  (RuntimeException)throwable,
-                                                  ErrorCode.UNEXPECTED_EXCEPTION,
-                                                  ex.getMessage());
-                            } else {
-                                notifyClient(QueryContext.NotificationLevel.WARNING,
-                                        ErrorCode.UNEXPECTED_EXCEPTION,
-                                        ex.getMessage());
-                            }
-                        }
-                        count++;
+                processNextMessage();
+            }
+        }
+        finally {
+            disconnected();
+        }
+    }
+
+    /** Read the next message and process it. */
+    protected void processNextMessage() throws IOException, Exception {
+        READ_MESSAGE.in();
+        PostgresMessages type;
+        try {
+            type = messenger.readMessage(startupComplete);
+        } catch (ConnectionTerminatedException ex) {
+            logger.debug("About to terminate", ex);
+            notifyClient(QueryContext.NotificationLevel.WARNING,
+                         ex.getCode(), ex.getShortMessage());
+            stop();
+            return;
+        } finally {
+            READ_MESSAGE.out();
+        }
+        PROCESS_MESSAGE.in();
+        if (ignoreUntilSync) {
+            if ((type != PostgresMessages.EOF_TYPE) && (type != PostgresMessages.SYNC_TYPE))
+                return;
+            ignoreUntilSync = false;
+        }
+        long startNsec = System.nanoTime();
+        try {
+            switch (type) {
+            case EOF_TYPE: // EOF
+                stop();
+                break;
+            case SYNC_TYPE:
+                readyForQuery();
+                break;
+            case STARTUP_MESSAGE_TYPE:
+                startupComplete = processStartupMessage();
+                break;
+            case PASSWORD_MESSAGE_TYPE:
+                processPasswordMessage();
+                break;
+            case QUERY_TYPE:
+                processQuery();
+                break;
+            case PARSE_TYPE:
+                processParse();
+                break;
+            case BIND_TYPE:
+                processBind();
+                break;
+            case DESCRIBE_TYPE:
+                processDescribe();
+                break;
+            case EXECUTE_TYPE:
+                processExecute();
+                break;
+            case FLUSH_TYPE:
+                processFlush();
+                break;
+            case CLOSE_TYPE:
+                processClose();
+                break;
+            case TERMINATE_TYPE:
+                processTerminate();
+                break;
+            }
+        } catch (QueryCanceledException ex) {
+            InvalidOperationException nex = ex;
+            boolean forKill = false;
+            if (cancelForKillReason != null) {
+                nex = new ConnectionTerminatedException(cancelForKillReason);
+                nex.initCause(ex);
+                cancelForKillReason = null;
+                forKill = true;
+            }
+            logError(ErrorLogLevel.INFO, "Query {} canceled", nex);
+            String msg = nex.getShortMessage();
+            if (cancelByUser != null) {
+                if (!forKill) msg = "Query canceled";
+                msg += " by " + cancelByUser;
+                cancelByUser = null;
+            }
+            sendErrorResponse(type, nex, nex.getCode(), msg);
+            if (forKill) stop();
+        } catch (ConnectionTerminatedException ex) {
+            logError(ErrorLogLevel.DEBUG, "Query {} terminated self", ex);
+            sendErrorResponse(type, ex, ex.getCode(), ex.getShortMessage());
+            stop();
+        } catch (InvalidOperationException ex) {
+            // Most likely a user error, not a system error.
+            String fmt = logger.isDebugEnabled() ?
+                "Error in query {}" : // Include stack trace
+                "Error in query {} => {}"; // Just summarize error
+            logError(ErrorLogLevel.WARN, fmt, ex);
+            sendErrorResponse(type, ex, ex.getCode(), ex.getShortMessage());
+        } catch (MultipleCauseException ex) {
+            int count = 1;
+            int length = ex.getCauses().size();
+            for(Throwable throwable : ex.getCauses()) {
+                if (throwable instanceof InvalidOperationException){
+                    if(count == length){
+                        logError(ErrorLogLevel.WARN, "Error in query {}", ex);
+                        sendErrorResponse(type,
+                                          ((InvalidOperationException) throwable),
+                                          ((InvalidOperationException) throwable).getCode(),
+                                          ((InvalidOperationException) throwable).getShortMessage());
+                    } else {
+                        notifyClient(QueryContext.NotificationLevel.WARNING,
+                                ((InvalidOperationException) throwable).getCode(),
+                                ((InvalidOperationException) throwable).getShortMessage());
                     }
-                } catch (Exception ex) {
-                    logError(ErrorLogLevel.WARN, "Unexpected error in query {}", ex);
-                    String message = (ex.getMessage() == null ? ex.getClass().toString() : ex.getMessage());
-                    sendErrorResponse(type, ex, ErrorCode.UNEXPECTED_EXCEPTION, message);
-                } catch (AssertionError ex) {
-                    logError(ErrorLogLevel.WARN, "Assertion in query {}", ex);
-                    throw ex;
-                }
-                finally {
-                    long stopNsec = System.nanoTime();
-                    if (logger.isTraceEnabled()) {
-                        logger.trace("Executed {}: {} usec", type, (stopNsec - startNsec) / 1000);
+                } else {
+                    if(count == length){
+                        logError(ErrorLogLevel.WARN, "Unexpected runtime exception in query {}", ex);
+                        sendErrorResponse(type,
+                                          (RuntimeException)throwable,
+                                          ErrorCode.UNEXPECTED_EXCEPTION,
+                                          ex.getMessage());
+                    } else {
+                        notifyClient(QueryContext.NotificationLevel.WARNING,
+                                ErrorCode.UNEXPECTED_EXCEPTION,
+                                ex.getMessage());
                     }
                 }
-                PROCESS_MESSAGE.out();
+                count++;
             }
+        } catch (Exception ex) {
+            logError(ErrorLogLevel.WARN, "Unexpected error in query {}", ex);
+            String message = (ex.getMessage() == null ? ex.getClass().toString() : ex.getMessage());
+            sendErrorResponse(type, ex, ErrorCode.UNEXPECTED_EXCEPTION, message);
+        } catch (AssertionError ex) {
+            logError(ErrorLogLevel.WARN, "Assertion in query {}", ex);
+            throw ex;
         }
         finally {
-            if (transaction != null) {
-                transaction.abort();
-                transaction = null;
+            long stopNsec = System.nanoTime();
+            if (logger.isTraceEnabled()) {
+                logger.trace("Executed {}: {} usec", type, (stopNsec - startNsec) / 1000);
             }
-            server.removeConnection(sessionId);
-            reqs.monitor().deregisterSessionMonitor(sessionMonitor, session);
-            logger.debug("Disconnect");
         }
+        PROCESS_MESSAGE.out();
+    }
+
+    protected void disconnected() {
+        if (transaction != null) {
+            transaction.abort();
+            transaction = null;
+        }
+        server.removeConnection(sessionId);
+        reqs.monitor().deregisterSessionMonitor(sessionMonitor, session);
+        logger.debug("Disconnect");
     }
 
     private enum ErrorLogLevel { WARN, INFO, DEBUG };
@@ -698,11 +885,23 @@ public class PostgresServerConnection extends ServerSessionBase
         updateAIS(context);
         
         PostgresStatement pstmt = null;
-        if (statementCache != null) 
-            pstmt = statementCache.get(sql);
+        NormalizedStatement normalized = null;
+        if (statementCache != null) {
+            // Statements that normalize are only ever cached that way.
+            normalized = NormalizedStatement.normalize(sql);
+            if (normalized != null)
+                pstmt = statementCache.get(normalized);
+            else
+                pstmt = statementCache.get(sql);
+        }
         if (pstmt != null) {
             sessionMonitor.countEvent(StatementTypes.FROM_CACHE);
-        } else {
+        } else if (normalized != null) {
+            pstmt = generateNormalized(context, normalized);
+            if (pstmt == null)
+                normalized = null;
+        }
+        if (pstmt == null) {
             for (PostgresStatementParser parser : unparsedGenerators) {
                 // Try special recognition first; only allowed to turn
                 // into one statement.
@@ -715,6 +914,8 @@ public class PostgresServerConnection extends ServerSessionBase
         }
         int rowsProcessed = 0;
         if (pstmt != null) {
+            if (normalized != null)
+                bindNormalized(pstmt, normalized, context, bindings);
             pstmt.sendDescription(context, false, false);
             rowsProcessed = executeStatementWithAutoTxn(pstmt, context, bindings, -1);
         }
@@ -742,6 +943,7 @@ public class PostgresServerConnection extends ServerSessionBase
                 else
                     stmtSQL = sql.substring(stmt.getBeginOffset(),
                                             stmt.getEndOffset() + 1);
+                long compileStart = System.nanoTime();
                 pstmt = generateStatementStub(stmtSQL, stmt, null, null);
                 boolean local = beforeExecute(pstmt);
                 PostgresStatementResult result;
@@ -749,7 +951,7 @@ public class PostgresServerConnection extends ServerSessionBase
                 try {
                     pstmt = finishGenerating(context, stmtSQL, stmt, null, null);
                     if ((statementCache != null) && singleStmt && pstmt.putInCache())
-                        statementCache.put(stmtSQL, pstmt);
+                        statementCache.put(stmtSQL, pstmt, System.nanoTime() - compileStart, planSize(pstmt));
                     pstmt.sendDescription(context, false, false);
                     result = executeStatement(pstmt, context, bindings, -1);
                     success = true;
@@ -768,6 +970,74 @@ public class PostgresServerConnection extends ServerSessionBase
         }
     }
 
+    /** Compile and cache the normalized form of a statement, or
+     * return <code>null</code> to handle it as written.
+     */
+    protected PostgresStatement generateNormalized(PostgresQueryContext context,
+                                                   NormalizedStatement normalized) {
+        String sql = normalized.getSQL();
+        StatementNode stmt;
+        List<ParameterNode> params;
+        try {
+            sessionMonitor.enterStage(MonitorStage.PARSE);
+            stmt = parser.parseStatement(sql);
+            params = parser.getParameterList();
+        }
+        catch (SQLParserException ex) {
+            // Report any error against the statement as written.
+            return null;
+        }
+        catch (StandardException ex) {
+            return null;
+        }
+        finally {
+            sessionMonitor.leaveStage();
+        }
+        if ((params == null) || (params.size() != normalized.getValues().size()))
+            return null;
+        long compileStart = System.nanoTime();
+        PostgresStatement pstmt = generateStatementStub(sql, stmt, params, null);
+        boolean local = beforeExecute(pstmt);
+        boolean success = false;
+        try {
+            pstmt = finishGenerating(context, sql, stmt, params, null);
+            success = true;
+        } finally {
+            afterExecute(pstmt, local, success, false);
+        }
+        if (!(pstmt instanceof PostgresBaseOperatorStatement) || !pstmt.putInCache())
+            return null;
+        PostgresType[] parameterTypes = pstmt.getParameterTypes();
+        if ((parameterTypes == null) || (parameterTypes.length != params.size()))
+            return null;
+        statementCache.put(normalized, pstmt, System.nanoTime() - compileStart, planSize(pstmt));
+        return pstmt;
+    }
+
+    /** Bind the literals of a normalized statement as text parameters, as
+     * a client would have sent them.
+     */
+    protected void bindNormalized(PostgresStatement pstmt, NormalizedStatement normalized,
+                                  PostgresQueryContext context, QueryBindings bindings)
+            throws IOException {
+        if (valueDecoder == null)
+            valueDecoder = new ServerValueDecoder(typesTranslator(),
+                                                  messenger.getEncoding());
+        PostgresType[] parameterTypes = pstmt.getParameterTypes();
+        List<String> values = normalized.getValues();
+        for (int i = 0; i < values.size(); i++) {
+            byte[] value = values.get(i).getBytes(messenger.getEncoding());
+            valueDecoder.decodeValue(value, parameterTypes[i], false, bindings, i, context, typesRegistryService());
+        }
+        logger.debug("Bound literals: {}", bindings);
+    }
+
+    protected static int planSize(PostgresStatement pstmt) {
+        if (pstmt instanceof PostgresBaseOperatorStatement)
+            return ((PostgresBaseOperatorStatement)pstmt).getPlanSize();
+        return 1;
+    }
+
     protected void processParse() throws IOException {
         String stmtName = messenger.readString();
         String sql = messenger.readString();
@@ -782,8 +1052,16 @@ public class PostgresServerConnection extends ServerSessionBase
         updateAIS(context);
 
         PostgresStatement pstmt = null;
-        if (statementCache != null)
-            pstmt = statementCache.get(sql);
+        NormalizedStatement normalized = null;
+        if (statementCache != null) {
+            // Only when the client has no parameters of its own.
+            if (nparams == 0)
+                normalized = NormalizedStatement.normalize(sql);
+            if (normalized != null)
+                pstmt = statementCache.get(normalized);
+            else
+                pstmt = statementCache.get(sql);
+        }
 
         // Verify the parameter types from the parse request match the
         // parameter requests from our potential cached statement
@@ -798,7 +1076,12 @@ public class PostgresServerConnection extends ServerSessionBase
                 }
             }
         }
-         if (pstmt == null) {
+        if ((pstmt == null) && (normalized != null)) {
+            pstmt = generateNormalized(context, normalized);
+            if (pstmt == null)
+                normalized = null;
+        }
+        if (pstmt == null) {
             for (PostgresStatementParser parser : unparsedGenerators) {
                 pstmt = parser.parse(this, sql, null);
                 if (pstmt != null) {
@@ -826,6 +1109,7 @@ public class PostgresServerConnection extends ServerSessionBase
             finally {
                 sessionMonitor.leaveStage();
             }
+            long compileStart = System.nanoTime();
             pstmt = generateStatementStub(sql, stmt, params, paramTypes);
             boolean local = beforeExecute(pstmt);
             boolean success = false;
@@ -836,12 +1120,13 @@ public class PostgresServerConnection extends ServerSessionBase
                 afterExecute(pstmt, local, success, false);
             }
             if ((statementCache != null) && pstmt.putInCache()) {
-                statementCache.put(sql, pstmt);
+                statementCache.put(sql, pstmt, System.nanoTime() - compileStart, planSize(pstmt));
             }
         }
         PostgresPreparedStatement ppstmt = 
             new PostgresPreparedStatement(this, stmtName, sql, pstmt,
-                                          sessionMonitor.getCurrentStatementStartTimeMillis());
+                                          sessionMonitor.getCurrentStatementStartTimeMillis(),
+                                          normalized);
         synchronized (preparedStatements) {
             preparedStatements.put(stmtName, ppstmt);
         }
@@ -897,6 +1182,8 @@ public class PostgresServerConnection extends ServerSessionBase
         PostgresBoundQueryContext bound = 
             new PostgresBoundQueryContext(this, pstmt, portalName, canSuspend, true);
         QueryBindings bindings = bound.createBindings();
+        if (pstmt.getNormalized() != null)
+            bindNormalized(stmt, pstmt.getNormalized(), bound, bindings);
         if (params != null) {
             if (valueDecoder == null)
                 valueDecoder = new ServerValueDecoder(typesTranslator(),
@@ -939,11 +1226,20 @@ public class PostgresServerConnection extends ServerSessionBase
         boolean params;
         switch (source) {
         case (byte)'S':
-            pstmt = preparedStatements.get(name).getStatement();
-            if (pstmt == null)
-                throw new NoSuchPreparedStatementException(name);
-            context = new PostgresQueryContext(this);
-            params = true;
+            {
+                PostgresPreparedStatement ppstmt = preparedStatements.get(name);
+                if (ppstmt == null)
+                    throw new NoSuchPreparedStatementException(name);
+                pstmt = ppstmt.getStatement();
+                context = new PostgresQueryContext(this);
+                params = (ppstmt.getNormalized() == null);
+                if (!params) {
+                    // The parameters in place of literals are not the client's.
+                    messenger.beginMessage(PostgresMessages.PARAMETER_DESCRIPTION_TYPE.code());
+                    messenger.writeShort(0);
+                    messenger.sendMessage();
+                }
+            }
             break;
         case (byte)'P':
             {
@@ -1014,6 +1310,19 @@ public class PostgresServerConnection extends ServerSessionBase
         if (session != null) {
             session.cancelCurrentQuery(true);
         }
+        if (channelStream != null) {
+            synchronized (this) {
+                if (thread != null) {
+                    channelStream.interrupt(thread);
+                }
+            }
+            if (forKillReason != null) {
+                // Wake up if waiting for input, to be disconnected.
+                schedule();
+            }
+            return;
+        }
+        Thread thread = this.thread;
         if (thread != null) {
             thread.interrupt();
         }
@@ -1378,13 +1687,24 @@ public class PostgresServerConnection extends ServerSessionBase
         return valueEncoder;
     }
 
+    @Override
+    public ServerValueEncoder getMessageEncoder() {
+        if (messageEncoder == null)
+            messageEncoder = new ServerValueEncoder(typesTranslator(),
+                                                    messenger.getEncoding(), 
+                                                    messenger.getMessageBuffer(),
+                                                    getZeroDateTimeBehavior(),
+                                                    getFormatOptions());
+        return messageEncoder;
+    }
+
     /* ServerSession */
 
     @Override
     protected boolean propertySet(String key, String value) {
         if ("client_encoding".equals(key)) {
             messenger.setEncoding(value);
-            valueEncoder = null; // These depend on the encoding.
+            valueEncoder = messageEncoder = null; // These depend on the encoding.
             valueDecoder = null;
             return true;
         }
@@ -1399,10 +1719,10 @@ public class PostgresServerConnection extends ServerSessionBase
             return true;
         }
         if ("zeroDateTimeBehavior".equals(key)) {
-            valueEncoder = null; // Also depends on this.
+            valueEncoder = messageEncoder = null; // Also depends on this.
         }
         if ("binary_output".equals(key) || "jsonbinary_output".equals(key)){
-            valueEncoder = null;
+            valueEncoder = messageEncoder = null;
         }
         return super.propertySet(key, value);
     }
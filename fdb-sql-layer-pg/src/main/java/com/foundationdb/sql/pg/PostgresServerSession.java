@@ -39,6 +39,10 @@ public interface PostgresServerSession extends ServerSession
     /** Return an encoder of values as bytes / strings. */
     public ServerValueEncoder getValueEncoder();
 
+    /** Return an encoder of values that appends directly to the
+     * messenger's current message. */
+    public ServerValueEncoder getMessageEncoder();
+
     public enum OutputFormat { TABLE, JSON, JSON_WITH_META_DATA };
 
     /** Get the output format. */
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.sql.pg;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PostgresChannelStreamTest {
+
+    @Test
+    public void leadingKeyword() {
+        assertTrue(startsWithCopy("COPY t FROM STDIN"));
+        assertTrue(startsWithCopy("copy t from stdin"));
+        assertTrue(startsWithCopy("  \n\tCopy\tt FROM STDIN"));
+        assertTrue(startsWithCopy("copy"));
+        assertTrue(startsWithCopy("copy(select 1) to stdout"));
+    }
+
+    @Test
+    public void afterComments() {
+        assertTrue(startsWithCopy("-- load\nCOPY t FROM STDIN"));
+        assertTrue(startsWithCopy("/* load */ COPY t FROM STDIN"));
+        assertTrue(startsWithCopy("/* a /* nested */ comment */copy t from stdin"));
+        assertTrue(startsWithCopy("-- one\n  /* two */\n-- three\ncopy t from stdin"));
+    }
+
+    @Test
+    public void notLeading() {
+        assertFalse(startsWithCopy("SELECT * FROM copyright"));
+        assertFalse(startsWithCopy("SELECT 'copy'"));
+        assertFalse(startsWithCopy("INSERT INTO t VALUES ('COPY t FROM STDIN')"));
+        assertFalse(startsWithCopy("copyright"));
+        assertFalse(startsWithCopy("copy_t"));
+        assertFalse(startsWithCopy("-- COPY t FROM STDIN"));
+        assertFalse(startsWithCopy("/* COPY t FROM STDIN */ SELECT 1"));
+        assertFalse(startsWithCopy("/* unterminated COPY"));
+        assertFalse(startsWithCopy(""));
+        assertFalse(startsWithCopy("cop"));
+    }
+
+    @Test
+    public void stopsAtTerminator() {
+        byte[] bytes = message("select 1");
+        // Another statement after the null is not part of this one.
+        byte[] both = new byte[bytes.length + 4];
+        System.arraycopy(bytes, 0, both, 0, bytes.length);
+        System.arraycopy("copy".getBytes(StandardCharsets.UTF_8), 0, both, bytes.length, 4);
+        assertFalse(PostgresChannelStream.startsWithKeyword(both, 0, bytes.length, "copy"));
+        assertTrue(PostgresChannelStream.startsWithKeyword(message("copy"), 0, 5, "copy"));
+    }
+
+    private static boolean startsWithCopy(String sql) {
+        byte[] bytes = message(sql);
+        return PostgresChannelStream.startsWithKeyword(bytes, 0, bytes.length, "copy");
+    }
+
+    /** The body of a Query message: the text and its null terminator. */
+    private static byte[] message(String sql) {
+        byte[] text = sql.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[text.length + 1];
+        System.arraycopy(text, 0, bytes, 0, text.length);
+        return bytes;
+    }
+}
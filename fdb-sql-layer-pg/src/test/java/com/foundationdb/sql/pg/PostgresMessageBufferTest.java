@@ -0,0 +1,224 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.sql.pg;
+
+import com.foundationdb.server.types.FormatOptions;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.mcompat.mtypes.MBinary;
+import com.foundationdb.server.types.mcompat.mtypes.MNumeric;
+import com.foundationdb.server.types.mcompat.mtypes.MTypesTranslator;
+import com.foundationdb.server.types.value.Value;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.value.ValueSources;
+import com.foundationdb.sql.server.ServerValueEncoder;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PostgresMessageBufferTest {
+
+    private static final TInstance INT = MNumeric.INT.instance(true);
+    private static final TInstance VARBINARY = MBinary.VARBINARY.instance(true);
+    private static final PostgresType INT4_TYPE =
+        new PostgresType(PostgresType.TypeOid.INT4_TYPE_OID, (short)4, -1, INT);
+    private static final PostgresType BYTEA_TYPE =
+        new PostgresType(PostgresType.TypeOid.BYTEA_TYPE_OID, (short)-1, -1, VARBINARY);
+
+    private PostgresMessageBuffer buffer;
+
+    @Before
+    public void createBuffer() {
+        buffer = new PostgresMessageBuffer();
+    }
+
+    @Test
+    public void growth() throws IOException {
+        int n = PostgresMessageBuffer.INITIAL_SIZE * 3 + 17;
+        byte[] expected = new byte[n];
+        for (int i = 0; i < n; i++) {
+            expected[i] = (byte)i;
+        }
+        // Mix single bytes, arrays and ints across the initial capacity.
+        buffer.write(expected, 0, 100);
+        for (int i = 100; i < PostgresMessageBuffer.INITIAL_SIZE + 2; i++) {
+            buffer.write(expected[i]);
+        }
+        int pos = PostgresMessageBuffer.INITIAL_SIZE + 2;
+        buffer.writeInt(((expected[pos] & 0xFF) << 24) | ((expected[pos+1] & 0xFF) << 16) |
+                        ((expected[pos+2] & 0xFF) << 8) | (expected[pos+3] & 0xFF));
+        pos += 4;
+        buffer.write(expected, pos, n - pos);
+        assertEquals(n, buffer.size());
+        assertArrayEquals(expected, buffer.toByteArray());
+        assertArrayEquals(expected, written(buffer));
+    }
+
+    @Test
+    public void lengthBackPatch() throws IOException {
+        // Laid out as PostgresMessenger.beginMessage / sendMessage do.
+        buffer.write('D');
+        int messageStart = 0;
+        buffer.writeInt(0);
+        buffer.writeShort(2);
+        int lengthPos = buffer.size();
+        buffer.writeInt(0);
+        buffer.write(new byte[] { 1, 2, 3 });
+        buffer.putInt(lengthPos, buffer.size() - lengthPos - 4);
+        // A large value, so the length is patched after the buffer has been copied.
+        lengthPos = buffer.size();
+        buffer.writeInt(0);
+        byte[] large = new byte[PostgresMessageBuffer.INITIAL_SIZE * 2];
+        Arrays.fill(large, (byte)'x');
+        buffer.write(large);
+        buffer.putInt(lengthPos, buffer.size() - lengthPos - 4);
+        buffer.putInt(messageStart + 1, buffer.size() - messageStart - 1);
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(written(buffer)));
+        assertEquals('D', input.readByte());
+        assertEquals(4 + 2 + 4 + 3 + 4 + large.length, input.readInt());
+        assertEquals(2, input.readShort());
+        assertEquals(3, input.readInt());
+        byte[] value = new byte[3];
+        input.readFully(value);
+        assertArrayEquals(new byte[] { 1, 2, 3 }, value);
+        assertEquals(large.length, input.readInt());
+        value = new byte[large.length];
+        input.readFully(value);
+        assertArrayEquals(large, value);
+        assertEquals(-1, input.read());
+    }
+
+    @Test
+    public void resetBetweenMessages() throws IOException {
+        buffer.write('C');
+        buffer.writeInt(8);
+        buffer.writeInt(42);
+        buffer.reset();
+        assertEquals(0, buffer.size());
+        buffer.write('Z');
+        buffer.writeInt(5);
+        buffer.write('I');
+        assertArrayEquals(new byte[] { 'Z', 0, 0, 0, 5, 'I' }, written(buffer));
+    }
+
+    @Test
+    public void resetAfterHugeMessage() throws IOException {
+        byte[] huge = new byte[PostgresMessageBuffer.MAX_RETAINED_SIZE + 1];
+        Arrays.fill(huge, (byte)1);
+        buffer.write(huge);
+        assertEquals(huge.length, buffer.size());
+        buffer.reset();
+        assertEquals(0, buffer.size());
+        // Still usable, and none of the huge message shows through.
+        buffer.write('S');
+        buffer.writeInt(4);
+        assertArrayEquals(new byte[] { 'S', 0, 0, 0, 4 }, written(buffer));
+    }
+
+    @Test
+    public void truncate() throws IOException {
+        buffer.write('D');
+        buffer.writeInt(0);
+        int messageStart = buffer.size();
+        buffer.write('E');
+        buffer.writeInt(0);
+        buffer.write(new byte[] { 9, 9, 9 });
+        assertArrayEquals(new byte[] { 'E', 0, 0, 0, 0, 9, 9, 9 }, buffer.copyFrom(messageStart));
+        buffer.truncate(messageStart);
+        assertArrayEquals(new byte[] { 'D', 0, 0, 0, 0 }, written(buffer));
+    }
+
+    @Test
+    public void appendNull() throws IOException {
+        ServerValueEncoder encoder = encoder();
+        buffer.write('D');
+        for (boolean binary : new boolean[] { false, true }) {
+            assertFalse(encoder.appendEncodedValue(ValueSources.getNullSource(INT), INT4_TYPE, binary));
+            assertFalse(encoder.appendEncodedValue(ValueSources.getNullSource(VARBINARY), BYTEA_TYPE, binary));
+        }
+        assertArrayEquals("nothing appended", new byte[] { 'D' }, written(buffer));
+    }
+
+    @Test
+    public void appendBinary() throws IOException {
+        ServerValueEncoder encoder = encoder();
+        buffer.write('D');
+        assertTrue(encoder.appendEncodedValue(new Value(INT, 0x01020304), INT4_TYPE, true));
+        byte[] bytes = { 0, (byte)0xFF, 'a', 0 };
+        assertTrue(encoder.appendEncodedValue(new Value(VARBINARY, bytes), BYTEA_TYPE, true));
+        assertArrayEquals(new byte[] { 'D', 1, 2, 3, 4, 0, (byte)0xFF, 'a', 0 }, written(buffer));
+    }
+
+    @Test
+    public void appendText() throws IOException {
+        ServerValueEncoder encoder = encoder();
+        buffer.write('D');
+        assertTrue(encoder.appendEncodedValue(new Value(INT, 1234), INT4_TYPE, false));
+        assertArrayEquals(new byte[] { 'D', '1', '2', '3', '4' }, written(buffer));
+    }
+
+    @Test
+    public void appendBetweenLengths() throws IOException {
+        // As PostgresRowOutputter does, including a null in the middle.
+        ServerValueEncoder encoder = encoder();
+        buffer.write('D');
+        buffer.writeInt(0);
+        buffer.writeShort(3);
+        appendValue(encoder, new Value(INT, 7), INT4_TYPE);
+        appendValue(encoder, ValueSources.getNullSource(INT), INT4_TYPE);
+        appendValue(encoder, new Value(VARBINARY, new byte[] { 5, 6 }), BYTEA_TYPE);
+        buffer.putInt(1, buffer.size() - 1);
+        assertArrayEquals(new byte[] { 'D', 0, 0, 0, 24, 0, 3,
+                                       0, 0, 0, 4, 0, 0, 0, 7,
+                                       -1, -1, -1, -1,
+                                       0, 0, 0, 2, 5, 6 },
+                          written(buffer));
+    }
+
+    private ServerValueEncoder encoder() {
+        return new ServerValueEncoder(MTypesTranslator.INSTANCE, "UTF-8", buffer, new FormatOptions());
+    }
+
+    private void appendValue(ServerValueEncoder encoder, ValueSource value, PostgresType type) throws IOException {
+        int pos = buffer.size();
+        buffer.writeInt(0);
+        if (encoder.appendEncodedValue(value, type, true)) {
+            buffer.putInt(pos, buffer.size() - pos - 4);
+        }
+        else {
+            buffer.truncate(pos + 4);
+            buffer.putInt(pos, -1);
+        }
+    }
+
+    private static byte[] written(PostgresMessageBuffer buffer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        buffer.writeTo(out);
+        return out.toByteArray();
+    }
+}
@@ -19,6 +19,7 @@ package com.foundationdb.sql.pg;
 
 import com.foundationdb.qp.row.Row;
 import com.foundationdb.server.api.dml.scan.NewRow;
+import com.foundationdb.sql.server.ServerStatementCache;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -35,6 +36,10 @@ public class PostgresServerCacheIT extends PostgresServerFilesITBase
 {
     public static final String QUERY = "SELECT id FROM t1 WHERE id = %d";
     public static final String PQUERY = "SELECT id FROM t1 WHERE id = ?";
+    public static final String INSERT = "INSERT INTO t1 VALUES (%d)";
+    public static final String NORMALIZED_INSERT = "INSERT INTO t1 VALUES ($1)";
+    public static final String UPDATE = "UPDATE t2 SET n = %d, s = 'v%d' WHERE id = 1";
+    public static final String NORMALIZED_UPDATE = "UPDATE t2 SET n = $1, s = $2 WHERE id = 1";
     public static final int NROWS = 100;
     public static final String CAPACITY = "10";
 
@@ -71,6 +76,8 @@ public class PostgresServerCacheIT extends PostgresServerFilesITBase
 
     @Test
     public void testSequential() throws Exception {
+        // A literal in the WHERE clause can choose an index range, so it is
+        // not normalized: each value is a statement of its own.
         Statement stmt = getConnection().createStatement();
         for (int i = 0; i < 1000; i++) {
             query(stmt, i % NROWS);
@@ -103,6 +110,82 @@ public class PostgresServerCacheIT extends PostgresServerFilesITBase
         
     }
     
+    @Test
+    public void testStatistics() throws Exception {
+        Statement stmt = getConnection().createStatement();
+        for (int i = 0; i < 10; i++) {
+            query(stmt, 5);
+        }
+        query(stmt, 6);
+        stmt.close();
+        assertTrue("Cache size", server().getStatementCacheSize() >= 2);
+        ServerStatementCache.EntryStatistics stats = null;
+        for (ServerStatementCache.EntryStatistics entry : server().getStatementCacheStatistics()) {
+            if (entry.getSql().equals(String.format(QUERY, 5))) {
+                stats = entry;
+            }
+        }
+        assertNotNull("Cached statement statistics", stats);
+        assertFalse("Statement normalized", stats.isNormalized());
+        assertEquals("Statement hits", 9, stats.getHits());
+        assertTrue("Compile time recorded", stats.getCompileNanos() > 0);
+        assertTrue("Plan size recorded", stats.getPlanSize() > 0);
+        assertTrue("Total plan size", server().getStatementCachePlanSize() >= 2 * stats.getPlanSize());
+    }
+
+    @Test
+    public void testNormalizedInsert() throws Exception {
+        Statement stmt = getConnection().createStatement();
+        for (int i = 0; i < NROWS; i++) {
+            assertEquals("Rows inserted", 1, stmt.executeUpdate(String.format(INSERT, NROWS + i)));
+        }
+        assertEquals("Cache hits matches", NROWS - 1, server().getStatementCacheHits() - hitsBase);
+        assertEquals("Cache misses matches", 1, server().getStatementCacheMisses() - missesBase);
+        ServerStatementCache.EntryStatistics stats = findStatistics(NORMALIZED_INSERT);
+        assertNotNull("Normalized statement statistics", stats);
+        assertTrue("Statement normalized", stats.isNormalized());
+        assertEquals("Statement hits", NROWS - 1, stats.getHits());
+        assertNull("Statement as written", findStatistics(String.format(INSERT, NROWS)));
+        // Each statement stored its own value.
+        ResultSet rs = stmt.executeQuery("SELECT COUNT(*), MIN(id), MAX(id) FROM t1");
+        assertTrue("Query results", rs.next());
+        assertEquals("Row count", 2 * NROWS, rs.getInt(1));
+        assertEquals("Smallest id", 0, rs.getInt(2));
+        assertEquals("Largest id", 2 * NROWS - 1, rs.getInt(3));
+        stmt.close();
+    }
+
+    @Test
+    public void testNormalizedUpdate() throws Exception {
+        createTable(SCHEMA_NAME, "t2", "id int not null primary key, n int, s varchar(16)");
+        Statement stmt = getConnection().createStatement();
+        stmt.executeUpdate("INSERT INTO t2 VALUES (1, 0, 'v0')");
+        int hits = server().getStatementCacheHits();
+        int misses = server().getStatementCacheMisses();
+        for (int i = 1; i <= 10; i++) {
+            assertEquals("Rows updated", 1, stmt.executeUpdate(String.format(UPDATE, i, i)));
+        }
+        assertEquals("Cache hits matches", 9, server().getStatementCacheHits() - hits);
+        assertEquals("Cache misses matches", 1, server().getStatementCacheMisses() - misses);
+        ServerStatementCache.EntryStatistics stats = findStatistics(NORMALIZED_UPDATE);
+        assertNotNull("Normalized statement statistics", stats);
+        assertEquals("Statement hits", 9, stats.getHits());
+        ResultSet rs = stmt.executeQuery("SELECT n, s FROM t2 WHERE id = 1");
+        assertTrue("Query results", rs.next());
+        assertEquals("Updated number", 10, rs.getInt(1));
+        assertEquals("Updated string", "v10", rs.getString(2));
+        stmt.close();
+    }
+
+    protected ServerStatementCache.EntryStatistics findStatistics(String sql) {
+        for (ServerStatementCache.EntryStatistics entry : server().getStatementCacheStatistics()) {
+            if (entry.getSql().equals(sql)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
     protected void query(Statement stmt, int n) throws Exception {
         ResultSet rs = stmt.executeQuery(String.format(QUERY, n));
         if (rs.next()) {
@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) 2009-2015 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.sql.pg;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PostgresServerEventLoopIT extends PostgresServerITBase
+{
+    private static final int NCONNECTIONS = 100;
+    private static final int NWORKERS = 4;
+
+    @Override
+    protected Map<String, String> startupConfigProperties() {
+        Map<String, String> properties = new HashMap<>(super.startupConfigProperties());
+        properties.put("fdbsql.postgres.nio", "true");
+        properties.put("fdbsql.postgres.worker_threads", Integer.toString(NWORKERS));
+        return properties;
+    }
+
+    @Before
+    public void createTable() throws Exception {
+        Statement statement = getConnection().createStatement();
+        statement.execute("CREATE TABLE t(id INT NOT NULL PRIMARY KEY, s VARCHAR(4000000))");
+        statement.close();
+    }
+
+    @Test
+    public void idleConnectionsHaveNoThreads() throws Exception {
+        List<Connection> connections = new ArrayList<>();
+        try {
+            for (int i = 0; i < NCONNECTIONS; i++) {
+                Connection connection = openConnection();
+                connections.add(connection);
+                Statement statement = connection.createStatement();
+                statement.execute(String.format("INSERT INTO t VALUES(%d, 'x')", i));
+                statement.close();
+            }
+            int sessionThreads = 0, workerThreads = 0;
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().startsWith("PostgresServer_Session-"))
+                    sessionThreads++;
+                else if (thread.getName().startsWith("PostgresServer_Worker-"))
+                    workerThreads++;
+            }
+            assertEquals("session threads", 0, sessionThreads);
+            assertTrue("worker threads " + workerThreads, workerThreads < NCONNECTIONS);
+            // Every one still works.
+            for (Connection connection : connections) {
+                Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM t");
+                rs.next();
+                assertEquals(NCONNECTIONS, rs.getInt(1));
+                rs.close();
+                statement.close();
+            }
+        }
+        finally {
+            for (Connection connection : connections) {
+                closeConnection(connection);
+            }
+        }
+    }
+
+    @Test
+    public void messageLargerThanBuffer() throws Exception {
+        char[] chars = new char[3000000];
+        Arrays.fill(chars, 'y');
+        String s = new String(chars);
+        PreparedStatement insert = getConnection().prepareStatement("INSERT INTO t VALUES(?, ?)");
+        insert.setInt(1, 1);
+        insert.setString(2, s);
+        insert.executeUpdate();
+        insert.close();
+        Statement statement = getConnection().createStatement();
+        ResultSet rs = statement.executeQuery("SELECT s FROM t WHERE id = 1");
+        rs.next();
+        assertEquals(s, rs.getString(1));
+        rs.close();
+        statement.close();
+    }
+
+    @Test
+    public void slowClientsDoNotHoldWorkers() throws Exception {
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            // More clients than workers, each stalled partway through a
+            // message too large to buffer.
+            for (int i = 0; i < NWORKERS * 2; i++) {
+                Socket socket = new Socket("localhost", getPostgresService().getPort());
+                sockets.add(socket);
+                DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+                DataInputStream input = new DataInputStream(socket.getInputStream());
+                startup(output, input);
+                output.writeByte('Q');
+                output.writeInt(4 * 1024 * 1024);
+                output.write(new byte[2 * 1024 * 1024]);
+                output.flush();
+            }
+            Statement statement = getConnection().createStatement();
+            ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM t");
+            rs.next();
+            assertEquals(0, rs.getInt(1));
+            rs.close();
+            statement.close();
+        }
+        finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    private static void startup(DataOutputStream output, DataInputStream input) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bytes);
+        body.writeInt(3 << 16);
+        for (String string : new String[] { "user", USER_NAME, "database", SCHEMA_NAME, "" }) {
+            body.write(string.getBytes("UTF-8"));
+            body.writeByte(0);
+        }
+        output.writeInt(4 + bytes.size());
+        bytes.writeTo(output);
+        output.flush();
+        // Skip ahead to ReadyForQuery.
+        while (true) {
+            int type = input.readByte();
+            int len = input.readInt();
+            input.readFully(new byte[len - 4]);
+            if (type == 'Z')
+                break;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.sql.SQLException;
 import java.util.List;
@@ -37,6 +38,7 @@ public interface RestDMLService {
     public void delete(TableName tableName, String pks);
     public void update(PrintWriter writer, TableName tableName, String values, JsonNode node);
     public void upsert(PrintWriter writer, TableName tableName, JsonNode node);
+    public void loadCsv(PrintWriter writer, TableName tableName, InputStream input, boolean header, Integer writerThreads) throws IOException;
 
     public void insertNoTxn(Session session, PrintWriter writer, TableName tableName, JsonNode node);
     public void updateNoTxn(Session session, PrintWriter writer, TableName tableName, String values, JsonNode node);
@@ -31,6 +31,7 @@ import com.foundationdb.server.explain.format.JsonFormatter;
 import com.foundationdb.server.service.Service;
 import com.foundationdb.server.service.config.ConfigurationService;
 import com.foundationdb.server.service.dxl.DXLService;
+import com.foundationdb.server.service.externaldata.CsvFormat;
 import com.foundationdb.server.service.externaldata.ExternalDataService;
 import com.foundationdb.server.service.externaldata.JsonRowWriter;
 import com.foundationdb.server.service.security.SecurityService;
@@ -58,6 +59,7 @@ import com.google.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.sql.Connection;
@@ -93,6 +95,7 @@ public class RestDMLServiceImpl implements Service, RestDMLService {
     private static final InOutTap ENTITY_PUT = Tap.createTimer("rest: entity PUT");
     private static final InOutTap ENTITY_DELETE = Tap.createTimer("rest: entity DELETE");
     private static final InOutTap ENTITY_PATCH = Tap.createTimer("rest: entity PATCH");
+    private static final InOutTap ENTITY_LOAD = Tap.createTimer("rest: entity CSV load");
     private static final InOutTap ENTITY_SQL = Tap.createTimer("rest: entity sql");
     private static final InOutTap ENTITY_EXPLAIN = Tap.createTimer("rest: entity explain");
     private static final InOutTap ENTITY_PARAM = Tap.createTimer("rest: entity sql parameter");
@@ -196,6 +199,34 @@ public class RestDMLServiceImpl implements Service, RestDMLService {
         }
     }
 
+    @Override
+    public void loadCsv(PrintWriter writer, TableName tableName, InputStream input,
+                        boolean header, Integer writerThreads) throws IOException {
+        ENTITY_LOAD.in();
+        try (Session session = sessionService.createSession()) {
+            Table table;
+            try (CloseableTransaction txn = transactionService.beginCloseableTransaction(session)) {
+                table = dxlService.ddlFunctions().getTable(session, tableName);
+                txn.commit();
+            }
+            // Each batch commits on its own, as with COPY FROM.
+            long count = extDataService.loadTableFromCsv(session, input, new CsvFormat("UTF-8"),
+                                                         header ? 1 : 0,
+                                                         table, table.getColumns(),
+                                                         ExternalDataService.COMMIT_FREQUENCY_PERIODICALLY,
+                                                         0,
+                                                         (writerThreads != null) ? writerThreads : ExternalDataService.WRITER_THREADS_DEFAULT,
+                                                         null);
+            JsonGenerator json = createJsonGenerator(writer);
+            json.writeStartObject();
+            json.writeNumberField("count", count);
+            json.writeEndObject();
+            json.flush();
+        } finally {
+            ENTITY_LOAD.out();
+        }
+    }
+
     @Override
     public void delete(TableName tableName, String identifier) {
         ENTITY_DELETE.in();
@@ -36,10 +36,12 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
+import java.io.InputStream;
 import java.io.PrintWriter;
 
 import static com.foundationdb.rest.resources.ResourceHelper.IDENTIFIERS_MULTI;
 import static com.foundationdb.rest.resources.ResourceHelper.MEDIATYPE_JSON_JAVASCRIPT;
+import static com.foundationdb.rest.resources.ResourceHelper.MEDIATYPE_TEXT_CSV;
 import static com.foundationdb.rest.resources.ResourceHelper.checkTableAccessible;
 import static com.foundationdb.rest.resources.ResourceHelper.getPKString;
 import static com.foundationdb.rest.resources.ResourceHelper.parseTableName;
@@ -114,6 +116,28 @@ public class EntityResource {
                 .build();
     }
 
+    @POST
+    @Consumes(MEDIATYPE_TEXT_CSV)
+    @Produces(MEDIATYPE_JSON_JAVASCRIPT)
+    public Response loadEntities(@Context HttpServletRequest request,
+                                 @PathParam("entity") String entity,
+                                 @QueryParam("header") final Boolean header,
+                                 @QueryParam("writers") final Integer writers,
+                                 final InputStream input) {
+        final TableName tableName = parseTableName(request, entity);
+        checkTableAccessible(reqs.securityService, request, tableName);
+        return RestResponseBuilder
+                .forRequest(request)
+                .body(new RestResponseBuilder.BodyGenerator() {
+                    @Override
+                    public void write(PrintWriter writer) throws Exception {
+                        reqs.restDMLService.loadCsv(writer, tableName, input,
+                                                    Boolean.TRUE.equals(header), writers);
+                    }
+                })
+                .build();
+    }
+
     @PUT
     @Path("/" + IDENTIFIERS_MULTI)
     @Produces(MEDIATYPE_JSON_JAVASCRIPT)
@@ -33,6 +33,7 @@ public class ResourceHelper {
     // Standard but not otherwise defined
     public static final String APPLICATION_JAVASCRIPT = "application/javascript";
     public static final MediaType APPLICATION_JAVASCRIPT_TYPE = MediaType.valueOf(APPLICATION_JAVASCRIPT);
+    public static final String MEDIATYPE_TEXT_CSV = "text/csv";
 
     // For @Produces argument
     public static final String MEDIATYPE_JSON_JAVASCRIPT = MediaType.APPLICATION_JSON + "," + APPLICATION_JAVASCRIPT;
@@ -75,6 +75,7 @@ public class RestServiceFilesIT extends ITBase {
         public final String requestMethod;
         public final String requestURI;
         public final String requestBody;
+        public final String requestContentType;
         public final String expectedHeader;
         public final String expectedResponse;
         public final boolean expectedIgnore;
@@ -83,7 +84,7 @@ public class RestServiceFilesIT extends ITBase {
         public final String properties;
 
         private CaseParams(String subDir, String caseName,
-                           String requestMethod, String requestURI, String requestBody,
+                           String requestMethod, String requestURI, String requestBody, String requestContentType,
                            String expectedHeader, String expectedResponse, boolean expectedIgnore,
                            String checkURI, String checkExpected, String properties) {
             this.subDir = subDir;
@@ -91,6 +92,7 @@ public class RestServiceFilesIT extends ITBase {
             this.requestMethod = requestMethod;
             this.requestURI = requestURI;
             this.requestBody = requestBody;
+            this.requestContentType = requestContentType;
             this.expectedHeader = expectedHeader;
             this.expectedResponse = expectedResponse;
             this.expectedIgnore = expectedIgnore;
@@ -170,6 +172,12 @@ public class RestServiceFilesIT extends ITBase {
                 String method = inputName.substring(dotIndex + 1).toUpperCase();
                 String uri = Strings.dumpFileToString(requestFile).trim();
                 String body = dumpFileIfExists(new File(basePath + ".body"));
+                String contentType = "application/json";
+                String csvBody = dumpFileIfExists(new File(basePath + ".csv"));
+                if(csvBody != null) {
+                    body = csvBody;
+                    contentType = "text/csv";
+                }
                 String header = dumpFileIfExists(new File(basePath + ".expected_header"));
                 String expected = dumpFileIfExists(new File(basePath + ".expected"));
                 boolean expectedIgnore = new File(basePath + ".expected_ignore").exists();
@@ -184,7 +192,7 @@ public class RestServiceFilesIT extends ITBase {
 
                 result.add(new Object[]{
                         subDirName + File.separator + caseName,
-                        new CaseParams(subDirName, caseName, method, uri, body,
+                        new CaseParams(subDirName, caseName, method, uri, body, contentType,
                                 header, expected, expectedIgnore,
                                 checkURI, checkExpected, setParameters)
                 });
@@ -240,8 +248,8 @@ public class RestServiceFilesIT extends ITBase {
         }
     }
 
-    private static void postContents(HttpExchange httpConn, byte[] request) throws IOException {
-        httpConn.setRequestContentType("application/json");
+    private static void postContents(HttpExchange httpConn, String contentType, byte[] request) throws IOException {
+        httpConn.setRequestContentType(contentType);
         httpConn.setRequestHeader("Accept", "application/json");
         httpConn.setRequestContentSource(new ByteArrayInputStream(request));
     }
@@ -262,10 +270,10 @@ public class RestServiceFilesIT extends ITBase {
                 caseParams.requestMethod.equals("PUT") || 
                 caseParams.requestMethod.equals("PATCH")) {
                 if (caseParams.requestBody == null) {
-                    throw new UnsupportedOperationException ("PUT/POST/PATCH expects request body (<test>.body)");
+                    throw new UnsupportedOperationException ("PUT/POST/PATCH expects request body (<test>.body or <test>.csv)");
                 }
                 LOG.debug(caseParams.requestBody);
-                postContents(conn, caseParams.requestBody.getBytes());
+                postContents(conn, caseParams.requestContentType, caseParams.requestBody.getBytes());
             } // else GET || DELETE
 
             httpClient.send(conn);